@@ -34,6 +34,9 @@ import org.exoplatform.management.common.FileEntry;
 import org.exoplatform.management.common.MockHttpServletRequest;
 import org.exoplatform.management.common.MockHttpServletResponse;
 import org.exoplatform.management.common.NavigationUtils;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.common.exportop.ActivitiesExportTask;
 import org.exoplatform.management.common.exportop.SpaceMetadataExportTask;
 import org.exoplatform.management.common.importop.AbstractImportOperationHandler;
@@ -163,9 +166,11 @@ public class CalendarDataImportResource extends AbstractImportOperationHandler i
     InputStream attachmentInputStream = getAttachementInputStream(operationContext);
 
     RequestContext originalRequestContext = null;
+    SpoolDirectory spoolDirectory = null;
     try {
       // extract data from zip
-      Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(attachmentInputStream);
+      spoolDirectory = SpoolManager.getInstance().open("calendar-import");
+      Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(attachmentInputStream, spoolDirectory);
 
       // FIXME: INTEG-333. Add this to not have a null pointer exception while
       // importing
@@ -195,6 +200,9 @@ public class CalendarDataImportResource extends AbstractImportOperationHandler i
       if (originalRequestContext != null) {
         WebuiRequestContext.setCurrentInstance(originalRequestContext);
       }
+      if (spoolDirectory != null) {
+        spoolDirectory.close();
+      }
       if (attachmentInputStream != null) {
         try {
           attachmentInputStream.close();
@@ -257,9 +265,7 @@ public class CalendarDataImportResource extends AbstractImportOperationHandler i
    */
   private void importCalendar(File file, File spaceMetadataFile, boolean replaceExisting, boolean createSpace) throws Exception {
     // Unmarshall calendar data file
-    XStream xStream = new XStream();
-    xStream.alias("Calendar", Calendar.class);
-    xStream.alias("Event", CalendarEvent.class);
+    XStream xStream = XStreamRegistry.getXStream("Calendar", Calendar.class, "Event", CalendarEvent.class);
 
     @SuppressWarnings("unchecked")
     List<Object> objects = (List<Object>) xStream.fromXML(FileUtils.readFileToString(file, "UTF-8"));
@@ -477,12 +483,14 @@ public class CalendarDataImportResource extends AbstractImportOperationHandler i
    * {@inheritDoc}
    */
   @Override
-  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, File file) {
+  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, FileEntry file) {
     if (filePath.endsWith(SpaceMetadataExportTask.FILENAME)) {
-      fileEntries.add(new FileEntry(SpaceMetadataExportTask.FILENAME, file));
+      file.setNodePath(SpaceMetadataExportTask.FILENAME);
+      fileEntries.add(file);
       return true;
     } else if (filePath.endsWith(ActivitiesExportTask.FILENAME)) {
-      fileEntries.add(new FileEntry(ActivitiesExportTask.FILENAME, file));
+      file.setNodePath(ActivitiesExportTask.FILENAME);
+      fileEntries.add(file);
       return true;
     }
     return false;
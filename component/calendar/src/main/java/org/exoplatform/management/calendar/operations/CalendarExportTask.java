@@ -22,6 +22,7 @@ import com.thoughtworks.xstream.XStream;
 
 import org.exoplatform.calendar.service.Calendar;
 import org.exoplatform.calendar.service.CalendarEvent;
+import org.exoplatform.management.common.XStreamRegistry;
 import org.gatein.management.api.operation.model.ExportTask;
 
 import java.io.IOException;
@@ -77,9 +78,7 @@ public class CalendarExportTask implements ExportTask {
   @Override
   public void export(OutputStream outputStream) throws IOException {
 
-    XStream xStream = new XStream();
-    xStream.alias("Calendar", Calendar.class);
-    xStream.alias("Event", CalendarEvent.class);
+    XStream xStream = XStreamRegistry.getXStream("Calendar", Calendar.class, "Event", CalendarEvent.class);
     OutputStreamWriter writer = new OutputStreamWriter(outputStream, "UTF-8");
 
     List<Object> objects = Arrays.asList(calendar, events);
@@ -41,15 +41,17 @@ import org.gatein.management.api.operation.OperationHandler;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.zip.ZipInputStream;
 
 import javax.jcr.LoginException;
 import javax.jcr.NoSuchWorkspaceException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
 import javax.transaction.SystemException;
 
 /**
@@ -87,6 +89,16 @@ public abstract class AbstractOperationHandler implements OperationHandler {
   /** The Constant ONE_DAY_IN_MS. */
   protected static final long ONE_DAY_IN_MS = 86400000L;
 
+  /**
+   * System property used to set the maximum number of resources read to
+   * estimate the binary data of a JCR node, beyond which the size of the other
+   * resources is extrapolated.
+   */
+  public static final String ESTIMATION_MAX_RESOURCES_PARAM = "exo.staging.estimation.maxResources";
+
+  /** The Constant DEFAULT_ESTIMATION_MAX_RESOURCES. */
+  private static final long DEFAULT_ESTIMATION_MAX_RESOURCES = 1000;
+
   /** The default JCR session timeout. */
   protected static Long defaultJCRSessionTimeout = null;
 
@@ -99,10 +111,6 @@ public abstract class AbstractOperationHandler implements OperationHandler {
   /** The space service. */
   protected SpaceService spaceService = null;
 
-  /** The activities by post time. */
-  // This is used to test on duplicated activities
-  protected Set<Long> activitiesByPostTime = new HashSet<Long>();
-
   /**
    * Increase current transaction time out.
    *
@@ -248,6 +256,56 @@ public abstract class AbstractOperationHandler implements OperationHandler {
     return session;
   }
 
+  /**
+   * Estimates the export of a JCR node and its descendants using two JCR
+   * queries: the count of hierarchy nodes (folders and files) and the length
+   * of the binary data of resources, which isn't read. If the count of nodes
+   * isn't known, the path is added as unknown. Resources are read up to the
+   * maximum set by "exo.staging.estimation.maxResources" (1000 by default),
+   * the size of the other ones is extrapolated from their average size and
+   * the estimation is marked as approximate.
+   *
+   * @param session the session
+   * @param path the path of the node
+   * @param estimation the estimation to complete
+   * @throws RepositoryException the repository exception
+   */
+  public static void estimateNodes(Session session, String path, ExportEstimation estimation) throws RepositoryException {
+    String escapedPath = path.replace("'", "''");
+    String pathCondition = "(jcr:path = '" + escapedPath + "' OR jcr:path LIKE '" + escapedPath + "/%')";
+    QueryManager queryManager = session.getWorkspace().getQueryManager();
+
+    long nodesCount = queryManager.createQuery("SELECT * FROM nt:hierarchyNode WHERE " + pathCondition, Query.SQL).execute().getNodes().getSize();
+    if (nodesCount < 0) {
+      estimation.addUnknownPath(path);
+      return;
+    }
+    // The node itself is exported even if it's not a hierarchy node
+    estimation.addEntries(Math.max(nodesCount, 1), ExportEstimation.JCR_NODE_SIZE);
+
+    long maxResources = Math.max(1, Long.getLong(ESTIMATION_MAX_RESOURCES_PARAM, DEFAULT_ESTIMATION_MAX_RESOURCES));
+    NodeIterator resourceNodes = queryManager.createQuery("SELECT * FROM nt:resource WHERE " + pathCondition, Query.SQL).execute().getNodes();
+    long resourcesCount = 0;
+    long resourcesSize = 0;
+    while (resourceNodes.hasNext()) {
+      if (resourcesCount == maxResources) {
+        // Resources are loaded to get their data length, extrapolate instead
+        long totalCount = resourceNodes.getSize();
+        if (totalCount > resourcesCount) {
+          resourcesSize += resourcesSize / resourcesCount * (totalCount - resourcesCount);
+        }
+        estimation.setApproximate();
+        break;
+      }
+      Node resourceNode = resourceNodes.nextNode();
+      if (resourceNode.hasProperty("jcr:data")) {
+        resourcesSize += resourceNode.getProperty("jcr:data").getLength();
+      }
+      resourcesCount++;
+    }
+    estimation.addSize(resourcesSize);
+  }
+
   /**
    * Gets the identity.
    *
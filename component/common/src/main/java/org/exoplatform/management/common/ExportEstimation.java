@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Estimation of the entries and the size of an export, computed by the
+ * "estimate-resource" operation from cheap sources (counts and binary lengths)
+ * without serializing any data. Sizes of serialized data are approximated by
+ * an average size by entry.
+ */
+public class ExportEstimation {
+
+  /** The Constant ESTIMATE_RESOURCE, name of the estimation operation. */
+  public static final String ESTIMATE_RESOURCE = "estimate-resource";
+
+  /** The Constant JCR_NODE_SIZE, average size of a serialized JCR node without its binaries. */
+  public static final long JCR_NODE_SIZE = 2 * 1024;
+
+  /** The Constant ACTIVITY_SIZE, average size of a serialized activity with its comments. */
+  public static final long ACTIVITY_SIZE = 2 * 1024;
+
+  /** The Constant ORGANIZATION_MODEL_SIZE, average size of a serialized user, profile or group. */
+  public static final long ORGANIZATION_MODEL_SIZE = 1024;
+
+  /** The Constant METADATA_SIZE, average size of a metadata entry. */
+  public static final long METADATA_SIZE = 1024;
+
+  /** The number of entries. */
+  private long entries;
+
+  /** The size in bytes. */
+  private long size;
+
+  /** The estimated duration in milliseconds, 0 if not computed. */
+  private long duration;
+
+  /** The paths that can't be estimated. */
+  private final Set<String> unknownPaths = new TreeSet<String>();
+
+  /** True if the size was extrapolated from a part of the data. */
+  private boolean approximate;
+
+  /**
+   * Adds entries of an average size.
+   *
+   * @param count the number of entries
+   * @param entrySize the average size of an entry
+   */
+  public void addEntries(long count, long entrySize) {
+    entries += count;
+    size += count * entrySize;
+  }
+
+  /**
+   * Adds bytes to the size, binary data of already counted entries.
+   *
+   * @param bytes the bytes
+   */
+  public void addSize(long bytes) {
+    size += bytes;
+  }
+
+  /**
+   * Adds another estimation to this one.
+   *
+   * @param estimation the estimation
+   */
+  public void add(ExportEstimation estimation) {
+    entries += estimation.entries;
+    size += estimation.size;
+    unknownPaths.addAll(estimation.unknownPaths);
+    approximate |= estimation.approximate;
+  }
+
+  /**
+   * Adds a path that can't be estimated.
+   *
+   * @param path the path
+   */
+  public void addUnknownPath(String path) {
+    unknownPaths.add(path);
+  }
+
+  /**
+   * Marks the estimation as approximate: the size was extrapolated from a part
+   * of the data.
+   */
+  public void setApproximate() {
+    approximate = true;
+  }
+
+  /**
+   * Checks if the size was extrapolated from a part of the data.
+   *
+   * @return true, if approximate
+   */
+  public boolean isApproximate() {
+    return approximate;
+  }
+
+  /**
+   * Gets the number of entries.
+   *
+   * @return the entries
+   */
+  public long getEntries() {
+    return entries;
+  }
+
+  /**
+   * Gets the size in bytes.
+   *
+   * @return the size
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Gets the estimated duration.
+   *
+   * @return the duration in milliseconds, 0 if not computed
+   */
+  public long getDuration() {
+    return duration;
+  }
+
+  /**
+   * Sets the estimated duration.
+   *
+   * @param duration the duration in milliseconds
+   */
+  public void setDuration(long duration) {
+    this.duration = duration;
+  }
+
+  /**
+   * Gets the paths that can't be estimated, their data isn't counted.
+   *
+   * @return the unknown paths
+   */
+  public Set<String> getUnknownPaths() {
+    return Collections.unmodifiableSet(unknownPaths);
+  }
+
+  /**
+   * Checks if all the paths are estimated.
+   *
+   * @return true, if complete
+   */
+  public boolean isComplete() {
+    return unknownPaths.isEmpty();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return entries + " entries, " + size + " bytes" + (approximate ? " (approximate)" : "") + (isComplete() ? "" : ", not estimated: " + unknownPaths);
+  }
+}
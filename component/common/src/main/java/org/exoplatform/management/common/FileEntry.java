@@ -18,10 +18,17 @@
  */
 package org.exoplatform.management.common;
 
+import org.exoplatform.management.common.importop.ImportArchive;
+
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
 /**
- * The Class FileEntry.
+ * The Class FileEntry. An entry received in an import archive is read lazily
+ * from the archive: it's extracted to a file only if {@link #getFile()} is
+ * called.
  */
 public class FileEntry implements Comparable<FileEntry> {
   
@@ -34,6 +41,15 @@ public class FileEntry implements Comparable<FileEntry> {
   /** The history file. */
   File historyFile;
 
+  /** The history entry, read lazily from the import archive. */
+  FileEntry historyEntry;
+
+  /** The import archive containing the entry. */
+  ImportArchive archive;
+
+  /** The entry name in the import archive. */
+  String entryName;
+
   /**
    * Instantiates a new file entry.
    *
@@ -46,6 +62,20 @@ public class FileEntry implements Comparable<FileEntry> {
     this.file = file;
   }
 
+  /**
+   * Instantiates a new file entry read lazily from an import archive.
+   *
+   * @param nodePath the node path
+   * @param archive the import archive
+   * @param entryName the entry name in the archive
+   */
+  public FileEntry(String nodePath, ImportArchive archive, String entryName) {
+    super();
+    this.nodePath = nodePath;
+    this.archive = archive;
+    this.entryName = entryName;
+  }
+
   /**
    * Gets the node path.
    *
@@ -65,14 +95,54 @@ public class FileEntry implements Comparable<FileEntry> {
   }
 
   /**
-   * Gets the file.
+   * Gets the file, extracting the entry from the import archive the first
+   * time.
    *
    * @return the file
    */
   public File getFile() {
+    if (file == null && archive != null) {
+      try {
+        file = archive.extract(entryName);
+      } catch (IOException e) {
+        throw new IllegalStateException("Cannot extract entry '" + entryName + "' from import archive", e);
+      }
+    }
     return file;
   }
 
+  /**
+   * Opens a stream on the content, directly from the import archive if the
+   * entry wasn't extracted.
+   *
+   * @return the input stream, to close by the caller
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public InputStream openInputStream() throws IOException {
+    if (file == null && archive != null) {
+      return archive.getInputStream(entryName);
+    }
+    return new FileInputStream(file);
+  }
+
+  /**
+   * Deletes the file of the entry, if it was extracted.
+   */
+  public void deleteFile() {
+    if (file != null) {
+      file.delete();
+    }
+  }
+
+  /**
+   * Checks if the content can be read.
+   *
+   * @return true, if the entry is in an import archive or the file exists
+   */
+  public boolean exists() {
+    return (file == null && archive != null) || (file != null && file.exists());
+  }
+
   /**
    * Sets the file.
    *
@@ -88,6 +158,9 @@ public class FileEntry implements Comparable<FileEntry> {
    * @return the history file
    */
   public File getHistoryFile() {
+    if (historyFile == null && historyEntry != null) {
+      historyFile = historyEntry.getFile();
+    }
     return historyFile;
   }
 
@@ -100,6 +173,15 @@ public class FileEntry implements Comparable<FileEntry> {
     this.historyFile = historyFile;
   }
 
+  /**
+   * Sets the history entry, extracted only when the history file is needed.
+   *
+   * @param historyEntry the new history entry
+   */
+  public void setHistoryEntry(FileEntry historyEntry) {
+    this.historyEntry = historyEntry;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * The file entries of an import owner, indexed by node path. It's a list
+ * always sorted in the {@link FileEntry} order, where lookups and removals by
+ * node path or by node path prefix cost O(log n) instead of a scan of the
+ * entries. A node path is indexed once: adding an entry replaces the entry
+ * with the same node path. Positional access walks the entries, iterate them
+ * instead.
+ */
+public class FileEntryIndex extends AbstractList<FileEntry> {
+
+  /** The node path part of the entries imported at last place. */
+  private static final String ACTIONS_PATH = "/exo:actions";
+
+  /** The entries by node path. */
+  private final TreeMap<String, FileEntry> entries = new TreeMap<String, FileEntry>();
+
+  /** The action entries by node path, imported after the other entries. */
+  private final TreeMap<String, FileEntry> actionEntries = new TreeMap<String, FileEntry>();
+
+  /**
+   * Gets the entry of a node path.
+   *
+   * @param nodePath the node path
+   * @return the entry, null if not found
+   */
+  public FileEntry getByPath(String nodePath) {
+    return getEntries(nodePath).get(nodePath);
+  }
+
+  /**
+   * Gets and removes the entry of a node path.
+   *
+   * @param nodePath the node path
+   * @return the removed entry, null if not found
+   */
+  public FileEntry removeByPath(String nodePath) {
+    return getEntries(nodePath).remove(nodePath);
+  }
+
+  /**
+   * Gets and removes the entries whose node path starts with a prefix.
+   *
+   * @param prefix the node path prefix
+   * @return the removed entries, sorted
+   */
+  public List<FileEntry> removeStartingWith(String prefix) {
+    List<FileEntry> removedEntries = new ArrayList<FileEntry>();
+    removeRange(entries, prefix, removedEntries);
+    removeRange(actionEntries, prefix, removedEntries);
+    return removedEntries;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean add(FileEntry fileEntry) {
+    getEntries(fileEntry.getNodePath()).put(fileEntry.getNodePath(), fileEntry);
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean remove(Object object) {
+    if (!(object instanceof FileEntry)) {
+      return false;
+    }
+    String nodePath = ((FileEntry) object).getNodePath();
+    TreeMap<String, FileEntry> map = getEntries(nodePath);
+    if (object.equals(map.get(nodePath))) {
+      map.remove(nodePath);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean contains(Object object) {
+    return object instanceof FileEntry && object.equals(getByPath(((FileEntry) object).getNodePath()));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public FileEntry get(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+    Iterator<FileEntry> iterator = iterator();
+    for (int i = 0; i < index; i++) {
+      iterator.next();
+    }
+    return iterator.next();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterator<FileEntry> iterator() {
+    return new Iterator<FileEntry>() {
+      private Iterator<FileEntry> current = entries.values().iterator();
+
+      private boolean actions;
+
+      @Override
+      public boolean hasNext() {
+        if (!actions && !current.hasNext()) {
+          current = actionEntries.values().iterator();
+          actions = true;
+        }
+        return current.hasNext();
+      }
+
+      @Override
+      public FileEntry next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return current.next();
+      }
+
+      @Override
+      public void remove() {
+        current.remove();
+      }
+    };
+  }
+
+  /**
+   * The entries are already sorted in their natural order, only this order is
+   * supported.
+   *
+   * @param comparator the comparator, null for the natural order
+   */
+  @Override
+  public void sort(Comparator<? super FileEntry> comparator) {
+    if (comparator != null) {
+      throw new UnsupportedOperationException("File entries are indexed in their natural order");
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void clear() {
+    entries.clear();
+    actionEntries.clear();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int size() {
+    return entries.size() + actionEntries.size();
+  }
+
+  /**
+   * Gets the map indexing a node path.
+   *
+   * @param nodePath the node path
+   * @return the entries or the action entries
+   */
+  private TreeMap<String, FileEntry> getEntries(String nodePath) {
+    return nodePath.contains(ACTIONS_PATH) ? actionEntries : entries;
+  }
+
+  /**
+   * Removes the entries of a map whose node path starts with a prefix.
+   *
+   * @param map the map
+   * @param prefix the node path prefix
+   * @param removedEntries the list where removed entries are added
+   */
+  private static void removeRange(TreeMap<String, FileEntry> map, String prefix, List<FileEntry> removedEntries) {
+    // Node paths starting with the prefix are contiguous from the prefix
+    Iterator<FileEntry> iterator = map.tailMap(prefix).values().iterator();
+    while (iterator.hasNext()) {
+      FileEntry fileEntry = iterator.next();
+      if (!fileEntry.getNodePath().startsWith(prefix)) {
+        break;
+      }
+      removedEntries.add(fileEntry);
+      iterator.remove();
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of bytes transferred by all the streams sharing it. Up to
+ * one second of unused budget can be spent at once.
+ */
+public class RateLimiter {
+
+  /** The Constant NANOS_PER_SECOND. */
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  /** The bytes per second. */
+  private final long bytesPerSecond;
+
+  /** The time when the budget consumed so far is recovered, in nanoseconds. */
+  private long availableTime = System.nanoTime();
+
+  /**
+   * Instantiates a new rate limiter.
+   *
+   * @param bytesPerSecond the bytes per second, strictly positive
+   */
+  public RateLimiter(long bytesPerSecond) {
+    if (bytesPerSecond <= 0) {
+      throw new IllegalArgumentException("Rate must be strictly positive: " + bytesPerSecond);
+    }
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  /**
+   * Creates a rate limiter from a system property.
+   *
+   * @param propertyName the property name, the value is in bytes per second
+   * @param defaultBytesPerSecond the default value, 0 for no limit
+   * @return the rate limiter, null if the rate isn't limited
+   */
+  public static RateLimiter fromProperty(String propertyName, long defaultBytesPerSecond) {
+    long bytesPerSecond = Long.getLong(propertyName, defaultBytesPerSecond);
+    return bytesPerSecond > 0 ? new RateLimiter(bytesPerSecond) : null;
+  }
+
+  /**
+   * Waits until bytes can be transferred without exceeding the rate.
+   *
+   * @param bytes the bytes
+   * @throws InterruptedIOException if the thread is interrupted while waiting
+   */
+  public void acquire(long bytes) throws InterruptedIOException {
+    long waitTime;
+    synchronized (this) {
+      long now = System.nanoTime();
+      availableTime = Math.max(availableTime, now - NANOS_PER_SECOND) + bytes * NANOS_PER_SECOND / bytesPerSecond;
+      waitTime = availableTime - now;
+    }
+    if (waitTime > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitTime);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while throttling transfer");
+      }
+    }
+  }
+
+  /**
+   * Gets the bytes per second.
+   *
+   * @return the bytes per second
+   */
+  public long getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  /**
+   * Throttles an input stream.
+   *
+   * @param rateLimiter the rate limiter, null for no limit
+   * @param inputStream the input stream
+   * @return the throttled input stream
+   */
+  public static InputStream throttle(RateLimiter rateLimiter, InputStream inputStream) {
+    return rateLimiter == null || inputStream == null ? inputStream : new ThrottledInputStream(inputStream, rateLimiter);
+  }
+
+  /**
+   * Throttles an output stream.
+   *
+   * @param rateLimiter the rate limiter, null for no limit
+   * @param outputStream the output stream
+   * @return the throttled output stream
+   */
+  public static OutputStream throttle(RateLimiter rateLimiter, OutputStream outputStream) {
+    return rateLimiter == null || outputStream == null ? outputStream : new ThrottledOutputStream(outputStream, rateLimiter);
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A directory of the staging spool, owned by a single operation. Closing it
+ * closes the resources registered on it and deletes all the files created in
+ * it. Files have to be written with {@link #openOutputStream(File)}, which
+ * counts the written bytes in the spool quota.
+ */
+public class SpoolDirectory implements Closeable {
+
+  /** The spool manager. */
+  private final SpoolManager spoolManager;
+
+  /** The directory. */
+  private final File directory;
+
+  /** The resources to close with this directory. */
+  private final List<Closeable> resources = new ArrayList<Closeable>();
+
+  /** The bytes written in the files of this directory. */
+  private final AtomicLong usedSpace = new AtomicLong();
+
+  /** The closed. */
+  private volatile boolean closed;
+
+  /**
+   * Instantiates a new spool directory.
+   *
+   * @param spoolManager the spool manager
+   * @param directory the directory
+   */
+  SpoolDirectory(SpoolManager spoolManager, File directory) {
+    this.spoolManager = spoolManager;
+    this.directory = directory;
+  }
+
+  /**
+   * Creates an empty file in this directory.
+   *
+   * @param prefix the prefix of the file name, at least three characters long
+   * @param suffix the suffix of the file name
+   * @return the file
+   * @throws IOException if the spool quota is exceeded or the file can't be
+   *           created
+   */
+  public File createFile(String prefix, String suffix) throws IOException {
+    if (closed) {
+      throw new IllegalStateException("Staging spool directory is closed: " + directory.getAbsolutePath());
+    }
+    spoolManager.checkQuota(this);
+    return File.createTempFile(prefix, suffix, directory);
+  }
+
+  /**
+   * Opens an output stream on a file of this directory, counting the written
+   * bytes in the used space of the spool.
+   *
+   * @param file the file, created by {@link #createFile(String, String)}
+   * @return the output stream
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public OutputStream openOutputStream(File file) throws IOException {
+    return new SpoolOutputStream(new FileOutputStream(file));
+  }
+
+  /**
+   * Registers a resource reading files of this directory, for example an open
+   * zip file, to close it before the files are deleted.
+   *
+   * @param <T> the resource type
+   * @param resource the resource
+   * @return the resource
+   */
+  public synchronized <T extends Closeable> T register(T resource) {
+    if (closed) {
+      throw new IllegalStateException("Staging spool directory is closed: " + directory.getAbsolutePath());
+    }
+    resources.add(resource);
+    return resource;
+  }
+
+  /**
+   * Gets the bytes written in the files of this directory.
+   *
+   * @return the used space
+   */
+  public long getUsedSpace() {
+    return usedSpace.get();
+  }
+
+  /**
+   * Gets the directory.
+   *
+   * @return the directory
+   */
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Closes the registered resources, then deletes this directory and its
+   * files.
+   */
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      closed = true;
+      for (Closeable resource : resources) {
+        try {
+          resource.close();
+        } catch (IOException e) {
+          // Not blocker, the files are deleted anyway
+        }
+      }
+      resources.clear();
+      spoolManager.addUsedSpace(-usedSpace.getAndSet(0));
+      spoolManager.remove(this);
+    }
+  }
+
+  /**
+   * Counts bytes written in this directory.
+   *
+   * @param bytes the bytes
+   */
+  private void addUsedSpace(long bytes) {
+    if (!closed) {
+      usedSpace.addAndGet(bytes);
+      spoolManager.addUsedSpace(bytes);
+    }
+  }
+
+  /**
+   * Output stream counting the bytes written in this directory.
+   */
+  private class SpoolOutputStream extends FilterOutputStream {
+
+    /**
+     * Instantiates a new spool output stream.
+     *
+     * @param outputStream the file output stream
+     */
+    public SpoolOutputStream(OutputStream outputStream) {
+      super(outputStream);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      addUsedSpace(1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      addUsedSpace(len);
+    }
+  }
+}
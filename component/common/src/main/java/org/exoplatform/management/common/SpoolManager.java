@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import org.apache.commons.io.FileUtils;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Manages the staging spool: the directory where staging operations write
+ * their temporary files instead of the shared java.io.tmpdir. Each operation
+ * gets its own sub directory, deleted as a whole when the operation finishes,
+ * and the bytes used by all operations are checked against a configurable
+ * quota before a new file is created.
+ *
+ * Several servers can share the same spool root: each spool manager works in
+ * its own instance directory, locked as long as the server runs. At startup,
+ * only the instance directories that are not locked anymore, left by stopped
+ * servers, are deleted.
+ */
+public class SpoolManager {
+
+  /** The Constant SPOOL_DIRECTORY_PARAM. */
+  public static final String SPOOL_DIRECTORY_PARAM = "exo.staging.spool.directory";
+
+  /** The Constant SPOOL_QUOTA_PARAM, in bytes, 0 for no quota. */
+  public static final String SPOOL_QUOTA_PARAM = "exo.staging.spool.quota";
+
+  /** The log. */
+  private static final Log log = ExoLogger.getLogger(SpoolManager.class);
+
+  /** The prefix of the instance directories. */
+  private static final String INSTANCE_PREFIX = "instance-";
+
+  /** The suffix of the lock files of the instance directories. */
+  private static final String LOCK_SUFFIX = ".lock";
+
+  /** The instance. */
+  private static volatile SpoolManager instance;
+
+  /** The root directory. */
+  private final File rootDirectory;
+
+  /** The directory of this instance in the root directory. */
+  private final File instanceDirectory;
+
+  /** The lock of the instance directory, held until the JVM exits. */
+  private FileLock instanceLock;
+
+  /** The quota. */
+  private final long quota;
+
+  /**
+   * The bytes written in the files of open spool directories, and in the
+   * files kept by other staging components in the root directory.
+   */
+  private final AtomicLong usedSpace = new AtomicLong();
+
+  /** The open directories by path. */
+  private final ConcurrentMap<String, SpoolDirectory> directories = new ConcurrentHashMap<String, SpoolDirectory>();
+
+  /**
+   * Instantiates a new spool manager.
+   *
+   * @param rootDirectory the root directory
+   * @param quota the quota in bytes, 0 for no quota
+   */
+  public SpoolManager(File rootDirectory, long quota) {
+    this.rootDirectory = rootDirectory;
+    this.quota = quota;
+    deleteStoppedInstances();
+    this.instanceDirectory = new File(rootDirectory, INSTANCE_PREFIX + UUID.randomUUID().toString());
+    if (!rootDirectory.isDirectory() && !rootDirectory.mkdirs()) {
+      log.warn("Unable to create staging spool directory: " + rootDirectory.getAbsolutePath());
+      return;
+    }
+    // The lock is taken before the directory is created, so that other
+    // servers never see an unlocked instance directory in use
+    try {
+      FileChannel lockChannel = FileChannel.open(getLockFile(instanceDirectory).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      instanceLock = lockChannel.tryLock();
+    } catch (IOException e) {
+      log.warn("Unable to lock staging spool directory: " + instanceDirectory.getAbsolutePath() + ", it may be deleted by another server starting", e);
+    }
+  }
+
+  /**
+   * Gets the spool manager configured by system properties.
+   *
+   * @return the spool manager
+   */
+  public static SpoolManager getInstance() {
+    if (instance == null) {
+      synchronized (SpoolManager.class) {
+        if (instance == null) {
+          String directoryPath = System.getProperty(SPOOL_DIRECTORY_PARAM);
+          File rootDirectory = directoryPath == null || directoryPath.isEmpty() ? new File(System.getProperty("java.io.tmpdir"), "staging-spool") : new File(directoryPath);
+          instance = new SpoolManager(rootDirectory, Long.getLong(SPOOL_QUOTA_PARAM, 0L));
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Opens a new spool directory for an operation. The directory must be closed
+   * when the operation finishes.
+   *
+   * @param operationName the operation name, used to name the directory
+   * @return the spool directory
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public SpoolDirectory open(String operationName) throws IOException {
+    File directory = new File(instanceDirectory, operationName + "-" + UUID.randomUUID().toString());
+    if (!directory.mkdirs()) {
+      throw new IOException("Unable to create staging spool directory: " + directory.getAbsolutePath());
+    }
+    SpoolDirectory spoolDirectory = new SpoolDirectory(this, directory);
+    directories.put(directory.getAbsolutePath(), spoolDirectory);
+    return spoolDirectory;
+  }
+
+  /**
+   * Releases a spooled file: closes the spool directory containing it, or
+   * deletes the file if it isn't in an open spool directory.
+   *
+   * @param file the file
+   */
+  public void release(File file) {
+    if (file == null) {
+      return;
+    }
+    SpoolDirectory spoolDirectory = file.getParentFile() == null ? null : directories.get(file.getParentFile().getAbsolutePath());
+    if (spoolDirectory != null) {
+      spoolDirectory.close();
+    } else if (file.exists() && !file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * Opens an input stream on a spooled file that releases it when closed.
+   *
+   * @param file the file
+   * @return the input stream
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public InputStream openInputStream(final File file) throws IOException {
+    return new FileInputStream(file) {
+      private boolean released;
+
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          if (!released) {
+            released = true;
+            release(file);
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Gets the bytes written in the files of open spool directories.
+   *
+   * @return the used space
+   */
+  public long getUsedSpace() {
+    return usedSpace.get();
+  }
+
+  /**
+   * Gets the quota.
+   *
+   * @return the quota in bytes, 0 for no quota
+   */
+  public long getQuota() {
+    return quota;
+  }
+
+  /**
+   * Gets the number of open spool directories, i.e. of running operations.
+   *
+   * @return the open directories count
+   */
+  public int getOpenDirectoriesCount() {
+    return directories.size();
+  }
+
+  /**
+   * Gets the root directory.
+   *
+   * @return the root directory
+   */
+  public File getRootDirectory() {
+    return rootDirectory;
+  }
+
+  /**
+   * Gets the directory of this instance, where the spool directories are
+   * created.
+   *
+   * @return the instance directory
+   */
+  public File getInstanceDirectory() {
+    return instanceDirectory;
+  }
+
+  /**
+   * Checks that the quota isn't exceeded before creating a file.
+   *
+   * @param spoolDirectory the spool directory where the file will be created
+   * @throws IOException if the quota is exceeded
+   */
+  void checkQuota(SpoolDirectory spoolDirectory) throws IOException {
+    checkQuota(spoolDirectory.getDirectory());
+  }
+
+  /**
+   * Checks that the quota isn't exceeded before writing in a directory of the
+   * spool.
+   *
+   * @param directory the directory where data will be written
+   * @throws IOException if the quota is exceeded
+   */
+  public void checkQuota(File directory) throws IOException {
+    if (quota <= 0) {
+      return;
+    }
+    long usedSpace = this.usedSpace.get();
+    if (usedSpace >= quota) {
+      throw new IOException("Staging spool quota exceeded: " + usedSpace + " bytes used by " + directories.size() + " operations, quota is " + quota + " bytes. Can't write in "
+          + directory.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Counts bytes written in, or released from, the spool: in a spool
+   * directory, or in files that other staging components keep in the root
+   * directory.
+   *
+   * @param bytes the bytes, negative if released
+   */
+  public void addUsedSpace(long bytes) {
+    usedSpace.addAndGet(bytes);
+  }
+
+  /**
+   * Deletes the instance directories of the servers which are not running
+   * anymore, i.e. whose lock can be taken.
+   */
+  private void deleteStoppedInstances() {
+    File[] lockFiles = rootDirectory.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file) {
+        return file.isFile() && file.getName().startsWith(INSTANCE_PREFIX) && file.getName().endsWith(LOCK_SUFFIX);
+      }
+    });
+    if (lockFiles == null) {
+      return;
+    }
+    for (File lockFile : lockFiles) {
+      File directory = new File(rootDirectory, lockFile.getName().substring(0, lockFile.getName().length() - LOCK_SUFFIX.length()));
+      try {
+        FileChannel lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE);
+        try {
+          FileLock lock = lockChannel.tryLock();
+          if (lock == null) {
+            // Used by a running server
+            continue;
+          }
+          FileUtils.deleteDirectory(directory);
+          if (!lockFile.delete()) {
+            log.warn("Unable to delete staging spool lock: " + lockFile.getAbsolutePath());
+          }
+        } catch (OverlappingFileLockException e) {
+          // Used by another spool manager of this JVM
+        } finally {
+          lockChannel.close();
+        }
+      } catch (IOException e) {
+        log.warn("Unable to delete staging spool directory of a stopped server: " + directory.getAbsolutePath(), e);
+      }
+    }
+  }
+
+  /**
+   * Gets the lock file of an instance directory.
+   *
+   * @param directory the instance directory
+   * @return the lock file
+   */
+  private File getLockFile(File directory) {
+    return new File(rootDirectory, directory.getName() + LOCK_SUFFIX);
+  }
+
+  /**
+   * Deletes a spool directory and forgets it.
+   *
+   * @param spoolDirectory the spool directory
+   */
+  void remove(SpoolDirectory spoolDirectory) {
+    File directory = spoolDirectory.getDirectory();
+    directories.remove(directory.getAbsolutePath());
+    try {
+      FileUtils.deleteDirectory(directory);
+    } catch (IOException e) {
+      log.warn("Unable to delete staging spool directory: " + directory.getAbsolutePath() + ". Not blocker.");
+    }
+  }
+}
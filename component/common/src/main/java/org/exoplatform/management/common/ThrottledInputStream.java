@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream whose reads are limited by a {@link RateLimiter}.
+ */
+public class ThrottledInputStream extends FilterInputStream {
+
+  /** The rate limiter. */
+  private final RateLimiter rateLimiter;
+
+  /**
+   * Instantiates a new throttled input stream.
+   *
+   * @param inputStream the input stream
+   * @param rateLimiter the rate limiter
+   */
+  public ThrottledInputStream(InputStream inputStream, RateLimiter rateLimiter) {
+    super(inputStream);
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Gets the stream whose reads are limited.
+   *
+   * @return the input stream
+   */
+  public InputStream getInputStream() {
+    return in;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int read() throws IOException {
+    int value = super.read();
+    if (value >= 0) {
+      rateLimiter.acquire(1);
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int length = super.read(b, off, len);
+    if (length > 0) {
+      rateLimiter.acquire(length);
+    }
+    return length;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = super.skip(n);
+    if (skipped > 0) {
+      rateLimiter.acquire(skipped);
+    }
+    return skipped;
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream whose writes are limited by a {@link RateLimiter}. Large
+ * writes are split so that the transfer stays smooth.
+ */
+public class ThrottledOutputStream extends FilterOutputStream {
+
+  /** The max bytes written at once. */
+  private final int maxWriteLength;
+
+  /** The rate limiter. */
+  private final RateLimiter rateLimiter;
+
+  /**
+   * Instantiates a new throttled output stream.
+   *
+   * @param outputStream the output stream
+   * @param rateLimiter the rate limiter
+   */
+  public ThrottledOutputStream(OutputStream outputStream, RateLimiter rateLimiter) {
+    super(outputStream);
+    this.rateLimiter = rateLimiter;
+    // About 10 writes per second, between 1 KB and 64 KB
+    this.maxWriteLength = (int) Math.max(1024, Math.min(64 * 1024, rateLimiter.getBytesPerSecond() / 10));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(int b) throws IOException {
+    rateLimiter.acquire(1);
+    out.write(b);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      int length = Math.min(len, maxWriteLength);
+      rateLimiter.acquire(length);
+      out.write(b, off, length);
+      off += length;
+      len -= length;
+    }
+  }
+}
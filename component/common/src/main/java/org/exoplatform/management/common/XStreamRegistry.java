@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import com.thoughtworks.xstream.XStream;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared XStream instances of the export and import tasks. Creating an
+ * XStream and analyzing the model classes is expensive, so each configuration
+ * is built once and reused. The instances are fully configured before being
+ * shared and then only used to marshal and unmarshal, which XStream supports
+ * from several threads: they must not be configured by their users.
+ */
+public final class XStreamRegistry {
+
+  /** The instances by configuration key. */
+  private static final ConcurrentMap<String, XStream> instances = new ConcurrentHashMap<String, XStream>();
+
+  /**
+   * The configuration of a shared XStream instance.
+   */
+  public interface Configuration {
+
+    /**
+     * Configures the instance, called once before it's shared.
+     *
+     * @param xStream the XStream instance
+     */
+    void configure(XStream xStream);
+  }
+
+  /**
+   * Instantiates a new XStream registry.
+   */
+  private XStreamRegistry() {
+  }
+
+  /**
+   * Gets the shared XStream instance without aliases.
+   *
+   * @return the XStream instance
+   */
+  public static XStream getXStream() {
+    return getXStream("", (Configuration) null);
+  }
+
+  /**
+   * Gets the shared XStream instance aliasing a model class.
+   *
+   * @param alias the alias
+   * @param type the model class
+   * @return the XStream instance
+   */
+  public static XStream getXStream(final String alias, final Class<?> type) {
+    return getXStream(alias + "=" + type.getName(), new Configuration() {
+      @Override
+      public void configure(XStream xStream) {
+        xStream.alias(alias, type);
+      }
+    });
+  }
+
+  /**
+   * Gets the shared XStream instance aliasing two model classes.
+   *
+   * @param alias the alias of the first class
+   * @param type the first model class
+   * @param otherAlias the alias of the second class
+   * @param otherType the second model class
+   * @return the XStream instance
+   */
+  public static XStream getXStream(final String alias, final Class<?> type, final String otherAlias, final Class<?> otherType) {
+    return getXStream(alias + "=" + type.getName() + "," + otherAlias + "=" + otherType.getName(), new Configuration() {
+      @Override
+      public void configure(XStream xStream) {
+        xStream.alias(alias, type);
+        xStream.alias(otherAlias, otherType);
+      }
+    });
+  }
+
+  /**
+   * Gets the shared XStream instance of a configuration, creating it the first
+   * time.
+   *
+   * @param key the key identifying the configuration
+   * @param configuration the configuration, null for none
+   * @return the XStream instance
+   */
+  public static XStream getXStream(String key, Configuration configuration) {
+    XStream xStream = instances.get(key);
+    if (xStream == null) {
+      xStream = new XStream();
+      if (configuration != null) {
+        configuration.configure(xStream);
+      }
+      XStream existing = instances.putIfAbsent(key, xStream);
+      if (existing != null) {
+        xStream = existing;
+      }
+    }
+    return xStream;
+  }
+}
@@ -20,6 +20,8 @@ package org.exoplatform.management.common.exportop;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
@@ -29,13 +31,20 @@ import org.exoplatform.social.core.manager.IdentityManager;
 import org.gatein.management.api.operation.model.ExportTask;
 
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * The Class ActivitiesExportTask.
+ * The Class ActivitiesExportTask. Activities are written one at a time, each
+ * activity followed by its comments. By default they are written under a
+ * {@value #LIST_ROOT} element, the serialized list read by previous versions.
+ * If {@value #ACTIVITY_RECORDS_PARAM} is true, they are written under an
+ * {@value #ACTIVITIES_ROOT} element, read only by servers of this version: it
+ * must be enabled once all target servers are upgraded. This version imports
+ * both one activity at a time.
  *
  * @author <a href="mailto:bkhanfir@exoplatform.com">Boubaker Khanfir</a>
  * @version $Revision$
@@ -48,6 +57,15 @@ public class ActivitiesExportTask implements ExportTask {
   /** The Constant FILENAME. */
   public static final String FILENAME = "activities.metadata";
 
+  /** The Constant ACTIVITY_RECORDS_PARAM, true to export activity records. */
+  public static final String ACTIVITY_RECORDS_PARAM = "exo.staging.activities.records";
+
+  /** The Constant ACTIVITIES_ROOT, root element of the activity records. */
+  public static final String ACTIVITIES_ROOT = "activities";
+
+  /** The Constant LIST_ROOT, root element of a serialized activities list. */
+  public static final String LIST_ROOT = "list";
+
   /** The Constant EMPTY_STRING_ARRAY. */
   protected static final String[] EMPTY_STRING_ARRAY = new String[0];
 
@@ -87,10 +105,19 @@ public class ActivitiesExportTask implements ExportTask {
   @Override
   public final void export(OutputStream outputStream) throws IOException {
     try {
-      XStream xStream = new XStream();
-      OutputStreamWriter writer = new OutputStreamWriter(outputStream, "UTF-8");
+      XStream xStream = XStreamRegistry.getXStream();
+      // Activities written one at a time under a list element are the items
+      // of a serialized list
+      String rootNodeName = Boolean.getBoolean(ACTIVITY_RECORDS_PARAM) ? ACTIVITIES_ROOT : LIST_ROOT;
+      // Closing the records stream writes the end of the root element, but
+      // mustn't close the archive stream
+      OutputStreamWriter writer = new OutputStreamWriter(new CloseShieldOutputStream(outputStream), "UTF-8");
+      ObjectOutputStream records = xStream.createObjectOutputStream(writer, rootNodeName);
       if (activities != null && activities.size() > 0) {
         for (ExoSocialActivity activity : activities) {
+          if (activity == null) {
+            continue;
+          }
           Identity identity = identityManager.getIdentity(activity.getUserId(), true);
           if (identity != null) {
             String username = (String) identity.getProfile().getProperty(Profile.USERNAME);
@@ -114,10 +141,11 @@ public class ActivitiesExportTask implements ExportTask {
           String[] likeIdentityIds = activity.getLikeIdentityIds();
           likeIdentityIds = changeIdentityIdToUsername(likeIdentityIds);
           activity.setLikeIdentityIds(likeIdentityIds);
+
+          records.writeObject(activity);
         }
       }
-      xStream.toXML(activities, writer);
-      writer.flush();
+      records.close();
     } catch (Exception e) {
       log.warn("Can't export activities", e);
     }
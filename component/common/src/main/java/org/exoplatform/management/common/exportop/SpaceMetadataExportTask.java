@@ -21,6 +21,7 @@ package org.exoplatform.management.common.exportop;
 import com.thoughtworks.xstream.XStream;
 
 import org.exoplatform.management.common.SpaceMetaData;
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.social.core.space.model.Space;
 import org.gatein.management.api.operation.model.ExportTask;
 
@@ -71,8 +72,7 @@ public class SpaceMetadataExportTask implements ExportTask {
   public final void export(OutputStream outputStream) throws IOException {
     SpaceMetaData metaData = new SpaceMetaData(space);
 
-    XStream xStream = new XStream();
-    xStream.alias("metadata", SpaceMetaData.class);
+    XStream xStream = XStreamRegistry.getXStream("metadata", SpaceMetaData.class);
     OutputStreamWriter writer = new OutputStreamWriter(outputStream, "UTF-8");
     xStream.toXML(metaData, writer);
     writer.flush();
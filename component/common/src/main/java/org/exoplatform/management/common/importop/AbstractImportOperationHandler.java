@@ -24,9 +24,15 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
+import org.exoplatform.container.PortalContainer;
+import org.exoplatform.container.component.RequestLifeCycle;
 import org.exoplatform.management.common.AbstractOperationHandler;
 import org.exoplatform.management.common.FileEntry;
+import org.exoplatform.management.common.FileEntryIndex;
 import org.exoplatform.management.common.SpaceMetaData;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.ThrottledInputStream;
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.portal.config.UserACL;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
@@ -50,16 +56,13 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -73,6 +76,12 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
   /** The Constant EMPTY_STRING_ARRAY. */
   protected static final String[] EMPTY_STRING_ARRAY = new String[0];
 
+  /**
+   * The Constant IMPORT_ACTIVITIES_BATCH_PARAM, number of activities and
+   * comments saved in a request life cycle.
+   */
+  public static final String IMPORT_ACTIVITIES_BATCH_PARAM = "exo.staging.import.activities.batch";
+
   /** The user ACL. */
   protected UserACL userACL;
   
@@ -82,9 +91,8 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
   /** The activity storage. */
   protected ActivityStorage activityStorage;
 
-  /** The activities by post time. */
-  // This is used to test on duplicated activities
-  protected Set<Long> activitiesByPostTime = new HashSet<Long>();
+  /** The imported activities, used to test on duplicated activities. */
+  protected ImportedActivities importedActivities = new ImportedActivities();
 
   /**
    * Delete activities.
@@ -208,7 +216,9 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
   }
 
   /**
-   * Import activities.
+   * Import activities. The activities are read from the file and saved one at
+   * a time, in batches sharing a request life cycle. When the import already
+   * runs in a request life cycle, the batches join it.
    *
    * @param activitiesFile the activities file
    * @param spacePrettyName the space pretty name
@@ -216,17 +226,43 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
    */
   protected void importActivities(File activitiesFile, String spacePrettyName, boolean clearImportedList) {
     if (clearImportedList) {
-      activitiesByPostTime.clear();
+      importedActivities.clear();
+    }
+    ActivitiesFileReader activitiesReader = null;
+    try {
+      activitiesReader = new ActivitiesFileReader(activitiesFile);
+    } catch (Exception e) {
+      deleteTempFile(activitiesFile);
+      throw new OperationException(OperationNames.IMPORT_RESOURCE, "Cannot read extracted file: " + (activitiesFile != null ? activitiesFile.getAbsolutePath() : activitiesFile), e);
     }
-    List<ExoSocialActivity> activitiesList = retrieveActivitiesFromFile(activitiesFile);
 
     boolean isParentActivityIgnored = true;
     String originialParentActivityId = null;
     ExoSocialActivity parentActivity = null;
+    long parentUpdatedTime = 0;
+    boolean parentCommented = false;
+    boolean ignoreNextComments = false;
 
+    int batchSize = Math.max(1, Integer.getInteger(IMPORT_ACTIVITIES_BATCH_PARAM, 100));
+    int savedCount = 0;
+    RequestLifeCycle.begin(PortalContainer.getInstance());
     try {
-      for (ExoSocialActivity activity : activitiesList) {
-        if (activity == null) {
+      ExoSocialActivity activity;
+      while ((activity = readActivity(activitiesReader, activitiesFile)) != null) {
+        // Ignore the comments of an activity whose user isn't found
+        if (ignoreNextComments) {
+          if (activity.isComment()) {
+            continue;
+          } else {
+            ignoreNextComments = false;
+          }
+        }
+        if (!importedActivities.add(activity)) {
+          log.info("Ignore duplicated Activity '" + activity.getTitle() + "'.");
+          continue;
+        }
+        if (!sanitizeContent(activity)) {
+          ignoreNextComments = true;
           continue;
         }
         if (activity.getId() == null) {
@@ -259,12 +295,19 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
               continue;
             }
             activity.setId(null);
-            saveComment(parentActivity, activity);
+            if (saveComment(parentActivity, activity)) {
+              parentCommented = true;
+              savedCount++;
+            }
             ((ActivityImportOperationInterface) this).attachActivityToEntity(parentActivity, activity);
           } else {
+            if (parentActivity != null) {
+              restoreUpdatedTime(parentActivity, parentUpdatedTime, parentCommented);
+            }
             isParentActivityIgnored = true;
             originialParentActivityId = null;
             parentActivity = null;
+            parentCommented = false;
 
             if (((ActivityImportOperationInterface) this).isActivityNotValid(activity, null)) {
               continue;
@@ -278,18 +321,72 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
               isParentActivityIgnored = false;
               originialParentActivityId = activity.getId();
               parentActivity = activity;
+              parentUpdatedTime = activity.getUpdated().getTime();
+              savedCount++;
             }
             ((ActivityImportOperationInterface) this).attachActivityToEntity(activity, null);
           }
         } catch (Exception e) {
           log.warn("Error while adding activity: " + activity.getTitle(), e);
         }
+        if (savedCount >= batchSize) {
+          savedCount = 0;
+          RequestLifeCycle.end();
+          RequestLifeCycle.begin(PortalContainer.getInstance());
+        }
+      }
+      if (parentActivity != null) {
+        restoreUpdatedTime(parentActivity, parentUpdatedTime, parentCommented);
       }
     } finally {
+      RequestLifeCycle.end();
+      activitiesReader.close();
       deleteTempFile(activitiesFile);
     }
   }
 
+  /**
+   * Restores the updated time of an imported activity, once all its comments
+   * are saved. Saving a comment sets the updated time of the activity to the
+   * current time, else the activity keeps the posted time set at its creation.
+   *
+   * @param activity the activity
+   * @param updatedTime the updated time
+   * @param commented true, if comments were saved on the activity
+   */
+  private void restoreUpdatedTime(ExoSocialActivity activity, long updatedTime, boolean commented) {
+    try {
+      if (commented) {
+        // Reload the activity modified by its comments
+        activity = activityManager.getActivity(activity.getId());
+        if (activity == null) {
+          return;
+        }
+      } else if (activity.getPostedTime() != null && activity.getPostedTime() == updatedTime) {
+        return;
+      }
+      activity.setUpdated(updatedTime);
+      activityManager.updateActivity(activity);
+    } catch (Exception e) {
+      log.warn("Error while restoring the updated time of activity: " + activity.getTitle(), e);
+    }
+  }
+
+  /**
+   * Reads the next activity of an activities file.
+   *
+   * @param activitiesReader the activities reader
+   * @param activitiesFile the activities file
+   * @return the activity, null if all activities were read
+   */
+  private static ExoSocialActivity readActivity(ActivitiesFileReader activitiesReader, File activitiesFile) {
+    try {
+      return activitiesReader.read();
+    } catch (Exception e) {
+      throw new OperationException(OperationNames.IMPORT_RESOURCE, "Cannot read activity from extracted file: " + activitiesFile.getAbsolutePath(), e);
+    }
+  }
+
   /**
    * Gets the attachement input stream.
    *
@@ -310,37 +407,36 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
   }
 
   /**
-   * Save comment.
+   * Save comment. The comment keeps its posted time, the updated time of the
+   * activity is restored once all its comments are saved.
    *
-   * @param activity the activity
+   * @param activity the saved activity
    * @param comment the comment
+   * @return true, if the comment was saved
    */
-  protected final void saveComment(ExoSocialActivity activity, ExoSocialActivity comment) {
-    long updatedTime = activity.getUpdated().getTime();
+  protected final boolean saveComment(ExoSocialActivity activity, ExoSocialActivity comment) {
     if (activity.getId() == null) {
       log.warn("Parent activity '" + activity.getTitle() + "' has a null ID, cannot import activity comment '" + comment.getTitle() + "'.");
-      return;
+      return false;
     }
-    activity = activityManager.getActivity(activity.getId());
     try {
       activityStorage.setInjectStreams(true);
       activityManager.saveComment(activity, comment);
     } catch (NullPointerException e) {
       log.warn("Error while importing comment: '" + comment.getTitle() + "'.");
-      return;
+      return false;
     }
     if (comment.getId() == null) {
       log.warn("Error while importing comment, id is null: '" + comment.getTitle() + "'.");
-      return;
+      return false;
     }
-    activity = activityManager.getActivity(activity.getId());
-    activity.setUpdated(updatedTime);
-    activityManager.updateActivity(activity);
     log.info("Comment activity is imported: '" + comment.getTitle() + "'.");
+    return true;
   }
 
   /**
-   * Save activity.
+   * Save activity. The activity is created with its posted time, its updated
+   * time is restored once its comments are saved.
    *
    * @param activity the activity
    * @param spacePrettyName the space pretty name
@@ -357,7 +453,6 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
       try {
         activityManager.saveActivityNoReturn(activity);
         activity.setUpdated(updatedTime);
-        activityManager.updateActivity(activity);
         if (activity.getId() == null) {
           log.warn("Activity '" + activity.getTitle() + "' is not imported, id is null");
         } else {
@@ -375,7 +470,6 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
       try {
         activityManager.saveActivityNoReturn(spaceIdentity, activity);
         activity.setUpdated(updatedTime);
-        activityManager.updateActivity(activity);
         if (activity.getId() == null) {
           log.warn("Activity '" + activity.getTitle() + "' is not imported, id is null");
         } else {
@@ -388,93 +482,56 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
   }
 
   /**
-   * Retrieve activities from file.
+   * Sanitize content: replaces the usernames of an activity by identity ids and
+   * unescapes its texts.
    *
-   * @param activitiesFile the activities file
-   * @return the list
-   */
-  @SuppressWarnings("unchecked")
-  protected List<ExoSocialActivity> retrieveActivitiesFromFile(File activitiesFile) {
-    List<ExoSocialActivity> activities = null;
-    try {
-      // Unmarshall metadata xml file
-      activities = (List<ExoSocialActivity>) deserializeObject(activitiesFile, List.class, null);
-    } catch (Exception e) {
-      throw new OperationException(OperationNames.IMPORT_RESOURCE, "Cannot find extracted file: " + (activitiesFile != null ? activitiesFile.getAbsolutePath() : activitiesFile), e);
-    }
-    return sanitizeContent(activities);
-  }
-
-  /**
-   * Sanitize content.
-   *
-   * @param activities the activities
-   * @return the list
+   * @param activity the activity
+   * @return true, if the users of the activity were found
    */
-  protected final List<ExoSocialActivity> sanitizeContent(List<ExoSocialActivity> activities) {
-    List<ExoSocialActivity> activitiesList = new ArrayList<ExoSocialActivity>();
-    Identity identity = null;
-    boolean ignoreNextComments = false;
-    for (ExoSocialActivity activity : activities) {
-      if (ignoreNextComments) {
-        if (activity.isComment()) {
-          continue;
-        } else {
-          ignoreNextComments = false;
-        }
-      }
-      if (activity.getPostedTime() != null && activitiesByPostTime.contains(activity.getPostedTime())) {
-        log.info("Ignore duplicated Activity '" + activity.getTitle() + "'.");
-        continue;
-      } else {
-        activitiesByPostTime.add(activity.getPostedTime());
-      }
-      identity = getIdentity(activity.getUserId());
+  protected final boolean sanitizeContent(ExoSocialActivity activity) {
+    Identity identity = getIdentity(activity.getUserId());
+    if (identity != null) {
+      activity.setUserId(identity.getId());
+      identity = getIdentity(activity.getPosterId());
       if (identity != null) {
-        activity.setUserId(identity.getId());
-        identity = getIdentity(activity.getPosterId());
-        if (identity != null) {
-          activitiesList.add(activity);
+        activity.setPosterId(identity.getId());
 
-          activity.setPosterId(identity.getId());
-
-          Set<String> keys = activity.getTemplateParams().keySet();
-          for (String key : keys) {
-            String value = activity.getTemplateParams().get(key);
-            if (value != null) {
-              activity.getTemplateParams().put(key, StringEscapeUtils.unescapeHtml(value));
-            }
-          }
-          if (StringUtils.isNotEmpty(activity.getTitle())) {
-            activity.setTitle(StringEscapeUtils.unescapeHtml(activity.getTitle()));
-          }
-          if (StringUtils.isNotEmpty(activity.getBody())) {
-            activity.setBody(StringEscapeUtils.unescapeHtml(activity.getBody()));
+        Set<String> keys = activity.getTemplateParams().keySet();
+        for (String key : keys) {
+          String value = activity.getTemplateParams().get(key);
+          if (value != null) {
+            activity.getTemplateParams().put(key, StringEscapeUtils.unescapeHtml(value));
           }
-          if (StringUtils.isNotEmpty(activity.getSummary())) {
-            activity.setSummary(StringEscapeUtils.unescapeHtml(activity.getSummary()));
-          }
-          activity.setReplyToId(null);
+        }
+        if (StringUtils.isNotEmpty(activity.getTitle())) {
+          activity.setTitle(StringEscapeUtils.unescapeHtml(activity.getTitle()));
+        }
+        if (StringUtils.isNotEmpty(activity.getBody())) {
+          activity.setBody(StringEscapeUtils.unescapeHtml(activity.getBody()));
+        }
+        if (StringUtils.isNotEmpty(activity.getSummary())) {
+          activity.setSummary(StringEscapeUtils.unescapeHtml(activity.getSummary()));
+        }
+        activity.setReplyToId(null);
 
-          String[] commentedIds = activity.getCommentedIds();
-          commentedIds = changeUsernameIdToIdentity(commentedIds);
-          activity.setCommentedIds(commentedIds);
+        String[] commentedIds = activity.getCommentedIds();
+        commentedIds = changeUsernameIdToIdentity(commentedIds);
+        activity.setCommentedIds(commentedIds);
 
-          String[] mentionedIds = activity.getMentionedIds();
-          mentionedIds = changeUsernameIdToIdentity(mentionedIds);
-          activity.setMentionedIds(mentionedIds);
+        String[] mentionedIds = activity.getMentionedIds();
+        mentionedIds = changeUsernameIdToIdentity(mentionedIds);
+        activity.setMentionedIds(mentionedIds);
 
-          String[] likeIdentityIds = activity.getLikeIdentityIds();
-          likeIdentityIds = changeUsernameIdToIdentity(likeIdentityIds);
-          activity.setLikeIdentityIds(likeIdentityIds);
-        }
-      }
-      if (identity == null) {
-        ignoreNextComments = true;
-        log.info("ACTIVITY IS NOT IMPORTED because the associated user '" + activity.getUserId() + "' wasn't found:  '" + activity.getTitle() + "'");
+        String[] likeIdentityIds = activity.getLikeIdentityIds();
+        likeIdentityIds = changeUsernameIdToIdentity(likeIdentityIds);
+        activity.setLikeIdentityIds(likeIdentityIds);
       }
     }
-    return activitiesList;
+    if (identity == null) {
+      log.info("ACTIVITY IS NOT IMPORTED because the associated user '" + activity.getUserId() + "' wasn't found:  '" + activity.getTitle() + "'");
+      return false;
+    }
+    return true;
   }
 
   /**
@@ -504,20 +561,6 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
     return ids;
   }
 
-  /**
-   * Copy attachement to local folder.
-   *
-   * @param attachmentInputStream the attachment input stream
-   * @return the file
-   * @throws IOException Signals that an I/O exception has occurred.
-   * @throws FileNotFoundException the file not found exception
-   */
-  protected final File copyAttachementToLocalFolder(InputStream attachmentInputStream) throws IOException, FileNotFoundException {
-    File tmpZipFile = File.createTempFile("staging", ".zip");
-    copyAttachementToLocalFolder(attachmentInputStream, tmpZipFile);
-    return tmpZipFile;
-  }
-
   /**
    * Copy attachement to local folder.
    *
@@ -613,13 +656,17 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
   }
 
   /**
-   * Gets the and remove file by path.
+   * Gets the and remove file by path. The lookup is indexed if the entries
+   * come from {@link #extractDataFromZip(InputStream, SpoolDirectory)}.
    *
    * @param fileEntries the file entries
    * @param nodePath the node path
    * @return the and remove file by path
    */
   public final static FileEntry getAndRemoveFileByPath(List<FileEntry> fileEntries, String nodePath) {
+    if (fileEntries instanceof FileEntryIndex) {
+      return ((FileEntryIndex) fileEntries).removeByPath(nodePath);
+    }
     Iterator<FileEntry> iterator = fileEntries.iterator();
     while (iterator.hasNext()) {
       FileEntry fileEntry = (FileEntry) iterator.next();
@@ -632,13 +679,18 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
   }
 
   /**
-   * Gets the and remove files starts with.
+   * Gets the and remove files starts with. The lookup is indexed if the
+   * entries come from
+   * {@link #extractDataFromZip(InputStream, SpoolDirectory)}.
    *
    * @param fileEntries the file entries
    * @param nodePath the node path
    * @return the and remove files starts with
    */
   public final static List<FileEntry> getAndRemoveFilesStartsWith(List<FileEntry> fileEntries, String nodePath) {
+    if (fileEntries instanceof FileEntryIndex) {
+      return ((FileEntryIndex) fileEntries).removeStartingWith(nodePath);
+    }
     List<FileEntry> files = new ArrayList<FileEntry>();
     Iterator<FileEntry> iterator = fileEntries.iterator();
     while (iterator.hasNext()) {
@@ -652,100 +704,80 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
   }
 
   /**
-   * Extract data from zip.
+   * Extract data from zip. The attachment is written once in the staging spool
+   * directory of the import operation, then its entries are indexed from the
+   * zip central directory and decompressed only when they are imported. The
+   * archive is closed and deleted with the spool directory. The attachment is
+   * copied unthrottled: the entries are throttled when they are read from the
+   * archive.
    *
    * @param attachmentInputStream the attachment input stream
+   * @param spoolDirectory the spool directory of the import operation
    * @return the map
    * @throws Exception the exception
    */
-  public final Map<String, List<FileEntry>> extractDataFromZip(InputStream attachmentInputStream) throws Exception {
+  public final Map<String, List<FileEntry>> extractDataFromZip(InputStream attachmentInputStream, SpoolDirectory spoolDirectory) throws Exception {
     Map<String, List<FileEntry>> contentsByOwner = new HashMap<String, List<FileEntry>>();
-    File tmpZipFile = null;
+    File tmpZipFile = spoolDirectory.createFile("staging", ".zip");
+    OutputStream tmpZipOutputStream = spoolDirectory.openOutputStream(tmpZipFile);
     try {
-      tmpZipFile = copyAttachementToLocalFolder(attachmentInputStream);
-
-      // Organize File paths by wikiOwner and extract files from zip to a temp
-      // folder
-      extractFilesByOwner(tmpZipFile, contentsByOwner);
-    } finally {
-      if (tmpZipFile != null) {
-        deleteTempFile(tmpZipFile);
+      InputStream inputStream = attachmentInputStream;
+      if (inputStream instanceof ThrottledInputStream) {
+        inputStream = ((ThrottledInputStream) inputStream).getInputStream();
       }
+      IOUtils.copy(inputStream, tmpZipOutputStream);
+    } finally {
+      tmpZipOutputStream.close();
     }
+    attachmentInputStream.close();
+
+    // Organize entries by owner
+    extractFilesByOwner(new ImportArchive(tmpZipFile, spoolDirectory), contentsByOwner);
     return contentsByOwner;
   }
 
   /**
-   * Extract files by owner.
+   * Extract files by owner. Entries aren't decompressed here, the file entries
+   * read them lazily from the archive. The entries of each owner are indexed
+   * by node path, in their import order.
    *
-   * @param tmpZipFile the tmp zip file
+   * @param archive the import archive
    * @param contentsByOwner the contents by owner
-   * @throws FileNotFoundException the file not found exception
-   * @throws IOException Signals that an I/O exception has occurred.
    * @throws Exception the exception
    */
-  protected final void extractFilesByOwner(File tmpZipFile, Map<String, List<FileEntry>> contentsByOwner) throws FileNotFoundException, IOException, Exception {
-    // Open an input stream on local zip file
-    NonCloseableZipInputStream zis = new NonCloseableZipInputStream(new FileInputStream(tmpZipFile));
-
-    try {
-      ZipEntry entry;
-      while ((entry = zis.getNextEntry()) != null) {
-        String filePath = entry.getName();
-        // Skip entries not managed by this extension
-        if (filePath.equals("") || !filePath.startsWith(((FileImportOperationInterface) this).getManagedFilesPrefix())) {
-          continue;
-        }
-
-        // Skip directories
-        if (entry.isDirectory()) {
-          continue;
-        }
-
-        // Skip non managed
-        boolean isFileNotKnown = ((FileImportOperationInterface) this).isUnKnownFileFormat(filePath);
-        if (isFileNotKnown) {
-          log.warn("Uknown file format found at location: '" + filePath + "'. Ignore it.");
-          continue;
-        }
-
-        log.info("Receiving content " + filePath);
-
-        File file = File.createTempFile("staging", ".xml");
-
-        // Put XML Export file in temp folder
-        copyToDisk(zis, file);
+  protected final void extractFilesByOwner(ImportArchive archive, Map<String, List<FileEntry>> contentsByOwner) throws Exception {
+    // Entries not managed by this extension and directories are skipped
+    for (String filePath : archive.getEntryNames(((FileImportOperationInterface) this).getManagedFilesPrefix())) {
+      // Skip non managed
+      boolean isFileNotKnown = ((FileImportOperationInterface) this).isUnKnownFileFormat(filePath);
+      if (isFileNotKnown) {
+        log.warn("Uknown file format found at location: '" + filePath + "'. Ignore it.");
+        continue;
+      }
 
-        // Extract wiki owner
-        String owner = ((FileImportOperationInterface) this).extractIdFromPath(filePath);
+      log.info("Receiving content " + filePath);
 
-        List<FileEntry> fileEntries = contentsByOwner.get(owner);
-        // Add nodePath by Owner
-        if (fileEntries == null) {
-          fileEntries = new ArrayList<FileEntry>();
-          contentsByOwner.put(owner, fileEntries);
-        }
+      // Extract wiki owner
+      String owner = ((FileImportOperationInterface) this).extractIdFromPath(filePath);
 
-        // Treat special files
-        boolean isSpecialFile = ((FileImportOperationInterface) this).addSpecialFile(fileEntries, filePath, file);
-        if (isSpecialFile) {
-          continue;
-        }
+      List<FileEntry> fileEntries = contentsByOwner.get(owner);
+      // Add nodePath by Owner
+      if (fileEntries == null) {
+        fileEntries = new FileEntryIndex();
+        contentsByOwner.put(owner, fileEntries);
+      }
 
-        String nodePath = ((FileImportOperationInterface) this).getNodePath(filePath);
-        if (nodePath == null) {
-          continue;
-        }
-        fileEntries.add(new FileEntry(nodePath, file));
+      // Treat special files
+      boolean isSpecialFile = ((FileImportOperationInterface) this).addSpecialFile(fileEntries, filePath, new FileEntry(filePath, archive, filePath));
+      if (isSpecialFile) {
+        continue;
       }
-    } finally {
-      if (zis != null) {
-        zis.reallyClose();
+
+      String nodePath = ((FileImportOperationInterface) this).getNodePath(filePath);
+      if (nodePath == null) {
+        continue;
       }
-    }
-    Collection<List<FileEntry>> lists = contentsByOwner.values();
-    for (List<FileEntry> list : lists) {
-      Collections.sort(list);
+      fileEntries.add(new FileEntry(nodePath, archive, filePath));
     }
   }
 
@@ -803,10 +835,7 @@ public abstract class AbstractImportOperationHandler extends AbstractOperationHa
    * @return the t
    */
   protected static final <T> T deserializeObject(final InputStream zin, Class<T> objectClass, String alias) {
-    XStream xStream = new XStream();
-    if (objectClass != null && alias != null) {
-      xStream.alias(alias, objectClass);
-    }
+    XStream xStream = objectClass != null && alias != null ? XStreamRegistry.getXStream(alias, objectClass) : XStreamRegistry.getXStream();
     @SuppressWarnings("unchecked")
     T object = (T) xStream.fromXML(zin);
     return object;
@@ -48,6 +48,12 @@ import javax.jcr.query.QueryManager;
  */
 public abstract class AbstractJCRImportOperationHandler extends AbstractImportOperationHandler {
 
+  /**
+   * System property used to set a pause after each imported node is saved, in
+   * ms, to lower the load of imports on the repository (no pause by default).
+   */
+  public static final String IMPORT_SAVE_PAUSE_PARAM = "exo.staging.import.savePause";
+
   /** The publication service. */
   protected PublicationService publicationService;
   
@@ -67,21 +73,17 @@ public abstract class AbstractJCRImportOperationHandler extends AbstractImportOp
    * @throws Exception the exception
    */
   protected final boolean importNode(FileEntry fileEntry, String workspace, boolean isCleanPublication) throws Exception {
-    File xmlFile = fileEntry.getFile();
-    if (xmlFile == null || !xmlFile.exists()) {
-      log.warn("Cannot import file" + xmlFile);
+    if (!fileEntry.exists()) {
+      log.warn("Cannot import file" + fileEntry.getFile());
       return false;
     }
-    FileInputStream fis = new FileInputStream(xmlFile);
+    // Decompressed from the import archive while it's imported
+    InputStream inputStream = fileEntry.openInputStream();
     try {
-      return importNode(fileEntry.getNodePath(), workspace, fis, fileEntry.getHistoryFile(), isCleanPublication);
+      return importNode(fileEntry.getNodePath(), workspace, inputStream, fileEntry.getHistoryFile(), isCleanPublication);
     } finally {
-      if (fis != null) {
-        fis.close();
-      }
-      if (xmlFile != null) {
-        xmlFile.delete();
-      }
+      inputStream.close();
+      fileEntry.deleteFile();
     }
   }
 
@@ -140,6 +142,7 @@ public abstract class AbstractJCRImportOperationHandler extends AbstractImportOp
       session.refresh(false);
       session.importXML(parentNodePath, inputStream, ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW);
       session.save();
+      pauseAfterSave();
 
       if (isCleanPublication) {
         // Clean publication information
@@ -171,6 +174,21 @@ public abstract class AbstractJCRImportOperationHandler extends AbstractImportOp
     }
   }
 
+  /**
+   * Pauses after a save, as configured by "exo.staging.import.savePause".
+   */
+  private static void pauseAfterSave() {
+    long pause = Long.getLong(IMPORT_SAVE_PAUSE_PARAM, 0L);
+    if (pause > 0) {
+      try {
+        Thread.sleep(pause);
+      } catch (InterruptedException e) {
+        // The node is saved, let the caller handle the interruption
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   /**
    * Removes the.
    *
@@ -337,13 +355,16 @@ public abstract class AbstractJCRImportOperationHandler extends AbstractImportOp
   }
 
   /**
-   * Clear caches.
+   * Clear caches, or defers it if the import is part of a bulk import.
    *
    * @param cacheService the cache service
    * @param namePattern the name pattern
    */
   @SuppressWarnings("rawtypes")
   public void clearCaches(CacheService cacheService, String namePattern) {
+    if (DeferredCacheInvalidation.defer(namePattern)) {
+      return;
+    }
     for (Object o : cacheService.getAllCacheInstances()) {
       try {
         ExoCache exoCache = (ExoCache) o;
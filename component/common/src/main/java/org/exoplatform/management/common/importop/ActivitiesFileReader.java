@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common.importop;
+
+import com.thoughtworks.xstream.XStreamException;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.xml.XppDriver;
+
+import org.apache.commons.io.IOUtils;
+import org.exoplatform.management.common.XStreamRegistry;
+import org.exoplatform.management.common.exportop.ActivitiesExportTask;
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+
+/**
+ * Reads an activities file one activity at a time, so only the current
+ * activity is in memory. The children of the root element are read as
+ * records, whether it's the {@value ActivitiesExportTask#ACTIVITIES_ROOT}
+ * element of the activity records or the {@value ActivitiesExportTask#LIST_ROOT}
+ * element of a serialized list, written by {@link ActivitiesExportTask} or by
+ * previous versions. The null items of a serialized list are skipped.
+ */
+public class ActivitiesFileReader implements Closeable {
+
+  /** The XML reader. */
+  private final HierarchicalStreamReader reader;
+
+  /** The activity records. */
+  private final ObjectInputStream records;
+
+  /**
+   * Instantiates a new activities file reader.
+   *
+   * @param file the activities file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public ActivitiesFileReader(File file) throws IOException {
+    InputStreamReader inputStreamReader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+    boolean opened = false;
+    try {
+      reader = new XppDriver().createReader(inputStreamReader);
+      records = XStreamRegistry.getXStream().createObjectInputStream(reader);
+      opened = true;
+    } finally {
+      if (!opened) {
+        IOUtils.closeQuietly(inputStreamReader);
+      }
+    }
+  }
+
+  /**
+   * Reads the next activity or comment.
+   *
+   * @return the activity, null if all activities were read
+   * @throws IOException if the file can't be read
+   */
+  public ExoSocialActivity read() throws IOException {
+    try {
+      Object activity;
+      do {
+        activity = records.readObject();
+      } while (activity == null);
+      return (ExoSocialActivity) activity;
+    } catch (EOFException e) {
+      return null;
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Cannot read activity record", e);
+    } catch (XStreamException e) {
+      throw new IOException("Cannot read activity record", e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() {
+    reader.close();
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common.importop;
+
+import org.exoplatform.services.cache.CacheService;
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Defers the caches cleared by import operations. When several imports are
+ * made in a row by the same thread, caches are cleared once after the last
+ * import instead of after each one.
+ */
+public class DeferredCacheInvalidation {
+
+  /** Pattern matching all cache names. */
+  public static final String ALL_CACHES = "";
+
+  /** The log. */
+  private static final Log log = ExoLogger.getLogger(DeferredCacheInvalidation.class);
+
+  /** The patterns of the caches to clear, null if not deferred. */
+  private static final ThreadLocal<Set<String>> DEFERRED_PATTERNS = new ThreadLocal<Set<String>>();
+
+  /**
+   * Instantiates a new deferred cache invalidation.
+   */
+  private DeferredCacheInvalidation() {}
+
+  /**
+   * Starts deferring the caches cleared by imports in the current thread.
+   */
+  public static void begin() {
+    if (DEFERRED_PATTERNS.get() == null) {
+      DEFERRED_PATTERNS.set(new LinkedHashSet<String>());
+    }
+  }
+
+  /**
+   * Records the caches to clear if invalidations are deferred in the current
+   * thread.
+   *
+   * @param namePattern the pattern of the cache names, {@link #ALL_CACHES} for
+   *          all caches
+   * @return true, if the invalidation is deferred, false if the caller has to
+   *         clear the caches now
+   */
+  public static boolean defer(String namePattern) {
+    Set<String> deferredPatterns = DEFERRED_PATTERNS.get();
+    if (deferredPatterns == null) {
+      return false;
+    }
+    deferredPatterns.add(namePattern == null ? ALL_CACHES : namePattern);
+    return true;
+  }
+
+  /**
+   * Stops deferring invalidations in the current thread and clears, once, the
+   * caches recorded since {@link #begin()}.
+   *
+   * @param cacheService the cache service
+   */
+  @SuppressWarnings("rawtypes")
+  public static void end(CacheService cacheService) {
+    Set<String> deferredPatterns = DEFERRED_PATTERNS.get();
+    DEFERRED_PATTERNS.remove();
+    if (deferredPatterns == null || deferredPatterns.isEmpty()) {
+      return;
+    }
+    for (Object o : cacheService.getAllCacheInstances()) {
+      try {
+        ExoCache exoCache = (ExoCache) o;
+        for (String namePattern : deferredPatterns) {
+          if (exoCache.getName().contains(namePattern)) {
+            exoCache.clearCache();
+            break;
+          }
+        }
+      } catch (Exception e) {
+        if (log.isTraceEnabled()) {
+          log.trace("An exception occurred: " + e.getMessage());
+        }
+      }
+    }
+  }
+}
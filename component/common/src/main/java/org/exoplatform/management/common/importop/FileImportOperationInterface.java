@@ -20,7 +20,6 @@ package org.exoplatform.management.common.importop;
 
 import org.exoplatform.management.common.FileEntry;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -48,10 +47,10 @@ public interface FileImportOperationInterface {
    *
    * @param fileEntries the file entries
    * @param filePath the file path
-   * @param file the file
+   * @param fileEntry the entry of the file, not yet extracted from the archive
    * @return true, if successful
    */
-  boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, File file);
+  boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, FileEntry fileEntry);
 
   /**
    * Extract id from path.
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common.importop;
+
+import org.apache.commons.io.IOUtils;
+import org.exoplatform.management.common.RateLimiter;
+import org.exoplatform.management.common.SpoolDirectory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A received import archive, read through the central directory of the zip
+ * file instead of extracting every entry to its own temporary file: entries
+ * are listed without being decompressed, and each one is decompressed once,
+ * when it's imported, from a stream opened on demand. Entry reads are limited
+ * by the import rate limiter, shared by all imports.
+ */
+public class ImportArchive implements Closeable {
+
+  /**
+   * System property used to limit the bytes per second read by imports, shared
+   * by all imports (not limited by default).
+   */
+  public static final String IMPORT_BANDWIDTH_PARAM = "exo.staging.import.bandwidth";
+
+  /** The import rate limiter, null if not limited. */
+  private static final RateLimiter importRateLimiter = RateLimiter.fromProperty(IMPORT_BANDWIDTH_PARAM, 0L);
+
+  /** The zip file. */
+  private final ZipFile zipFile;
+
+  /** The spool directory where entries are extracted when needed. */
+  private final SpoolDirectory spoolDirectory;
+
+  /**
+   * Instantiates a new import archive. It's registered on the spool directory
+   * and closed with it.
+   *
+   * @param file the zip file
+   * @param spoolDirectory the spool directory of the import operation
+   * @throws IOException if the file isn't a readable zip file
+   */
+  public ImportArchive(File file, SpoolDirectory spoolDirectory) throws IOException {
+    this.zipFile = new ZipFile(file);
+    this.spoolDirectory = spoolDirectory;
+    spoolDirectory.register(this);
+  }
+
+  /**
+   * Gets the names of the file entries starting with a prefix, in the order of
+   * the archive.
+   *
+   * @param prefix the prefix
+   * @return the entry names
+   */
+  public List<String> getEntryNames(String prefix) {
+    List<String> entryNames = new ArrayList<String>();
+    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+    while (entries.hasMoreElements()) {
+      ZipEntry entry = entries.nextElement();
+      if (!entry.isDirectory() && !entry.getName().isEmpty() && entry.getName().startsWith(prefix)) {
+        entryNames.add(entry.getName());
+      }
+    }
+    return entryNames;
+  }
+
+  /**
+   * Gets the rate limiter shared by all imports.
+   *
+   * @return the rate limiter, null if the rate isn't limited
+   */
+  public static RateLimiter getImportRateLimiter() {
+    return importRateLimiter;
+  }
+
+  /**
+   * Opens a stream decompressing an entry, throttled by the import rate
+   * limiter.
+   *
+   * @param entryName the entry name
+   * @return the input stream, to close by the caller
+   * @throws IOException if the entry doesn't exist or can't be read
+   */
+  public InputStream getInputStream(String entryName) throws IOException {
+    ZipEntry entry = zipFile.getEntry(entryName);
+    if (entry == null) {
+      throw new IOException("Entry not found in import archive: " + entryName);
+    }
+    return RateLimiter.throttle(importRateLimiter, zipFile.getInputStream(entry));
+  }
+
+  /**
+   * Extracts an entry to a file of the spool directory, for the importers
+   * needing a file rather than a stream.
+   *
+   * @param entryName the entry name
+   * @return the extracted file
+   * @throws IOException if the entry can't be extracted
+   */
+  public File extract(String entryName) throws IOException {
+    File file = spoolDirectory.createFile("staging", ".xml");
+    InputStream inputStream = getInputStream(entryName);
+    try {
+      OutputStream outputStream = spoolDirectory.openOutputStream(file);
+      try {
+        IOUtils.copy(inputStream, outputStream);
+      } finally {
+        outputStream.close();
+      }
+    } finally {
+      inputStream.close();
+    }
+    return file;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException {
+    zipFile.close();
+  }
+}
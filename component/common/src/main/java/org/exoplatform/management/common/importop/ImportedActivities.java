@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common.importop;
+
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The activities already imported by an import operation, used to ignore an
+ * activity found again in another activities file. Activities are indexed by
+ * posted time, then identified by their user, type and title: two different
+ * activities posted in the same millisecond are both imported.
+ */
+public class ImportedActivities {
+
+  /** The activity keys by posted time. */
+  private final Map<Long, Set<String>> keysByPostedTime = new HashMap<Long, Set<String>>();
+
+  /**
+   * Adds an activity, read from an activities file, to the imported
+   * activities.
+   *
+   * @param activity the activity
+   * @return true, if the activity wasn't already imported. Activities without
+   *         posted time are never considered as already imported.
+   */
+  public boolean add(ExoSocialActivity activity) {
+    Long postedTime = activity.getPostedTime();
+    if (postedTime == null) {
+      return true;
+    }
+    Set<String> keys = keysByPostedTime.get(postedTime);
+    if (keys == null) {
+      keys = new HashSet<String>(1);
+      keysByPostedTime.put(postedTime, keys);
+    }
+    return keys.add(getKey(activity));
+  }
+
+  /**
+   * Forgets the imported activities.
+   */
+  public void clear() {
+    keysByPostedTime.clear();
+  }
+
+  /**
+   * Gets the key identifying an activity posted at a given time.
+   *
+   * @param activity the activity
+   * @return the key
+   */
+  private static String getKey(ExoSocialActivity activity) {
+    String title = activity.getTitle();
+    return new StringBuilder().append(activity.isComment() ? 'c' : 'a')
+                              .append(activity.getUserId())
+                              .append('/')
+                              .append(activity.getType())
+                              .append('/')
+                              .append(title == null ? 0 : title.hashCode())
+                              .toString();
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the time needed by the import of 100k entries with
+ * {@link FileEntryIndex} and with the sorted {@link FileEntry} list it
+ * replaces, scanned by the lookups of {@code AbstractImportOperationHandler}.
+ * The imported nodes are pages with attachments, imported in another order
+ * than the entries, each one taking its own entry then the entries of its
+ * subnodes, as wiki and forum imports do. Ignored by default: the list scans
+ * take minutes and it only prints timings, so they are timed once while the
+ * index is timed after a warm-up iteration.
+ */
+@Ignore("Benchmark, run it explicitly")
+public class FileEntryIndexBenchmarkTest {
+
+  /** The number of pages. */
+  private static final int PAGES_COUNT = 20000;
+
+  /** The number of attachments of each page. */
+  private static final int ATTACHMENTS_COUNT = 4;
+
+  /** The number of entries. */
+  private static final int ENTRIES_COUNT = PAGES_COUNT * (1 + ATTACHMENTS_COUNT);
+
+  /** The number of measured iterations of the index, after one warm-up iteration. */
+  private static final int ITERATIONS = 3;
+
+  /** The node paths of the entries, in archive order. */
+  private List<String> nodePaths;
+
+  /** The node paths of the pages, in import order. */
+  private List<String> pagePaths;
+
+  /**
+   * Creates the node paths.
+   */
+  @Before
+  public void setUp() {
+    nodePaths = new ArrayList<String>(ENTRIES_COUNT);
+    pagePaths = new ArrayList<String>(PAGES_COUNT);
+    for (int i = 0; i < PAGES_COUNT; i++) {
+      String pagePath = "/exo:applications/eXoWiki/wikis/intranet/WikiHome/page" + i;
+      pagePaths.add(pagePath);
+      nodePaths.add(pagePath);
+      for (int j = 0; j < ATTACHMENTS_COUNT; j++) {
+        nodePaths.add(pagePath + "/attachment" + j + ".png");
+      }
+    }
+    Collections.shuffle(nodePaths, new Random(0));
+    Collections.shuffle(pagePaths, new Random(1));
+  }
+
+  /**
+   * Measures the import with both structures.
+   */
+  @Test
+  public void benchmarkImport() {
+    long start = System.nanoTime();
+    assertEquals(ENTRIES_COUNT, importWithList());
+    long listTime = System.nanoTime() - start;
+
+    assertEquals(ENTRIES_COUNT, importWithIndex());
+    long indexTime = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      start = System.nanoTime();
+      importWithIndex();
+      indexTime += System.nanoTime() - start;
+    }
+    System.out.println("Import of " + ENTRIES_COUNT + " entries:");
+    System.out.println("  sorted list scans: " + (listTime / 1000000) + " ms");
+    System.out.println("  FileEntryIndex: " + (indexTime / ITERATIONS / 1000000) + " ms");
+  }
+
+  /**
+   * Imports the entries from a sorted list.
+   *
+   * @return the number of imported entries
+   */
+  private int importWithList() {
+    List<FileEntry> fileEntries = new ArrayList<FileEntry>();
+    for (String nodePath : nodePaths) {
+      fileEntries.add(new FileEntry(nodePath, null));
+    }
+    Collections.sort(fileEntries);
+    int imported = 0;
+    for (String pagePath : pagePaths) {
+      assertTrue(getAndRemoveFileByPath(fileEntries, pagePath) != null);
+      imported += 1 + getAndRemoveFilesStartsWith(fileEntries, pagePath + "/").size();
+    }
+    return imported;
+  }
+
+  /**
+   * Imports the entries from an index.
+   *
+   * @return the number of imported entries
+   */
+  private int importWithIndex() {
+    FileEntryIndex fileEntries = new FileEntryIndex();
+    for (String nodePath : nodePaths) {
+      fileEntries.add(new FileEntry(nodePath, null));
+    }
+    int imported = 0;
+    for (String pagePath : pagePaths) {
+      assertTrue(fileEntries.removeByPath(pagePath) != null);
+      imported += 1 + fileEntries.removeStartingWith(pagePath + "/").size();
+    }
+    return imported;
+  }
+
+  /**
+   * Removes the entry of a node path by scanning a list, as
+   * {@code AbstractImportOperationHandler} does for entries not indexed.
+   *
+   * @param fileEntries the file entries
+   * @param nodePath the node path
+   * @return the removed entry, null if none
+   */
+  private static FileEntry getAndRemoveFileByPath(List<FileEntry> fileEntries, String nodePath) {
+    Iterator<FileEntry> iterator = fileEntries.iterator();
+    while (iterator.hasNext()) {
+      FileEntry fileEntry = iterator.next();
+      if (fileEntry.getNodePath().equals(nodePath)) {
+        iterator.remove();
+        return fileEntry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Removes the entries starting with a node path by scanning a list, as
+   * {@code AbstractImportOperationHandler} does for entries not indexed.
+   *
+   * @param fileEntries the file entries
+   * @param nodePath the node path
+   * @return the removed entries
+   */
+  private static List<FileEntry> getAndRemoveFilesStartsWith(List<FileEntry> fileEntries, String nodePath) {
+    List<FileEntry> files = new ArrayList<FileEntry>();
+    Iterator<FileEntry> iterator = fileEntries.iterator();
+    while (iterator.hasNext()) {
+      FileEntry fileEntry = iterator.next();
+      if (fileEntry.getNodePath().startsWith(nodePath)) {
+        files.add(fileEntry);
+        iterator.remove();
+      }
+    }
+    return files;
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests of {@link FileEntryIndex}: the entries are kept in the order given by
+ * {@link Collections#sort(List)} of the {@link FileEntry} list it replaces, and
+ * removals by prefix remove the same entries as a scan of the list.
+ */
+public class FileEntryIndexTest {
+
+  /** The node path segments, some sorting around the '/' separator. */
+  private static final String[] SEGMENTS = { "a", "b", "a-b", "a.b", "a b", "a0", "A", "exo:actions", "exo:actionsList", "jcr:content", "documents", "é" };
+
+  /** The prefixes to remove, whole node paths or not. */
+  private static final List<String> PREFIXES = Arrays.asList("/", "/a", "/a/", "/a/b", "/a-b", "/a/exo:actions", "/a/exo:actions/", "/exo:actions", "/A", "/z", "/a.b/a0",
+      "/documents/jcr:content", "");
+
+  /**
+   * Checks that the entries are iterated in the order of a sorted list.
+   */
+  @Test
+  public void testSortedAsFileEntryList() {
+    Random random = new Random(42);
+    for (int i = 0; i < 50; i++) {
+      FileEntryIndex index = new FileEntryIndex();
+      List<FileEntry> list = newEntries(random, index);
+      Collections.sort(list);
+      assertEquals(list, toList(index));
+      assertEquals(list.size(), index.size());
+      for (int j = 0; j < list.size(); j++) {
+        assertSame(list.get(j), index.get(j));
+      }
+    }
+  }
+
+  /**
+   * Checks that the entries starting with a prefix are the ones a scan of the
+   * list removes, and that the other entries stay sorted.
+   */
+  @Test
+  public void testRemoveStartingWith() {
+    Random random = new Random(7);
+    for (int i = 0; i < 50; i++) {
+      for (String prefix : PREFIXES) {
+        FileEntryIndex index = new FileEntryIndex();
+        List<FileEntry> list = newEntries(random, index);
+        Collections.sort(list);
+
+        List<FileEntry> expectedRemoved = new ArrayList<FileEntry>();
+        Iterator<FileEntry> iterator = list.iterator();
+        while (iterator.hasNext()) {
+          FileEntry fileEntry = iterator.next();
+          if (fileEntry.getNodePath().startsWith(prefix)) {
+            expectedRemoved.add(fileEntry);
+            iterator.remove();
+          }
+        }
+
+        assertEquals(prefix, expectedRemoved, index.removeStartingWith(prefix));
+        assertEquals(prefix, list, toList(index));
+      }
+    }
+  }
+
+  /**
+   * Checks the lookups and removals by node path.
+   */
+  @Test
+  public void testByPath() {
+    FileEntryIndex index = new FileEntryIndex();
+    FileEntry entry = new FileEntry("/a/b", null);
+    FileEntry action = new FileEntry("/a/exo:actions/b", null);
+    index.add(entry);
+    index.add(action);
+    index.add(new FileEntry("/a", null));
+
+    assertSame(entry, index.getByPath("/a/b"));
+    assertSame(action, index.getByPath("/a/exo:actions/b"));
+    assertNull(index.getByPath("/a/c"));
+    assertTrue(index.contains(action));
+
+    FileEntry replacement = new FileEntry("/a/b", null);
+    index.add(replacement);
+    assertEquals(3, index.size());
+    assertSame(replacement, index.getByPath("/a/b"));
+    assertEquals("/a/exo:actions/b", index.get(2).getNodePath());
+
+    assertSame(action, index.removeByPath("/a/exo:actions/b"));
+    assertFalse(index.contains(action));
+    assertTrue(index.remove(replacement));
+    assertFalse(index.remove(replacement));
+    assertEquals(1, index.size());
+  }
+
+  /**
+   * Adds random entries to an index, and returns the same entries, the last
+   * one added for each node path, in a list.
+   *
+   * @param random the random
+   * @param index the index
+   * @return the entries
+   */
+  private static List<FileEntry> newEntries(Random random, FileEntryIndex index) {
+    Map<String, FileEntry> entriesByPath = new LinkedHashMap<String, FileEntry>();
+    int count = random.nextInt(200);
+    for (int i = 0; i < count; i++) {
+      StringBuilder nodePath = new StringBuilder();
+      int depth = 1 + random.nextInt(4);
+      for (int j = 0; j < depth; j++) {
+        nodePath.append('/').append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+      }
+      FileEntry fileEntry = new FileEntry(nodePath.toString(), null);
+      entriesByPath.remove(fileEntry.getNodePath());
+      entriesByPath.put(fileEntry.getNodePath(), fileEntry);
+      index.add(fileEntry);
+    }
+    return new ArrayList<FileEntry>(entriesByPath.values());
+  }
+
+  /**
+   * Copies the entries of an index, in iteration order.
+   *
+   * @param index the index
+   * @return the entries
+   */
+  private static List<FileEntry> toList(FileEntryIndex index) {
+    List<FileEntry> list = new ArrayList<FileEntry>();
+    for (FileEntry fileEntry : index) {
+      list.add(fileEntry);
+    }
+    return list;
+  }
+}
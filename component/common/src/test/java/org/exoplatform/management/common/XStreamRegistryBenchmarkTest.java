@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import static org.junit.Assert.assertEquals;
+
+import com.thoughtworks.xstream.XStream;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares the time needed to write and read space metadata with an XStream
+ * created for each use, as export and import tasks did, and with the shared
+ * instance of {@link XStreamRegistry}. Ignored by default: it only prints
+ * timings.
+ */
+@Ignore("Benchmark, run it explicitly")
+public class XStreamRegistryBenchmarkTest {
+
+  /** The number of objects written and read by iteration. */
+  private static final int OBJECTS_COUNT = 2000;
+
+  /** The number of measured iterations, after one warm-up iteration. */
+  private static final int ITERATIONS = 5;
+
+  /**
+   * Measures the serialization with new and shared instances.
+   */
+  @Test
+  public void benchmarkSerialization() {
+    assertEquals(OBJECTS_COUNT, serializeWithNewXStream());
+    assertEquals(OBJECTS_COUNT, serializeWithSharedXStream());
+
+    long newXStreamTime = 0;
+    long sharedXStreamTime = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      long start = System.nanoTime();
+      serializeWithNewXStream();
+      newXStreamTime += System.nanoTime() - start;
+      start = System.nanoTime();
+      serializeWithSharedXStream();
+      sharedXStreamTime += System.nanoTime() - start;
+    }
+    System.out.println("Serialization of " + OBJECTS_COUNT + " space metadata:");
+    System.out.println("  new XStream for each use: " + (newXStreamTime / ITERATIONS / 1000000) + " ms");
+    System.out.println("  XStreamRegistry: " + (sharedXStreamTime / ITERATIONS / 1000000) + " ms");
+  }
+
+  /**
+   * Writes and reads the objects, with a new XStream for each use.
+   *
+   * @return the number of objects read back
+   */
+  private static int serializeWithNewXStream() {
+    int count = 0;
+    for (int i = 0; i < OBJECTS_COUNT; i++) {
+      XStream xStream = new XStream();
+      xStream.alias("metadata", SpaceMetaData.class);
+      String xml = xStream.toXML(newSpaceMetaData(i));
+
+      xStream = new XStream();
+      xStream.alias("metadata", SpaceMetaData.class);
+      if (xStream.fromXML(xml) != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Writes and reads the objects with the shared instance.
+   *
+   * @return the number of objects read back
+   */
+  private static int serializeWithSharedXStream() {
+    int count = 0;
+    for (int i = 0; i < OBJECTS_COUNT; i++) {
+      String xml = XStreamRegistry.getXStream("metadata", SpaceMetaData.class).toXML(newSpaceMetaData(i));
+      if (XStreamRegistry.getXStream("metadata", SpaceMetaData.class).fromXML(xml) != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Creates a space metadata.
+   *
+   * @param index the index of the space
+   * @return the space metadata
+   */
+  private static SpaceMetaData newSpaceMetaData(int index) {
+    SpaceMetaData metaData = new SpaceMetaData();
+    metaData.setPrettyName("space_" + index);
+    metaData.setDisplayName("Space " + index);
+    metaData.setDescription("Description of space " + index);
+    metaData.setGroupId("/spaces/space_" + index);
+    metaData.setManagers(new String[] { "root" });
+    metaData.setMembers(new String[] { "root", "john", "user" + index });
+    metaData.setVisibility("private");
+    return metaData;
+  }
+}
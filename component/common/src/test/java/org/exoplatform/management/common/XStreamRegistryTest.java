@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.thoughtworks.xstream.XStream;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests of {@link XStreamRegistry}: the shared instances write and read the
+ * same XML as the XStream instances created for each use before.
+ */
+public class XStreamRegistryTest {
+
+  /**
+   * Checks that an aliased model is written as by a new XStream with the same
+   * alias, and that each one reads the XML of the other.
+   */
+  @Test
+  public void testSameXmlAsNewXStream() {
+    XStream shared = XStreamRegistry.getXStream("metadata", SpaceMetaData.class);
+    XStream xStream = new XStream();
+    xStream.alias("metadata", SpaceMetaData.class);
+
+    SpaceMetaData metaData = newSpaceMetaData(0);
+    String xml = xStream.toXML(metaData);
+    assertEquals(xml, shared.toXML(metaData));
+
+    assertSpaceMetaData(metaData, (SpaceMetaData) shared.fromXML(xml));
+    assertSpaceMetaData(metaData, (SpaceMetaData) xStream.fromXML(shared.toXML(metaData)));
+  }
+
+  /**
+   * Checks that an unaliased model is written as by a new XStream.
+   */
+  @Test
+  public void testSameXmlWithoutAlias() {
+    Map<String, Object> activity = new HashMap<String, Object>();
+    activity.put("title", "Hello <b>world</b> & co");
+    activity.put("likes", new String[] { "john", "mary" });
+    activity.put("comments", new ArrayList<String>(Arrays.asList("first", "second")));
+    activity.put("metadata", newSpaceMetaData(1));
+    List<Object> activities = new ArrayList<Object>(Arrays.asList(activity, "other"));
+
+    String xml = new XStream().toXML(activities);
+    assertEquals(xml, XStreamRegistry.getXStream().toXML(activities));
+    assertEquals(xml, XStreamRegistry.getXStream().toXML(XStreamRegistry.getXStream().fromXML(xml)));
+  }
+
+  /**
+   * Checks that two aliases are both applied.
+   */
+  @Test
+  public void testTwoAliases() {
+    XStream shared = XStreamRegistry.getXStream("metadata", SpaceMetaData.class, "entries", ArrayList.class);
+    XStream xStream = new XStream();
+    xStream.alias("metadata", SpaceMetaData.class);
+    xStream.alias("entries", ArrayList.class);
+
+    List<SpaceMetaData> list = new ArrayList<SpaceMetaData>(Arrays.asList(newSpaceMetaData(2), newSpaceMetaData(3)));
+    assertEquals(xStream.toXML(list), shared.toXML(list));
+  }
+
+  /**
+   * Checks that the instances are shared by configuration.
+   */
+  @Test
+  public void testInstancesByConfiguration() {
+    assertSame(XStreamRegistry.getXStream(), XStreamRegistry.getXStream());
+    assertSame(XStreamRegistry.getXStream("metadata", SpaceMetaData.class), XStreamRegistry.getXStream("metadata", SpaceMetaData.class));
+    assertNotSame(XStreamRegistry.getXStream(), XStreamRegistry.getXStream("metadata", SpaceMetaData.class));
+    assertNotSame(XStreamRegistry.getXStream("metadata", SpaceMetaData.class), XStreamRegistry.getXStream("space", SpaceMetaData.class));
+  }
+
+  /**
+   * Checks that a shared instance writes and reads the same XML from several
+   * threads.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testConcurrentUse() throws Exception {
+    final XStream xStream = new XStream();
+    xStream.alias("metadata", SpaceMetaData.class);
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (int i = 0; i < 8; i++) {
+        final int thread = i;
+        futures.add(executorService.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            XStream shared = XStreamRegistry.getXStream("metadata", SpaceMetaData.class);
+            for (int j = 0; j < 200; j++) {
+              SpaceMetaData metaData = newSpaceMetaData(thread * 1000 + j);
+              String xml = shared.toXML(metaData);
+              assertEquals(xStream.toXML(metaData), xml);
+              assertSpaceMetaData(metaData, (SpaceMetaData) shared.fromXML(xml));
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Creates a space metadata.
+   *
+   * @param index the index of the space
+   * @return the space metadata
+   */
+  private static SpaceMetaData newSpaceMetaData(int index) {
+    SpaceMetaData metaData = new SpaceMetaData();
+    metaData.setPrettyName("space_" + index);
+    metaData.setDisplayName("Space " + index + " <&>");
+    metaData.setDescription("Description of space " + index);
+    metaData.setGroupId("/spaces/space_" + index);
+    metaData.setManagers(new String[] { "root" });
+    metaData.setMembers(new String[] { "root", "john", "user" + index });
+    metaData.setVisibility("private");
+    return metaData;
+  }
+
+  /**
+   * Checks that a space metadata was read back.
+   *
+   * @param expected the written space metadata
+   * @param actual the read space metadata
+   */
+  private static void assertSpaceMetaData(SpaceMetaData expected, SpaceMetaData actual) {
+    assertEquals(expected.getPrettyName(), actual.getPrettyName());
+    assertEquals(expected.getDisplayName(), actual.getDisplayName());
+    assertEquals(expected.getDescription(), actual.getDescription());
+    assertEquals(expected.getGroupId(), actual.getGroupId());
+    assertArrayEquals(expected.getManagers(), actual.getManagers());
+    assertArrayEquals(expected.getMembers(), actual.getMembers());
+    assertEquals(expected.getVisibility(), actual.getVisibility());
+  }
+}
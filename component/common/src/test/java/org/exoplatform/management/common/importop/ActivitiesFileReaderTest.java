@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.common.importop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.thoughtworks.xstream.XStream;
+
+import org.apache.commons.io.FileUtils;
+import org.exoplatform.management.common.XStreamRegistry;
+import org.exoplatform.management.common.exportop.ActivitiesExportTask;
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests of {@link ActivitiesFileReader}: activities files are read one
+ * activity at a time, whatever their root element.
+ */
+public class ActivitiesFileReaderTest {
+
+  /** The activities file. */
+  private File file;
+
+  /**
+   * Creates the activities file.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("activities", ".metadata");
+  }
+
+  /**
+   * Deletes the activities file.
+   */
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  /**
+   * Checks that activities written under a list root, as exported by default,
+   * are read in order.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testReadListRoot() throws IOException {
+    writeRecords(ActivitiesExportTask.LIST_ROOT, 3);
+    assertTitles(3);
+  }
+
+  /**
+   * Checks that activities written under an activities root are read in
+   * order.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testReadActivitiesRoot() throws IOException {
+    writeRecords(ActivitiesExportTask.ACTIVITIES_ROOT, 3);
+    assertTitles(3);
+  }
+
+  /**
+   * Checks that a list serialized as a whole by previous versions is read,
+   * skipping its null items.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testReadSerializedList() throws IOException {
+    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
+    activities.add(newActivity(0));
+    activities.add(null);
+    activities.add(newActivity(1));
+    FileUtils.writeStringToFile(file, XStreamRegistry.getXStream().toXML(activities), "UTF-8");
+    assertTitles(2);
+  }
+
+  /**
+   * Checks that a list root is read one activity at a time: the activities
+   * before a truncation are read, the whole list is never loaded.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testReadListRootOneActivityAtATime() throws IOException {
+    writeRecords(ActivitiesExportTask.LIST_ROOT, 3);
+    String xml = FileUtils.readFileToString(file, "UTF-8");
+    FileUtils.writeStringToFile(file, xml.substring(0, xml.indexOf("activity 2")), "UTF-8");
+
+    ActivitiesFileReader reader = new ActivitiesFileReader(file);
+    try {
+      assertEquals("activity 0", reader.read().getTitle());
+      assertEquals("activity 1", reader.read().getTitle());
+      try {
+        reader.read();
+        fail("The truncated activity shouldn't be read");
+      } catch (IOException e) {
+        // Expected
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Writes activities one at a time under a root element, as
+   * {@link ActivitiesExportTask} does.
+   *
+   * @param rootNodeName the root node name
+   * @param count the number of activities
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writeRecords(String rootNodeName, int count) throws IOException {
+    XStream xStream = XStreamRegistry.getXStream();
+    ObjectOutputStream records = xStream.createObjectOutputStream(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), rootNodeName);
+    try {
+      for (int i = 0; i < count; i++) {
+        records.writeObject(newActivity(i));
+      }
+    } finally {
+      records.close();
+    }
+  }
+
+  /**
+   * Reads the activities file and checks the titles of its activities.
+   *
+   * @param count the expected number of activities
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void assertTitles(int count) throws IOException {
+    ActivitiesFileReader reader = new ActivitiesFileReader(file);
+    try {
+      for (int i = 0; i < count; i++) {
+        assertEquals("activity " + i, reader.read().getTitle());
+      }
+      assertNull(reader.read());
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Creates an activity.
+   *
+   * @param index the index of the activity
+   * @return the activity
+   */
+  private static ExoSocialActivity newActivity(int index) {
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setTitle("activity " + index);
+    activity.setUserId("user" + index);
+    return activity;
+  }
+}
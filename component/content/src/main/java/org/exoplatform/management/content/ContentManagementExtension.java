@@ -20,11 +20,13 @@ package org.exoplatform.management.content;
 
 import org.exoplatform.management.common.AbstractManagementExtension;
 import org.exoplatform.management.common.DataTransformerService;
+import org.exoplatform.management.common.ExportEstimation;
 import org.exoplatform.management.content.operations.ContentReadResource;
 import org.exoplatform.management.content.operations.site.LiveSitesReadResource;
 import org.exoplatform.management.content.operations.site.PageCLVTransformer;
 import org.exoplatform.management.content.operations.site.PageSCVTransformer;
 import org.exoplatform.management.content.operations.site.SiteReadResource;
+import org.exoplatform.management.content.operations.site.contents.SiteContentsEstimateResource;
 import org.exoplatform.management.content.operations.site.contents.SiteContentsExportResource;
 import org.exoplatform.management.content.operations.site.contents.SiteContentsImportResource;
 import org.exoplatform.management.content.operations.site.contents.SiteContentsReadResource;
@@ -76,11 +78,13 @@ public class ContentManagementExtension extends AbstractManagementExtension {
     site.registerOperationHandler(OperationNames.READ_RESOURCE, new SiteReadResource(), description("Read site"));
     site.registerOperationHandler(OperationNames.IMPORT_RESOURCE, new SiteContentsImportResource(), description("Import site data"));
     site.registerOperationHandler(OperationNames.EXPORT_RESOURCE, new SiteContentsExportResource(), description("Export site contents"));
+    site.registerOperationHandler(ExportEstimation.ESTIMATE_RESOURCE, new SiteContentsEstimateResource(), description("Estimate the export of site contents"));
 
     // /content/sites/<site_name>/contents
     ManagedResource.Registration siteContents = site.registerSubResource(PATH_CONTENT_SITES_CONTENTS, description("Management resource responsible for handling management operations on contents of a specific site."));
     siteContents.registerOperationHandler(OperationNames.READ_RESOURCE, new SiteContentsReadResource(), description("Read site contents"));
     siteContents.registerOperationHandler(OperationNames.EXPORT_RESOURCE, new SiteContentsExportResource(), description("Export site contents"));
+    siteContents.registerOperationHandler(ExportEstimation.ESTIMATE_RESOURCE, new SiteContentsEstimateResource(), description("Estimate the export of site contents"));
 
     // /content/sites/<site_name>/seo
     ManagedResource.Registration seo = site.registerSubResource(PATH_CONTENT_SITES_SEO, description("Management resource responsible for handling management operations on SEO of a specific site."));
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.content.operations.site.contents;
+
+import org.apache.commons.lang.StringUtils;
+import org.exoplatform.management.common.AbstractOperationHandler;
+import org.exoplatform.management.common.ExportEstimation;
+import org.exoplatform.services.jcr.RepositoryService;
+import org.exoplatform.services.wcm.core.NodeLocation;
+import org.exoplatform.services.wcm.core.WCMConfigurationService;
+import org.gatein.management.api.exceptions.OperationException;
+import org.gatein.management.api.operation.OperationAttributes;
+import org.gatein.management.api.operation.OperationContext;
+import org.gatein.management.api.operation.ResultHandler;
+
+import java.util.List;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+
+/**
+ * Estimates the export of {@link SiteContentsExportResource} with the same
+ * filters, from JCR counts and binary lengths. The version history and the
+ * activities of the contents are not counted.
+ */
+public class SiteContentsEstimateResource extends AbstractOperationHandler {
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(OperationContext operationContext, ResultHandler resultHandler) throws OperationException {
+    String operationName = operationContext.getOperationName();
+    String siteName = operationContext.getAddress().resolvePathTemplate("site-name");
+    if (siteName == null) {
+      throw new OperationException(operationName, "No site name specified.");
+    }
+
+    repositoryService = operationContext.getRuntimeContext().getRuntimeComponent(RepositoryService.class);
+    WCMConfigurationService wcmConfigurationService = operationContext.getRuntimeContext().getRuntimeComponent(WCMConfigurationService.class);
+
+    OperationAttributes attributes = operationContext.getAttributes();
+    List<String> filters = attributes.getValues("filter");
+
+    NodeLocation sitesLocation = wcmConfigurationService.getLivePortalsLocation();
+    String jcrQuery = SiteContentsExportResource.getParameterValue(filters, "query:", null);
+    String workspace = SiteContentsExportResource.getParameterValue(filters, "workspace:", sitesLocation.getWorkspace());
+    String removeNodes = SiteContentsExportResource.getParameterValue(filters, "removeNodes:", null);
+    String changedNodes = SiteContentsExportResource.getParameterValue(filters, "paths:", null);
+    String sitePath = (sitesLocation.getPath().endsWith("/") ? sitesLocation.getPath() : (sitesLocation.getPath() + "/")) + siteName;
+
+    ExportEstimation estimation = new ExportEstimation();
+    // Site metadata
+    estimation.addEntries(1, ExportEstimation.METADATA_SIZE);
+    try {
+      if (StringUtils.isEmpty(removeNodes) || !StringUtils.isEmpty(changedNodes)) {
+        Session session = getSession(workspace);
+        if (!StringUtils.isEmpty(changedNodes)) {
+          for (String nodePath : changedNodes.split(";")) {
+            if (nodePath.startsWith(sitePath + "/") && session.itemExists(nodePath) && session.getItem(nodePath) instanceof Node) {
+              estimateNode(session, (Node) session.getItem(nodePath), false, estimation);
+            }
+          }
+        } else if (!StringUtils.isEmpty(jcrQuery)) {
+          Query query = session.getWorkspace().getQueryManager().createQuery(SiteContentsExportResource.addSitePathCondition(jcrQuery, sitePath), Query.SQL);
+          NodeIterator nodeIterator = query.execute().getNodes();
+          while (nodeIterator.hasNext()) {
+            estimateNode(session, nodeIterator.nextNode(), true, estimation);
+          }
+        } else {
+          estimateNodes(session, sitePath, estimation);
+        }
+      }
+    } catch (RepositoryException e) {
+      throw new OperationException(operationName, "Unable to estimate site contents, cause : " + e.getMessage(), e);
+    }
+    resultHandler.completed(estimation);
+  }
+
+  /**
+   * Estimates the export of a node: a file with its binary data, or a node
+   * with its descendants if recursive.
+   *
+   * @param session the session
+   * @param node the node
+   * @param recursive if the descendants of the node are exported
+   * @param estimation the estimation
+   * @throws RepositoryException the repository exception
+   */
+  private void estimateNode(Session session, Node node, boolean recursive, ExportEstimation estimation) throws RepositoryException {
+    if (node.isNodeType("nt:file")) {
+      estimation.addEntries(1, ExportEstimation.JCR_NODE_SIZE);
+      if (node.hasNode("jcr:content") && node.getNode("jcr:content").hasProperty("jcr:data")) {
+        estimation.addSize(node.getNode("jcr:content").getProperty("jcr:data").getLength());
+      }
+    } else if (recursive) {
+      estimateNodes(session, node.getPath(), estimation);
+    } else {
+      estimation.addEntries(1, ExportEstimation.JCR_NODE_SIZE);
+    }
+  }
+}
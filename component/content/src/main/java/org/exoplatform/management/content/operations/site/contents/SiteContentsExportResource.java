@@ -49,6 +49,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
@@ -118,6 +119,8 @@ public class SiteContentsExportResource extends AbstractJCRExportOperationHandle
       String workspace = getParameterValue(filters, "workspace:", sitesLocation.getWorkspace());
       // remove JCR Nodes
       String removeNodes = getParameterValue(filters, "removeNodes:", null);
+      // export only JCR Nodes changed since a previous synchronization
+      String changedNodes = getParameterValue(filters, "paths:", null);
 
       // get JCR Site path
       String sitePath = (sitesLocation.getPath().endsWith("/") ? sitesLocation.getPath() : (sitesLocation.getPath() + "/")) + siteName;
@@ -128,10 +131,13 @@ public class SiteContentsExportResource extends AbstractJCRExportOperationHandle
       metaData.getOptions().put(SiteMetaData.SITE_NAME, siteName);
       if (!StringUtils.isEmpty(removeNodes)) {
         metaData.getOptions().put("removeNodes", removeNodes);
-      } else {
+      }
+      if (StringUtils.isEmpty(removeNodes) || !StringUtils.isEmpty(changedNodes)) {
         Set<String> activitiesId = new HashSet<String>();
         // Site contents
-        if (!StringUtils.isEmpty(jcrQuery)) {
+        if (!StringUtils.isEmpty(changedNodes)) {
+          exportTasks.addAll(exportChangedNodes(workspace, sitePath, changedNodes.split(";"), excludePaths, exportVersionHistory, metaData, activitiesId, exportOnlyMetadata));
+        } else if (!StringUtils.isEmpty(jcrQuery)) {
           exportTasks.addAll(exportQueryResult(workspace, sitePath, jcrQuery, excludePaths, exportVersionHistory, metaData, activitiesId, exportOnlyMetadata));
         } else if (exportSiteWithSkeleton) {
           exportTasks.addAll(exportSite(workspace, sitePath, exportVersionHistory, metaData, activitiesId, exportOnlyMetadata));
@@ -224,6 +230,70 @@ public class SiteContentsExportResource extends AbstractJCRExportOperationHandle
       Set<String> activitiesId, boolean exportOnlyMetadata) throws Exception {
     List<ExportTask> exportTasks = new ArrayList<ExportTask>();
 
+    Session session = getSession(workspace);
+
+    Query query = session.getWorkspace().getQueryManager().createQuery(addSitePathCondition(jcrQuery, siteRootNodePath), Query.SQL);
+    NodeIterator nodeIterator = query.execute().getNodes();
+    while (nodeIterator.hasNext()) {
+      Node node = nodeIterator.nextNode();
+      exportNode(workspace, node.getParent(), excludePaths, exportVersionHistory, exportTasks, node, metaData, activitiesId, exportOnlyMetadata);
+    }
+    return exportTasks;
+  }
+
+  /**
+   * Export changed nodes. Each node is exported with its topmost ancestor that
+   * is exported with all its subtree (a document for example), so that the
+   * imported node replaces the whole document in target server.
+   *
+   * @param workspace the workspace
+   * @param siteRootNodePath the site root node path
+   * @param changedNodePaths the changed node paths
+   * @param excludePaths the exclude paths
+   * @param exportVersionHistory the export version history
+   * @param metaData the meta data
+   * @param activitiesId the activities id
+   * @param exportOnlyMetadata the export only metadata
+   * @return the list
+   * @throws Exception the exception
+   */
+  private List<ExportTask> exportChangedNodes(String workspace, String siteRootNodePath, String[] changedNodePaths, List<String> excludePaths, boolean exportVersionHistory,
+      SiteMetaData metaData, Set<String> activitiesId, boolean exportOnlyMetadata) throws Exception {
+    List<ExportTask> exportTasks = new ArrayList<ExportTask>();
+
+    Session session = getSession(workspace);
+
+    // Sorted to export parents before their children
+    Set<String> sortedNodePaths = new TreeSet<String>(Arrays.asList(changedNodePaths));
+    Set<String> exportedNodePaths = new HashSet<String>();
+    for (String nodePath : sortedNodePaths) {
+      if (!nodePath.startsWith(siteRootNodePath + "/")) {
+        log.warn("Ignore node '" + nodePath + "' which is not a content of site '" + siteRootNodePath + "'");
+        continue;
+      }
+      if (!session.itemExists(nodePath) || !(session.getItem(nodePath) instanceof Node)) {
+        log.debug("Ignore node '" + nodePath + "' which doesn't exist anymore");
+        continue;
+      }
+      Node node = getExportedAncestor((Node) session.getItem(nodePath), siteRootNodePath);
+      if (isAlreadyExported(node.getPath(), exportedNodePaths)) {
+        continue;
+      }
+      exportedNodePaths.add(node.getPath());
+      exportNode(workspace, node.getParent(), excludePaths, exportVersionHistory, exportTasks, node, metaData, activitiesId, exportOnlyMetadata);
+    }
+    return exportTasks;
+  }
+
+  /**
+   * Restricts a JCR query to the contents of a site, unless it already has a
+   * condition on the path.
+   *
+   * @param jcrQuery the jcr query
+   * @param siteRootNodePath the site root node path
+   * @return the query restricted to the site
+   */
+  static String addSitePathCondition(String jcrQuery, String siteRootNodePath) {
     if (!jcrQuery.contains("jcr:path")) {
       String queryPath = "jcr:path = '" + siteRootNodePath + "/%'";
       queryPath.replace("//", "/");
@@ -239,16 +309,47 @@ public class SiteContentsExportResource extends AbstractJCRExportOperationHandle
         jcrQuery += " where " + queryPath;
       }
     }
+    return jcrQuery;
+  }
 
-    Session session = getSession(workspace);
+  /**
+   * Gets the topmost ancestor of a node, under site root node, that is
+   * exported with all its subtree. If there is no one, the node itself is
+   * returned.
+   *
+   * @param node the node
+   * @param siteRootNodePath the site root node path
+   * @return the exported ancestor
+   * @throws Exception the exception
+   */
+  private Node getExportedAncestor(Node node, String siteRootNodePath) throws Exception {
+    Node exportedNode = node;
+    Node currentNode = node;
+    while (currentNode.getPath().startsWith(siteRootNodePath + "/")) {
+      if (isRecursiveExport(currentNode)) {
+        exportedNode = currentNode;
+      }
+      currentNode = currentNode.getParent();
+    }
+    return exportedNode;
+  }
 
-    Query query = session.getWorkspace().getQueryManager().createQuery(jcrQuery, Query.SQL);
-    NodeIterator nodeIterator = query.execute().getNodes();
-    while (nodeIterator.hasNext()) {
-      Node node = nodeIterator.nextNode();
-      exportNode(workspace, node.getParent(), excludePaths, exportVersionHistory, exportTasks, node, metaData, activitiesId, exportOnlyMetadata);
+  /**
+   * Checks if a node or one of its ancestors is already exported.
+   *
+   * @param nodePath the node path
+   * @param exportedNodePaths the exported node paths
+   * @return true, if the node is already exported
+   */
+  private boolean isAlreadyExported(String nodePath, Set<String> exportedNodePaths) {
+    String path = nodePath;
+    while (!path.isEmpty()) {
+      if (exportedNodePaths.contains(path)) {
+        return true;
+      }
+      path = path.substring(0, path.lastIndexOf('/'));
     }
-    return exportTasks;
+    return false;
   }
 
   /**
@@ -420,7 +521,7 @@ public class SiteContentsExportResource extends AbstractJCRExportOperationHandle
    * @param defaultValue the default value
    * @return the parameter value
    */
-  private String getParameterValue(List<String> filters, String prefix, String defaultValue) {
+  static String getParameterValue(List<String> filters, String prefix, String defaultValue) {
     String value = null;
     for (String filterValue : filters) {
       if (filterValue.startsWith(prefix)) {
@@ -21,6 +21,8 @@ package org.exoplatform.management.content.operations.site.contents;
 import org.apache.commons.lang.StringUtils;
 import org.exoplatform.commons.utils.ActivityTypeUtils;
 import org.exoplatform.management.common.FileEntry;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
 import org.exoplatform.management.common.exportop.ActivitiesExportTask;
 import org.exoplatform.management.common.exportop.JCRNodeExportTask;
 import org.exoplatform.management.common.importop.AbstractJCRImportOperationHandler;
@@ -125,6 +127,7 @@ public class SiteContentsImportResource extends AbstractJCRImportOperationHandle
 
     boolean errors = false;
     InputStream attachmentInputStream = null;
+    SpoolDirectory spoolDirectory = null;
 
     increaseCurrentTransactionTimeOut(operationContext);
     try {
@@ -135,7 +138,8 @@ public class SiteContentsImportResource extends AbstractJCRImportOperationHandle
       }
 
       // extract data from zip
-      Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(attachmentInputStream);
+      spoolDirectory = SpoolManager.getInstance().open("site-contents-import");
+      Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(attachmentInputStream, spoolDirectory);
 
       for (String site : contentsByOwner.keySet()) {
         List<FileEntry> fileEntries = contentsByOwner.get(site);
@@ -200,6 +204,9 @@ public class SiteContentsImportResource extends AbstractJCRImportOperationHandle
           // Nothing to do
         }
       }
+      if (spoolDirectory != null) {
+        spoolDirectory.close();
+      }
     }
     if (errors) {
       throw new OperationException(OperationNames.IMPORT_RESOURCE, "Some errors occured while importing contents.");
@@ -273,16 +280,19 @@ public class SiteContentsImportResource extends AbstractJCRImportOperationHandle
   /**
    * {@inheritDoc}
    */
-  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, File file) {
+  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, FileEntry file) {
     if (filePath.endsWith(SiteMetaDataExportTask.FILENAME)) {
-      fileEntries.add(new FileEntry(SiteMetaDataExportTask.FILENAME, file));
+      file.setNodePath(SiteMetaDataExportTask.FILENAME);
+      fileEntries.add(file);
       return true;
     } else if (filePath.endsWith(SiteSEOExportTask.FILENAME)) {
       String lang = filePath.substring(filePath.lastIndexOf("/") + 1, filePath.indexOf(SiteSEOExportTask.FILENAME));
-      fileEntries.add(new FileEntry(SiteSEOExportTask.FILENAME + lang, file));
+      file.setNodePath(SiteSEOExportTask.FILENAME + lang);
+      fileEntries.add(file);
       return true;
     } else if (filePath.endsWith(ActivitiesExportTask.FILENAME)) {
-      fileEntries.add(new FileEntry(ActivitiesExportTask.FILENAME, file));
+      file.setNodePath(ActivitiesExportTask.FILENAME);
+      fileEntries.add(file);
       return true;
     } else if (filePath.endsWith(SiteContentsVersionHistoryExportTask.VERSION_HISTORY_FILE_SUFFIX)) {
       String path = filePath.replace(SiteContentsVersionHistoryExportTask.VERSION_HISTORY_FILE_SUFFIX, "");
@@ -296,7 +306,7 @@ public class SiteContentsImportResource extends AbstractJCRImportOperationHandle
         log.error("Cannot parse file '" + filePath + "', no XML file found for this Version History file for node path: " + fileParts[1]);
         return true;
       }
-      fileEntry.setHistoryFile(file);
+      fileEntry.setHistoryEntry(file);
       fileEntries.add(fileEntry);
 
       return true;
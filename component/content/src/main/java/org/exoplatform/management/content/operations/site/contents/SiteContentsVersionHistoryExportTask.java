@@ -21,6 +21,8 @@ package org.exoplatform.management.content.operations.site.contents;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.exoplatform.ecm.webui.utils.Utils;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
 import org.exoplatform.management.common.exportop.JCRNodeExportTask;
 import org.exoplatform.management.common.importop.AbstractJCRImportOperationHandler;
 import org.exoplatform.management.content.operations.site.SiteUtil;
@@ -35,13 +37,11 @@ import org.gatein.management.api.operation.model.ExportTask;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
@@ -69,9 +69,6 @@ public class SiteContentsVersionHistoryExportTask implements ExportTask {
   /** The Constant VERSION_SQL_QUERY. */
   public static final String VERSION_SQL_QUERY = "select * from mix:versionable where jcr:path like '$0/%' " + "order by exo:dateCreated DESC";
 
-  /** The temp files. */
-  private static List<File> tempFiles = new ArrayList<File>();
-
   /** The repository service. */
   private final RepositoryService repositoryService;
   
@@ -117,6 +114,22 @@ public class SiteContentsVersionHistoryExportTask implements ExportTask {
    */
   @Override
   public void export(OutputStream outputStream) throws IOException {
+    SpoolDirectory spoolDirectory = SpoolManager.getInstance().open("version-history");
+    try {
+      export(outputStream, spoolDirectory);
+    } finally {
+      spoolDirectory.close();
+    }
+  }
+
+  /**
+   * Export the version history using temp files of a staging spool directory.
+   *
+   * @param outputStream the output stream
+   * @param spoolDirectory the spool directory
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void export(OutputStream outputStream, SpoolDirectory spoolDirectory) throws IOException {
     log.info("Export VersionHistory: " + workspace + ":" + absolutePath);
 
     List<OutputStream> ousList = new ArrayList<OutputStream>();
@@ -124,8 +137,8 @@ public class SiteContentsVersionHistoryExportTask implements ExportTask {
 
     File exportedFile = null;
     File zipFile = null;
-    File propertiesFile = getExportedFile("mapping", ".properties");
-    OutputStream propertiesBOS = new BufferedOutputStream(new FileOutputStream(propertiesFile));
+    File propertiesFile = spoolDirectory.createFile("mapping", ".properties");
+    OutputStream propertiesBOS = new BufferedOutputStream(spoolDirectory.openOutputStream(propertiesFile));
     InputStream propertiesBIS = new BufferedInputStream(new TempFileInputStream(propertiesFile));
     CompressData zipService = new CompressData();
     Session session = null;
@@ -139,8 +152,8 @@ public class SiteContentsVersionHistoryExportTask implements ExportTask {
         NodeIterator queryIter = queryResult.getNodes();
         while (queryIter.hasNext()) {
           Node node = queryIter.nextNode();
-          exportedFile = getExportedFile("data", ".xml");
-          OutputStream out = new BufferedOutputStream(new FileOutputStream(exportedFile));
+          exportedFile = spoolDirectory.createFile("data", ".xml");
+          OutputStream out = new BufferedOutputStream(spoolDirectory.openOutputStream(exportedFile));
           ousList.add(out);
           InputStream in = new BufferedInputStream(new TempFileInputStream(exportedFile));
           isList.add(in);
@@ -154,8 +167,8 @@ public class SiteContentsVersionHistoryExportTask implements ExportTask {
       }
       if (currentNode.isNodeType(Utils.MIX_VERSIONABLE)) {
         // Export version history of current nodes
-        exportedFile = getExportedFile("data", ".xml");
-        OutputStream out = new BufferedOutputStream(new FileOutputStream(exportedFile));
+        exportedFile = spoolDirectory.createFile("data", ".xml");
+        OutputStream out = new BufferedOutputStream(spoolDirectory.openOutputStream(exportedFile));
         ousList.add(out);
         InputStream in = new BufferedInputStream(new TempFileInputStream(exportedFile));
         isList.add(in);
@@ -168,10 +181,10 @@ public class SiteContentsVersionHistoryExportTask implements ExportTask {
       }
       propertiesBOS.flush();
       zipService.addInputStream("mapping.properties", propertiesBIS);
-      zipFile = getExportedFile("data", ".zip");
+      zipFile = spoolDirectory.createFile("data", ".zip");
       InputStream in = new BufferedInputStream(new TempFileInputStream(zipFile));
       isList.add(in);
-      OutputStream out = new BufferedOutputStream(new FileOutputStream(zipFile));
+      OutputStream out = new BufferedOutputStream(spoolDirectory.openOutputStream(zipFile));
       ousList.add(out);
       out.flush();
       zipService.createZip(out);
@@ -197,18 +210,6 @@ public class SiteContentsVersionHistoryExportTask implements ExportTask {
       if (session != null) {
         session.logout();
       }
-      clearTempFiles();
-    }
-  }
-
-  /**
-   * Delete temp files created by GateIN management operations.
-   */
-  protected void clearTempFiles() {
-    for (File tempFile : tempFiles) {
-      if (tempFile != null && tempFile.exists()) {
-        tempFile.delete();
-      }
     }
   }
 
@@ -268,19 +269,4 @@ public class SiteContentsVersionHistoryExportTask implements ExportTask {
     historyValue.append(node.getUUID()).append("=").append(versionHistory).append(";").append(baseVersion).append(";").append(predecessorsBuilder.toString());
     return historyValue.toString();
   }
-
-  /**
-   * Create temp file to allow download a big data.
-   *
-   * @param prefix the prefix
-   * @param suffix the suffix
-   * @return file
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private static File getExportedFile(String prefix, String suffix) throws IOException {
-    File tempFile = File.createTempFile(prefix.concat(UUID.randomUUID().toString()), suffix);
-    tempFile.deleteOnExit();
-    tempFiles.add(tempFile);
-    return tempFile;
-  }
 }
@@ -20,6 +20,7 @@ package org.exoplatform.management.content.operations.site.contents;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.content.operations.site.SiteUtil;
 import org.gatein.management.api.operation.model.ExportTask;
 
@@ -63,8 +64,7 @@ public class SiteMetaDataExportTask implements ExportTask {
    */
   @Override
   public void export(OutputStream outputStream) throws IOException {
-    XStream xStream = new XStream();
-    xStream.alias("metadata", SiteMetaData.class);
+    XStream xStream = XStreamRegistry.getXStream("metadata", SiteMetaData.class);
     OutputStreamWriter writer = new OutputStreamWriter(outputStream, "UTF-8");
     xStream.toXML(metaData, writer);
     writer.flush();
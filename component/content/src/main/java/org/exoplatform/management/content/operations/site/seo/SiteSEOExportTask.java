@@ -20,6 +20,7 @@ package org.exoplatform.management.content.operations.site.seo;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.content.operations.site.SiteUtil;
 import org.exoplatform.services.seo.PageMetadataModel;
 import org.gatein.management.api.operation.model.ExportTask;
@@ -74,8 +75,7 @@ public class SiteSEOExportTask implements ExportTask {
    */
   @Override
   public void export(OutputStream outputStream) throws IOException {
-    XStream xStream = new XStream();
-    xStream.alias("seo", List.class);
+    XStream xStream = XStreamRegistry.getXStream("seo", List.class);
     String xmlContent = xStream.toXML(models);
     outputStream.write(xmlContent.getBytes());
   }
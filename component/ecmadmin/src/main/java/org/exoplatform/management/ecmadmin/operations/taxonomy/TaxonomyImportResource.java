@@ -22,6 +22,7 @@ import com.thoughtworks.xstream.XStream;
 
 import org.apache.commons.io.IOUtils;
 import org.exoplatform.management.common.AbstractOperationHandler;
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.ecmadmin.operations.ECMAdminImportResource;
 import org.exoplatform.services.cms.taxonomy.TaxonomyService;
 import org.exoplatform.services.jcr.RepositoryService;
@@ -126,8 +127,7 @@ public class TaxonomyImportResource extends ECMAdminImportResource {
               IOUtils.copy(zin, fout);
               String taxonomyName = extractTaxonomyName(ze.getName());
 
-              XStream xStream = new XStream();
-              xStream.alias("metadata", TaxonomyMetaData.class);
+              XStream xStream = XStreamRegistry.getXStream("metadata", TaxonomyMetaData.class);
               TaxonomyMetaData taxonomyMetaData = (TaxonomyMetaData) xStream.fromXML(fout.toString("UTF-8"));
               metadataMap.put(taxonomyName, taxonomyMetaData);
             }
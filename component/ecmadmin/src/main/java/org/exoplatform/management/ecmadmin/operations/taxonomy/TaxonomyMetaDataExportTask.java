@@ -20,6 +20,7 @@ package org.exoplatform.management.ecmadmin.operations.taxonomy;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.ecmadmin.operations.templates.NodeTemplate;
 import org.gatein.management.api.operation.model.ExportTask;
 
@@ -64,9 +65,7 @@ public class TaxonomyMetaDataExportTask implements ExportTask {
    */
   @Override
   public void export(OutputStream outputStream) throws IOException {
-    XStream xStream = new XStream();
-    xStream.alias("metadata", TaxonomyMetaData.class);
-    xStream.alias("taxonomy", NodeTemplate.class);
+    XStream xStream = XStreamRegistry.getXStream("metadata", TaxonomyMetaData.class, "taxonomy", NodeTemplate.class);
     String xmlContent = xStream.toXML(metaData);
     outputStream.write(xmlContent.getBytes());
   }
@@ -24,6 +24,7 @@ import org.gatein.management.api.operation.model.ExportTask;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import org.exoplatform.management.common.XStreamRegistry;
 
 /**
  * The Class ApplicationTemplatesMetaDataExportTask.
@@ -64,8 +65,7 @@ public class ApplicationTemplatesMetaDataExportTask implements ExportTask {
    */
   @Override
   public void export(OutputStream outputStream) throws IOException {
-    XStream xStream = new XStream();
-    xStream.alias("metadata", ApplicationTemplatesMetadata.class);
+    XStream xStream = XStreamRegistry.getXStream("metadata", ApplicationTemplatesMetadata.class);
     String xmlContent = xStream.toXML(metaData);
     outputStream.write(xmlContent.getBytes());
   }
@@ -20,6 +20,7 @@ package org.exoplatform.management.ecmadmin.operations.templates.applications;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.ecmadmin.operations.ECMAdminImportResource;
 import org.exoplatform.services.cms.templates.TemplateService;
 import org.exoplatform.services.cms.views.ApplicationTemplateManagerService;
@@ -110,8 +111,7 @@ public class ApplicationsTemplatesImportResource extends ECMAdminImportResource
             }
             if (filePath.endsWith("metadata.xml")) {
               // read NT Templates Metadata
-              XStream xStream = new XStream();
-              xStream.alias("metadata", ApplicationTemplatesMetadata.class);
+              XStream xStream = XStreamRegistry.getXStream("metadata", ApplicationTemplatesMetadata.class);
               if (metadata == null) {
                 metadata = (ApplicationTemplatesMetadata) xStream.fromXML(new InputStreamReader(zis));
               } else {
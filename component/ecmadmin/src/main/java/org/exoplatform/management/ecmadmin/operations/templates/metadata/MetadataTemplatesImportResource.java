@@ -21,6 +21,7 @@ package org.exoplatform.management.ecmadmin.operations.templates.metadata;
 import com.thoughtworks.xstream.XStream;
 
 import org.apache.commons.io.IOUtils;
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.ecmadmin.operations.ECMAdminImportResource;
 import org.exoplatform.management.ecmadmin.operations.templates.NodeTemplate;
 import org.exoplatform.services.cms.metadata.MetadataService;
@@ -134,9 +135,7 @@ public class MetadataTemplatesImportResource extends ECMAdminImportResource {
               // read NT Templates Metadata
               String nodeTypeName = matcher.group(1);
 
-              XStream xStream = new XStream();
-              xStream.alias("metadata", MetadataTemplatesMetaData.class);
-              xStream.alias("template", NodeTemplate.class);
+              XStream xStream = XStreamRegistry.getXStream("metadata", MetadataTemplatesMetaData.class, "template", NodeTemplate.class);
               MetadataTemplatesMetaData metadata = (MetadataTemplatesMetaData) xStream.fromXML(new InputStreamReader(zis));
 
               metadatas.put(nodeTypeName, metadata);
@@ -20,6 +20,7 @@ package org.exoplatform.management.ecmadmin.operations.templates.metadata;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.ecmadmin.operations.templates.NodeTemplate;
 import org.gatein.management.api.operation.model.ExportTask;
 
@@ -65,9 +66,7 @@ public class MetadataTemplatesMetaDataExportTask implements ExportTask {
    */
   @Override
   public void export(OutputStream outputStream) throws IOException {
-    XStream xStream = new XStream();
-    xStream.alias("metadata", MetadataTemplatesMetaData.class);
-    xStream.alias("template", NodeTemplate.class);
+    XStream xStream = XStreamRegistry.getXStream("metadata", MetadataTemplatesMetaData.class, "template", NodeTemplate.class);
     String xmlContent = xStream.toXML(metaData);
     outputStream.write(xmlContent.getBytes());
   }
@@ -20,6 +20,7 @@ package org.exoplatform.management.ecmadmin.operations.templates.nodetypes;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.ecmadmin.operations.templates.NodeTemplate;
 import org.gatein.management.api.operation.model.ExportTask;
 
@@ -65,9 +66,7 @@ public class NodeTypeTemplatesMetaDataExportTask implements ExportTask {
    */
   @Override
   public void export(OutputStream outputStream) throws IOException {
-    XStream xStream = new XStream();
-    xStream.alias("metadata", NodeTypeTemplatesMetaData.class);
-    xStream.alias("template", NodeTemplate.class);
+    XStream xStream = XStreamRegistry.getXStream("metadata", NodeTypeTemplatesMetaData.class, "template", NodeTemplate.class);
     String xmlContent = xStream.toXML(metaData);
     outputStream.write(xmlContent.getBytes());
   }
@@ -21,6 +21,7 @@ package org.exoplatform.management.ecmadmin.operations.templates.nodetypes;
 import com.thoughtworks.xstream.XStream;
 
 import org.apache.commons.io.IOUtils;
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.ecmadmin.operations.ECMAdminImportResource;
 import org.exoplatform.management.ecmadmin.operations.templates.NodeTemplate;
 import org.exoplatform.services.cms.templates.TemplateService;
@@ -135,9 +136,7 @@ public class NodeTypesTemplatesImportResource extends ECMAdminImportResource {
               // read NT Templates Metadata
               String nodeTypeName = matcher.group(1);
 
-              XStream xStream = new XStream();
-              xStream.alias("metadata", NodeTypeTemplatesMetaData.class);
-              xStream.alias("template", NodeTemplate.class);
+              XStream xStream = XStreamRegistry.getXStream("metadata", NodeTypeTemplatesMetaData.class, "template", NodeTemplate.class);
               NodeTypeTemplatesMetaData metadata = (NodeTypeTemplatesMetaData) xStream.fromXML(new InputStreamReader(zis));
 
               metadatas.put(nodeTypeName, metadata);
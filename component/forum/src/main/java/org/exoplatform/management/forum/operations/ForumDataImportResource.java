@@ -28,6 +28,8 @@ import org.exoplatform.forum.service.Topic;
 import org.exoplatform.forum.service.Utils;
 import org.exoplatform.forum.service.impl.model.TopicFilter;
 import org.exoplatform.management.common.FileEntry;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
 import org.exoplatform.management.common.exportop.ActivitiesExportTask;
 import org.exoplatform.management.common.exportop.SpaceMetadataExportTask;
 import org.exoplatform.management.common.importop.AbstractJCRImportOperationHandler;
@@ -53,7 +55,6 @@ import org.gatein.management.api.operation.OperationNames;
 import org.gatein.management.api.operation.ResultHandler;
 import org.gatein.management.api.operation.model.NoResultModel;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
@@ -118,10 +119,12 @@ public class ForumDataImportResource extends AbstractJCRImportOperationHandler i
     log.info("Importing Forums Data");
     InputStream attachmentInputStream = getAttachementInputStream(operationContext);
 
+    SpoolDirectory spoolDirectory = null;
     increaseCurrentTransactionTimeOut(operationContext);
     try {
       // extract data from zip
-      Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(attachmentInputStream);
+      spoolDirectory = SpoolManager.getInstance().open("forum-import");
+      Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(attachmentInputStream, spoolDirectory);
 
       String workspace = dataLocation.getWorkspace();
 
@@ -219,6 +222,9 @@ public class ForumDataImportResource extends AbstractJCRImportOperationHandler i
           // Nothing to do
         }
       }
+      if (spoolDirectory != null) {
+        spoolDirectory.close();
+      }
     }
     resultHandler.completed(NoResultModel.INSTANCE);
   }
@@ -248,12 +254,14 @@ public class ForumDataImportResource extends AbstractJCRImportOperationHandler i
   /**
    * {@inheritDoc}
    */
-  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, File file) {
+  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, FileEntry file) {
     if (filePath.endsWith(SpaceMetadataExportTask.FILENAME)) {
-      fileEntries.add(new FileEntry(SpaceMetadataExportTask.FILENAME, file));
+      file.setNodePath(SpaceMetadataExportTask.FILENAME);
+      fileEntries.add(file);
       return true;
     } else if (filePath.endsWith(ActivitiesExportTask.FILENAME)) {
-      fileEntries.add(new FileEntry(ActivitiesExportTask.FILENAME, file));
+      file.setNodePath(ActivitiesExportTask.FILENAME);
+      fileEntries.add(file);
       return true;
     }
     return false;
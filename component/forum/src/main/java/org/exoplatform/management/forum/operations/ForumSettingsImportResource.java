@@ -22,6 +22,8 @@ import org.exoplatform.forum.common.jcr.KSDataLocation;
 import org.exoplatform.forum.service.ForumService;
 import org.exoplatform.forum.service.Utils;
 import org.exoplatform.management.common.FileEntry;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
 import org.exoplatform.management.common.importop.AbstractJCRImportOperationHandler;
 import org.exoplatform.management.common.importop.FileImportOperationInterface;
 import org.exoplatform.services.jcr.RepositoryService;
@@ -33,7 +35,6 @@ import org.gatein.management.api.operation.OperationNames;
 import org.gatein.management.api.operation.ResultHandler;
 import org.gatein.management.api.operation.model.NoResultModel;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -67,9 +68,11 @@ public class ForumSettingsImportResource extends AbstractJCRImportOperationHandl
 
     log.info("Importing Forums Data");
     InputStream attachmentInputStream = getAttachementInputStream(operationContext);
+    SpoolDirectory spoolDirectory = null;
     try {
       // extract data from zip
-      Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(attachmentInputStream);
+      spoolDirectory = SpoolManager.getInstance().open("forum-settings-import");
+      Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(attachmentInputStream, spoolDirectory);
       List<FileEntry> fileEntries = contentsByOwner.get(FORUM_SETTINGS_LABEL);
 
       String workspace = dataLocation.getWorkspace();
@@ -108,6 +111,9 @@ public class ForumSettingsImportResource extends AbstractJCRImportOperationHandl
           // Nothing to do
         }
       }
+      if (spoolDirectory != null) {
+        spoolDirectory.close();
+      }
     }
     resultHandler.completed(NoResultModel.INSTANCE);
   }
@@ -134,7 +140,7 @@ public class ForumSettingsImportResource extends AbstractJCRImportOperationHandl
    * {@inheritDoc}
    */
   @Override
-  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, File file) {
+  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, FileEntry file) {
     return false;
   }
 
@@ -23,12 +23,14 @@ import java.util.Set;
 
 import org.exoplatform.management.common.AbstractManagementExtension;
 import org.exoplatform.management.common.AbstractOperationHandler;
+import org.exoplatform.management.common.ExportEstimation;
 import org.exoplatform.management.organization.group.GroupExportResource;
 import org.exoplatform.management.organization.group.GroupImportResource;
 import org.exoplatform.management.organization.group.GroupReadResource;
 import org.exoplatform.management.organization.role.RoleExportResource;
 import org.exoplatform.management.organization.role.RoleImportResource;
 import org.exoplatform.management.organization.role.RoleReadResource;
+import org.exoplatform.management.organization.user.UserEstimateResource;
 import org.exoplatform.management.organization.user.UserExportResource;
 import org.exoplatform.management.organization.user.UserImportResource;
 import org.exoplatform.management.organization.user.UserReadResource;
@@ -79,12 +81,14 @@ public class OrganizationManagementExtension extends AbstractManagementExtension
     ManagedResource.Registration users = organization.registerSubResource(PATH_ORGANIZATION_USER, description("Platform Users."));
     users.registerOperationHandler(OperationNames.READ_RESOURCE, new UserReadResource(), description("Lists available users."));
     users.registerOperationHandler(OperationNames.EXPORT_RESOURCE, new UserExportResource(), description("Exports all users."));
+    users.registerOperationHandler(ExportEstimation.ESTIMATE_RESOURCE, new UserEstimateResource(), description("Estimates the export of all users."));
     users.registerOperationHandler(OperationNames.IMPORT_RESOURCE, new UserImportResource(), description("Import users."));
 
     // /organization/user/<user-name>
     ManagedResource.Registration user = users.registerSubResource("{user-name: .*}", description("User {configuration-name}."));
     user.registerOperationHandler(OperationNames.READ_RESOURCE, new EmptyReadResource(), description("Nothing to read."));
     user.registerOperationHandler(OperationNames.EXPORT_RESOURCE, new UserExportResource(), description("Exports selected views."));
+    user.registerOperationHandler(ExportEstimation.ESTIMATE_RESOURCE, new UserEstimateResource(), description("Estimates the export of the user."));
 
     // /organization/group
     ManagedResource.Registration groups = organization.registerSubResource(PATH_ORGANIZATION_GROUP, description("Groups."));
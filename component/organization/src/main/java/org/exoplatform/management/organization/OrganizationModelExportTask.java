@@ -21,6 +21,7 @@ package org.exoplatform.management.organization;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.services.organization.Group;
 import org.exoplatform.services.organization.Membership;
 import org.exoplatform.services.organization.MembershipType;
@@ -81,8 +82,7 @@ public class OrganizationModelExportTask implements ExportTask {
    */
   @Override
   public void export(OutputStream outputStream) throws IOException {
-    XStream xStream = new XStream();
-    xStream.alias("organization", organizationObject.getClass());
+    XStream xStream = XStreamRegistry.getXStream("organization", organizationObject.getClass());
     String xmlContent = xStream.toXML(organizationObject);
     outputStream.write(xmlContent.getBytes());
   }
@@ -24,6 +24,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import org.exoplatform.management.common.AbstractOperationHandler;
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.organization.OrganizationManagementExtension;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
@@ -141,8 +142,7 @@ public class RoleImportResource extends AbstractOperationHandler {
    * @return the t
    */
   private <T> T deserializeObject(final ZipInputStream zin, Class<T> objectClass) {
-    XStream xStream = new XStream();
-    xStream.alias("organization", objectClass);
+    XStream xStream = XStreamRegistry.getXStream("organization", objectClass);
     @SuppressWarnings("unchecked")
     T object = (T) xStream.fromXML(zin);
     return object;
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.organization.user;
+
+import org.exoplatform.management.common.AbstractOperationHandler;
+import org.exoplatform.management.common.ExportEstimation;
+import org.exoplatform.services.jcr.RepositoryService;
+import org.exoplatform.services.jcr.ext.common.SessionProvider;
+import org.exoplatform.services.jcr.ext.hierarchy.NodeHierarchyCreator;
+import org.exoplatform.services.organization.OrganizationService;
+import org.exoplatform.services.organization.User;
+import org.gatein.management.api.exceptions.OperationException;
+import org.gatein.management.api.operation.OperationContext;
+import org.gatein.management.api.operation.ResultHandler;
+
+import java.util.List;
+
+import javax.jcr.Node;
+
+/**
+ * Estimates the export of {@link UserExportResource} from the count of users.
+ * The memberships are counted for a single user only, and the JCR contents of
+ * the users from JCR counts and binary lengths.
+ */
+public class UserEstimateResource extends AbstractOperationHandler {
+
+  /** The Constant USERS_PATH. */
+  private static final String USERS_PATH = "usersPath";
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(OperationContext operationContext, ResultHandler resultHandler) throws OperationException {
+    OrganizationService organizationService = operationContext.getRuntimeContext().getRuntimeComponent(OrganizationService.class);
+    NodeHierarchyCreator hierarchyCreator = operationContext.getRuntimeContext().getRuntimeComponent(NodeHierarchyCreator.class);
+    repositoryService = operationContext.getRuntimeContext().getRuntimeComponent(RepositoryService.class);
+
+    String userName = operationContext.getAddress().resolvePathTemplate("user-name");
+    List<String> filters = operationContext.getAttributes().getValues("filter");
+    boolean withContent = filters.contains("with-jcr-content:true");
+    boolean withMemberships = !filters.contains("with-membership:false");
+
+    ExportEstimation estimation = new ExportEstimation();
+    try {
+      if (userName != null && !userName.trim().isEmpty()) {
+        User user = organizationService.getUserHandler().findUserByName(userName);
+        if (user == null) {
+          throw new OperationException(ExportEstimation.ESTIMATE_RESOURCE, "User with name '" + userName + "' doesn't exist");
+        }
+        // User and profile
+        estimation.addEntries(2, ExportEstimation.ORGANIZATION_MODEL_SIZE);
+        if (withMemberships) {
+          estimation.addEntries(organizationService.getMembershipHandler().findMembershipsByUser(userName).size(), ExportEstimation.ORGANIZATION_MODEL_SIZE);
+        }
+        if (withContent) {
+          Node userNode = hierarchyCreator.getUserNode(SessionProvider.createSystemProvider(), userName);
+          estimateNodes(userNode.getSession(), userNode.getPath(), estimation);
+        }
+      } else {
+        int usersCount = organizationService.getUserHandler().findAllUsers().getSize();
+        estimation.addEntries(2L * usersCount, ExportEstimation.ORGANIZATION_MODEL_SIZE);
+        if (withContent) {
+          estimateNodes(getSession(null), hierarchyCreator.getJcrPath(USERS_PATH), estimation);
+        }
+      }
+    } catch (OperationException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new OperationException(ExportEstimation.ESTIMATE_RESOURCE, "Unable to estimate User : " + e.getMessage(), e);
+    }
+    resultHandler.completed(estimation);
+  }
+}
@@ -35,6 +35,8 @@ import java.util.zip.ZipInputStream;
 
 import org.apache.poi.util.IOUtils;
 import org.exoplatform.management.common.FileEntry;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
 import org.exoplatform.management.common.exportop.JCRNodeExportTask;
 import org.exoplatform.management.common.importop.AbstractJCRImportOperationHandler;
 import org.exoplatform.management.common.importop.FileImportOperationInterface;
@@ -140,22 +142,27 @@ public class UserImportResource extends AbstractJCRImportOperationHandler implem
    * @throws Exception the exception
    */
   private void importUserJCRNodes(File tempFile) throws Exception {
-    // extract data from zip
-    Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(new FileInputStream(tempFile));
+    SpoolDirectory spoolDirectory = SpoolManager.getInstance().open("users-import");
+    try {
+      // extract data from zip
+      Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(new FileInputStream(tempFile), spoolDirectory);
 
-    for (String site : contentsByOwner.keySet()) {
-      List<FileEntry> fileEntries = contentsByOwner.get(site);
-      try {
-        if (fileEntries != null) {
-          for (FileEntry fileEntry : fileEntries) {
-            log.info("Importing content '" + fileEntry.getNodePath() + "'.");
-            importNode(fileEntry, null, false);
+      for (String site : contentsByOwner.keySet()) {
+        List<FileEntry> fileEntries = contentsByOwner.get(site);
+        try {
+          if (fileEntries != null) {
+            for (FileEntry fileEntry : fileEntries) {
+              log.info("Importing content '" + fileEntry.getNodePath() + "'.");
+              importNode(fileEntry, null, false);
+            }
+            log.info("Content import is done.");
           }
-          log.info("Content import is done.");
+        } catch (Exception e) {
+          log.error("Error while importing users: " + site, e);
         }
-      } catch (Exception e) {
-        log.error("Error while importing users: " + site, e);
       }
+    } finally {
+      spoolDirectory.close();
     }
   }
 
@@ -355,7 +362,7 @@ public class UserImportResource extends AbstractJCRImportOperationHandler implem
    * {@inheritDoc}
    */
   @Override
-  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, File file) {
+  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, FileEntry file) {
     return false;
   }
 
@@ -18,14 +18,14 @@
  */
 package org.exoplatform.management.service.api;
 
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.message.BasicNameValuePair;
 import org.exoplatform.container.PortalContainer;
+import org.exoplatform.management.common.ExportEstimation;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.gatein.management.api.ContentType;
@@ -33,23 +33,32 @@ import org.gatein.management.api.PathAddress;
 import org.gatein.management.api.controller.ManagedRequest;
 import org.gatein.management.api.controller.ManagedResponse;
 import org.gatein.management.api.controller.ManagementController;
+import org.gatein.management.api.exceptions.OperationException;
+import org.gatein.management.api.exceptions.ResourceNotFoundException;
 import org.gatein.management.api.operation.OperationNames;
+import org.gatein.management.api.operation.model.ExportResourceModel;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.ConnectException;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -60,6 +69,52 @@ public abstract class AbstractResourceHandler implements ResourceHandler {
   /** The Constant MANAGED_COMPONENT_REST_URI. */
   protected static final String MANAGED_COMPONENT_REST_URI = "/rest/private/managed-components";
 
+  /** The Constant STAGING_UPLOAD_REST_URI. */
+  protected static final String STAGING_UPLOAD_REST_URI = "/rest/private/staging/upload";
+
+  /** The Constant STAGING_ENTRIES_REST_URI. */
+  protected static final String STAGING_ENTRIES_REST_URI = "/rest/private/staging/entries";
+
+  /**
+   * System property used to enable resumable synchronization: exported data is
+   * sent to the target server in acknowledged chunks (disabled by default).
+   */
+  public static final String SYNCHRONIZATION_RESUMABLE_PARAM = "exo.staging.synchronization.resumable";
+
+  /** System property used to set the chunk size, in bytes, of resumable uploads. */
+  public static final String SYNCHRONIZATION_CHUNK_SIZE_PARAM = "exo.staging.synchronization.chunkSize";
+
+  /**
+   * System property used to set the number of consecutive failed attempts
+   * before giving up a resumable upload.
+   */
+  public static final String SYNCHRONIZATION_RETRIES_PARAM = "exo.staging.synchronization.retries";
+
+  /** The default chunk size of resumable uploads: 8 MB. */
+  protected static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+  /** The default number of attempts of a resumable upload. */
+  protected static final int DEFAULT_RETRIES = 5;
+
+  /** The delay, in ms, to wait before the first retry of a failed chunk. */
+  protected static final long RETRY_DELAY = 2000L;
+
+  /**
+   * System property used to enable/disable the streaming of exported data
+   * directly into the HTTP upload (enabled by default).
+   */
+  public static final String SYNCHRONIZATION_STREAMING_PARAM = "exo.staging.synchronization.streaming";
+
+  /** The size of chunks sent to target server when streaming exported data. */
+  protected static final int STREAMING_CHUNK_SIZE = 64 * 1024;
+
+  /**
+   * System property used to enable deduplicated synchronization: only the
+   * exported entries that the target server doesn't have yet are sent, using
+   * resumable uploads (disabled by default).
+   */
+  public static final String SYNCHRONIZATION_DEDUPLICATION_PARAM = "exo.staging.synchronization.deduplication";
+
   /** The log. */
   private Log log = ExoLogger.getLogger(this.getClass());
 
@@ -87,6 +142,38 @@ public abstract class AbstractResourceHandler implements ResourceHandler {
     return managementController;
   }
 
+  /** The compression policy of exported archives. */
+  private ZipCompressionPolicy compressionPolicy = null;
+
+  /**
+   * Gets the compression policy of exported archives.
+   *
+   * @return the compression policy, null if none is configured
+   */
+  protected ZipCompressionPolicy getCompressionPolicy() {
+    if (compressionPolicy == null) {
+      compressionPolicy = (ZipCompressionPolicy) PortalContainer.getInstance().getComponentInstanceOfType(ZipCompressionPolicy.class);
+    }
+    return compressionPolicy;
+  }
+
+  /**
+   * Writes the zip of an export operation. Entries of export tasks are
+   * compressed following the configured compression policy.
+   *
+   * @param managedResponse the response of the export operation
+   * @param outputStream the output stream
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  protected void writeExportResult(ManagedResponse managedResponse, OutputStream outputStream) throws IOException {
+    ZipCompressionPolicy zipCompressionPolicy = getCompressionPolicy();
+    if (zipCompressionPolicy != null && managedResponse.getResult() instanceof ExportResourceModel) {
+      Utils.writeExportTasks(((ExportResourceModel) managedResponse.getResult()).getTasks(), outputStream, zipCompressionPolicy, getPath());
+    } else {
+      managedResponse.writeResult(outputStream, false);
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -99,9 +186,9 @@ public abstract class AbstractResourceHandler implements ResourceHandler {
   /**
    * {@inheritDoc}
    */
-  public void export(List<Resource> resources, ZipOutputStream exportFileOS, Map<String, String> exportOptions) throws Exception {
+  public void export(List<Resource> resources, ZipArchiveMerger exportArchive, Map<String, String> exportOptions) throws Exception {
     for (Resource resource : resources) {
-      export(resource, exportFileOS, exportOptions);
+      export(resource, exportArchive, exportOptions);
     }
   }
 
@@ -126,19 +213,158 @@ public abstract class AbstractResourceHandler implements ResourceHandler {
   /**
    * {@inheritDoc}
    */
-  public void exportResourcesInFilter(List<Resource> resources, ZipOutputStream exportFileOS, Map<String, String> exportOptions) throws Exception {
+  public void exportResourcesInFilter(List<Resource> resources, ZipArchiveMerger exportArchive, Map<String, String> exportOptions) throws Exception {
     Map<String, String> exportOptionsTmp = new HashMap<String, String>(exportOptions);
     for (Resource resource : resources) {
       if (getPath().equals(resource.getPath())) {
-        export(new Resource(getPath(), getPath(), getPath()), exportFileOS, exportOptions);
+        export(new Resource(getPath(), getPath(), getPath()), exportArchive, exportOptions);
       } else {
         String resourcePath = resource.getPath().replace(getPath() + "/", "");
         exportOptionsTmp.put("filter/" + resourcePath, null);
       }
     }
     if (!exportOptionsTmp.isEmpty()) {
-      export(new Resource(getPath(), getPath(), getPath()), exportFileOS, exportOptionsTmp);
+      export(new Resource(getPath(), getPath(), getPath()), exportArchive, exportOptionsTmp);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<File> exportForSynchronization(List<Resource> resources, Map<String, String> exportOptions) throws Exception {
+    List<File> files = new ArrayList<File>();
+    boolean exported = false;
+    try {
+      for (Resource resource : resources) {
+        files.add(exportToFile(resource, exportOptions));
+      }
+      exported = true;
+      return files;
+    } finally {
+      if (!exported) {
+        deleteFiles(files);
+      }
+    }
+  }
+
+  /**
+   * Export selected resources as filter in the files that
+   * {@link #synchronizeResourcesInFilter(List, Map, Map, TargetServer)} would
+   * send.
+   *
+   * @param resources the resources
+   * @param exportOptions the export options
+   * @return the exported files, to be released by the caller with
+   *         {@link org.exoplatform.management.common.SpoolManager#release(File)}
+   * @throws Exception the exception
+   */
+  public List<File> exportResourcesInFilterForSynchronization(List<Resource> resources, Map<String, String> exportOptions) throws Exception {
+    List<File> files = new ArrayList<File>();
+    boolean exported = false;
+    try {
+      for (Resource resource : resources) {
+        if (getPath().equals(resource.getPath())) {
+          files.add(exportToFile(new Resource(getPath(), getPath(), getPath()), exportOptions));
+        } else {
+          String resourcePath = resource.getPath().replace(getPath() + "/", "");
+
+          Map<String, String> exportOptionsTmp = new HashMap<String, String>(exportOptions);
+          exportOptionsTmp.put("filter/" + resourcePath, null);
+
+          files.add(exportToFile(new Resource(getPath(), getPath(), getPath()), exportOptionsTmp));
+        }
+      }
+      exported = true;
+      return files;
+    } finally {
+      if (!exported) {
+        deleteFiles(files);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void sendExportedData(File file, Map<String, String> importOptions, TargetServer targetServer) throws Exception {
+    if (targetServer.isFileDrop()) {
+      Map<String, List<String>> attributes = importOptions == null ? new HashMap<String, List<String>>() : extractAttributes(importOptions);
+      FileDropTransport.drop(Collections.singletonList(new BulkImportArchive.Entry(getPath(), attributes, file)), targetServer);
+    } else if (Boolean.getBoolean(SYNCHRONIZATION_DEDUPLICATION_PARAM)) {
+      sendDeduplicatedData(file, importOptions, targetServer);
+    } else if (Boolean.getBoolean(SYNCHRONIZATION_RESUMABLE_PARAM)) {
+      sendDataInChunks(file, importOptions, targetServer);
+    } else {
+      sendData(file, importOptions, targetServer);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ExportEstimation estimate(List<Resource> resources, Map<String, String> exportOptions) {
+    ExportEstimation estimation = new ExportEstimation();
+    for (Resource resource : resources) {
+      estimation.add(estimateResource(resource.getPath(), exportOptions));
+    }
+    return estimation;
+  }
+
+  /**
+   * Estimates the export of selected resources as filter, as
+   * {@link #synchronizeResourcesInFilter(List, Map, Map, TargetServer)} would
+   * export them.
+   *
+   * @param resources the resources
+   * @param exportOptions the export options
+   * @return the estimation
+   */
+  public ExportEstimation estimateResourcesInFilter(List<Resource> resources, Map<String, String> exportOptions) {
+    ExportEstimation estimation = new ExportEstimation();
+    for (Resource resource : resources) {
+      if (getPath().equals(resource.getPath())) {
+        estimation.add(estimateResource(getPath(), exportOptions));
+      } else {
+        String resourcePath = resource.getPath().replace(getPath() + "/", "");
+
+        Map<String, String> exportOptionsTmp = new HashMap<String, String>(exportOptions);
+        exportOptionsTmp.put("filter/" + resourcePath, null);
+
+        estimation.add(estimateResource(getPath(), exportOptionsTmp));
+      }
+    }
+    return estimation;
+  }
+
+  /**
+   * Estimates the export of a managed path using its "estimate-resource"
+   * operation.
+   *
+   * @param path the managed path
+   * @param selectedOptions the export options
+   * @return the estimation, with the path as unknown if the operation is not
+   *         available or fails
+   */
+  protected ExportEstimation estimateResource(String path, Map<String, String> selectedOptions) {
+    ManagedRequest request = null;
+    if (!selectedOptions.isEmpty()) {
+      request = ManagedRequest.Factory.create(ExportEstimation.ESTIMATE_RESOURCE, PathAddress.pathAddress(path), extractAttributes(selectedOptions), ContentType.JSON);
+    } else {
+      request = ManagedRequest.Factory.create(ExportEstimation.ESTIMATE_RESOURCE, PathAddress.pathAddress(path), ContentType.JSON);
+    }
+    try {
+      Object result = getManagementController().execute(request).getResult();
+      if (result instanceof ExportEstimation) {
+        return (ExportEstimation) result;
+      }
+    } catch (ResourceNotFoundException e) {
+      getLogger().debug("Can't estimate the export of " + path + ": " + e.getMessage());
+    } catch (OperationException e) {
+      getLogger().debug("Can't estimate the export of " + path + ": " + e.getMessage());
     }
+    ExportEstimation estimation = new ExportEstimation();
+    estimation.addUnknownPath(path);
+    return estimation;
   }
 
   /**
@@ -152,45 +378,444 @@ public abstract class AbstractResourceHandler implements ResourceHandler {
    */
   protected boolean sendData(File file, Map<String, String> options, TargetServer targetServer) throws Exception {
     FileInputStream fileInputStream = null;
+    HttpURLConnection conn = null;
     try {
       getLogger().info("Sending data to server: " + targetServer.getHost());
 
-      String targetServerURL = getServerURL(targetServer, getPath(), options);
-      URL url = new URL(targetServerURL);
-
       fileInputStream = new FileInputStream(file);
 
-      HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-      conn.setRequestMethod("PUT");
-      String passString = targetServer.getUsername() + ":" + targetServer.getPassword();
-      String basicAuth = "Basic " + new String(Base64.encodeBase64(passString.getBytes()));
-      conn.setRequestProperty("Authorization", basicAuth);
-      conn.setFixedLengthStreamingMode(fileInputStream.available());
-      conn.setRequestProperty("Content-Type", "application/zip");
-      conn.setDoOutput(true);
+      conn = openUploadConnection(targetServer, options);
+      conn.setFixedLengthStreamingMode(file.length());
 
-      IOUtils.copy(fileInputStream, conn.getOutputStream());
+      OutputStream outputStream = TargetServerClient.getInstance(targetServer).getOutputStream(conn);
+      IOUtils.copy(fileInputStream, outputStream);
+      outputStream.close();
 
       getLogger().info("Content sent to target server: " + targetServer.getHost());
       getLogger().info("Importing content in target server, please wait ...");
 
-      if (conn.getResponseCode() != 200) {
-        if (399 < conn.getResponseCode() && conn.getResponseCode() < 499) {
-          throw new ConnectException("Synchronization operation error, HTTP error code from target server : " + conn.getResponseCode());
-        } else {
-          throw new IllegalStateException("Synchronization operation error, HTTP error code from target server : " + conn.getResponseCode());
-        }
-      }
+      checkSynchronizationResponse(conn);
       getLogger().info("Import in target server finished successfully.");
     } finally {
       if (fileInputStream != null) {
         fileInputStream.close();
       }
-      clearTempFiles();
+      TargetServerClient.getInstance(targetServer).release(conn);
+    }
+    return true;
+  }
+
+  /**
+   * Streams data exported by GateIN Management Controller to the target server
+   * without writing it in an intermediate file. The data is sent using HTTP
+   * chunked transfer encoding, thus the export is throttled by the speed of the
+   * upload: the export thread is blocked as long as the socket can't accept
+   * more data.
+   *
+   * @param managedResponse the response of the export operation
+   * @param options the import options
+   * @param targetServer the target server
+   * @return true, if successful, false if the target server refuses chunked
+   *         uploads
+   * @throws Exception the exception
+   */
+  protected boolean sendData(ManagedResponse managedResponse, Map<String, String> options, TargetServer targetServer) throws Exception {
+    HttpURLConnection conn = null;
+    try {
+      getLogger().info("Streaming data to server: " + targetServer.getHost());
+
+      conn = openUploadConnection(targetServer, options);
+      conn.setChunkedStreamingMode(STREAMING_CHUNK_SIZE);
+
+      // If the export fails or is cancelled, the stream is left open: the
+      // connection is then released without sending the last chunk, so the
+      // target server never imports a truncated archive
+      OutputStream outputStream = new BufferedOutputStream(TargetServerClient.getInstance(targetServer).getOutputStream(conn), STREAMING_CHUNK_SIZE);
+      writeExportResult(managedResponse, SynchronizationJob.countExportedBytes(outputStream));
+      try {
+        outputStream.close();
+      } catch (IOException e) {
+        if (isChunkedUploadRefused(conn)) {
+          return false;
+        }
+        throw e;
+      }
+
+      getLogger().info("Content sent to target server: " + targetServer.getHost());
+      getLogger().info("Importing content in target server, please wait ...");
+
+      if (isChunkedUploadRefused(conn)) {
+        return false;
+      }
+      checkSynchronizationResponse(conn);
+      getLogger().info("Import in target server finished successfully.");
+    } finally {
+      TargetServerClient.getInstance(targetServer).release(conn);
+    }
+    return true;
+  }
+
+  /**
+   * Opens an HTTP PUT connection to the import operation of the target server.
+   *
+   * @param targetServer the target server
+   * @param options the import options
+   * @return the HTTP connection
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  protected HttpURLConnection openUploadConnection(TargetServer targetServer, Map<String, String> options) throws IOException {
+    HttpURLConnection conn = openConnection(targetServer, getServerURL(targetServer, getPath(), options), "PUT");
+    conn.setRequestProperty("Content-Type", "application/zip");
+    conn.setDoOutput(true);
+    return conn;
+  }
+
+  /**
+   * Opens an HTTP connection to the target server, authenticated with the
+   * target server credentials. The connection must be released with
+   * {@link TargetServerClient#release(HttpURLConnection)}.
+   *
+   * @param targetServer the target server
+   * @param targetServerURL the URL to connect to
+   * @param method the HTTP method
+   * @return the HTTP connection
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  protected static HttpURLConnection openConnection(TargetServer targetServer, String targetServerURL, String method) throws IOException {
+    return TargetServerClient.getInstance(targetServer).openConnection(targetServerURL, method);
+  }
+
+  /**
+   * Sends data (exported zip) to the target server in acknowledged chunks. The
+   * transfer id is derived from the content, the resource and the target
+   * server, so the upload is resumed from the offset already acknowledged by
+   * the target server, even by another process. If a chunk fails, the
+   * acknowledged offset is requested again and the upload is resumed from
+   * there. When all chunks are sent, the target server verifies the checksum of
+   * received data and imports it.
+   *
+   * @param file the file
+   * @param options the import options
+   * @param targetServer the target server
+   * @return true, if successful
+   * @throws Exception the exception
+   */
+  protected boolean sendDataInChunks(File file, Map<String, String> options, TargetServer targetServer) throws Exception {
+    int chunkSize = Integer.getInteger(SYNCHRONIZATION_CHUNK_SIZE_PARAM, DEFAULT_CHUNK_SIZE);
+    int retries = Integer.getInteger(SYNCHRONIZATION_RETRIES_PARAM, DEFAULT_RETRIES);
+
+    String checksum = Utils.computeChecksum(file);
+    String transferId = getTransferId(checksum, targetServer);
+    String transferURL = getServerBaseURL(targetServer) + STAGING_UPLOAD_REST_URI + "/" + transferId;
+    long fileLength = file.length();
+
+    RandomAccessFile randomAccessFile = null;
+    try {
+      long offset = 0;
+      try {
+        offset = getAcknowledgedOffset(targetServer, transferURL);
+      } catch (IOException e) {
+        getLogger().warn("Cannot get the offset of transfer " + transferId + " from server " + targetServer.getHost() + ", data is sent from the start: " + e.getMessage());
+      }
+      if (offset > fileLength) {
+        offset = 0;
+      }
+      if (offset > 0) {
+        getLogger().info("Resuming transfer " + transferId + " to server: " + targetServer.getHost() + " at offset " + offset + " of " + fileLength);
+      } else {
+        getLogger().info("Sending data to server: " + targetServer.getHost() + " in chunks of " + chunkSize + " bytes, transfer id = " + transferId);
+      }
+
+      randomAccessFile = new RandomAccessFile(file, "r");
+      byte[] buffer = new byte[chunkSize];
+      int failedAttempts = 0;
+      while (offset < fileLength) {
+        try {
+          randomAccessFile.seek(offset);
+          int length = (int) Math.min(chunkSize, fileLength - offset);
+          randomAccessFile.readFully(buffer, 0, length);
+          offset = sendChunk(targetServer, transferURL, offset, buffer, length);
+          failedAttempts = 0;
+        } catch (IOException e) {
+          if (++failedAttempts > retries || SynchronizationJob.isCurrentCancelled()) {
+            throw e;
+          }
+          getLogger().warn("Error while sending chunk at offset " + offset + " to server " + targetServer.getHost() + ", retry " + failedAttempts + "/" + retries + ": " + e.getMessage());
+          Thread.sleep(RETRY_DELAY * failedAttempts);
+          try {
+            offset = getAcknowledgedOffset(targetServer, transferURL);
+          } catch (IOException e1) {
+            // Will be retried with the next chunk
+          }
+        }
+      }
+
+      getLogger().info("Content sent to target server: " + targetServer.getHost());
+      getLogger().info("Importing content in target server, please wait ...");
+
+      Map<String, String> commitOptions = options == null ? new HashMap<String, String>() : new HashMap<String, String>(options);
+      commitOptions.put("staging-path", getPath());
+      commitOptions.put("staging-size", String.valueOf(fileLength));
+      commitOptions.put("staging-checksum", checksum);
+      commitTransfer(targetServer, transferURL + "/commit?" + encodeURLParameters(commitOptions), retries);
+
+      getLogger().info("Import in target server finished successfully.");
+    } finally {
+      if (randomAccessFile != null) {
+        randomAccessFile.close();
+      }
     }
     return true;
   }
 
+  /**
+   * Sends to the target server only the entries of the exported zip it doesn't
+   * have yet. The manifest of the exported zip (checksum of each entry) is sent
+   * first, then a partial zip with the manifest and the missing entries is
+   * uploaded in chunks. The target server rebuilds the full zip from the
+   * entries it received before and imports it.
+   *
+   * @param file the file
+   * @param options the import options
+   * @param targetServer the target server
+   * @return true, if successful
+   * @throws Exception the exception
+   */
+  protected boolean sendDeduplicatedData(File file, Map<String, String> options, TargetServer targetServer) throws Exception {
+    Map<String, String> manifest = Utils.computeEntriesManifest(file);
+    List<String> missingEntries = getMissingEntries(targetServer, manifest);
+    if (missingEntries == null) {
+      getLogger().warn("Target server '" + targetServer.getHost() + "' doesn't support deduplicated synchronization, all exported data is sent.");
+      return sendDataInChunks(file, options, targetServer);
+    }
+
+    Map<String, String> deduplicatedOptions = options == null ? new HashMap<String, String>() : new HashMap<String, String>(options);
+    deduplicatedOptions.put("staging-deduplicated", "true");
+    if (missingEntries.size() == manifest.size()) {
+      return sendDataInChunks(file, deduplicatedOptions, targetServer);
+    }
+
+    getLogger().info((manifest.size() - missingEntries.size()) + " of " + manifest.size() + " exported entries are already in target server: " + targetServer.getHost());
+    SpoolDirectory spoolDirectory = SpoolManager.getInstance().open("deduplication");
+    try {
+      File partialFile = spoolDirectory.createFile("staging", "-partial.zip");
+      writePartialArchive(file, manifest, missingEntries, spoolDirectory.openOutputStream(partialFile));
+      return sendDataInChunks(partialFile, deduplicatedOptions, targetServer);
+    } finally {
+      spoolDirectory.close();
+    }
+  }
+
+  /**
+   * Gets the entries of a manifest that the target server doesn't have.
+   *
+   * @param targetServer the target server
+   * @param manifest the checksums by entry name
+   * @return the names of the missing entries, null if the target server
+   *         doesn't support deduplicated synchronization
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private List<String> getMissingEntries(TargetServer targetServer, Map<String, String> manifest) throws IOException {
+    HttpURLConnection conn = openConnection(targetServer, getServerBaseURL(targetServer) + STAGING_ENTRIES_REST_URI + "/missing", "POST");
+    try {
+      conn.setRequestProperty("Content-Type", "text/plain");
+      conn.setDoOutput(true);
+      OutputStream outputStream = TargetServerClient.getInstance(targetServer).getOutputStream(conn);
+      Utils.writeEntriesManifest(manifest, outputStream);
+      outputStream.close();
+      int responseCode = conn.getResponseCode();
+      if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+        return null;
+      } else if (responseCode != HttpURLConnection.HTTP_OK) {
+        throw new IOException("HTTP error code from target server : " + responseCode);
+      }
+      List<String> missingEntries = new ArrayList<String>();
+      for (String line : IOUtils.readLines(conn.getInputStream(), "UTF-8")) {
+        if (!line.isEmpty()) {
+          missingEntries.add(line);
+        }
+      }
+      return missingEntries;
+    } finally {
+      TargetServerClient.getInstance(targetServer).release(conn);
+    }
+  }
+
+  /**
+   * Writes a partial zip with the manifest of the exported zip and the given
+   * entries.
+   *
+   * @param file the exported zip
+   * @param manifest the checksums by entry name
+   * @param entryNames the names of the entries to write
+   * @param partialOutputStream the output stream of the partial zip, closed by
+   *          this method
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writePartialArchive(File file, Map<String, String> manifest, List<String> entryNames, OutputStream partialOutputStream) throws IOException {
+    Set<String> selectedEntryNames = new HashSet<String>(entryNames);
+    ZipOutputStream zos = new ZipOutputStream(partialOutputStream);
+    ZipFile zipFile = null;
+    try {
+      zipFile = new ZipFile(file);
+      zos.putNextEntry(new ZipEntry(Utils.ENTRIES_MANIFEST_NAME));
+      Utils.writeEntriesManifest(manifest, zos);
+      zos.closeEntry();
+      for (String entryName : manifest.keySet()) {
+        if (!selectedEntryNames.contains(entryName)) {
+          continue;
+        }
+        zos.putNextEntry(new ZipEntry(entryName));
+        InputStream inputStream = zipFile.getInputStream(zipFile.getEntry(entryName));
+        try {
+          IOUtils.copy(inputStream, zos);
+        } finally {
+          inputStream.close();
+        }
+        zos.closeEntry();
+      }
+    } finally {
+      zos.close();
+      if (zipFile != null) {
+        zipFile.close();
+      }
+    }
+  }
+
+  /**
+   * Send a chunk of data to the target server.
+   *
+   * @param targetServer the target server
+   * @param transferURL the transfer URL
+   * @param offset the offset of the chunk
+   * @param buffer the chunk content
+   * @param length the length of the chunk
+   * @return the offset acknowledged by the target server
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private long sendChunk(TargetServer targetServer, String transferURL, long offset, byte[] buffer, int length) throws IOException {
+    HttpURLConnection conn = openConnection(targetServer, transferURL + "?offset=" + offset, "PUT");
+    try {
+      conn.setRequestProperty("Content-Type", "application/octet-stream");
+      conn.setDoOutput(true);
+      conn.setFixedLengthStreamingMode(length);
+      OutputStream outputStream = TargetServerClient.getInstance(targetServer).getOutputStream(conn);
+      outputStream.write(buffer, 0, length);
+      outputStream.close();
+      int responseCode = conn.getResponseCode();
+      if (responseCode == HttpURLConnection.HTTP_CONFLICT) {
+        // The target server has less data than expected, resume from its offset
+        return Long.parseLong(IOUtils.toString(conn.getErrorStream()).trim());
+      } else if (responseCode != HttpURLConnection.HTTP_OK) {
+        throw new IOException("HTTP error code from target server : " + responseCode);
+      }
+      return Long.parseLong(IOUtils.toString(conn.getInputStream()).trim());
+    } finally {
+      TargetServerClient.getInstance(targetServer).release(conn);
+    }
+  }
+
+  /**
+   * Asks the target server to verify and import the data of a transfer. The
+   * request is sent again if no response is received: the target server
+   * acknowledges a transfer it already imported without importing it twice.
+   *
+   * @param targetServer the target server
+   * @param commitURL the commit URL, with the import options
+   * @param retries the number of retries
+   * @throws Exception the exception
+   */
+  private void commitTransfer(TargetServer targetServer, String commitURL, int retries) throws Exception {
+    for (int attempt = 0;; attempt++) {
+      HttpURLConnection conn = openConnection(targetServer, commitURL, "POST");
+      try {
+        try {
+          conn.getResponseCode();
+        } catch (IOException e) {
+          if (attempt >= retries || SynchronizationJob.isCurrentCancelled()) {
+            throw e;
+          }
+          getLogger().warn("No response to the import request from server " + targetServer.getHost() + ", retry " + (attempt + 1) + "/" + retries + ": " + e.getMessage());
+          Thread.sleep(RETRY_DELAY * (attempt + 1));
+          continue;
+        }
+        checkSynchronizationResponse(conn);
+        return;
+      } finally {
+        TargetServerClient.getInstance(targetServer).release(conn);
+      }
+    }
+  }
+
+  /**
+   * Gets the id of the transfer of a content to a target server, always the
+   * same for the same content, resource and target server.
+   *
+   * @param checksum the checksum of the content
+   * @param targetServer the target server
+   * @return the transfer id
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private String getTransferId(String checksum, TargetServer targetServer) throws IOException {
+    String transferKey = checksum + "\n" + getPath() + "\n" + targetServer.getHost() + ":" + targetServer.getPort();
+    return Utils.computeChecksum(new ByteArrayInputStream(transferKey.getBytes("UTF-8")));
+  }
+
+  /**
+   * Gets the last offset acknowledged by the target server for a transfer.
+   *
+   * @param targetServer the target server
+   * @param transferURL the transfer URL
+   * @return the acknowledged offset
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private long getAcknowledgedOffset(TargetServer targetServer, String transferURL) throws IOException {
+    return Long.parseLong(TargetServerClient.getInstance(targetServer).get(transferURL).trim());
+  }
+
+  /**
+   * Check the HTTP response code of a synchronization operation.
+   *
+   * @param conn the HTTP connection
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void checkSynchronizationResponse(HttpURLConnection conn) throws IOException {
+    if (conn.getResponseCode() != 200) {
+      if (399 < conn.getResponseCode() && conn.getResponseCode() < 499) {
+        throw new ConnectException("Synchronization operation error, HTTP error code from target server : " + conn.getResponseCode());
+      } else {
+        throw new IllegalStateException("Synchronization operation error, HTTP error code from target server : " + conn.getResponseCode());
+      }
+    }
+  }
+
+  /**
+   * Checks if the target server (or a proxy in front of it) refused the
+   * chunked transfer encoding.
+   *
+   * @param conn the HTTP connection
+   * @return true, if the server answered with 411 (Length Required) or 501 (Not
+   *         Implemented)
+   */
+  private boolean isChunkedUploadRefused(HttpURLConnection conn) {
+    try {
+      int responseCode = conn.getResponseCode();
+      return responseCode == HttpURLConnection.HTTP_LENGTH_REQUIRED || responseCode == HttpURLConnection.HTTP_NOT_IMPLEMENTED;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks if exported data are streamed to the target server.
+   *
+   * @return true, if streaming synchronization is enabled
+   */
+  protected boolean isStreamingSynchronizationEnabled() {
+    String streaming = System.getProperty(SYNCHRONIZATION_STREAMING_PARAM, "true");
+    return Boolean.parseBoolean(streaming.trim());
+  }
+
   /**
    * Call GateIN Management Controller to export selected resource using options
    * passed in filters.
@@ -220,11 +845,7 @@ public abstract class AbstractResourceHandler implements ResourceHandler {
    * @return the server URL
    */
   public static String getServerURL(TargetServer targetServer, String uri, Map<String, String> options) {
-    String targetServerURL = "http";
-    if (targetServer.isSsl()) {
-      targetServerURL += "s";
-    }
-    targetServerURL += "://" + targetServer.getHost() + ":" + targetServer.getPort() + MANAGED_COMPONENT_REST_URI;
+    String targetServerURL = getServerBaseURL(targetServer) + MANAGED_COMPONENT_REST_URI;
     if (!uri.startsWith("/")) {
       targetServerURL += "/";
     }
@@ -239,34 +860,34 @@ public abstract class AbstractResourceHandler implements ResourceHandler {
   }
 
   /**
-   * Delete temp files created by GateIN management operations.
+   * Gets the base URL of the target server: protocol, host and port.
+   *
+   * @param targetServer the target server
+   * @return the server base URL
    */
-  protected void clearTempFiles() {
-    deleteTempFilesStartingWith("gatein-export(.*)\\.zip");
-    deleteTempFilesStartingWith("data(.*)\\.xml");
+  public static String getServerBaseURL(TargetServer targetServer) {
+    return "http" + (targetServer.isSsl() ? "s" : "") + "://" + targetServer.getHost() + ":" + targetServer.getPort();
   }
 
   /**
    * Export.
    *
    * @param resource the resource
-   * @param exportFileOS the export file OS
+   * @param exportArchive the export archive
    * @param exportOptions the export options
    * @throws Exception the exception
    */
-  private void export(Resource resource, ZipOutputStream exportFileOS, Map<String, String> exportOptions) throws Exception {
-    FileOutputStream outputStream = null;
-    FileInputStream inputStream = null;
-    File tmpFile = null;
+  private void export(Resource resource, ZipArchiveMerger exportArchive, Map<String, String> exportOptions) throws Exception {
+    OutputStream outputStream = null;
+    SpoolDirectory spoolDirectory = SpoolManager.getInstance().open("export");
     try {
       ManagedResponse managedResponse = getExportedResourceFromOperation(resource.getPath(), exportOptions);
 
       // if (managedResponse.getResult() instanceof NoResultModel) {
-      tmpFile = File.createTempFile("staging", "-export.zip");
-      tmpFile.deleteOnExit();
+      File tmpFile = spoolDirectory.createFile("staging", "-export.zip");
 
-      outputStream = new FileOutputStream(tmpFile);
-      managedResponse.writeResult(outputStream, false);
+      outputStream = spoolDirectory.openOutputStream(tmpFile);
+      writeExportResult(managedResponse, outputStream);
 
       outputStream.flush();
       outputStream.close();
@@ -274,21 +895,14 @@ public abstract class AbstractResourceHandler implements ResourceHandler {
 
       getLogger().info("Export operation finished.");
 
-      inputStream = new FileInputStream(tmpFile);
-
-      Utils.copyZipEnries(new ZipInputStream(inputStream), exportFileOS, null);
+      // Compressed entries are copied as is
+      Utils.copyZipEnries(tmpFile, exportArchive, null);
 
     } finally {
       if (outputStream != null) {
         outputStream.close();
       }
-      if (inputStream != null) {
-        inputStream.close();
-      }
-      if (tmpFile != null) {
-        tmpFile.delete();
-      }
-      clearTempFiles();
+      spoolDirectory.close();
     }
   }
 
@@ -302,33 +916,61 @@ public abstract class AbstractResourceHandler implements ResourceHandler {
    * @throws Exception the exception
    */
   private void synchronize(Resource resource, Map<String, String> exportOptions, Map<String, String> importOptions, TargetServer targetServer) throws Exception {
-    FileOutputStream fileOutputStream = null;
-    File tmpFile = null;
-    try {
+    boolean resumable = Boolean.getBoolean(SYNCHRONIZATION_RESUMABLE_PARAM);
+    boolean deduplicated = Boolean.getBoolean(SYNCHRONIZATION_DEDUPLICATION_PARAM);
+    if (!resumable && !deduplicated && !targetServer.isFileDrop() && isStreamingSynchronizationEnabled()) {
       ManagedResponse managedResponse = getExportedResourceFromOperation(resource.getPath(), exportOptions);
+      if (sendData(managedResponse, importOptions, targetServer)) {
+        return;
+      }
+      getLogger().warn("Target server '" + targetServer.getHost() + "' doesn't accept chunked uploads, export data in a temporary file before sending it.");
+    }
 
-      tmpFile = File.createTempFile(resource.getPath().replace("/", ""), ".zip");
-      tmpFile.deleteOnExit();
+    File tmpFile = exportToFile(resource, exportOptions);
+    try {
+      sendExportedData(tmpFile, importOptions, targetServer);
+    } finally {
+      deleteFile(tmpFile);
+    }
+  }
 
-      fileOutputStream = new FileOutputStream(tmpFile);
-      managedResponse.writeResult(fileOutputStream, false);
+  /**
+   * Exports a resource in a file of its own staging spool directory, released
+   * by {@link #deleteFile(File)}.
+   *
+   * @param resource the resource
+   * @param exportOptions the export options
+   * @return the temporary file
+   * @throws Exception the exception
+   */
+  private File exportToFile(Resource resource, Map<String, String> exportOptions) throws Exception {
+    OutputStream fileOutputStream = null;
+    SpoolDirectory spoolDirectory = SpoolManager.getInstance().open("synchronization");
+    boolean exported = false;
+    try {
+      ManagedResponse managedResponse = getExportedResourceFromOperation(resource.getPath(), exportOptions);
 
-      getLogger().info("Export operation finished.");
+      File tmpFile = spoolDirectory.createFile("staging", ".zip");
 
-      sendData(tmpFile, importOptions, targetServer);
+      fileOutputStream = spoolDirectory.openOutputStream(tmpFile);
+      writeExportResult(managedResponse, SynchronizationJob.countExportedBytes(fileOutputStream));
+      fileOutputStream.close();
+      fileOutputStream = null;
 
-    } catch (Exception ex) {
-      throw ex;
+      getLogger().info("Export operation finished.");
+      exported = true;
+      return tmpFile;
     } finally {
-      if (tmpFile != null) {
-        tmpFile.delete();
-      }
       if (fileOutputStream != null) {
         fileOutputStream.close();
       }
+      if (!exported) {
+        spoolDirectory.close();
+      }
     }
   }
 
+
   /**
    * Encode URL parameters.
    *
@@ -359,7 +1001,7 @@ public abstract class AbstractResourceHandler implements ResourceHandler {
    * @param selectedOptions the selected options
    * @return the map
    */
-  private static Map<String, List<String>> extractAttributes(Map<String, String> selectedOptions) {
+  public static Map<String, List<String>> extractAttributes(Map<String, String> selectedOptions) {
     Map<String, List<String>> attributes = new HashMap<String, List<String>>();
 
     Set<Entry<String, String>> optionsEntrySet = selectedOptions.entrySet();
@@ -392,39 +1034,22 @@ public abstract class AbstractResourceHandler implements ResourceHandler {
   }
 
   /**
-   * Delete temp files starting with.
+   * Delete files.
    *
-   * @param regex the regex
+   * @param files the files
    */
-  protected void deleteTempFilesStartingWith(String regex) {
-    String tempDirPath = System.getProperty("java.io.tmpdir");
-    File file = new File(tempDirPath);
-
-    if (log.isDebugEnabled()) {
-      log.debug("Delete files with regex '" + regex + "*' under " + tempDirPath);
-    }
-
-    File[] listFiles = file.listFiles((FileFilter) new RegexFileFilter(regex));
-    for (File tempFile : listFiles) {
-      deleteFile(tempFile);
+  protected void deleteFiles(List<File> files) {
+    for (File file : files) {
+      deleteFile(file);
     }
   }
 
   /**
-   * Delete file.
+   * Delete file, with the staging spool directory it was exported in.
    *
    * @param tempFile the temp file
    */
   protected void deleteFile(File tempFile) {
-    if (tempFile != null && tempFile.exists() && !tempFile.isDirectory()) {
-      try {
-        FileUtils.forceDelete(tempFile);
-      } catch (Exception e) {
-        if (log.isDebugEnabled()) {
-          log.debug("Unable to delete temp file: " + tempFile.getAbsolutePath() + ". Not blocker.");
-        }
-        tempFile.deleteOnExit();
-      }
-    }
+    SpoolManager.getInstance().release(tempFile);
   }
-}
\ No newline at end of file
+}
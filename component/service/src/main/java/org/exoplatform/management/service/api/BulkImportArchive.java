@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.api;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Archive gathering the exports of several categories, imported by the target
+ * server in a single request. Each export is stored, without being
+ * recompressed, in its own entry, and a manifest lists the entries with the
+ * managed path and the import attributes to use for each one.
+ */
+public class BulkImportArchive {
+
+  /** The URI of the bulk import REST service. */
+  public static final String BULK_IMPORT_REST_URI = "/rest/private/staging/bulk";
+
+  /** The Constant MANIFEST_NAME. */
+  public static final String MANIFEST_NAME = "staging-bulk.properties";
+
+  /** The Constant ENTRIES_COUNT_KEY. */
+  private static final String ENTRIES_COUNT_KEY = "entries";
+
+  /** The Constant ENTRY_PREFIX. */
+  private static final String ENTRY_PREFIX = "entry.";
+
+  /** The Constant PATH_SUFFIX. */
+  private static final String PATH_SUFFIX = ".path";
+
+  /** The Constant ATTRIBUTE_INFIX. */
+  private static final String ATTRIBUTE_INFIX = ".attribute.";
+
+  /**
+   * Instantiates a new bulk import archive.
+   */
+  private BulkImportArchive() {}
+
+  /**
+   * Writes the bulk archive of the given entries.
+   *
+   * @param entries the entries, with the exported file of each one
+   * @param outputStream the output stream of the archive file, closed by this
+   *          method
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void write(List<Entry> entries, OutputStream outputStream) throws IOException {
+    Properties manifest = new Properties();
+    manifest.setProperty(ENTRIES_COUNT_KEY, String.valueOf(entries.size()));
+    for (int i = 0; i < entries.size(); i++) {
+      Entry entry = entries.get(i);
+      manifest.setProperty(ENTRY_PREFIX + i + PATH_SUFFIX, entry.getPath());
+      for (Map.Entry<String, List<String>> attribute : entry.getAttributes().entrySet()) {
+        List<String> values = attribute.getValue();
+        for (int j = 0; j < values.size(); j++) {
+          manifest.setProperty(ENTRY_PREFIX + i + ATTRIBUTE_INFIX + attribute.getKey() + "." + j, values.get(j));
+        }
+      }
+    }
+
+    ZipOutputStream zos = new ZipOutputStream(outputStream);
+    try {
+      zos.putNextEntry(new ZipEntry(MANIFEST_NAME));
+      manifest.store(zos, null);
+      zos.closeEntry();
+      for (int i = 0; i < entries.size(); i++) {
+        File file = entries.get(i).getFile();
+        ZipEntry zipEntry = new ZipEntry(getEntryName(i));
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(file.length());
+        zipEntry.setCompressedSize(file.length());
+        zipEntry.setCrc(computeCRC(file));
+        zos.putNextEntry(zipEntry);
+        InputStream inputStream = new FileInputStream(file);
+        try {
+          IOUtils.copy(inputStream, zos);
+        } finally {
+          inputStream.close();
+        }
+        zos.closeEntry();
+      }
+    } finally {
+      zos.close();
+    }
+  }
+
+  /**
+   * Reads the entries listed in the manifest of a bulk archive, in the order
+   * they were written.
+   *
+   * @param zipFile the bulk archive
+   * @return the entries
+   * @throws IOException Signals that an I/O exception has occurred, or the
+   *           archive has no valid manifest
+   */
+  public static List<Entry> readEntries(ZipFile zipFile) throws IOException {
+    ZipEntry manifestEntry = zipFile.getEntry(MANIFEST_NAME);
+    if (manifestEntry == null) {
+      throw new IOException("Bulk archive has no manifest: " + zipFile.getName());
+    }
+    Properties manifest = new Properties();
+    InputStream inputStream = zipFile.getInputStream(manifestEntry);
+    try {
+      manifest.load(inputStream);
+    } finally {
+      inputStream.close();
+    }
+
+    int entriesCount;
+    try {
+      entriesCount = Integer.parseInt(manifest.getProperty(ENTRIES_COUNT_KEY));
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid bulk archive manifest: " + zipFile.getName());
+    }
+    List<Entry> entries = new ArrayList<Entry>(entriesCount);
+    for (int i = 0; i < entriesCount; i++) {
+      String path = manifest.getProperty(ENTRY_PREFIX + i + PATH_SUFFIX);
+      if (path == null || zipFile.getEntry(getEntryName(i)) == null) {
+        throw new IOException("Entry " + i + " is missing in bulk archive: " + zipFile.getName());
+      }
+      entries.add(new Entry(getEntryName(i), path, new LinkedHashMap<String, List<String>>(), null));
+    }
+
+    // Attribute values are sorted by their index in the manifest
+    List<String> attributeKeys = new ArrayList<String>();
+    for (String key : manifest.stringPropertyNames()) {
+      if (key.startsWith(ENTRY_PREFIX) && key.contains(ATTRIBUTE_INFIX)) {
+        attributeKeys.add(key);
+      }
+    }
+    Collections.sort(attributeKeys, new Comparator<String>() {
+      @Override
+      public int compare(String key1, String key2) {
+        int index1 = key1.lastIndexOf('.');
+        int index2 = key2.lastIndexOf('.');
+        int prefixComparison = key1.substring(0, index1).compareTo(key2.substring(0, index2));
+        if (prefixComparison != 0) {
+          return prefixComparison;
+        }
+        return Integer.valueOf(getIndex(key1, index1)).compareTo(getIndex(key2, index2));
+      }
+    });
+    for (String key : attributeKeys) {
+      int attributeIndex = key.indexOf(ATTRIBUTE_INFIX);
+      int entryIndex = getIndex(key.substring(0, attributeIndex), ENTRY_PREFIX.length() - 1);
+      if (entryIndex < 0 || entryIndex >= entriesCount) {
+        throw new IOException("Invalid bulk archive manifest key: " + key);
+      }
+      String attributeName = key.substring(attributeIndex + ATTRIBUTE_INFIX.length(), key.lastIndexOf('.'));
+      List<String> values = entries.get(entryIndex).getAttributes().get(attributeName);
+      if (values == null) {
+        values = new ArrayList<String>();
+        entries.get(entryIndex).getAttributes().put(attributeName, values);
+      }
+      values.add(manifest.getProperty(key));
+    }
+    return entries;
+  }
+
+  /**
+   * Sorts the entries in the order they have to be imported: by category
+   * order, and after the entries of the categories they depend on. Entries of
+   * the same category keep their relative order.
+   *
+   * @param entries the entries
+   * @return the sorted entries
+   */
+  public static List<Entry> sortInImportOrder(List<Entry> entries) {
+    List<ResourceCategory> pendingCategories = new ArrayList<ResourceCategory>();
+    Map<ResourceCategory, Entry> entriesByCategory = new LinkedHashMap<ResourceCategory, Entry>();
+    for (Entry entry : entries) {
+      ResourceCategory category = new ResourceCategory(entry.getPath());
+      pendingCategories.add(category);
+      entriesByCategory.put(category, entry);
+    }
+    // Stable sort
+    Collections.sort(pendingCategories);
+
+    List<Entry> sortedEntries = new ArrayList<Entry>(entries.size());
+    while (!pendingCategories.isEmpty()) {
+      ResourceCategory nextCategory = null;
+      for (ResourceCategory category : pendingCategories) {
+        boolean ready = true;
+        for (ResourceCategory otherCategory : pendingCategories) {
+          if (category.dependsOn(otherCategory)) {
+            ready = false;
+            break;
+          }
+        }
+        if (ready) {
+          nextCategory = category;
+          break;
+        }
+      }
+      if (nextCategory == null) {
+        throw new IllegalStateException("Cyclic dependency between categories: " + pendingCategories);
+      }
+      pendingCategories.remove(nextCategory);
+      sortedEntries.add(entriesByCategory.get(nextCategory));
+    }
+    return sortedEntries;
+  }
+
+  /**
+   * Sends a bulk archive to the target server, which imports all its entries
+   * before answering.
+   *
+   * @param archiveFile the archive file
+   * @param targetServer the target server
+   * @return true, if the archive was imported, false if the target server
+   *         doesn't support bulk imports
+   * @throws IOException Signals that an I/O exception has occurred, or that
+   *           the import failed
+   */
+  public static boolean send(File archiveFile, TargetServer targetServer) throws IOException {
+    TargetServerClient client = TargetServerClient.getInstance(targetServer);
+    HttpURLConnection conn = client.openConnection(BULK_IMPORT_REST_URI, "PUT");
+    FileInputStream fileInputStream = null;
+    try {
+      conn.setRequestProperty("Content-Type", "application/zip");
+      conn.setDoOutput(true);
+      conn.setFixedLengthStreamingMode(archiveFile.length());
+
+      fileInputStream = new FileInputStream(archiveFile);
+      OutputStream outputStream = client.getOutputStream(conn);
+      IOUtils.copy(fileInputStream, outputStream);
+      outputStream.close();
+
+      int responseCode = conn.getResponseCode();
+      if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+        return false;
+      } else if (responseCode != HttpURLConnection.HTTP_OK) {
+        if (399 < responseCode && responseCode < 499) {
+          throw new ConnectException("Synchronization operation error, HTTP error code from target server : " + responseCode);
+        } else {
+          throw new IllegalStateException("Synchronization operation error, HTTP error code from target server : " + responseCode);
+        }
+      }
+      return true;
+    } finally {
+      if (fileInputStream != null) {
+        fileInputStream.close();
+      }
+      client.release(conn);
+    }
+  }
+
+  /**
+   * Gets the name of the zip entry of an export.
+   *
+   * @param index the index of the export
+   * @return the entry name
+   */
+  private static String getEntryName(int index) {
+    return index + ".zip";
+  }
+
+  /**
+   * Gets the index that follows a separator in a manifest key.
+   *
+   * @param key the key
+   * @param separatorIndex the index of the separator
+   * @return the index, -1 if it's not a number
+   */
+  private static int getIndex(String key, int separatorIndex) {
+    try {
+      return Integer.parseInt(key.substring(separatorIndex + 1));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Computes the CRC-32 of a file, needed to store it in a zip entry.
+   *
+   * @param file the file
+   * @return the CRC-32
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static long computeCRC(File file) throws IOException {
+    CRC32 crc = new CRC32();
+    InputStream inputStream = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[64 * 1024];
+      int length;
+      while ((length = inputStream.read(buffer)) > 0) {
+        crc.update(buffer, 0, length);
+      }
+    } finally {
+      inputStream.close();
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * An export of the bulk archive.
+   */
+  public static class Entry {
+
+    /** The name of the zip entry, null if not written yet. */
+    private final String name;
+
+    /** The managed path used to import the export. */
+    private final String path;
+
+    /** The import attributes. */
+    private final Map<String, List<String>> attributes;
+
+    /** The exported file, null if read from an archive. */
+    private final File file;
+
+    /**
+     * Instantiates an entry to write in a bulk archive.
+     *
+     * @param path the managed path used to import the export
+     * @param attributes the import attributes
+     * @param file the exported file
+     */
+    public Entry(String path, Map<String, List<String>> attributes, File file) {
+      this(null, path, attributes, file);
+    }
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param name the name of the zip entry
+     * @param path the managed path
+     * @param attributes the import attributes
+     * @param file the exported file
+     */
+    private Entry(String name, String path, Map<String, List<String>> attributes, File file) {
+      this.name = name;
+      this.path = path;
+      this.attributes = attributes;
+      this.file = file;
+    }
+
+    /**
+     * Gets the name of the zip entry.
+     *
+     * @return the name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Gets the managed path.
+     *
+     * @return the path
+     */
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * Gets the import attributes.
+     *
+     * @return the attributes
+     */
+    public Map<String, List<String>> getAttributes() {
+      return attributes;
+    }
+
+    /**
+     * Gets the exported file.
+     *
+     * @return the file
+     */
+    public File getFile() {
+      return file;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.api;
+
+import java.io.IOException;
+
+/**
+ * Journal of the changes made on sites contents, used to synchronize only the
+ * contents changed since a previous synchronization. Each change has a
+ * sequence number, and the sequence reached by a synchronization is stored
+ * as a checkpoint.
+ */
+public interface ChangesJournalService {
+
+  /**
+   * Checks if changes are journaled.
+   *
+   * @return true, if is enabled
+   */
+  public boolean isEnabled();
+
+  /**
+   * Gets the journaled workspace.
+   *
+   * @return the workspace
+   */
+  public String getWorkspace();
+
+  /**
+   * Gets the sequence of the last journaled change.
+   *
+   * @return the last sequence
+   */
+  public long getLastSequence();
+
+  /**
+   * Gets the changes made under a JCR path after a given sequence.
+   *
+   * @param sequence the sequence
+   * @param rootPath the JCR path
+   * @return the changes
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public ContentChanges getChanges(long sequence, String rootPath) throws IOException;
+
+  /**
+   * Gets the sequence reached by the last synchronization identified by the
+   * given key.
+   *
+   * @param key the checkpoint key
+   * @return the sequence, or null if changes since the last synchronization
+   *         are unknown
+   */
+  public Long getCheckpoint(String key);
+
+  /**
+   * Stores the sequence reached by a synchronization.
+   *
+   * @param key the checkpoint key
+   * @param sequence the sequence
+   */
+  public void setCheckpoint(String key, long sequence);
+}
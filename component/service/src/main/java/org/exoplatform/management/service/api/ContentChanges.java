@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.api;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * JCR nodes changed and removed since a given point of the changes journal.
+ * Successive changes of a node are merged: a node added then removed is only
+ * reported as removed, and descendants of a removed node are not reported.
+ */
+public class ContentChanges {
+
+  /** The changed node paths, sorted so that parents are before children. */
+  private final TreeSet<String> changedPaths = new TreeSet<String>();
+
+  /** The removed node paths. */
+  private final TreeSet<String> removedPaths = new TreeSet<String>();
+
+  /**
+   * Adds a node added or modified.
+   *
+   * @param path the node path
+   */
+  public void addChange(String path) {
+    removedPaths.remove(path);
+    changedPaths.add(path);
+  }
+
+  /**
+   * Adds a removed node.
+   *
+   * @param path the node path
+   */
+  public void addRemoval(String path) {
+    changedPaths.remove(path);
+    getDescendants(changedPaths, path).clear();
+    getDescendants(removedPaths, path).clear();
+    removedPaths.add(path);
+  }
+
+  /**
+   * Gets the changed node paths.
+   *
+   * @return the changed node paths
+   */
+  public Set<String> getChangedPaths() {
+    return Collections.unmodifiableSet(changedPaths);
+  }
+
+  /**
+   * Gets the removed node paths.
+   *
+   * @return the removed node paths
+   */
+  public Set<String> getRemovedPaths() {
+    return Collections.unmodifiableSet(removedPaths);
+  }
+
+  /**
+   * Checks if there is no change.
+   *
+   * @return true, if there is no change
+   */
+  public boolean isEmpty() {
+    return changedPaths.isEmpty() && removedPaths.isEmpty();
+  }
+
+  /**
+   * Gets the view of the paths that are descendants of a node.
+   *
+   * @param paths the paths
+   * @param path the node path
+   * @return the descendants
+   */
+  private static Set<String> getDescendants(TreeSet<String> paths, String path) {
+    // '0' is the character following '/'
+    return paths.subSet(path + "/", true, path + "0", false);
+  }
+}
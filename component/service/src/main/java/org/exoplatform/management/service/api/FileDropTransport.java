@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.api;
+
+import org.apache.commons.io.FileUtils;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sends exports to a target server sharing a directory with this one. The
+ * exports are written in a {@link BulkImportArchive}, renamed atomically once
+ * complete, then imported by the drop poller of the target server, which
+ * writes a status file next to the drop when the import is finished.
+ * <ul>
+ * <li>".id.zip.tmp": drop being written, ignored by the poller</li>
+ * <li>"id.zip": drop ready to be imported</li>
+ * <li>".id.zip.node.importing": drop claimed by the poller of a node</li>
+ * <li>"id.done" or "id.failed": import status, the failed status contains the
+ * error message</li>
+ * </ul>
+ * The target server imports the drops without authentication, so the shared
+ * directory must be writable only by the source and target servers, see the
+ * drop poller.
+ */
+public class FileDropTransport {
+
+  /**
+   * System property used to define how long, in seconds, a synchronization
+   * waits for its drop to be imported.
+   */
+  public static final String DROP_TIMEOUT_PARAM = "exo.staging.drop.timeout";
+
+  /** The Constant DROP_SUFFIX. */
+  public static final String DROP_SUFFIX = ".zip";
+
+  /** The Constant TMP_SUFFIX. */
+  public static final String TMP_SUFFIX = ".tmp";
+
+  /** The Constant IMPORTING_SUFFIX. */
+  public static final String IMPORTING_SUFFIX = ".importing";
+
+  /** The Constant DONE_SUFFIX. */
+  public static final String DONE_SUFFIX = ".done";
+
+  /** The Constant FAILED_SUFFIX. */
+  public static final String FAILED_SUFFIX = ".failed";
+
+  /** The Constant DEFAULT_DROP_TIMEOUT, in seconds. */
+  private static final long DEFAULT_DROP_TIMEOUT = 24L * 60L * 60L;
+
+  /** The Constant STATUS_CHECK_DELAY. */
+  private static final long STATUS_CHECK_DELAY = 1000L;
+
+  /** The Constant LOG. */
+  private static final Log LOG = ExoLogger.getLogger(FileDropTransport.class);
+
+  /**
+   * Instantiates a new file drop transport.
+   */
+  private FileDropTransport() {}
+
+  /**
+   * Checks that the drop directory of a target server can be written.
+   *
+   * @param targetServer the target server
+   * @throws IOException Signals that the directory can't be used
+   */
+  public static void checkDropDirectory(TargetServer targetServer) throws IOException {
+    File dropDirectory = targetServer.getDropDirectory();
+    if (dropDirectory == null || !dropDirectory.isDirectory() || !dropDirectory.canWrite()) {
+      throw new IOException("Drop directory of target server '" + targetServer.getName() + "' can't be written: " + dropDirectory);
+    }
+  }
+
+  /**
+   * Drops exports in the shared directory of a target server and waits until
+   * they are imported.
+   *
+   * @param entries the exports, with their import path and attributes
+   * @param targetServer the target server
+   * @throws Exception if the import failed, timed out or the synchronization
+   *           was cancelled
+   */
+  public static void drop(List<BulkImportArchive.Entry> entries, TargetServer targetServer) throws Exception {
+    checkDropDirectory(targetServer);
+    File dropDirectory = targetServer.getDropDirectory();
+    String dropId = UUID.randomUUID().toString();
+    File tmpFile = new File(dropDirectory, "." + dropId + DROP_SUFFIX + TMP_SUFFIX);
+    File dropFile = new File(dropDirectory, dropId + DROP_SUFFIX);
+    try {
+      BulkImportArchive.write(entries, new FileOutputStream(tmpFile));
+      Files.move(tmpFile.toPath(), dropFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      FileUtils.deleteQuietly(tmpFile);
+    }
+    LOG.info("Exports dropped in " + dropFile.getPath() + " (" + dropFile.length() + " bytes), waiting for the import of target server '" + targetServer.getName() + "'");
+
+    File doneFile = new File(dropDirectory, dropId + DONE_SUFFIX);
+    File failedFile = new File(dropDirectory, dropId + FAILED_SUFFIX);
+    long timeout = System.currentTimeMillis() + Long.getLong(DROP_TIMEOUT_PARAM, DEFAULT_DROP_TIMEOUT) * 1000L;
+    while (!doneFile.exists() && !failedFile.exists()) {
+      if (SynchronizationJob.isCurrentCancelled() || System.currentTimeMillis() > timeout) {
+        // Withdraw the drop if it's not claimed yet
+        boolean withdrawn = dropFile.delete();
+        if (SynchronizationJob.isCurrentCancelled()) {
+          throw new InterruptedException("Synchronization cancelled" + (withdrawn ? "" : ", the drop " + dropFile.getName() + " is already being imported"));
+        }
+        throw new IllegalStateException("Drop " + dropFile.getName() + " was not imported by target server '" + targetServer.getName() + "' in time" + (withdrawn ? "" : ", it's still being imported"));
+      }
+      Thread.sleep(STATUS_CHECK_DELAY);
+    }
+
+    if (failedFile.exists()) {
+      String error = new String(Files.readAllBytes(failedFile.toPath()), StandardCharsets.UTF_8);
+      FileUtils.deleteQuietly(failedFile);
+      throw new IllegalStateException("Synchronization operation error, import of drop " + dropFile.getName() + " failed in target server '" + targetServer.getName() + "': " + error);
+    }
+    FileUtils.deleteQuietly(doneFile);
+  }
+}
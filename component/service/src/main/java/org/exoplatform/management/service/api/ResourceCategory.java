@@ -20,13 +20,57 @@ package org.exoplatform.management.service.api;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * User: Thomas Delhoménie.
  */
 public class ResourceCategory implements Comparable<ResourceCategory> {
+
+  /**
+   * Import dependencies between categories: a category identified by a path
+   * prefix has to be imported after the categories identified by the listed
+   * path prefixes. Categories with no dependency between them can be
+   * synchronized concurrently.
+   */
+  private static final Map<String, String[]> DEPENDENCIES = new LinkedHashMap<String, String[]>();
+  static {
+    // JCR NodeType and Namespaces has to be imported at first place
+    DEPENDENCIES.put(StagingService.ECM_NODETYPE_PATH, new String[0]);
+    // SCRIPTS has to be imported before action script
+    DEPENDENCIES.put(StagingService.ECM_SCRIPT_PATH, new String[] { StagingService.ECM_NODETYPE_PATH });
+    DEPENDENCIES.put(StagingService.ECM_QUERY_PATH, new String[] { StagingService.ECM_NODETYPE_PATH });
+    DEPENDENCIES.put(StagingService.ECM_TAXONOMY_PATH, new String[] { StagingService.ECM_NODETYPE_PATH });
+    DEPENDENCIES.put(StagingService.ECM_TEMPLATES_DOCUMENT_TYPE_PATH, new String[] { StagingService.ECM_NODETYPE_PATH });
+    DEPENDENCIES.put(StagingService.ECM_TEMPLATES_METADATA_PATH, new String[] { StagingService.ECM_NODETYPE_PATH });
+    DEPENDENCIES.put(StagingService.ECM_TEMPLATES_APPLICATION_CLV_PATH, new String[] { StagingService.ECM_NODETYPE_PATH });
+    // View templates has to be imported before View Configuration
+    DEPENDENCIES.put(StagingService.ECM_VIEW_TEMPLATES_PATH, new String[] { StagingService.ECM_NODETYPE_PATH });
+    // View templates Configuration has to be imported before Drives
+    // configuration
+    DEPENDENCIES.put(StagingService.ECM_VIEW_CONFIGURATION_PATH, new String[] { StagingService.ECM_VIEW_TEMPLATES_PATH });
+    DEPENDENCIES.put(StagingService.ECM_DRIVE_PATH, new String[] { StagingService.ECM_VIEW_CONFIGURATION_PATH });
+    // Gadgets has to be imported before sites
+    DEPENDENCIES.put(StagingService.GADGET_PATH, new String[] { StagingService.ECM_NODETYPE_PATH });
+    DEPENDENCIES.put(StagingService.REGISTRY_PATH, new String[] { StagingService.GADGET_PATH });
+    DEPENDENCIES.put(StagingService.SITES_PARENT_PATH, new String[] { StagingService.GADGET_PATH, StagingService.REGISTRY_PATH });
+    // Sites contents reference scripts (actions) and live under sites
+    DEPENDENCIES.put(StagingService.CONTENT_SITES_PATH, new String[] { StagingService.ECM_SCRIPT_PATH, StagingService.ECM_TEMPLATES_DOCUMENT_TYPE_PATH, StagingService.SITES_PARENT_PATH });
+    // Users memberships reference groups and membership types
+    DEPENDENCIES.put(StagingService.GROUPS_PATH, new String[0]);
+    DEPENDENCIES.put(StagingService.ROLE_PATH, new String[0]);
+    DEPENDENCIES.put(StagingService.USERS_PATH, new String[] { StagingService.GROUPS_PATH, StagingService.ROLE_PATH });
+    // Spaces reference users and groups, spaces applications data reference
+    // spaces
+    DEPENDENCIES.put(StagingService.SOCIAL_PARENT_PATH, new String[] { StagingService.USERS_PATH, StagingService.SITES_PARENT_PATH });
+    DEPENDENCIES.put(StagingService.WIKIS_PARENT_PATH, new String[] { StagingService.SOCIAL_PARENT_PATH });
+    DEPENDENCIES.put(StagingService.FORUMS_PARENT_PATH, new String[] { StagingService.SOCIAL_PARENT_PATH });
+    DEPENDENCIES.put(StagingService.CALENDARS_PARENT_PATH, new String[] { StagingService.SOCIAL_PARENT_PATH });
+  }
   
   /** The label. */
   private String label;
@@ -242,6 +286,61 @@ public class ResourceCategory implements Comparable<ResourceCategory> {
     return 100;
   }
 
+  /**
+   * Gets the paths of categories that have to be imported before the
+   * category identified by the given path, including indirect dependencies.
+   *
+   * @param path the category path
+   * @return the paths of categories this one depends on
+   */
+  public static Set<String> getDependencies(String path) {
+    Set<String> dependencies = new LinkedHashSet<String>();
+    addDependencies(path, dependencies);
+    return dependencies;
+  }
+
+  /**
+   * Checks if this category has to be imported after the given one.
+   *
+   * @param category the category
+   * @return true, if this category depends on the given one
+   */
+  public boolean dependsOn(ResourceCategory category) {
+    if (category == null || category == this) {
+      return false;
+    }
+    for (String dependency : getDependencies(path)) {
+      if (category.getPath().startsWith(dependency) || dependency.startsWith(category.getPath() + "/")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds recursively the dependencies of the category identified by a path.
+   *
+   * @param path the category path
+   * @param dependencies the dependencies already found
+   */
+  private static void addDependencies(String path, Set<String> dependencies) {
+    String[] directDependencies = null;
+    for (Map.Entry<String, String[]> dependencyEntry : DEPENDENCIES.entrySet()) {
+      if (path.equals(dependencyEntry.getKey()) || path.startsWith(dependencyEntry.getKey() + "/")) {
+        directDependencies = dependencyEntry.getValue();
+        break;
+      }
+    }
+    if (directDependencies == null) {
+      return;
+    }
+    for (String dependency : directDependencies) {
+      if (dependencies.add(dependency)) {
+        addDependencies(dependency, dependencies);
+      }
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
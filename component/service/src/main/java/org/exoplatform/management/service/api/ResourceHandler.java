@@ -18,9 +18,11 @@
  */
 package org.exoplatform.management.service.api;
 
+import org.exoplatform.management.common.ExportEstimation;
+
+import java.io.File;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipOutputStream;
 
 /**
  * The Interface ResourceHandler.
@@ -51,7 +53,7 @@ public interface ResourceHandler {
    * 
    * @param list
    *          : List of resources to export
-   * @param exportFileOS
+   * @param exportArchive
    *          : Write in this zip file the entries
    * @param exportOptions
    *          export options
@@ -59,7 +61,7 @@ public interface ResourceHandler {
    * @throws Exception
    *           if an error occurs
    */
-  public void exportResourcesInFilter(List<Resource> list, ZipOutputStream exportFileOS, Map<String, String> exportOptions) throws Exception;
+  public void exportResourcesInFilter(List<Resource> list, ZipArchiveMerger exportArchive, Map<String, String> exportOptions) throws Exception;
 
   /**
    * Synchronise selected resources as filter with host identified by host and
@@ -78,7 +80,7 @@ public interface ResourceHandler {
    * 
    * @param list
    *          : List of resources to export
-   * @param exportFileOS
+   * @param exportArchive
    *          : Write in this zip file the entries
    * @param exportOptions
    *          export options
@@ -86,5 +88,40 @@ public interface ResourceHandler {
    * @throws Exception
    *           if an error occurs
    */
-  public void export(List<Resource> list, ZipOutputStream exportFileOS, Map<String, String> exportOptions) throws Exception;
+  public void export(List<Resource> list, ZipArchiveMerger exportArchive, Map<String, String> exportOptions) throws Exception;
+
+  /**
+   * Export selected resources in the files that
+   * {@link #synchronize(List, Map, Map, TargetServer)} would send, so that
+   * they can be sent to several target servers.
+   *
+   * @param resourcesPaths the resources paths
+   * @param exportOptions the export options
+   * @return the exported files, to be released by the caller with
+   *         {@link org.exoplatform.management.common.SpoolManager#release(File)}
+   * @throws Exception the exception
+   */
+  public List<File> exportForSynchronization(List<Resource> resourcesPaths, Map<String, String> exportOptions) throws Exception;
+
+  /**
+   * Send a file returned by {@link #exportForSynchronization(List, Map)} to
+   * a target server and import it.
+   *
+   * @param file the exported file
+   * @param importOptions the import options
+   * @param targetServer the target server
+   * @throws Exception the exception
+   */
+  public void sendExportedData(File file, Map<String, String> importOptions, TargetServer targetServer) throws Exception;
+
+  /**
+   * Estimates the entries and the size of the export of selected resources
+   * with selected options, without serializing any data. Resources whose
+   * managed component can't estimate its export are returned as unknown paths.
+   *
+   * @param resourcesPaths the resources paths
+   * @param exportOptions the export options
+   * @return the estimation
+   */
+  public ExportEstimation estimate(List<Resource> resourcesPaths, Map<String, String> exportOptions);
 }
\ No newline at end of file
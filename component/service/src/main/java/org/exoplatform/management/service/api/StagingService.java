@@ -18,6 +18,8 @@
  */
 package org.exoplatform.management.service.api;
 
+import org.exoplatform.management.common.ExportEstimation;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -136,14 +138,36 @@ public interface StagingService {
   public static final String BACKUP_PATH = "/backup";
 
   /**
-   * Export selected resources with selected options.
+   * Export selected resources with selected options. The returned file must be
+   * released with {@link org.exoplatform.management.common.SpoolManager#release(File)}
+   * once used.
    *
    * @param selectedResourceCategoriesWithExceptions the selected resource categories with exceptions
-   * @return the file
+   * @return the file, null if nothing was exported
    * @throws Exception the exception
    */
   public File export(List<ResourceCategory> selectedResourceCategoriesWithExceptions) throws Exception;
 
+  /**
+   * Estimates the entries, the size and the duration of the export of selected
+   * resources with selected options, from counts and binary lengths: no data
+   * is serialized.
+   *
+   * @param selectedResourceCategories the selected resource categories
+   * @return the estimation
+   */
+  ExportEstimation estimate(List<ResourceCategory> selectedResourceCategories);
+
+  /**
+   * Checks that the estimated size of the export of selected resources doesn't
+   * exceed a limit.
+   *
+   * @param selectedResourceCategories the selected resource categories
+   * @param maxSize the max size in bytes, 0 or less for no limit
+   * @throws IllegalStateException if the estimated size exceeds the limit
+   */
+  void checkEstimatedSize(List<ResourceCategory> selectedResourceCategories, long maxSize) throws IllegalStateException;
+
   /**
    * Import resources.
    *
@@ -155,7 +179,19 @@ public interface StagingService {
   void importResource(String selectedResourcePath, InputStream inputStream, Map<String, List<String>> attributes) throws IOException;
 
   /**
-   * Returns the list of sub resources of the given path.
+   * Imports all the exports of a {@link BulkImportArchive}, in dependency
+   * order. Each export is streamed from the archive to its import operation,
+   * which handles it like a single uploaded export. Caches are cleared once,
+   * after the last import.
+   *
+   * @param archiveFile the bulk archive
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  void importBulkArchive(File archiveFile) throws IOException;
+
+  /**
+   * Returns the list of sub resources of the given path. The list may be
+   * cached for a short time, until data is imported in this path.
    *
    * @param path the path
    * @return list of resources
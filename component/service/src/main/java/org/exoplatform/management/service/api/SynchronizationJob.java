@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.api;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synchronization submitted to
+ * {@link SynchronizationService#submit(List, TargetServer)} and executed in
+ * background. The progress counters are updated by the resource handlers while
+ * the job runs, through the job bound to the running thread.
+ */
+public class SynchronizationJob {
+
+  /**
+   * The state of a synchronization job.
+   */
+  public static enum State {
+    /** Waiting for a free worker. */
+    QUEUED,
+    /** Being executed. */
+    RUNNING,
+    /** Finished successfully. */
+    DONE,
+    /** Finished with an error. */
+    FAILED,
+    /** Cancelled before its end. */
+    CANCELLED;
+
+    /**
+     * Checks if the state is final.
+     *
+     * @return true, if the job is finished
+     */
+    public boolean isFinal() {
+      return this == DONE || this == FAILED || this == CANCELLED;
+    }
+  }
+
+  /** The job bound to the current thread. */
+  private static final ThreadLocal<SynchronizationJob> CURRENT_JOB = new ThreadLocal<SynchronizationJob>();
+
+  /** The id. */
+  private final String id;
+
+  /** The target server. */
+  private final TargetServer targetServer;
+
+  /** The paths of the synchronized categories. */
+  private final List<String> categories;
+
+  /** The number of resource categories to import. */
+  private final int totalCategories;
+
+  /** The bytes exported. */
+  private final AtomicLong exportedBytes = new AtomicLong();
+
+  /** The bytes sent to the target server. */
+  private final AtomicLong sentBytes = new AtomicLong();
+
+  /** The resource categories imported by the target server. */
+  private final AtomicLong importedCategories = new AtomicLong();
+
+  /** The state. */
+  private volatile State state = State.QUEUED;
+
+  /** The error message. */
+  private volatile String error;
+
+  /** The submission time. */
+  private final long submittedTime = System.currentTimeMillis();
+
+  /** The start time. */
+  private volatile long startTime;
+
+  /** The end time. */
+  private volatile long endTime;
+
+  /**
+   * Instantiates a new synchronization job.
+   *
+   * @param resourceCategories the resource categories to synchronize
+   * @param targetServer the target server
+   */
+  public SynchronizationJob(List<ResourceCategory> resourceCategories, TargetServer targetServer) {
+    this.id = UUID.randomUUID().toString();
+    this.targetServer = targetServer;
+    List<String> categoryPaths = new ArrayList<String>();
+    for (ResourceCategory resourceCategory : resourceCategories) {
+      categoryPaths.add(resourceCategory.getPath());
+    }
+    this.categories = Collections.unmodifiableList(categoryPaths);
+    this.totalCategories = categoryPaths.size();
+  }
+
+  /**
+   * Gets the job bound to the current thread.
+   *
+   * @return the current job, null if the thread doesn't run a job
+   */
+  public static SynchronizationJob getCurrent() {
+    return CURRENT_JOB.get();
+  }
+
+  /**
+   * Binds a job to the current thread.
+   *
+   * @param job the job, null to unbind the current job
+   */
+  public static void setCurrent(SynchronizationJob job) {
+    if (job == null) {
+      CURRENT_JOB.remove();
+    } else {
+      CURRENT_JOB.set(job);
+    }
+  }
+
+  /**
+   * Checks if the job bound to the current thread is cancelled.
+   *
+   * @return true, if the current thread runs a cancelled job
+   */
+  public static boolean isCurrentCancelled() {
+    SynchronizationJob job = getCurrent();
+    return job != null && job.isCancelled();
+  }
+
+  /**
+   * Counts the bytes written in an export stream in the current job, if any.
+   *
+   * @param outputStream the output stream
+   * @return the counting output stream, or the stream itself
+   */
+  public static OutputStream countExportedBytes(OutputStream outputStream) {
+    SynchronizationJob job = getCurrent();
+    return job == null ? outputStream : new ProgressOutputStream(outputStream, job, job.exportedBytes);
+  }
+
+  /**
+   * Counts the bytes written in an upload stream in the current job, if any.
+   *
+   * @param outputStream the output stream
+   * @return the counting output stream, or the stream itself
+   */
+  public static OutputStream countSentBytes(OutputStream outputStream) {
+    SynchronizationJob job = getCurrent();
+    return job == null ? outputStream : new ProgressOutputStream(outputStream, job, job.sentBytes);
+  }
+
+  /**
+   * Counts resource categories imported by the target server in the current
+   * job, if any.
+   *
+   * @param count the number of imported categories
+   */
+  public static void categoriesImported(int count) {
+    SynchronizationJob job = getCurrent();
+    if (job != null) {
+      job.importedCategories.addAndGet(count);
+    }
+  }
+
+  /**
+   * Marks the job as running.
+   *
+   * @return true, if the job was queued, false if it was cancelled meanwhile
+   */
+  public synchronized boolean started() {
+    if (state != State.QUEUED) {
+      return false;
+    }
+    startTime = System.currentTimeMillis();
+    state = State.RUNNING;
+    return true;
+  }
+
+  /**
+   * Marks the job as finished, unless it is already finished.
+   *
+   * @param finalState the final state
+   * @param error the error message, null if the job is done
+   * @return true, if the state changed
+   */
+  public synchronized boolean finished(State finalState, String error) {
+    if (state.isFinal()) {
+      return false;
+    }
+    this.error = error;
+    this.endTime = System.currentTimeMillis();
+    this.state = finalState;
+    return true;
+  }
+
+  /**
+   * Checks if the job is cancelled.
+   *
+   * @return true, if cancelled
+   */
+  public boolean isCancelled() {
+    return state == State.CANCELLED;
+  }
+
+  /**
+   * Gets the id.
+   *
+   * @return the id
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Gets the target server.
+   *
+   * @return the target server
+   */
+  public TargetServer getTargetServer() {
+    return targetServer;
+  }
+
+  /**
+   * Gets the paths of the synchronized categories.
+   *
+   * @return the categories
+   */
+  public List<String> getCategories() {
+    return categories;
+  }
+
+  /**
+   * Gets the number of resource categories to import.
+   *
+   * @return the total categories
+   */
+  public int getTotalCategories() {
+    return totalCategories;
+  }
+
+  /**
+   * Gets the exported bytes.
+   *
+   * @return the exported bytes
+   */
+  public long getExportedBytes() {
+    return exportedBytes.get();
+  }
+
+  /**
+   * Gets the bytes sent to the target server.
+   *
+   * @return the sent bytes
+   */
+  public long getSentBytes() {
+    return sentBytes.get();
+  }
+
+  /**
+   * Gets the resource categories imported by the target server.
+   *
+   * @return the imported categories
+   */
+  public long getImportedCategories() {
+    return importedCategories.get();
+  }
+
+  /**
+   * Gets the state.
+   *
+   * @return the state
+   */
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * Gets the error message.
+   *
+   * @return the error, null if the job didn't fail
+   */
+  public String getError() {
+    return error;
+  }
+
+  /**
+   * Gets the submission time.
+   *
+   * @return the submitted time
+   */
+  public long getSubmittedTime() {
+    return submittedTime;
+  }
+
+  /**
+   * Gets the start time.
+   *
+   * @return the start time, 0 if the job is queued
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Gets the end time.
+   *
+   * @return the end time, 0 if the job isn't finished
+   */
+  public long getEndTime() {
+    return endTime;
+  }
+
+  /**
+   * Output stream counting the written bytes in a job counter. Writes fail
+   * once the job is cancelled, so that a cancelled job stops even when its
+   * thread is blocked in a non interruptible export or upload.
+   */
+  private static class ProgressOutputStream extends FilterOutputStream {
+
+    /** The job. */
+    private final SynchronizationJob job;
+
+    /** The counter. */
+    private final AtomicLong counter;
+
+    /**
+     * Instantiates a new progress output stream.
+     *
+     * @param outputStream the output stream
+     * @param job the job
+     * @param counter the counter
+     */
+    public ProgressOutputStream(OutputStream outputStream, SynchronizationJob job, AtomicLong counter) {
+      super(outputStream);
+      this.job = job;
+      this.counter = counter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) throws IOException {
+      checkCancelled();
+      out.write(b);
+      counter.incrementAndGet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      checkCancelled();
+      out.write(b, off, len);
+      counter.addAndGet(len);
+    }
+
+    /**
+     * Checks if the job is cancelled.
+     *
+     * @throws InterruptedIOException if the job is cancelled
+     */
+    private void checkCancelled() throws InterruptedIOException {
+      if (job.isCancelled()) {
+        throw new InterruptedIOException("Synchronization job " + job.getId() + " cancelled");
+      }
+    }
+  }
+}
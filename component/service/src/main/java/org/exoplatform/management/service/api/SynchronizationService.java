@@ -19,6 +19,7 @@
 package org.exoplatform.management.service.api;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * The Interface SynchronizationService.
@@ -55,6 +56,57 @@ public interface SynchronizationService {
    */
   void synchronize(List<ResourceCategory> selectedResourcesCategories, TargetServer targetServer) throws Exception;
 
+  /**
+   * Synchronize Managed Resources with several target servers. Each category
+   * is exported once, then sent to all the target servers concurrently: a slow
+   * or failing target server doesn't delay or stop the others.
+   *
+   * @param selectedResourcesCategories the selected resources categories
+   * @param targetServers the target servers
+   * @return the errors by target server, target servers that are not in the
+   *         map are synchronized
+   * @throws Exception if the synchronization can't start
+   */
+  Map<TargetServer, Exception> synchronize(List<ResourceCategory> selectedResourcesCategories, List<TargetServer> targetServers) throws Exception;
+
+  /**
+   * Submits the synchronization of Managed Resources to the bounded pool of
+   * synchronization jobs, and returns immediately.
+   *
+   * @param selectedResourcesCategories the selected resources categories
+   * @param targetServer the target server
+   * @return the submitted job, to poll its progress
+   * @throws Exception if a category has no handler or the queue of jobs is
+   *           full
+   */
+  SynchronizationJob submit(List<ResourceCategory> selectedResourcesCategories, TargetServer targetServer) throws Exception;
+
+  /**
+   * Gets a synchronization job. Finished jobs are kept for a retention delay.
+   *
+   * @param jobId the job id
+   * @return the job, null if it doesn't exist or is expired
+   */
+  SynchronizationJob getJob(String jobId);
+
+  /**
+   * Gets the synchronization jobs, queued, running or finished during the
+   * retention delay.
+   *
+   * @return the jobs, in submission order
+   */
+  List<SynchronizationJob> getJobs();
+
+  /**
+   * Cancels a queued or running synchronization job. The resources already
+   * imported by the target server are not rolled back.
+   *
+   * @param jobId the job id
+   * @return true, if the job was cancelled, false if it doesn't exist or is
+   *         already finished
+   */
+  boolean cancel(String jobId);
+
   /**
    * Test Server connection.
    *
@@ -18,12 +18,20 @@
  */
 package org.exoplatform.management.service.api;
 
+import java.io.File;
+
 /**
  * Target server of a synchronization.
  *
  * @author Thomas Delhoménie
  */
 public class TargetServer {
+
+  /**
+   * Host prefix of the target servers reached through a directory shared with
+   * them, for example "file:/mnt/staging/drop", instead of HTTP.
+   */
+  public static final String FILE_DROP_SCHEME = "file:";
   
   /** The id. */
   private String id;
@@ -225,6 +233,33 @@ public class TargetServer {
     this.ssl = ssl;
   }
 
+  /**
+   * Checks if the exports are dropped in a shared directory instead of being
+   * sent with HTTP.
+   *
+   * @return true, if the host is a {@link #FILE_DROP_SCHEME} URI
+   */
+  public boolean isFileDrop() {
+    return host != null && host.startsWith(FILE_DROP_SCHEME);
+  }
+
+  /**
+   * Gets the directory where exports are dropped.
+   *
+   * @return the drop directory, null if this target server is reached with
+   *         HTTP
+   */
+  public File getDropDirectory() {
+    if (!isFileDrop()) {
+      return null;
+    }
+    String path = host.substring(FILE_DROP_SCHEME.length());
+    if (path.startsWith("//")) {
+      path = path.substring(2);
+    }
+    return new File(path);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -0,0 +1,435 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.api;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.exoplatform.management.common.RateLimiter;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * HTTP client of a target server. Connections are authenticated with the
+ * target server credentials and use the configured timeouts. The number of
+ * concurrent connections to a target server is limited, and connections are
+ * fully consumed when released, so that the underlying sockets are kept alive
+ * and reused by the next calls.
+ *
+ * A connection opened with {@link #openConnection(String, String)} must
+ * always be released with {@link #release(HttpURLConnection)}. A request body
+ * is only sent once the stream returned by
+ * {@link #getOutputStream(HttpURLConnection)} is closed: callers close it
+ * after a complete write only, so that a failed or cancelled upload never
+ * completes a request with a truncated body.
+ */
+public class TargetServerClient {
+
+  /** The Constant LOG. */
+  private static final Log LOG = ExoLogger.getLogger(TargetServerClient.class);
+
+  /** System property used to set the connect timeout, in ms. */
+  public static final String CONNECT_TIMEOUT_PARAM = "exo.staging.http.connectTimeout";
+
+  /**
+   * System property used to set the read timeout, in ms. It has to be long
+   * enough for the target server to import the synchronized data.
+   */
+  public static final String READ_TIMEOUT_PARAM = "exo.staging.http.readTimeout";
+
+  /** System property used to set the maximum concurrent connections per target server. */
+  public static final String MAX_CONNECTIONS_PARAM = "exo.staging.http.maxConnections";
+
+  /** System property used to set the number of retries of idempotent calls. */
+  public static final String RETRIES_PARAM = "exo.staging.http.retries";
+
+  /**
+   * System property used to limit the upload bandwidth to each target server,
+   * in bytes per second (not limited by default). It can be set for a single
+   * target server by suffixing it with the host name, for example
+   * "exo.staging.http.uploadBandwidth.prod.example.com".
+   */
+  public static final String UPLOAD_BANDWIDTH_PARAM = "exo.staging.http.uploadBandwidth";
+
+  /** The default connect timeout: 30 seconds. */
+  private static final int DEFAULT_CONNECT_TIMEOUT = 30 * 1000;
+
+  /** The default read timeout: 1 hour. */
+  private static final int DEFAULT_READ_TIMEOUT = 60 * 60 * 1000;
+
+  /** The default maximum concurrent connections per target server. */
+  private static final int DEFAULT_MAX_CONNECTIONS = 4;
+
+  /** The default number of retries of idempotent calls. */
+  private static final int DEFAULT_RETRIES = 3;
+
+  /** The delay, in ms, before the first retry of an idempotent call. */
+  private static final long RETRY_DELAY = 1000L;
+
+  /** The clients by target server name, or by host and port if not named. */
+  private static final ConcurrentMap<String, TargetServerClient> CLIENTS = new ConcurrentHashMap<String, TargetServerClient>();
+
+  /** The base URL of the target server. */
+  private final String baseURL;
+
+  /** The basic authentication header. */
+  private final String basicAuth;
+
+  /** The connect timeout. */
+  private final int connectTimeout;
+
+  /** The read timeout. */
+  private final int readTimeout;
+
+  /** The retries. */
+  private final int retries;
+
+  /** The permits of concurrent connections. */
+  private final Semaphore connectionPermits;
+
+  /** The upload rate limiter, shared by all uploads, null if not limited. */
+  private final RateLimiter uploadRateLimiter;
+
+  /** The connections opened by this client and not released yet. */
+  private final Set<HttpURLConnection> openConnections = Collections.newSetFromMap(new ConcurrentHashMap<HttpURLConnection, Boolean>());
+
+  /** The connections whose request body was opened but not completely written. */
+  private final Set<HttpURLConnection> unfinishedRequests = Collections.newSetFromMap(new ConcurrentHashMap<HttpURLConnection, Boolean>());
+
+  /**
+   * Instantiates a new target server client.
+   *
+   * @param targetServer the target server
+   */
+  protected TargetServerClient(TargetServer targetServer) {
+    this.baseURL = getBaseURL(targetServer);
+    this.basicAuth = getBasicAuth(targetServer);
+    this.connectTimeout = Integer.getInteger(CONNECT_TIMEOUT_PARAM, DEFAULT_CONNECT_TIMEOUT);
+    this.readTimeout = Integer.getInteger(READ_TIMEOUT_PARAM, DEFAULT_READ_TIMEOUT);
+    this.retries = Integer.getInteger(RETRIES_PARAM, DEFAULT_RETRIES);
+    this.connectionPermits = new Semaphore(Integer.getInteger(MAX_CONNECTIONS_PARAM, DEFAULT_MAX_CONNECTIONS), true);
+    this.uploadRateLimiter = RateLimiter.fromProperty(UPLOAD_BANDWIDTH_PARAM + "." + targetServer.getHost(), Long.getLong(UPLOAD_BANDWIDTH_PARAM, 0L));
+  }
+
+  /**
+   * Gets the client of a target server. A cached client whose URL or
+   * credentials don't match the target server anymore is replaced.
+   *
+   * @param targetServer the target server
+   * @return the client
+   */
+  public static TargetServerClient getInstance(TargetServer targetServer) {
+    String key = getKey(targetServer);
+    while (true) {
+      TargetServerClient client = CLIENTS.get(key);
+      if (client != null && client.baseURL.equals(getBaseURL(targetServer)) && client.basicAuth.equals(getBasicAuth(targetServer))) {
+        return client;
+      }
+      TargetServerClient newClient = new TargetServerClient(targetServer);
+      if (client == null ? CLIENTS.putIfAbsent(key, newClient) == null : CLIENTS.replace(key, client, newClient)) {
+        return newClient;
+      }
+    }
+  }
+
+  /**
+   * Removes the cached client of a target server, so that the next client is
+   * created with the current server settings, timeouts and limits.
+   *
+   * @param targetServerName the name of the target server
+   */
+  public static void removeInstance(String targetServerName) {
+    if (targetServerName != null) {
+      CLIENTS.remove(targetServerName);
+    }
+  }
+
+  /**
+   * Gets the base URL of the target server.
+   *
+   * @return the base URL
+   */
+  public String getBaseURL() {
+    return baseURL;
+  }
+
+  /**
+   * Opens an authenticated connection, waiting if the maximum number of
+   * concurrent connections to the target server is reached.
+   *
+   * @param url the URL, or the URI relative to the target server
+   * @param method the HTTP method
+   * @return the HTTP connection
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public HttpURLConnection openConnection(String url, String method) throws IOException {
+    try {
+      connectionPermits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a connection to " + baseURL);
+    }
+    try {
+      HttpURLConnection conn = (HttpURLConnection) new URL(url.startsWith("/") ? baseURL + url : url).openConnection();
+      conn.setRequestMethod(method);
+      conn.setRequestProperty("Authorization", basicAuth);
+      conn.setConnectTimeout(connectTimeout);
+      conn.setReadTimeout(readTimeout);
+      conn.setUseCaches(false);
+      openConnections.add(conn);
+      return conn;
+    } catch (IOException e) {
+      connectionPermits.release();
+      throw e;
+    } catch (RuntimeException e) {
+      connectionPermits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the output stream of a connection, throttled by the upload bandwidth
+   * limit of the target server and counted in the current synchronization job.
+   * The request body is complete only once this stream has been closed without
+   * error: it must not be closed if the body could not be fully written.
+   *
+   * @param conn the HTTP connection
+   * @return the output stream
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public OutputStream getOutputStream(HttpURLConnection conn) throws IOException {
+    unfinishedRequests.add(conn);
+    return new RequestBodyOutputStream(conn, SynchronizationJob.countSentBytes(RateLimiter.throttle(uploadRateLimiter, conn.getOutputStream())));
+  }
+
+  /**
+   * Releases a connection: the response is read until its end, so the socket
+   * can be reused by the next connection. If the request body was not
+   * completely written, the connection is closed without reading the
+   * response, which would send the truncated body. The permit of the
+   * connection is released only if it was opened by this client: the client
+   * of a target server may have been replaced meanwhile.
+   *
+   * @param conn the HTTP connection
+   */
+  public void release(HttpURLConnection conn) {
+    if (conn == null) {
+      return;
+    }
+    boolean opened = openConnections.remove(conn);
+    try {
+      if (unfinishedRequests.remove(conn)) {
+        conn.disconnect();
+        return;
+      }
+      drain(conn.getInputStream());
+    } catch (IOException e) {
+      try {
+        InputStream errorStream = conn.getErrorStream();
+        if (errorStream == null) {
+          conn.disconnect();
+        } else {
+          drain(errorStream);
+        }
+      } catch (IOException e1) {
+        conn.disconnect();
+      }
+    } finally {
+      if (opened) {
+        connectionPermits.release();
+      }
+    }
+  }
+
+  /**
+   * Executes an idempotent GET request, retried with an increasing delay if
+   * it fails with an I/O error or a server error.
+   *
+   * @param url the URL, or the URI relative to the target server
+   * @return the response body
+   * @throws IOException Signals that an I/O exception has occurred, or that
+   *           the response code isn't 200
+   */
+  public String get(String url) throws IOException {
+    int attempt = 0;
+    while (true) {
+      HttpURLConnection conn = openConnection(url, "GET");
+      try {
+        int responseCode = conn.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_OK) {
+          return IOUtils.toString(conn.getInputStream(), StandardCharsets.UTF_8);
+        }
+        if (responseCode < HttpURLConnection.HTTP_INTERNAL_ERROR || attempt >= retries) {
+          throw new HttpResponseException(responseCode);
+        }
+        LOG.warn("HTTP error code " + responseCode + " from " + baseURL + ", retry " + (attempt + 1) + "/" + retries);
+      } catch (HttpResponseException e) {
+        throw e;
+      } catch (IOException e) {
+        if (attempt >= retries) {
+          throw e;
+        }
+        LOG.warn("Error while requesting " + baseURL + ", retry " + (attempt + 1) + "/" + retries + ": " + e.getMessage());
+      } finally {
+        release(conn);
+      }
+      attempt++;
+      try {
+        Thread.sleep(RETRY_DELAY << (attempt - 1));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while retrying request to " + baseURL);
+      }
+    }
+  }
+
+  /**
+   * Reads and closes a stream.
+   *
+   * @param inputStream the input stream
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void drain(InputStream inputStream) throws IOException {
+    if (inputStream == null) {
+      return;
+    }
+    try {
+      byte[] buffer = new byte[8 * 1024];
+      while (inputStream.read(buffer) > 0) {
+        // Consume the response to keep the connection alive
+      }
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Gets the key of the client of a target server: its name, or its host and
+   * port if it isn't a registered server.
+   *
+   * @param targetServer the target server
+   * @return the key
+   */
+  private static String getKey(TargetServer targetServer) {
+    return targetServer.getName() != null ? targetServer.getName() : targetServer.getHost() + ":" + targetServer.getPort();
+  }
+
+  /**
+   * Gets the base URL of a target server.
+   *
+   * @param targetServer the target server
+   * @return the base URL
+   */
+  private static String getBaseURL(TargetServer targetServer) {
+    return "http" + (targetServer.isSsl() ? "s" : "") + "://" + targetServer.getHost() + ":" + targetServer.getPort();
+  }
+
+  /**
+   * Gets the basic authentication header of a target server.
+   *
+   * @param targetServer the target server
+   * @return the basic authentication header
+   */
+  private static String getBasicAuth(TargetServer targetServer) {
+    String passString = targetServer.getUsername() + ":" + targetServer.getPassword();
+    return "Basic " + new String(Base64.encodeBase64(passString.getBytes()));
+  }
+
+  /**
+   * Output stream of a request body, which marks the request as finished when
+   * it is closed without error.
+   */
+  private class RequestBodyOutputStream extends FilterOutputStream {
+
+    /** The HTTP connection. */
+    private final HttpURLConnection conn;
+
+    /**
+     * Instantiates a new request body output stream.
+     *
+     * @param conn the HTTP connection
+     * @param outputStream the output stream of the connection
+     */
+    public RequestBodyOutputStream(HttpURLConnection conn, OutputStream outputStream) {
+      super(outputStream);
+      this.conn = conn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+      out.close();
+      unfinishedRequests.remove(conn);
+    }
+  }
+
+  /**
+   * Signals that a target server answered with an unexpected HTTP code.
+   */
+  public static class HttpResponseException extends IOException {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
+    /** The response code. */
+    private final int responseCode;
+
+    /**
+     * Instantiates a new HTTP response exception.
+     *
+     * @param responseCode the response code
+     */
+    public HttpResponseException(int responseCode) {
+      super("HTTP error code from target server : " + responseCode);
+      this.responseCode = responseCode;
+    }
+
+    /**
+     * Gets the response code.
+     *
+     * @return the response code
+     */
+    public int getResponseCode() {
+      return responseCode;
+    }
+  }
+}
@@ -18,21 +18,38 @@
  */
 package org.exoplatform.management.service.api;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.IOUtils;
 import org.exoplatform.container.xml.Configuration;
 import org.exoplatform.container.xml.ExternalComponentPlugins;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
+import org.gatein.management.api.operation.model.ExportTask;
 import org.jibx.runtime.BindingDirectory;
 import org.jibx.runtime.IBindingFactory;
 import org.jibx.runtime.IMarshallingContext;
 import org.jibx.runtime.impl.UnmarshallingContext;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -43,6 +60,12 @@ public class Utils {
   
   /** The log. */
   private static Log log = ExoLogger.getLogger(Utils.class);
+
+  /**
+   * Name of the entry listing, in a partial archive, all the entries of the
+   * original archive with their checksum.
+   */
+  public static final String ENTRIES_MANIFEST_NAME = ".staging-manifest";
   
   /** The Constant CONFIGURATION_FILE_XSD. */
   private static final String CONFIGURATION_FILE_XSD = "<configuration " + "\r\n   xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
@@ -132,13 +155,39 @@ public class Utils {
         entryName = entryName.substring(1);
       }
       zos.putNextEntry(new ZipEntry(entryName));
-      zos.write(IOUtils.toByteArray(inputStream));
+      // Streamed, entries may be larger than a byte array
+      IOUtils.copyLarge(inputStream, zos);
       zos.closeEntry();
     } catch (Exception e) {
       log.error("Error while writing file " + entryName, e);
     }
   }
 
+  /**
+   * Write the entries of export tasks in a zip. Each entry is compressed with
+   * the level chosen by the compression policy from its name and first
+   * bytes.
+   *
+   * @param exportTasks the export tasks
+   * @param outputStream the output stream, not closed by this method
+   * @param compressionPolicy the compression policy
+   * @param categoryPath the path of the exported category
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void writeExportTasks(List<ExportTask> exportTasks, OutputStream outputStream, ZipCompressionPolicy compressionPolicy, String categoryPath) throws IOException {
+    ZipOutputStream zos = new ZipOutputStream(outputStream);
+    for (ExportTask exportTask : exportTasks) {
+      String entryName = exportTask.getEntry();
+      zos.putNextEntry(new ZipEntry(entryName));
+      CompressionSelectingOutputStream entryOutputStream = new CompressionSelectingOutputStream(zos, compressionPolicy, categoryPath, entryName);
+      exportTask.export(entryOutputStream);
+      entryOutputStream.finish();
+      zos.closeEntry();
+    }
+    zos.finish();
+    zos.flush();
+  }
+
   /**
    * To XML.
    *
@@ -184,25 +233,271 @@ public class Utils {
    * @throws IOException Signals that an I/O exception has occurred.
    */
   public static void copyZipEnries(ZipInputStream zin, ZipOutputStream zos, String rootPathInTarget) throws IOException {
-    if (rootPathInTarget == null) {
-      rootPathInTarget = "";
-    }
     ZipEntry entry;
     while ((entry = zin.getNextEntry()) != null) {
-      if (entry.isDirectory() || !entry.getName().contains(".")) {
+      String targetEntryName = getTargetEntryName(entry.getName(), rootPathInTarget);
+      if (targetEntryName == null) {
         continue;
       }
-      String targetEntryName = rootPathInTarget + ("/") + entry.getName();
-      while (targetEntryName.contains("//")) {
-        targetEntryName = targetEntryName.replace("//", "/");
-      }
-      if (targetEntryName.startsWith("/")) {
-        targetEntryName = targetEntryName.substring(1);
-      }
       zos.putNextEntry(new ZipEntry(targetEntryName));
       IOUtils.copy(zin, zos);
     }
     zos.flush();
   }
 
+  /**
+   * Copy zip entries of a zip file without decompressing them.
+   *
+   * @param zipFile the zip file
+   * @param exportArchive the target archive
+   * @param rootPathInTarget the root path in target
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void copyZipEnries(File zipFile, ZipArchiveMerger exportArchive, String rootPathInTarget) throws IOException {
+    exportArchive.addArchive(zipFile, rootPathInTarget);
+  }
+
+  /**
+   * Gets the name of an entry once copied under a root path. Directories and
+   * entries without extension are not copied.
+   *
+   * @param entryName the entry name
+   * @param rootPathInTarget the root path in target
+   * @return the target entry name, null if the entry is not copied
+   */
+  static String getTargetEntryName(String entryName, String rootPathInTarget) {
+    if (entryName.endsWith("/") || !entryName.contains(".")) {
+      return null;
+    }
+    if (rootPathInTarget == null) {
+      rootPathInTarget = "";
+    }
+    String targetEntryName = rootPathInTarget + ("/") + entryName;
+    while (targetEntryName.contains("//")) {
+      targetEntryName = targetEntryName.replace("//", "/");
+    }
+    if (targetEntryName.startsWith("/")) {
+      targetEntryName = targetEntryName.substring(1);
+    }
+    return targetEntryName;
+  }
+
+  /**
+   * Compute the SHA-1 checksum of a file.
+   *
+   * @param file the file
+   * @return the hexadecimal representation of the checksum
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static String computeChecksum(File file) throws IOException {
+    InputStream inputStream = new FileInputStream(file);
+    try {
+      return computeChecksum(inputStream);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Compute the SHA-1 checksum of a stream. The stream is read until its end
+   * but not closed.
+   *
+   * @param inputStream the input stream
+   * @return the hexadecimal representation of the checksum
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static String computeChecksum(InputStream inputStream) throws IOException {
+    MessageDigest messageDigest;
+    try {
+      messageDigest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-1 algorithm is not available", e);
+    }
+    byte[] buffer = new byte[64 * 1024];
+    int length;
+    while ((length = inputStream.read(buffer)) > 0) {
+      messageDigest.update(buffer, 0, length);
+    }
+    return new String(Hex.encodeHex(messageDigest.digest()));
+  }
+
+  /**
+   * Compute the manifest of a zip file: the SHA-1 checksum of the uncompressed
+   * content of each entry, in the order of the entries.
+   *
+   * @param zipFile the zip file
+   * @return the checksums by entry name
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static Map<String, String> computeEntriesManifest(File zipFile) throws IOException {
+    Map<String, String> manifest = new LinkedHashMap<String, String>();
+    ZipFile zip = new ZipFile(zipFile);
+    try {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        InputStream inputStream = zip.getInputStream(entry);
+        try {
+          manifest.put(entry.getName(), computeChecksum(inputStream));
+        } finally {
+          inputStream.close();
+        }
+      }
+    } finally {
+      zip.close();
+    }
+    return manifest;
+  }
+
+  /**
+   * Write a manifest of entries, one "checksum TAB entry name" line per entry.
+   * The stream is flushed but not closed.
+   *
+   * @param manifest the checksums by entry name
+   * @param outputStream the output stream
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void writeEntriesManifest(Map<String, String> manifest, OutputStream outputStream) throws IOException {
+    Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+    for (Map.Entry<String, String> entry : manifest.entrySet()) {
+      writer.write(entry.getValue() + "\t" + entry.getKey() + "\n");
+    }
+    writer.flush();
+  }
+
+  /**
+   * Read a manifest of entries written by
+   * {@link #writeEntriesManifest(Map, OutputStream)}. The stream is not closed.
+   *
+   * @param inputStream the input stream
+   * @return the checksums by entry name
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static Map<String, String> readEntriesManifest(InputStream inputStream) throws IOException {
+    Map<String, String> manifest = new LinkedHashMap<String, String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      int separatorIndex = line.indexOf('\t');
+      if (separatorIndex > 0) {
+        manifest.put(line.substring(separatorIndex + 1), line.substring(0, separatorIndex));
+      }
+    }
+    return manifest;
+  }
+
+  /**
+   * Buffers the first bytes of a zip entry, then sets the deflate level
+   * chosen by the compression policy before writing them. Closing this
+   * stream doesn't close the zip.
+   */
+  private static class CompressionSelectingOutputStream extends OutputStream {
+
+    /** The zip output stream. */
+    private final ZipOutputStream zos;
+
+    /** The compression policy. */
+    private final ZipCompressionPolicy compressionPolicy;
+
+    /** The category path. */
+    private final String categoryPath;
+
+    /** The entry name. */
+    private final String entryName;
+
+    /** The sample. */
+    private final byte[] sample;
+
+    /** The sample length. */
+    private int sampleLength = 0;
+
+    /** The level selected. */
+    private boolean levelSelected = false;
+
+    /**
+     * Instantiates a new compression selecting output stream.
+     *
+     * @param zos the zip output stream, positioned on the entry
+     * @param compressionPolicy the compression policy
+     * @param categoryPath the category path
+     * @param entryName the entry name
+     */
+    public CompressionSelectingOutputStream(ZipOutputStream zos, ZipCompressionPolicy compressionPolicy, String categoryPath, String entryName) {
+      this.zos = zos;
+      this.compressionPolicy = compressionPolicy;
+      this.categoryPath = categoryPath;
+      this.entryName = entryName;
+      this.sample = new byte[Math.max(0, compressionPolicy.getSampleSize())];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (!levelSelected) {
+        int sampledLength = Math.min(length, sample.length - sampleLength);
+        System.arraycopy(bytes, offset, sample, sampleLength, sampledLength);
+        sampleLength += sampledLength;
+        offset += sampledLength;
+        length -= sampledLength;
+        if (sampleLength == sample.length) {
+          selectLevel();
+        }
+      }
+      if (length > 0) {
+        zos.write(bytes, offset, length);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+      if (levelSelected) {
+        zos.flush();
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+      finish();
+    }
+
+    /**
+     * Writes the sample if the entry is smaller than the sample size.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void finish() throws IOException {
+      if (!levelSelected) {
+        selectLevel();
+      }
+    }
+
+    /**
+     * Sets the deflate level of the entry and writes the sample.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void selectLevel() throws IOException {
+      levelSelected = true;
+      zos.setLevel(compressionPolicy.getLevel(categoryPath, entryName, sample, sampleLength));
+      if (sampleLength > 0) {
+        zos.write(sample, 0, sampleLength);
+      }
+    }
+  }
 }
@@ -0,0 +1,590 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.api;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipException;
+
+/**
+ * Merges zip archives into a single one without decompressing entries: local
+ * file headers are rewritten and compressed data is copied verbatim, then a
+ * new central directory is written when the merger is closed. Zip64 archives
+ * are supported, Zip64 records are written only when needed.
+ */
+public class ZipArchiveMerger implements Closeable {
+
+  /** The Constant LOCAL_HEADER_SIGNATURE. */
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+  /** The Constant CENTRAL_HEADER_SIGNATURE. */
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+  /** The Constant END_SIGNATURE. */
+  private static final int END_SIGNATURE = 0x06054b50;
+
+  /** The Constant ZIP64_END_SIGNATURE. */
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+
+  /** The Constant ZIP64_LOCATOR_SIGNATURE. */
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+  /** The Constant ZIP64_EXTRA_ID. */
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+
+  /** The Constant LOCAL_HEADER_SIZE. */
+  private static final int LOCAL_HEADER_SIZE = 30;
+
+  /** The Constant CENTRAL_HEADER_SIZE. */
+  private static final int CENTRAL_HEADER_SIZE = 46;
+
+  /** The Constant END_SIZE. */
+  private static final int END_SIZE = 22;
+
+  /** The Constant ZIP64_END_SIZE. */
+  private static final int ZIP64_END_SIZE = 56;
+
+  /** The Constant ZIP64_LOCATOR_SIZE. */
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+
+  /** The Constant ZIP64_MAGIC. */
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+  /** The Constant ZIP64_MAGIC_COUNT. */
+  private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+  /** Flag: sizes and CRC are written in a data descriptor after the data. */
+  private static final int DATA_DESCRIPTOR_FLAG = 0x08;
+
+  /** Flag: names are encoded in UTF-8. */
+  private static final int UTF8_FLAG = 0x800;
+
+  /** The Constant VERSION_DEFAULT. */
+  private static final int VERSION_DEFAULT = 20;
+
+  /** The Constant VERSION_ZIP64. */
+  private static final int VERSION_ZIP64 = 45;
+
+  /** The Constant BUFFER_SIZE. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The output stream. */
+  private final OutputStream outputStream;
+
+  /** The entries written, used to write the central directory. */
+  private final List<Entry> entries = new ArrayList<Entry>();
+
+  /** The names of entries written, used to detect duplicates. */
+  private final Set<String> entryNames = new HashSet<String>();
+
+  /** The copy buffer. */
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+  /** The number of bytes written. */
+  private long written = 0;
+
+  /** The closed. */
+  private boolean closed = false;
+
+  /**
+   * Instantiates a new zip archive merger. The output stream is closed when
+   * the merger is closed.
+   *
+   * @param outputStream the output stream
+   */
+  public ZipArchiveMerger(OutputStream outputStream) {
+    this.outputStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+  }
+
+  /**
+   * Copies all entries of a zip archive.
+   *
+   * @param archive the archive file
+   * @throws IOException Signals that an I/O exception has occurred, or that
+   *           an entry with the same name was already added.
+   */
+  public void addArchive(File archive) throws IOException {
+    addArchive(archive, false, null);
+  }
+
+  /**
+   * Copies the entries of a zip archive under a root path. Entry names are
+   * normalized the same way as
+   * {@link Utils#copyZipEnries(java.util.zip.ZipInputStream, java.util.zip.ZipOutputStream, String)}
+   * does: directories and entries without extension are ignored, '//' are
+   * collapsed and the leading '/' is removed.
+   *
+   * @param archive the archive file
+   * @param rootPathInTarget the root path in target
+   * @throws IOException Signals that an I/O exception has occurred, or that
+   *           an entry with the same name was already added.
+   */
+  public void addArchive(File archive, String rootPathInTarget) throws IOException {
+    addArchive(archive, true, rootPathInTarget);
+  }
+
+  /**
+   * Copies the entries of a zip archive.
+   *
+   * @param archive the archive file
+   * @param renameEntries if entry names have to be normalized
+   * @param rootPathInTarget the root path in target
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void addArchive(File archive, boolean renameEntries, String rootPathInTarget) throws IOException {
+    if (closed) {
+      throw new IOException("Zip archive merger is closed");
+    }
+    RandomAccessFile archiveFile = new RandomAccessFile(archive, "r");
+    try {
+      for (Entry entry : readCentralDirectory(archiveFile)) {
+        if (renameEntries) {
+          entry.name = Utils.getTargetEntryName(entry.name, rootPathInTarget);
+          if (entry.name == null) {
+            continue;
+          }
+        }
+        copyEntry(archiveFile, entry);
+      }
+    } finally {
+      archiveFile.close();
+    }
+  }
+
+  /**
+   * Gets the number of entries written.
+   *
+   * @return the entries count
+   */
+  public int getEntriesCount() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the number of bytes written so far.
+   *
+   * @return the size
+   */
+  public long getSize() {
+    return written;
+  }
+
+  /**
+   * Writes the central directory and closes the underlying stream.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      long centralDirectoryOffset = written;
+      for (Entry entry : entries) {
+        writeCentralHeader(entry);
+      }
+      writeEnd(centralDirectoryOffset, written - centralDirectoryOffset);
+      outputStream.flush();
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  /**
+   * Copies the compressed data of an entry and writes a new local header
+   * without data descriptor.
+   *
+   * @param archiveFile the archive file
+   * @param entry the entry, as read from the source central directory
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void copyEntry(RandomAccessFile archiveFile, Entry entry) throws IOException {
+    if (!entryNames.add(entry.name)) {
+      throw new ZipException("duplicate entry: " + entry.name);
+    }
+    ByteBuffer localHeader = read(archiveFile, entry.offset, LOCAL_HEADER_SIZE);
+    if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid local header of entry: " + entry.name);
+    }
+    long dataOffset = entry.offset + LOCAL_HEADER_SIZE + getUnsignedShort(localHeader, 26) + getUnsignedShort(localHeader, 28);
+
+    entry.offset = written;
+    writeLocalHeader(entry);
+
+    archiveFile.seek(dataOffset);
+    long remaining = entry.compressedSize;
+    while (remaining > 0) {
+      int length = archiveFile.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+      if (length < 0) {
+        throw new ZipException("Unexpected end of data of entry: " + entry.name);
+      }
+      write(buffer, 0, length);
+      remaining -= length;
+    }
+    entries.add(entry);
+  }
+
+  /**
+   * Reads the central directory of an archive.
+   *
+   * @param archiveFile the archive file
+   * @return the entries
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private List<Entry> readCentralDirectory(RandomAccessFile archiveFile) throws IOException {
+    long endOffset = findEnd(archiveFile);
+    ByteBuffer end = read(archiveFile, endOffset, END_SIZE);
+    long entriesCount = getUnsignedShort(end, 10);
+    long centralDirectorySize = getUnsignedInt(end, 12);
+    long centralDirectoryOffset = getUnsignedInt(end, 16);
+
+    if (endOffset >= ZIP64_LOCATOR_SIZE) {
+      ByteBuffer locator = read(archiveFile, endOffset - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+      if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+        ByteBuffer zip64End = read(archiveFile, locator.getLong(8), ZIP64_END_SIZE);
+        if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+          throw new ZipException("Invalid zip64 end of central directory record");
+        }
+        entriesCount = zip64End.getLong(32);
+        centralDirectorySize = zip64End.getLong(40);
+        centralDirectoryOffset = zip64End.getLong(48);
+      }
+    }
+    if (centralDirectorySize > Integer.MAX_VALUE) {
+      throw new ZipException("Central directory too large: " + centralDirectorySize);
+    }
+
+    ByteBuffer centralDirectory = read(archiveFile, centralDirectoryOffset, (int) centralDirectorySize);
+    List<Entry> archiveEntries = new ArrayList<Entry>();
+    int position = 0;
+    for (long i = 0; i < entriesCount; i++) {
+      if (centralDirectory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+        throw new ZipException("Invalid central directory header");
+      }
+      Entry entry = new Entry();
+      entry.flags = (getUnsignedShort(centralDirectory, position + 8) & ~DATA_DESCRIPTOR_FLAG) | UTF8_FLAG;
+      entry.method = getUnsignedShort(centralDirectory, position + 10);
+      entry.time = centralDirectory.getInt(position + 12);
+      entry.crc = centralDirectory.getInt(position + 16);
+      entry.compressedSize = getUnsignedInt(centralDirectory, position + 20);
+      entry.size = getUnsignedInt(centralDirectory, position + 24);
+      int nameLength = getUnsignedShort(centralDirectory, position + 28);
+      int extraLength = getUnsignedShort(centralDirectory, position + 30);
+      int commentLength = getUnsignedShort(centralDirectory, position + 32);
+      entry.externalAttributes = centralDirectory.getInt(position + 38);
+      entry.offset = getUnsignedInt(centralDirectory, position + 42);
+
+      byte[] nameBytes = new byte[nameLength];
+      centralDirectory.position(position + CENTRAL_HEADER_SIZE);
+      centralDirectory.get(nameBytes);
+      entry.name = new String(nameBytes, StandardCharsets.UTF_8);
+
+      readZip64Extra(centralDirectory, position + CENTRAL_HEADER_SIZE + nameLength, extraLength, entry);
+
+      archiveEntries.add(entry);
+      position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+    return archiveEntries;
+  }
+
+  /**
+   * Reads the values of the zip64 extra field of a central directory header,
+   * if any.
+   *
+   * @param centralDirectory the central directory
+   * @param extraOffset the extra field offset
+   * @param extraLength the extra field length
+   * @param entry the entry
+   */
+  private void readZip64Extra(ByteBuffer centralDirectory, int extraOffset, int extraLength, Entry entry) {
+    int position = extraOffset;
+    while (position + 4 <= extraOffset + extraLength) {
+      int id = getUnsignedShort(centralDirectory, position);
+      int size = getUnsignedShort(centralDirectory, position + 2);
+      if (id == ZIP64_EXTRA_ID) {
+        int valuePosition = position + 4;
+        if (entry.size == ZIP64_MAGIC) {
+          entry.size = centralDirectory.getLong(valuePosition);
+          valuePosition += 8;
+        }
+        if (entry.compressedSize == ZIP64_MAGIC) {
+          entry.compressedSize = centralDirectory.getLong(valuePosition);
+          valuePosition += 8;
+        }
+        if (entry.offset == ZIP64_MAGIC) {
+          entry.offset = centralDirectory.getLong(valuePosition);
+        }
+        return;
+      }
+      position += 4 + size;
+    }
+  }
+
+  /**
+   * Finds the offset of the end of central directory record.
+   *
+   * @param archiveFile the archive file
+   * @return the offset
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private long findEnd(RandomAccessFile archiveFile) throws IOException {
+    long length = archiveFile.length();
+    if (length < END_SIZE) {
+      throw new ZipException("Not a zip archive");
+    }
+    // The record is followed by a comment of at most 65535 bytes
+    int searchLength = (int) Math.min(length, END_SIZE + 0xFFFF);
+    ByteBuffer tail = read(archiveFile, length - searchLength, searchLength);
+    for (int position = searchLength - END_SIZE; position >= 0; position--) {
+      if (tail.getInt(position) == END_SIGNATURE) {
+        return length - searchLength + position;
+      }
+    }
+    throw new ZipException("End of central directory record not found");
+  }
+
+  /**
+   * Writes a local file header.
+   *
+   * @param entry the entry
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writeLocalHeader(Entry entry) throws IOException {
+    byte[] nameBytes = entry.name.getBytes(StandardCharsets.UTF_8);
+    boolean zip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+    ByteBuffer header = allocate(LOCAL_HEADER_SIZE + nameBytes.length + (zip64 ? 20 : 0));
+    header.putInt(LOCAL_HEADER_SIGNATURE);
+    header.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT));
+    header.putShort((short) entry.flags);
+    header.putShort((short) entry.method);
+    header.putInt(entry.time);
+    header.putInt(entry.crc);
+    header.putInt((int) (zip64 ? ZIP64_MAGIC : entry.compressedSize));
+    header.putInt((int) (zip64 ? ZIP64_MAGIC : entry.size));
+    header.putShort((short) nameBytes.length);
+    header.putShort((short) (zip64 ? 20 : 0));
+    header.put(nameBytes);
+    if (zip64) {
+      header.putShort((short) ZIP64_EXTRA_ID);
+      header.putShort((short) 16);
+      header.putLong(entry.size);
+      header.putLong(entry.compressedSize);
+    }
+    write(header.array(), 0, header.position());
+  }
+
+  /**
+   * Writes a central directory header.
+   *
+   * @param entry the entry
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writeCentralHeader(Entry entry) throws IOException {
+    byte[] nameBytes = entry.name.getBytes(StandardCharsets.UTF_8);
+    boolean zip64Size = entry.size >= ZIP64_MAGIC;
+    boolean zip64CompressedSize = entry.compressedSize >= ZIP64_MAGIC;
+    boolean zip64Offset = entry.offset >= ZIP64_MAGIC;
+    int extraLength = (zip64Size ? 8 : 0) + (zip64CompressedSize ? 8 : 0) + (zip64Offset ? 8 : 0);
+    if (extraLength > 0) {
+      extraLength += 4;
+    }
+    int version = extraLength > 0 ? VERSION_ZIP64 : VERSION_DEFAULT;
+    ByteBuffer header = allocate(CENTRAL_HEADER_SIZE + nameBytes.length + extraLength);
+    header.putInt(CENTRAL_HEADER_SIGNATURE);
+    header.putShort((short) version);
+    header.putShort((short) version);
+    header.putShort((short) entry.flags);
+    header.putShort((short) entry.method);
+    header.putInt(entry.time);
+    header.putInt(entry.crc);
+    header.putInt((int) (zip64CompressedSize ? ZIP64_MAGIC : entry.compressedSize));
+    header.putInt((int) (zip64Size ? ZIP64_MAGIC : entry.size));
+    header.putShort((short) nameBytes.length);
+    header.putShort((short) extraLength);
+    // comment length, disk number start, internal attributes
+    header.putShort((short) 0);
+    header.putShort((short) 0);
+    header.putShort((short) 0);
+    header.putInt(entry.externalAttributes);
+    header.putInt((int) (zip64Offset ? ZIP64_MAGIC : entry.offset));
+    header.put(nameBytes);
+    if (extraLength > 0) {
+      header.putShort((short) ZIP64_EXTRA_ID);
+      header.putShort((short) (extraLength - 4));
+      if (zip64Size) {
+        header.putLong(entry.size);
+      }
+      if (zip64CompressedSize) {
+        header.putLong(entry.compressedSize);
+      }
+      if (zip64Offset) {
+        header.putLong(entry.offset);
+      }
+    }
+    write(header.array(), 0, header.position());
+  }
+
+  /**
+   * Writes the end of central directory record, preceded by zip64 records if
+   * needed.
+   *
+   * @param centralDirectoryOffset the central directory offset
+   * @param centralDirectorySize the central directory size
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writeEnd(long centralDirectoryOffset, long centralDirectorySize) throws IOException {
+    boolean zip64 = entries.size() >= ZIP64_MAGIC_COUNT || centralDirectoryOffset >= ZIP64_MAGIC || centralDirectorySize >= ZIP64_MAGIC;
+    if (zip64) {
+      long zip64EndOffset = written;
+      ByteBuffer zip64End = allocate(ZIP64_END_SIZE + ZIP64_LOCATOR_SIZE);
+      zip64End.putInt(ZIP64_END_SIGNATURE);
+      zip64End.putLong(ZIP64_END_SIZE - 12);
+      zip64End.putShort((short) VERSION_ZIP64);
+      zip64End.putShort((short) VERSION_ZIP64);
+      zip64End.putInt(0);
+      zip64End.putInt(0);
+      zip64End.putLong(entries.size());
+      zip64End.putLong(entries.size());
+      zip64End.putLong(centralDirectorySize);
+      zip64End.putLong(centralDirectoryOffset);
+      zip64End.putInt(ZIP64_LOCATOR_SIGNATURE);
+      zip64End.putInt(0);
+      zip64End.putLong(zip64EndOffset);
+      zip64End.putInt(1);
+      write(zip64End.array(), 0, zip64End.position());
+    }
+    ByteBuffer end = allocate(END_SIZE);
+    end.putInt(END_SIGNATURE);
+    end.putShort((short) 0);
+    end.putShort((short) 0);
+    end.putShort((short) Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+    end.putShort((short) Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+    end.putInt((int) Math.min(centralDirectorySize, ZIP64_MAGIC));
+    end.putInt((int) Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+    end.putShort((short) 0);
+    write(end.array(), 0, end.position());
+  }
+
+  /**
+   * Writes bytes to the output stream and counts them.
+   *
+   * @param bytes the bytes
+   * @param offset the offset
+   * @param length the length
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void write(byte[] bytes, int offset, int length) throws IOException {
+    outputStream.write(bytes, offset, length);
+    written += length;
+  }
+
+  /**
+   * Reads bytes of an archive.
+   *
+   * @param archiveFile the archive file
+   * @param offset the offset
+   * @param length the length
+   * @return the little endian buffer
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static ByteBuffer read(RandomAccessFile archiveFile, long offset, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    archiveFile.seek(offset);
+    archiveFile.readFully(bytes);
+    return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Allocates a little endian buffer.
+   *
+   * @param length the length
+   * @return the byte buffer
+   */
+  private static ByteBuffer allocate(int length) {
+    return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Gets an unsigned short.
+   *
+   * @param buffer the buffer
+   * @param position the position
+   * @return the value
+   */
+  private static int getUnsignedShort(ByteBuffer buffer, int position) {
+    return buffer.getShort(position) & 0xFFFF;
+  }
+
+  /**
+   * Gets an unsigned int.
+   *
+   * @param buffer the buffer
+   * @param position the position
+   * @return the value
+   */
+  private static long getUnsignedInt(ByteBuffer buffer, int position) {
+    return buffer.getInt(position) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * A zip entry, as stored in central directory.
+   */
+  private static class Entry {
+
+    /** The name. */
+    private String name;
+
+    /** The general purpose flags. */
+    private int flags;
+
+    /** The compression method. */
+    private int method;
+
+    /** The DOS time and date. */
+    private int time;
+
+    /** The crc. */
+    private int crc;
+
+    /** The compressed size. */
+    private long compressedSize;
+
+    /** The uncompressed size. */
+    private long size;
+
+    /** The external attributes. */
+    private int externalAttributes;
+
+    /** The local header offset. */
+    private long offset;
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.api;
+
+import java.util.zip.Deflater;
+
+/**
+ * Chooses how each entry of an exported archive is compressed.
+ */
+public interface ZipCompressionPolicy {
+
+  /** Level used to store an entry without compressing it. */
+  public static final int STORED = Deflater.NO_COMPRESSION;
+
+  /**
+   * Gets the number of bytes of an entry to read before choosing its
+   * compression level.
+   *
+   * @return the sample size
+   */
+  public int getSampleSize();
+
+  /**
+   * Gets the deflate level of an entry.
+   *
+   * @param categoryPath the path of the exported category
+   * @param entryName the entry name
+   * @param sample the first bytes of the entry
+   * @param sampleLength the number of bytes of the sample, lower than
+   *          {@link #getSampleSize()} if the entry is smaller
+   * @return {@link #STORED} or a deflate level from 1 to 9, or
+   *         {@link Deflater#DEFAULT_COMPRESSION}
+   */
+  public int getLevel(String categoryPath, String entryName, byte[] sample, int sampleLength);
+}
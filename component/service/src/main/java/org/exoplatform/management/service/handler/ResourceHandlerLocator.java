@@ -18,17 +18,15 @@
  */
 package org.exoplatform.management.service.handler;
 
-import org.apache.commons.lang.StringUtils;
 import org.exoplatform.management.service.api.ResourceHandler;
 import org.exoplatform.management.service.api.StagingService;
 import org.exoplatform.management.service.handler.common.ResourcesInFilterHandler;
 import org.exoplatform.management.service.handler.common.SimpleHandler;
+import org.exoplatform.management.service.handler.content.SiteContentsHandler;
 import org.exoplatform.management.service.handler.forum.ForumHandler;
 import org.exoplatform.management.service.handler.mop.MOPSiteHandler;
 import org.exoplatform.portal.mop.SiteType;
 
-import java.util.Arrays;
-
 /**
  * Service Locator for resources handlers, based on the resource category's path.
  *
@@ -87,12 +85,17 @@ public class ResourceHandlerLocator {
     registry.register(new SimpleHandler(StagingService.REGISTRY_PATH));
 
     // Sites JCR Content Handler
-    registry.register(new SimpleHandler(StagingService.CONTENT_SITES_PATH));
+    registry.register(new SiteContentsHandler());
 
     // MOP Handlers
     registry.register(new MOPSiteHandler(SiteType.PORTAL));
     registry.register(new MOPSiteHandler(SiteType.GROUP));
     registry.register(new MOPSiteHandler(SiteType.USER));
+
+    // MOP exported entries are named by site type
+    registry.registerAlias("/portal", StagingService.SITES_PORTAL_PATH);
+    registry.registerAlias("/group", StagingService.SITES_GROUP_PATH);
+    registry.registerAlias("/user", StagingService.SITES_USER_PATH);
   }
 
   /**
@@ -112,14 +115,17 @@ public class ResourceHandlerLocator {
    * @return the resource handler
    */
   public static ResourceHandler findResourceByPath(String path) {
-    String[] fileNameParts = path.split("/");
-    for (int i = fileNameParts.length; i > 0; i--) {
-      String tmpPath = StringUtils.join(Arrays.copyOfRange(fileNameParts, 0, i), "/");
-      ResourceHandler handler = getResourceHandler(tmpPath);
-      if (handler != null) {
-        return handler;
-      }
-    }
-    return null;
+    return registry.find(path);
+  }
+
+  /**
+   * Find the path of the resource category containing a path, such as an
+   * entry of an exported zip.
+   *
+   * @param path the path
+   * @return the resource category path, null if none
+   */
+  public static String findResourcePath(String path) {
+    return registry.findResourcePath(path);
   }
 }
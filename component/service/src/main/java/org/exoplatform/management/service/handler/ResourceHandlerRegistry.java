@@ -33,6 +33,9 @@ public class ResourceHandlerRegistry {
   /** The resource handlers. */
   private Map<String, ResourceHandler> resourceHandlers;
 
+  /** The root of the trie of registered paths and aliases, by path segment. */
+  private final PathNode root = new PathNode();
+
   /**
    * Instantiates a new resource handler registry.
    */
@@ -57,5 +60,111 @@ public class ResourceHandlerRegistry {
    */
   public void register(ResourceHandler newResourceHandler) {
     resourceHandlers.put(newResourceHandler.getPath(), newResourceHandler);
+    PathNode node = root.getOrAddDescendant(newResourceHandler.getPath());
+    node.handler = newResourceHandler;
+    node.resourcePath = newResourceHandler.getPath();
+  }
+
+  /**
+   * Registers an alias of a resource path: paths under the alias are resolved
+   * to this resource path and the handler of its closest registered parent.
+   *
+   * @param aliasPath the alias path
+   * @param resourcePath the resource path
+   */
+  public void registerAlias(String aliasPath, String resourcePath) {
+    ResourceHandler handler = find(resourcePath);
+    if (handler == null) {
+      throw new IllegalArgumentException("No resource handler registered for '" + resourcePath + "'");
+    }
+    PathNode node = root.getOrAddDescendant(aliasPath);
+    node.handler = handler;
+    node.resourcePath = resourcePath;
+  }
+
+  /**
+   * Finds the handler of the closest registered path or alias containing a
+   * path.
+   *
+   * @param path the path
+   * @return the resource handler, null if none
+   */
+  public ResourceHandler find(String path) {
+    PathNode node = findNode(path);
+    return node == null ? null : node.handler;
+  }
+
+  /**
+   * Finds the closest registered resource path containing a path, aliases
+   * being resolved.
+   *
+   * @param path the path
+   * @return the resource path, null if none
+   */
+  public String findResourcePath(String path) {
+    PathNode node = findNode(path);
+    return node == null ? null : node.resourcePath;
+  }
+
+  /**
+   * Finds the deepest node with a handler on a path, in a single pass over its
+   * segments.
+   *
+   * @param path the path, starting with '/'
+   * @return the node, null if none
+   */
+  private PathNode findNode(String path) {
+    if (path == null || !path.startsWith("/")) {
+      return null;
+    }
+    PathNode found = null;
+    PathNode node = root;
+    int start = 1;
+    while (node != null && start <= path.length()) {
+      int end = path.indexOf('/', start);
+      if (end < 0) {
+        end = path.length();
+      }
+      node = node.children.get(path.substring(start, end));
+      if (node != null && node.handler != null) {
+        found = node;
+      }
+      start = end + 1;
+    }
+    return found;
+  }
+
+  /**
+   * A node of the trie of registered paths.
+   */
+  private static class PathNode {
+
+    /** The children by path segment. */
+    private final Map<String, PathNode> children = new HashMap<String, PathNode>();
+
+    /** The handler of the path ending at this node, if registered. */
+    private ResourceHandler handler;
+
+    /** The resource path of the path ending at this node, if registered. */
+    private String resourcePath;
+
+    /**
+     * Gets or adds the node of a descendant path.
+     *
+     * @param path the path, starting with '/'
+     * @return the node
+     */
+    private PathNode getOrAddDescendant(String path) {
+      PathNode node = this;
+      for (String segment : path.substring(1).split("/")) {
+        PathNode child = node.children.get(segment);
+        if (child == null) {
+          child = new PathNode();
+          node.children.put(segment, child);
+        }
+        node = child;
+      }
+      return node;
+    }
   }
 }
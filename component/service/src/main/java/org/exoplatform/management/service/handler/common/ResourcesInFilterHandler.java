@@ -18,13 +18,15 @@
  */
 package org.exoplatform.management.service.handler.common;
 
+import org.exoplatform.management.common.ExportEstimation;
 import org.exoplatform.management.service.api.AbstractResourceHandler;
 import org.exoplatform.management.service.api.Resource;
 import org.exoplatform.management.service.api.TargetServer;
+import org.exoplatform.management.service.api.ZipArchiveMerger;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipOutputStream;
 
 /**
  * The Class ResourcesInFilterHandler.
@@ -63,8 +65,24 @@ public class ResourcesInFilterHandler extends AbstractResourceHandler {
    * {@inheritDoc}
    */
   @Override
-  public void export(List<Resource> resources, ZipOutputStream exportFileOS, Map<String, String> exportOptions) throws Exception {
-    super.exportResourcesInFilter(resources, exportFileOS, exportOptions);
+  public void export(List<Resource> resources, ZipArchiveMerger exportArchive, Map<String, String> exportOptions) throws Exception {
+    super.exportResourcesInFilter(resources, exportArchive, exportOptions);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<File> exportForSynchronization(List<Resource> resources, Map<String, String> exportOptions) throws Exception {
+    return super.exportResourcesInFilterForSynchronization(resources, exportOptions);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ExportEstimation estimate(List<Resource> resources, Map<String, String> exportOptions) {
+    return super.estimateResourcesInFilter(resources, exportOptions);
   }
 
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.handler.content;
+
+import org.apache.commons.lang.StringUtils;
+import org.exoplatform.container.PortalContainer;
+import org.exoplatform.management.common.ExportEstimation;
+import org.exoplatform.management.service.api.AbstractResourceHandler;
+import org.exoplatform.management.service.api.ChangesJournalService;
+import org.exoplatform.management.service.api.ContentChanges;
+import org.exoplatform.management.service.api.Resource;
+import org.exoplatform.management.service.api.StagingService;
+import org.exoplatform.management.service.api.TargetServer;
+import org.exoplatform.services.wcm.core.NodeLocation;
+import org.exoplatform.services.wcm.core.WCMConfigurationService;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handler of sites contents. If the option "filter/delta" is selected, only
+ * the contents changed since the last synchronization of the site with the
+ * same target server are synchronized, using {@link ChangesJournalService}.
+ * When changes since the last synchronization are unknown, the site is
+ * fully synchronized.
+ */
+public class SiteContentsHandler extends AbstractResourceHandler {
+
+  /** The Constant DELTA_OPTION. */
+  public static final String DELTA_OPTION = "filter/delta";
+
+  /** The Constant PATHS_OPTION. */
+  private static final String PATHS_OPTION = "filter/paths";
+
+  /** The Constant REMOVE_NODES_OPTION. */
+  private static final String REMOVE_NODES_OPTION = "filter/removeNodes";
+
+  /** The changes journal service. */
+  private ChangesJournalService changesJournalService = null;
+
+  /** The wcm configuration service. */
+  private WCMConfigurationService wcmConfigurationService = null;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getPath() {
+    return StagingService.CONTENT_SITES_PATH;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void synchronize(List<Resource> resources, Map<String, String> exportOptions, Map<String, String> importOptions, TargetServer targetServer) throws Exception {
+    Map<String, String> selectedExportOptions = new HashMap<String, String>(exportOptions);
+    boolean delta = "true".equals(selectedExportOptions.remove(DELTA_OPTION));
+    for (Resource resource : resources) {
+      List<Resource> siteResources = Collections.singletonList(resource);
+      if (!isJournaled(resource, selectedExportOptions)) {
+        if (delta) {
+          getLogger().warn("Changes of '" + resource.getPath() + "' with selected options are not journaled, all the site contents are synchronized.");
+        }
+        super.synchronize(siteResources, selectedExportOptions, importOptions, targetServer);
+        continue;
+      }
+
+      String checkpointKey = targetServer.getHost() + ":" + targetServer.getPort() + resource.getPath();
+      // Changes made during the synchronization will be synchronized next time
+      long sequence = getChangesJournalService().getLastSequence();
+      Long checkpoint = delta ? getChangesJournalService().getCheckpoint(checkpointKey) : null;
+      if (checkpoint == null) {
+        if (delta) {
+          getLogger().info("No previous synchronization of '" + resource.getPath() + "' is known, all the site contents are synchronized.");
+        }
+        super.synchronize(siteResources, selectedExportOptions, importOptions, targetServer);
+      } else {
+        ContentChanges changes = getChangesJournalService().getChanges(checkpoint, getSiteJCRPath(resource));
+        if (changes.isEmpty()) {
+          getLogger().info("No change of '" + resource.getPath() + "' since the last synchronization.");
+        } else {
+          getLogger().info("Synchronize " + changes.getChangedPaths().size() + " changed and " + changes.getRemovedPaths().size() + " removed nodes of '" + resource.getPath() + "'.");
+          Map<String, String> deltaExportOptions = new HashMap<String, String>(selectedExportOptions);
+          if (!changes.getChangedPaths().isEmpty()) {
+            deltaExportOptions.put(PATHS_OPTION, StringUtils.join(changes.getChangedPaths(), ";"));
+          }
+          if (!changes.getRemovedPaths().isEmpty()) {
+            deltaExportOptions.put(REMOVE_NODES_OPTION, StringUtils.join(changes.getRemovedPaths(), ";"));
+          }
+          super.synchronize(siteResources, deltaExportOptions, importOptions, targetServer);
+        }
+      }
+      getChangesJournalService().setCheckpoint(checkpointKey, sequence);
+    }
+  }
+
+  /**
+   * Exports all the site contents: checkpoints are specific to each target
+   * server, so the option "filter/delta" is ignored.
+   *
+   * @param resources the resources
+   * @param exportOptions the export options
+   * @return the exported files
+   * @throws Exception the exception
+   */
+  @Override
+  public List<File> exportForSynchronization(List<Resource> resources, Map<String, String> exportOptions) throws Exception {
+    Map<String, String> selectedExportOptions = new HashMap<String, String>(exportOptions);
+    selectedExportOptions.remove(DELTA_OPTION);
+    return super.exportForSynchronization(resources, selectedExportOptions);
+  }
+
+  /**
+   * Estimates the export of all the site contents, the upper bound of a delta
+   * synchronization: the option "filter/delta" is ignored.
+   *
+   * @param resources the resources
+   * @param exportOptions the export options
+   * @return the estimation
+   */
+  @Override
+  public ExportEstimation estimate(List<Resource> resources, Map<String, String> exportOptions) {
+    Map<String, String> selectedExportOptions = new HashMap<String, String>(exportOptions);
+    selectedExportOptions.remove(DELTA_OPTION);
+    return super.estimate(resources, selectedExportOptions);
+  }
+
+  /**
+   * Checks if changes of the exported contents are journaled: the whole site
+   * has to be exported from the journaled workspace.
+   *
+   * @param resource the resource
+   * @param exportOptions the export options
+   * @return true, if is journaled
+   */
+  private boolean isJournaled(Resource resource, Map<String, String> exportOptions) {
+    if (!getChangesJournalService().isEnabled() || !resource.getPath().startsWith(StagingService.CONTENT_SITES_PATH + "/")) {
+      return false;
+    }
+    if (exportOptions.containsKey("filter/query") || exportOptions.containsKey(REMOVE_NODES_OPTION) || exportOptions.containsKey(PATHS_OPTION)
+        || "true".equals(exportOptions.get("filter/only-metadata")) || "true".equals(exportOptions.get("filter/no-skeleton"))) {
+      return false;
+    }
+    String workspace = exportOptions.get("filter/workspace");
+    return workspace == null || workspace.equals(getChangesJournalService().getWorkspace());
+  }
+
+  /**
+   * Gets the JCR path of the site.
+   *
+   * @param resource the resource
+   * @return the site JCR path
+   */
+  private String getSiteJCRPath(Resource resource) {
+    String siteName = resource.getPath().substring(StagingService.CONTENT_SITES_PATH.length() + 1);
+    NodeLocation sitesLocation = getWCMConfigurationService().getLivePortalsLocation();
+    String sitesPath = sitesLocation.getPath().endsWith("/") ? sitesLocation.getPath() : (sitesLocation.getPath() + "/");
+    return sitesPath + siteName;
+  }
+
+  /**
+   * Gets the changes journal service.
+   *
+   * @return the changes journal service
+   */
+  private ChangesJournalService getChangesJournalService() {
+    if (changesJournalService == null) {
+      changesJournalService = (ChangesJournalService) PortalContainer.getInstance().getComponentInstanceOfType(ChangesJournalService.class);
+    }
+    return changesJournalService;
+  }
+
+  /**
+   * Gets the WCM configuration service.
+   *
+   * @return the WCM configuration service
+   */
+  private WCMConfigurationService getWCMConfigurationService() {
+    if (wcmConfigurationService == null) {
+      wcmConfigurationService = (WCMConfigurationService) PortalContainer.getInstance().getComponentInstanceOfType(WCMConfigurationService.class);
+    }
+    return wcmConfigurationService;
+  }
+}
@@ -18,14 +18,16 @@
  */
 package org.exoplatform.management.service.handler.forum;
 
+import org.exoplatform.management.common.ExportEstimation;
 import org.exoplatform.management.service.api.AbstractResourceHandler;
 import org.exoplatform.management.service.api.Resource;
 import org.exoplatform.management.service.api.StagingService;
 import org.exoplatform.management.service.api.TargetServer;
+import org.exoplatform.management.service.api.ZipArchiveMerger;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipOutputStream;
 
 /**
  * The Class ForumHandler.
@@ -68,11 +70,35 @@ public class ForumHandler extends AbstractResourceHandler {
    * {@inheritDoc}
    */
   @Override
-  public void export(List<Resource> resources, ZipOutputStream exportFileOS, Map<String, String> exportOptions) throws Exception {
+  public void export(List<Resource> resources, ZipArchiveMerger exportArchive, Map<String, String> exportOptions) throws Exception {
     if (StagingService.FORUM_SETTINGS.equals(forumPath)) {
-      super.export(resources, exportFileOS, exportOptions);
+      super.export(resources, exportArchive, exportOptions);
     } else {
-      super.exportResourcesInFilter(resources, exportFileOS, exportOptions);
+      super.exportResourcesInFilter(resources, exportArchive, exportOptions);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<File> exportForSynchronization(List<Resource> resources, Map<String, String> exportOptions) throws Exception {
+    if (StagingService.FORUM_SETTINGS.equals(forumPath)) {
+      return super.exportForSynchronization(resources, exportOptions);
+    } else {
+      return super.exportResourcesInFilterForSynchronization(resources, exportOptions);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ExportEstimation estimate(List<Resource> resources, Map<String, String> exportOptions) {
+    if (StagingService.FORUM_SETTINGS.equals(forumPath)) {
+      return super.estimate(resources, exportOptions);
+    } else {
+      return super.estimateResourcesInFilter(resources, exportOptions);
     }
   }
 
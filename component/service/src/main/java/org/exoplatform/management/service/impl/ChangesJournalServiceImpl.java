@@ -0,0 +1,485 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.impl;
+
+import org.exoplatform.management.service.api.ChangesJournalService;
+import org.exoplatform.management.service.api.ContentChanges;
+import org.exoplatform.services.jcr.RepositoryService;
+import org.exoplatform.services.jcr.core.ManageableRepository;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.services.wcm.core.NodeLocation;
+import org.exoplatform.services.wcm.core.WCMConfigurationService;
+import org.picocontainer.Startable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+/**
+ * Journals the changes made on the sites contents workspace in an append-only
+ * file, using a JCR observation listener. Each line of the journal is a
+ * change: "sequence TAB type TAB path", where type is 'C' for a node added or
+ * modified and 'R' for a removed node. Checkpoints are stored in a properties
+ * file in the same directory.
+ *
+ * Changes are journaled only if "exo.staging.journal.enabled" is true. If the
+ * server was stopped without closing the journal, or started without
+ * journaling changes, checkpoints are cleared: the next synchronizations
+ * will be full ones.
+ */
+public class ChangesJournalServiceImpl implements ChangesJournalService, EventListener, Startable {
+
+  /** The Constant LOG. */
+  private static final Log LOG = ExoLogger.getLogger(ChangesJournalServiceImpl.class);
+
+  /** The Constant JOURNAL_ENABLED_PARAM. */
+  public static final String JOURNAL_ENABLED_PARAM = "exo.staging.journal.enabled";
+
+  /** The Constant JOURNAL_DIRECTORY_PARAM. */
+  public static final String JOURNAL_DIRECTORY_PARAM = "exo.staging.journal.directory";
+
+  /** The Constant CHECKPOINTS_FILE_NAME. */
+  private static final String CHECKPOINTS_FILE_NAME = "checkpoints.properties";
+
+  /** The Constant JOURNAL_FILE_NAME. */
+  private static final String JOURNAL_FILE_NAME = "changes.journal";
+
+  /** Line written when the journal is closed properly. */
+  private static final String CLOSED_MARKER = "CLOSED";
+
+  /** The Constant CHANGED. */
+  private static final char CHANGED = 'C';
+
+  /** The Constant REMOVED. */
+  private static final char REMOVED = 'R';
+
+  /** Number of changes older than all checkpoints before compacting the journal. */
+  private static final long COMPACTION_THRESHOLD = 10000;
+
+  /** The Constant OBSERVED_EVENTS. */
+  private static final int OBSERVED_EVENTS = Event.NODE_ADDED | Event.NODE_REMOVED | Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED;
+
+  /** The repository service. */
+  private RepositoryService repositoryService;
+
+  /** The wcm configuration service. */
+  private WCMConfigurationService wcmConfigurationService;
+
+  /** The journal directory. */
+  private File journalDirectory;
+
+  /** The enabled. */
+  private boolean enabled = false;
+
+  /** The journaled workspace. */
+  private String workspace;
+
+  /** The observation session. */
+  private Session session;
+
+  /** The journal writer. */
+  private Writer journalWriter;
+
+  /** The sequence of the first change of the journal. */
+  private long firstSequence = 1;
+
+  /** The sequence of the last change of the journal. */
+  private long lastSequence = 0;
+
+  /** The checkpoints. */
+  private Properties checkpoints = new Properties();
+
+  /**
+   * Instantiates a new changes journal service impl.
+   *
+   * @param repositoryService the repository service
+   * @param wcmConfigurationService the wcm configuration service
+   */
+  public ChangesJournalServiceImpl(RepositoryService repositoryService, WCMConfigurationService wcmConfigurationService) {
+    this.repositoryService = repositoryService;
+    this.wcmConfigurationService = wcmConfigurationService;
+    String journalDirectoryPath = System.getProperty(JOURNAL_DIRECTORY_PARAM, System.getProperty("exo.data.dir", System.getProperty("java.io.tmpdir")) + File.separator + "staging-journal");
+    this.journalDirectory = new File(journalDirectoryPath);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getWorkspace() {
+    return workspace;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized long getLastSequence() {
+    return lastSequence;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized ContentChanges getChanges(long sequence, String rootPath) throws IOException {
+    ContentChanges changes = new ContentChanges();
+    if (!enabled) {
+      return changes;
+    }
+    journalWriter.flush();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(getJournalFile()), StandardCharsets.UTF_8));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] change = line.split("\t", 3);
+        if (change.length < 3 || Long.parseLong(change[0]) <= sequence) {
+          continue;
+        }
+        String path = change[2];
+        if (!path.equals(rootPath) && !path.startsWith(rootPath + "/")) {
+          continue;
+        }
+        if (change[1].charAt(0) == REMOVED) {
+          changes.addRemoval(path);
+        } else {
+          changes.addChange(path);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return changes;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized Long getCheckpoint(String key) {
+    String checkpoint = checkpoints.getProperty(key);
+    if (!enabled || checkpoint == null) {
+      return null;
+    }
+    long sequence = Long.parseLong(checkpoint);
+    // Changes after this checkpoint were removed from the journal
+    if (sequence < firstSequence - 1) {
+      return null;
+    }
+    return sequence;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void setCheckpoint(String key, long sequence) {
+    if (!enabled) {
+      return;
+    }
+    checkpoints.setProperty(key, String.valueOf(sequence));
+    try {
+      storeCheckpoints();
+      compactJournal();
+    } catch (IOException e) {
+      LOG.warn("Error while storing synchronization checkpoint '" + key + "'", e);
+    }
+  }
+
+  /**
+   * Journals the changes.
+   *
+   * @param events the events
+   */
+  @Override
+  public void onEvent(EventIterator events) {
+    // Successive events on the same node are journaled once
+    Map<String, Character> changes = new LinkedHashMap<String, Character>();
+    while (events.hasNext()) {
+      Event event = events.nextEvent();
+      try {
+        String path = event.getPath();
+        switch (event.getType()) {
+        case Event.NODE_REMOVED:
+          changes.remove(path);
+          changes.put(path, REMOVED);
+          break;
+        case Event.NODE_ADDED:
+          changes.remove(path);
+          changes.put(path, CHANGED);
+          break;
+        default:
+          String nodePath = path.substring(0, path.lastIndexOf('/'));
+          if (!changes.containsKey(nodePath)) {
+            changes.put(nodePath, CHANGED);
+          }
+        }
+      } catch (RepositoryException e) {
+        LOG.warn("Error while reading path of a JCR event, it will not be journaled", e);
+      }
+    }
+    synchronized (this) {
+      if (!enabled) {
+        return;
+      }
+      try {
+        for (Map.Entry<String, Character> change : changes.entrySet()) {
+          lastSequence++;
+          journalWriter.write(lastSequence + "\t" + change.getValue() + "\t" + change.getKey() + "\n");
+        }
+        journalWriter.flush();
+      } catch (IOException e) {
+        LOG.error("Error while journaling changes, next synchronizations will be full ones", e);
+        clearCheckpoints();
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void start() {
+    File checkpointsFile = new File(journalDirectory, CHECKPOINTS_FILE_NAME);
+    if (!Boolean.getBoolean(JOURNAL_ENABLED_PARAM)) {
+      // Changes made while the journal is disabled are unknown
+      if (checkpointsFile.exists() && !checkpointsFile.delete()) {
+        LOG.warn("Cannot delete outdated synchronization checkpoints: " + checkpointsFile.getPath());
+      }
+      return;
+    }
+    try {
+      NodeLocation sitesLocation = wcmConfigurationService.getLivePortalsLocation();
+      workspace = sitesLocation.getWorkspace();
+
+      if (!journalDirectory.exists() && !journalDirectory.mkdirs()) {
+        throw new IOException("Cannot create directory " + journalDirectory.getPath());
+      }
+      if (checkpointsFile.exists()) {
+        InputStream inputStream = new FileInputStream(checkpointsFile);
+        try {
+          checkpoints.load(inputStream);
+        } finally {
+          inputStream.close();
+        }
+      }
+      if (!readJournal()) {
+        LOG.warn("Changes journal was not closed properly, next synchronizations of sites contents will be full ones.");
+        checkpoints.clear();
+        storeCheckpoints();
+      }
+      journalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(getJournalFile(), true), StandardCharsets.UTF_8));
+
+      session = ((ManageableRepository) repositoryService.getCurrentRepository()).getSystemSession(workspace);
+      session.getWorkspace().getObservationManager().addEventListener(this, OBSERVED_EVENTS, sitesLocation.getPath(), true, null, null, false);
+      enabled = true;
+      LOG.info("Changes of '" + workspace + ":" + sitesLocation.getPath() + "' are journaled in " + journalDirectory.getPath());
+    } catch (Exception e) {
+      LOG.error("Cannot start the journal of changes, sites contents will be fully synchronized", e);
+      stop();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void stop() {
+    enabled = false;
+    if (session != null) {
+      try {
+        session.getWorkspace().getObservationManager().removeEventListener(this);
+      } catch (RepositoryException e) {
+        LOG.warn("Error while removing the changes journal listener", e);
+      }
+      session.logout();
+      session = null;
+    }
+    if (journalWriter != null) {
+      try {
+        journalWriter.write(CLOSED_MARKER + "\n");
+        journalWriter.close();
+      } catch (IOException e) {
+        LOG.warn("Error while closing the changes journal", e);
+      }
+      journalWriter = null;
+    }
+  }
+
+  /**
+   * Reads the first and last sequences of the journal.
+   *
+   * @return true, if the journal doesn't exist or was closed properly
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private boolean readJournal() throws IOException {
+    File journalFile = getJournalFile();
+    if (!journalFile.exists()) {
+      return true;
+    }
+    String lastLine = null;
+    boolean firstChange = true;
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lastLine = line;
+        int separatorIndex = line.indexOf('\t');
+        if (separatorIndex > 0) {
+          lastSequence = Long.parseLong(line.substring(0, separatorIndex));
+          if (firstChange) {
+            firstSequence = lastSequence;
+            firstChange = false;
+          }
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    if (firstChange) {
+      firstSequence = lastSequence + 1;
+    }
+    return lastLine == null || CLOSED_MARKER.equals(lastLine);
+  }
+
+  /**
+   * Removes from the journal the changes older than all checkpoints.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void compactJournal() throws IOException {
+    long oldestCheckpoint = lastSequence;
+    for (String checkpoint : checkpoints.stringPropertyNames()) {
+      oldestCheckpoint = Math.min(oldestCheckpoint, Long.parseLong(checkpoints.getProperty(checkpoint)));
+    }
+    if (oldestCheckpoint - firstSequence < COMPACTION_THRESHOLD) {
+      return;
+    }
+    File journalFile = getJournalFile();
+    File compactedJournalFile = new File(journalDirectory, JOURNAL_FILE_NAME + ".tmp");
+    boolean compacted = false;
+    try {
+      journalWriter.close();
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8));
+      try {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(compactedJournalFile), StandardCharsets.UTF_8));
+        try {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            int separatorIndex = line.indexOf('\t');
+            if (separatorIndex > 0 && Long.parseLong(line.substring(0, separatorIndex)) > oldestCheckpoint) {
+              writer.write(line + "\n");
+            }
+          }
+        } finally {
+          writer.close();
+        }
+      } finally {
+        reader.close();
+      }
+      // The journal is either the previous one or the compacted one, never
+      // missing
+      Files.move(compactedJournalFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      firstSequence = oldestCheckpoint + 1;
+      compacted = true;
+      LOG.info("Changes journal compacted, changes before " + firstSequence + " are removed.");
+    } finally {
+      if (!compacted) {
+        LOG.error("Error while compacting the changes journal, next synchronizations will be full ones");
+        clearCheckpoints();
+        if (compactedJournalFile.exists() && !compactedJournalFile.delete()) {
+          LOG.warn("Cannot delete the partially compacted journal: " + compactedJournalFile.getPath());
+        }
+      }
+      try {
+        journalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
+      } catch (IOException e) {
+        // Changes can't be journaled anymore: delta synchronizations are
+        // disabled until the next restart
+        LOG.error("Cannot reopen the changes journal, next synchronizations will be full ones", e);
+        clearCheckpoints();
+        enabled = false;
+      }
+    }
+  }
+
+  /**
+   * Clears the checkpoints, so that the next synchronizations are full ones.
+   */
+  private void clearCheckpoints() {
+    checkpoints.clear();
+    try {
+      storeCheckpoints();
+    } catch (IOException e) {
+      LOG.warn("Error while clearing synchronization checkpoints", e);
+    }
+  }
+
+  /**
+   * Stores the checkpoints.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void storeCheckpoints() throws IOException {
+    OutputStream outputStream = new FileOutputStream(new File(journalDirectory, CHECKPOINTS_FILE_NAME));
+    try {
+      checkpoints.store(outputStream, "Sequences of the changes journal reached by the last synchronizations");
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  /**
+   * Gets the journal file.
+   *
+   * @return the journal file
+   */
+  private File getJournalFile() {
+    return new File(journalDirectory, JOURNAL_FILE_NAME);
+  }
+}
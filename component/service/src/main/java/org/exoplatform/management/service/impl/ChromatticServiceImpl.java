@@ -27,6 +27,7 @@ import org.exoplatform.commons.utils.PropertyManager;
 import org.exoplatform.management.common.AbstractOperationHandler;
 import org.exoplatform.management.service.api.ChromatticService;
 import org.exoplatform.management.service.api.TargetServer;
+import org.exoplatform.management.service.api.TargetServerClient;
 import org.exoplatform.management.service.api.model.TargetServerChromattic;
 import org.exoplatform.management.service.integration.CurrentRepositoryLifeCycle;
 import org.exoplatform.services.jcr.RepositoryService;
@@ -47,6 +48,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.KeyStore;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -54,7 +56,6 @@ import java.util.Properties;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
-import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
 /**
@@ -97,6 +98,12 @@ public class ChromatticServiceImpl implements ChromatticService, Startable {
   /** The codec. */
   private AbstractCodec codec;
 
+  /**
+   * The target servers with decoded passwords, read from JCR once and
+   * invalidated when a server is added or removed.
+   */
+  private volatile List<TargetServer> targetServers = null;
+
   /**
    * Instantiates a new chromattic service impl.
    *
@@ -143,28 +150,11 @@ public class ChromatticServiceImpl implements ChromatticService, Startable {
    */
   @Override
   public List<TargetServer> getSynchonizationServers() {
-    List<TargetServer> targetServers = new ArrayList<TargetServer>();
-
-    ChromatticSession session = null;
-
-    try {
-      session = openSession();
-
-      QueryResult<TargetServerChromattic> servers = session.createQueryBuilder(TargetServerChromattic.class).where("jcr:path like '" + STAGING_SERVERS_ROOT_PATH + "/%'").get().objects();
-      while (servers.hasNext()) {
-        TargetServerChromattic server = servers.next();
-        String password = decodePassword(server.getPassword());
-        targetServers.add(new TargetServer(server.getId(), server.getName(), server.getHost(), server.getPort(), server.getUsername(), password, server.isSsl()));
-      }
-
-      session.save();
-    } finally {
-      if (session != null) {
-        session.close();
-      }
+    List<TargetServer> servers = new ArrayList<TargetServer>();
+    for (TargetServer targetServer : getTargetServers()) {
+      servers.add(copy(targetServer));
     }
-
-    return targetServers;
+    return servers;
   }
 
   /**
@@ -172,35 +162,12 @@ public class ChromatticServiceImpl implements ChromatticService, Startable {
    */
   @Override
   public TargetServer getServerByName(String name) {
-    TargetServer targetServer = null;
-    ChromatticSession session = null;
-    try {
-      session = openSession();
-      if (!session.getJCRSession().itemExists(STAGING_SERVERS_ROOT_PATH)) {
-        return null;
-      }
-
-      TargetServerChromattic server = null;
-      QueryResult<TargetServerChromattic> servers = session.createQueryBuilder(TargetServerChromattic.class).where("jcr:path = '" + STAGING_SERVERS_ROOT_PATH + "/" + name + "'").get().objects();
-      if (servers.size() == 0) {
-        return null;
-      } else if (servers.size() > 1) {
-        throw new IllegalStateException("found more than one server with name: " + name);
-      } else if (servers.hasNext()) {
-        server = servers.next();
-      }
-      if (server != null) {
-        String password = decodePassword(server.getPassword());
-        targetServer = new TargetServer(server.getId(), server.getName(), server.getHost(), server.getPort(), server.getUsername(), password, server.isSsl());
-      }
-    } catch (RepositoryException e) {
-      throw new IllegalStateException("Error while attempting to access JCR repository", e);
-    } finally {
-      if (session != null) {
-        session.close();
+    for (TargetServer targetServer : getTargetServers()) {
+      if (targetServer.getName().equals(name)) {
+        return copy(targetServer);
       }
     }
-    return targetServer;
+    return null;
   }
 
   /**
@@ -242,6 +209,8 @@ public class ChromatticServiceImpl implements ChromatticService, Startable {
       if (session != null) {
         session.close();
       }
+      invalidateTargetServers();
+      TargetServerClient.removeInstance(targetServer.getName());
     }
   }
 
@@ -257,14 +226,84 @@ public class ChromatticServiceImpl implements ChromatticService, Startable {
 
       TargetServerChromattic server = session.findById(TargetServerChromattic.class, targetServer.getId());
       if (server != null) {
+        String serverName = server.getName();
         session.remove(server);
         session.save();
+        TargetServerClient.removeInstance(serverName);
+      }
+    } finally {
+      if (session != null) {
+        session.close();
+      }
+      invalidateTargetServers();
+    }
+  }
+
+  /**
+   * Gets the target servers, read from JCR on first call or after a
+   * modification. The returned list and its servers must not be modified.
+   *
+   * @return the target servers
+   */
+  private List<TargetServer> getTargetServers() {
+    List<TargetServer> servers = targetServers;
+    if (servers == null) {
+      synchronized (this) {
+        servers = targetServers;
+        if (servers == null) {
+          servers = Collections.unmodifiableList(loadTargetServers());
+          targetServers = servers;
+        }
+      }
+    }
+    return servers;
+  }
+
+  /**
+   * Invalidates the cached target servers. It waits for a concurrent read to
+   * finish, so that the servers read before the modification are not cached.
+   */
+  private synchronized void invalidateTargetServers() {
+    targetServers = null;
+  }
+
+  /**
+   * Reads the target servers from JCR.
+   *
+   * @return the target servers
+   */
+  private List<TargetServer> loadTargetServers() {
+    List<TargetServer> servers = new ArrayList<TargetServer>();
+
+    ChromatticSession session = null;
+
+    try {
+      session = openSession();
+
+      QueryResult<TargetServerChromattic> serverObjects = session.createQueryBuilder(TargetServerChromattic.class).where("jcr:path like '" + STAGING_SERVERS_ROOT_PATH + "/%'").get().objects();
+      while (serverObjects.hasNext()) {
+        TargetServerChromattic server = serverObjects.next();
+        String password = decodePassword(server.getPassword());
+        servers.add(new TargetServer(server.getId(), server.getName(), server.getHost(), server.getPort(), server.getUsername(), password, server.isSsl()));
       }
     } finally {
       if (session != null) {
         session.close();
       }
     }
+
+    return servers;
+  }
+
+  /**
+   * Copies a target server, so that callers can't modify the cached one.
+   *
+   * @param targetServer the target server
+   * @return the copy
+   */
+  private static TargetServer copy(TargetServer targetServer) {
+    return new TargetServer(targetServer.getId(), targetServer.getName(), targetServer.getHost(), targetServer.getPort(), targetServer.getUsername(), targetServer.getPassword(),
+                            targetServer.isSsl());
   }
 
   /**
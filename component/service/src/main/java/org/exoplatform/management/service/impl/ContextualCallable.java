@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.impl;
+
+import org.exoplatform.container.ExoContainer;
+import org.exoplatform.container.ExoContainerContext;
+import org.exoplatform.container.PortalContainer;
+import org.exoplatform.container.component.RequestLifeCycle;
+import org.exoplatform.services.security.ConversationState;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Wraps a task submitted to an executor so that it runs with the container
+ * and the conversation state of the thread that created it, inside a request
+ * life cycle.
+ *
+ * @param <V> the result type of the task
+ */
+public class ContextualCallable<V> implements Callable<V> {
+
+  /** The task. */
+  private final Callable<V> task;
+
+  /** The container of the calling thread. */
+  private final ExoContainer container;
+
+  /** The conversation state of the calling thread. */
+  private final ConversationState conversationState;
+
+  /**
+   * Instantiates a new contextual callable, the current container and
+   * conversation state are captured.
+   *
+   * @param task the task
+   */
+  public ContextualCallable(Callable<V> task) {
+    this.task = task;
+    ExoContainer currentContainer = ExoContainerContext.getCurrentContainer();
+    this.container = currentContainer == null ? PortalContainer.getInstance() : currentContainer;
+    this.conversationState = ConversationState.getCurrent();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public V call() throws Exception {
+    ExoContainer originalContainer = ExoContainerContext.getCurrentContainerIfPresent();
+    ConversationState originalState = ConversationState.getCurrent();
+    ExoContainerContext.setCurrentContainer(container);
+    ConversationState.setCurrent(conversationState);
+    RequestLifeCycle.begin(container);
+    try {
+      return task.call();
+    } finally {
+      RequestLifeCycle.end();
+      ConversationState.setCurrent(originalState);
+      ExoContainerContext.setCurrentContainer(originalContainer);
+    }
+  }
+}
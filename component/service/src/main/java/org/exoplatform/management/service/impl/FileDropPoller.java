@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.exoplatform.container.ExoContainer;
+import org.exoplatform.container.ExoContainerContext;
+import org.exoplatform.container.PortalContainer;
+import org.exoplatform.container.component.RequestLifeCycle;
+import org.exoplatform.management.service.api.FileDropTransport;
+import org.exoplatform.management.service.api.StagingService;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.services.security.ConversationState;
+import org.exoplatform.services.security.Identity;
+import org.exoplatform.services.security.IdentityConstants;
+import org.picocontainer.Startable;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports the exports dropped by source servers in a shared directory, see
+ * {@link FileDropTransport}. Drops are claimed with an atomic rename, so
+ * several servers of a cluster can watch the same directory. Claims are named
+ * after the node which made them, so that a node restarting only fails its
+ * own interrupted imports.
+ *
+ * Drops are imported with the system identity, without any authentication:
+ * writing in the drop directory grants the same rights as the administrators
+ * allowed to call the staging REST services. The drop directory must thus be
+ * writable only by the operating system users running the source and target
+ * servers, and it's not watched if it's writable by all users.
+ */
+public class FileDropPoller implements Startable {
+
+  /** The Constant LOG. */
+  private static final Log LOG = ExoLogger.getLogger(FileDropPoller.class);
+
+  /** System property used to define the watched drop directory. */
+  public static final String DROP_DIRECTORY_PARAM = "exo.staging.drop.directory";
+
+  /** System property used to define the delay between two polls, in seconds. */
+  public static final String DROP_INTERVAL_PARAM = "exo.staging.drop.interval";
+
+  /**
+   * System property used to define the name of this node in the claims of
+   * drops. It must be unique among the servers watching the drop directory
+   * and must not change when the server restarts. Defaults to
+   * "exo.cluster.node.name", then to the host name.
+   */
+  public static final String DROP_NODE_NAME_PARAM = "exo.staging.drop.nodeName";
+
+  /** The Constant DEFAULT_DROP_INTERVAL, in seconds. */
+  private static final long DEFAULT_DROP_INTERVAL = 5L;
+
+  /** Status files not read by the source server since this delay are deleted. */
+  private static final long STALE_STATUS_DELAY = 24L * 60L * 60L * 1000L;
+
+  /** The staging service. */
+  private StagingService stagingService;
+
+  /** The drop directory, null if drops are not watched. */
+  private File dropDirectory;
+
+  /** The suffix of the drops claimed by this node. */
+  private String claimSuffix;
+
+  /** The poll executor. */
+  private ScheduledExecutorService pollExecutor;
+
+  /**
+   * Instantiates a new file drop poller.
+   *
+   * @param stagingService the staging service
+   */
+  public FileDropPoller(StagingService stagingService) {
+    this.stagingService = stagingService;
+    String dropDirectoryPath = System.getProperty(DROP_DIRECTORY_PARAM);
+    if (dropDirectoryPath != null && !dropDirectoryPath.trim().isEmpty()) {
+      this.dropDirectory = new File(dropDirectoryPath.trim());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void start() {
+    if (dropDirectory == null) {
+      return;
+    }
+    if (!dropDirectory.isDirectory()) {
+      LOG.error("Drop directory doesn't exist, dropped exports will not be imported: " + dropDirectory.getPath());
+      return;
+    }
+    if (isWritableByOthers(dropDirectory)) {
+      LOG.error("Drop directory is writable by all users, dropped exports will not be imported: " + dropDirectory.getPath());
+      return;
+    }
+    claimSuffix = "." + getNodeName() + FileDropTransport.IMPORTING_SUFFIX;
+    failInterruptedImports();
+
+    long interval = Long.getLong(DROP_INTERVAL_PARAM, DEFAULT_DROP_INTERVAL);
+    pollExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "staging-drop-poller");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    pollExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          poll();
+        } catch (Throwable e) {
+          LOG.error("Error while polling drop directory " + dropDirectory.getPath(), e);
+        }
+      }
+    }, interval, interval, TimeUnit.SECONDS);
+    LOG.info("Watching drop directory " + dropDirectory.getPath() + " every " + interval + " seconds.");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void stop() {
+    if (pollExecutor != null) {
+      pollExecutor.shutdownNow();
+      pollExecutor = null;
+    }
+  }
+
+  /**
+   * Imports the drops ready in the drop directory, oldest first, and deletes
+   * stale status files.
+   */
+  private void poll() {
+    File[] dropFiles = dropDirectory.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file) {
+        return file.isFile() && !file.getName().startsWith(".") && file.getName().endsWith(FileDropTransport.DROP_SUFFIX);
+      }
+    });
+    if (dropFiles != null) {
+      Arrays.sort(dropFiles, new Comparator<File>() {
+        @Override
+        public int compare(File file1, File file2) {
+          int comparison = Long.compare(file1.lastModified(), file2.lastModified());
+          return comparison == 0 ? file1.getName().compareTo(file2.getName()) : comparison;
+        }
+      });
+      for (File dropFile : dropFiles) {
+        if (Thread.currentThread().isInterrupted()) {
+          return;
+        }
+        importDrop(dropFile);
+      }
+    }
+
+    File[] statusFiles = dropDirectory.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file) {
+        return file.getName().endsWith(FileDropTransport.DONE_SUFFIX) || file.getName().endsWith(FileDropTransport.FAILED_SUFFIX);
+      }
+    });
+    if (statusFiles != null) {
+      long staleDate = System.currentTimeMillis() - STALE_STATUS_DELAY;
+      for (File statusFile : statusFiles) {
+        if (statusFile.lastModified() < staleDate) {
+          FileUtils.deleteQuietly(statusFile);
+        }
+      }
+    }
+  }
+
+  /**
+   * Claims a drop and imports it, then writes its status.
+   *
+   * @param dropFile the drop file
+   */
+  private void importDrop(File dropFile) {
+    String dropId = dropFile.getName().substring(0, dropFile.getName().length() - FileDropTransport.DROP_SUFFIX.length());
+    File claimedFile = new File(dropDirectory, "." + dropFile.getName() + claimSuffix);
+    try {
+      Files.move(dropFile.toPath(), claimedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // Claimed by another server or withdrawn by the source server
+      return;
+    }
+
+    LOG.info("Importing drop " + dropFile.getName() + " (" + claimedFile.length() + " bytes).");
+    ExoContainer container = PortalContainer.getInstance();
+    ExoContainerContext.setCurrentContainer(container);
+    ConversationState.setCurrent(new ConversationState(new Identity(IdentityConstants.SYSTEM)));
+    RequestLifeCycle.begin(container);
+    try {
+      stagingService.importBulkArchive(claimedFile);
+      writeStatus(dropId, FileDropTransport.DONE_SUFFIX, "");
+      LOG.info("Drop " + dropFile.getName() + " imported successfully.");
+    } catch (Throwable e) {
+      LOG.error("Error while importing drop " + dropFile.getName(), e);
+      writeStatus(dropId, FileDropTransport.FAILED_SUFFIX, String.valueOf(e.getMessage()));
+    } finally {
+      RequestLifeCycle.end();
+      ConversationState.setCurrent(null);
+      ExoContainerContext.setCurrentContainer(null);
+      FileUtils.deleteQuietly(claimedFile);
+    }
+  }
+
+  /**
+   * Marks as failed the drops that were being imported by this node when it
+   * stopped. Drops claimed by other nodes may still be being imported.
+   */
+  private void failInterruptedImports() {
+    File[] claimedFiles = dropDirectory.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file) {
+        return file.getName().startsWith(".") && file.getName().endsWith(FileDropTransport.DROP_SUFFIX + claimSuffix);
+      }
+    });
+    if (claimedFiles == null) {
+      return;
+    }
+    for (File claimedFile : claimedFiles) {
+      String dropFileName = claimedFile.getName().substring(1, claimedFile.getName().length() - claimSuffix.length());
+      String dropId = dropFileName.substring(0, dropFileName.length() - FileDropTransport.DROP_SUFFIX.length());
+      LOG.warn("Import of drop " + dropFileName + " was interrupted, it's marked as failed.");
+      writeStatus(dropId, FileDropTransport.FAILED_SUFFIX, "Import interrupted by a server stop");
+      FileUtils.deleteQuietly(claimedFile);
+    }
+  }
+
+  /**
+   * Gets the name of this node, usable in a file name.
+   *
+   * @return the node name
+   */
+  private static String getNodeName() {
+    String nodeName = System.getProperty(DROP_NODE_NAME_PARAM, System.getProperty("exo.cluster.node.name"));
+    if (nodeName == null || nodeName.trim().isEmpty()) {
+      try {
+        nodeName = InetAddress.getLocalHost().getHostName();
+      } catch (IOException e) {
+        LOG.warn("Cannot get the host name, set " + DROP_NODE_NAME_PARAM + " if several servers watch the drop directory", e);
+        nodeName = "localhost";
+      }
+    }
+    // Dots separate the parts of the claim file name
+    return nodeName.trim().replaceAll("[^A-Za-z0-9_-]", "_");
+  }
+
+  /**
+   * Checks if a directory is writable by all users. File systems without
+   * POSIX permissions are not checked.
+   *
+   * @param directory the directory
+   * @return true, if the directory is writable by all users
+   */
+  private static boolean isWritableByOthers(File directory) {
+    try {
+      return Files.getPosixFilePermissions(directory.toPath()).contains(PosixFilePermission.OTHERS_WRITE);
+    } catch (UnsupportedOperationException e) {
+      return false;
+    } catch (IOException e) {
+      LOG.warn("Cannot read permissions of drop directory " + directory.getPath(), e);
+      return false;
+    }
+  }
+
+  /**
+   * Writes atomically the status file of a drop.
+   *
+   * @param dropId the drop id
+   * @param suffix the status suffix
+   * @param content the status content
+   */
+  private void writeStatus(String dropId, String suffix, String content) {
+    File tmpFile = new File(dropDirectory, "." + dropId + suffix + FileDropTransport.TMP_SUFFIX);
+    try {
+      Files.write(tmpFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+      Files.move(tmpFile.toPath(), new File(dropDirectory, dropId + suffix).toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.error("Error while writing status of drop " + dropId + ", the source server will wait until its timeout", e);
+      FileUtils.deleteQuietly(tmpFile);
+    }
+  }
+}
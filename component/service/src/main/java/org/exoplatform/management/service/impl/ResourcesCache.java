@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.impl;
+
+import org.exoplatform.management.service.api.Resource;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of the resources returned by the READ_RESOURCE operation, by
+ * path. Entries expire after a time to live, and are invalidated when data is
+ * imported in their path, a parent or a child path.
+ */
+class ResourcesCache {
+
+  /** The Constant RESOURCES_CACHE_TTL_PARAM, in seconds, 0 to disable. */
+  public static final String RESOURCES_CACHE_TTL_PARAM = "exo.staging.resources.cache.ttl";
+
+  /** The Constant RESOURCES_CACHE_SIZE_PARAM. */
+  public static final String RESOURCES_CACHE_SIZE_PARAM = "exo.staging.resources.cache.size";
+
+  /** The Constant DEFAULT_TTL, in seconds. */
+  private static final int DEFAULT_TTL = 60;
+
+  /** The Constant DEFAULT_SIZE. */
+  private static final int DEFAULT_SIZE = 1000;
+
+  /** The time to live in milliseconds. */
+  private final long timeToLive;
+
+  /** The entries, least recently used first. */
+  private final Map<String, Entry> entries;
+
+  /**
+   * Instantiates a new resources cache configured by system properties.
+   */
+  public ResourcesCache() {
+    this(Integer.getInteger(RESOURCES_CACHE_TTL_PARAM, DEFAULT_TTL) * 1000L, Integer.getInteger(RESOURCES_CACHE_SIZE_PARAM, DEFAULT_SIZE));
+  }
+
+  /**
+   * Instantiates a new resources cache.
+   *
+   * @param timeToLive the time to live in milliseconds, 0 to disable the cache
+   * @param maxSize the max number of cached paths
+   */
+  @SuppressWarnings("serial")
+  public ResourcesCache(long timeToLive, final int maxSize) {
+    this.timeToLive = timeToLive;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Gets the cached resources of a path.
+   *
+   * @param path the path
+   * @return a copy of the cached resources, null if not cached or expired
+   */
+  public synchronized Set<Resource> get(String path) {
+    Entry entry = entries.get(path);
+    if (entry == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() > entry.expirationTime) {
+      entries.remove(path);
+      return null;
+    }
+    return copy(entry.resources);
+  }
+
+  /**
+   * Caches the resources of a path.
+   *
+   * @param path the path
+   * @param resources the resources
+   */
+  public synchronized void put(String path, Set<Resource> resources) {
+    if (timeToLive > 0) {
+      entries.put(path, new Entry(Collections.unmodifiableSet(copy(resources)), System.currentTimeMillis() + timeToLive));
+    }
+  }
+
+  /**
+   * Invalidates the resources of a path, of its parents and of its children.
+   *
+   * @param path the path where data is imported
+   */
+  public synchronized void invalidate(String path) {
+    Iterator<String> pathsIterator = entries.keySet().iterator();
+    while (pathsIterator.hasNext()) {
+      String cachedPath = pathsIterator.next();
+      if (isSameOrParent(cachedPath, path) || isSameOrParent(path, cachedPath)) {
+        pathsIterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Invalidates all cached resources.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Copies resources, that are mutable, so that the cached ones can't be
+   * modified by callers.
+   *
+   * @param resources the resources
+   * @return the copy
+   */
+  private static Set<Resource> copy(Set<Resource> resources) {
+    Set<Resource> copy = new HashSet<Resource>(resources.size());
+    for (Resource resource : resources) {
+      copy.add(new Resource(resource.getPath(), resource.getText(), resource.getDescription()));
+    }
+    return copy;
+  }
+
+  /**
+   * Checks if a path is the same as another path or one of its parents.
+   *
+   * @param parentPath the parent path
+   * @param path the path
+   * @return true, if successful
+   */
+  private static boolean isSameOrParent(String parentPath, String path) {
+    return path.equals(parentPath) || path.startsWith(parentPath.endsWith("/") ? parentPath : parentPath + "/");
+  }
+
+  /**
+   * Cached resources of a path.
+   */
+  private static class Entry {
+
+    /** The resources. */
+    private final Set<Resource> resources;
+
+    /** The expiration time. */
+    private final long expirationTime;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param resources the resources
+     * @param expirationTime the expiration time
+     */
+    Entry(Set<Resource> resources, long expirationTime) {
+      this.resources = resources;
+      this.expirationTime = expirationTime;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.impl;
+
+import org.apache.commons.io.IOUtils;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
+import org.exoplatform.management.service.api.BulkImportArchive;
+import org.exoplatform.management.service.api.StagingService;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.services.rest.resource.ResourceContainer;
+import org.picocontainer.Startable;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.annotation.security.RolesAllowed;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+/**
+ * Receives a {@link BulkImportArchive} gathering the exports of several
+ * categories and imports them with
+ * {@link StagingService#importBulkArchive(File)}.
+ */
+@Path("/staging/bulk")
+@RolesAllowed("administrators")
+public class StagingBulkImportREST implements ResourceContainer, Startable {
+
+  /** The Constant LOG. */
+  private static final Log LOG = ExoLogger.getLogger(StagingBulkImportREST.class);
+
+  /** The staging service. */
+  private StagingService stagingService;
+
+  /**
+   * Instantiates a new staging bulk import REST.
+   *
+   * @param stagingService the staging service
+   */
+  public StagingBulkImportREST(StagingService stagingService) {
+    this.stagingService = stagingService;
+  }
+
+  /**
+   * Imports a bulk archive.
+   *
+   * @param archiveInputStream the bulk archive
+   * @return the response
+   */
+  @PUT
+  @Consumes("application/zip")
+  @Produces("text/plain")
+  public Response importBulkArchive(InputStream archiveInputStream) {
+    SpoolDirectory spoolDirectory = null;
+    try {
+      spoolDirectory = SpoolManager.getInstance().open("bulk-import");
+      File archiveFile = spoolDirectory.createFile("staging", "-bulk.zip");
+      OutputStream outputStream = spoolDirectory.openOutputStream(archiveFile);
+      try {
+        IOUtils.copy(archiveInputStream, outputStream);
+      } finally {
+        outputStream.close();
+      }
+      LOG.info("Bulk archive received (" + archiveFile.length() + " bytes), importing data.");
+      stagingService.importBulkArchive(archiveFile);
+      return Response.ok().build();
+    } catch (Exception e) {
+      LOG.error("Error while importing bulk archive", e);
+      return Response.status(Status.INTERNAL_SERVER_ERROR).entity(e.getMessage()).build();
+    } finally {
+      if (spoolDirectory != null) {
+        spoolDirectory.close();
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void start() {}
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void stop() {}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.impl;
+
+import org.exoplatform.management.service.api.Utils;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.services.rest.resource.ResourceContainer;
+import org.picocontainer.Startable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.security.RolesAllowed;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+/**
+ * Negotiates the entries to send before a synchronization: the source server
+ * posts the manifest of the exported archive and receives the names of the
+ * entries that are not stored in this server.
+ */
+@Path("/staging/entries")
+@RolesAllowed("administrators")
+public class StagingEntriesREST implements ResourceContainer, Startable {
+
+  /** The Constant LOG. */
+  private static final Log LOG = ExoLogger.getLogger(StagingEntriesREST.class);
+
+  /** The entries store. */
+  private ZipEntriesStore entriesStore;
+
+  /**
+   * Instantiates a new staging entries REST.
+   *
+   * @param entriesStore the entries store
+   */
+  public StagingEntriesREST(ZipEntriesStore entriesStore) {
+    this.entriesStore = entriesStore;
+  }
+
+  /**
+   * Gets the entries of a manifest that have to be sent.
+   *
+   * @param manifestInputStream the manifest, one "checksum TAB entry name"
+   *          line per entry
+   * @return the names of the missing entries, one per line
+   */
+  @POST
+  @Path("missing")
+  @Consumes("text/plain")
+  @Produces("text/plain")
+  public Response getMissingEntries(InputStream manifestInputStream) {
+    try {
+      Map<String, String> manifest = Utils.readEntriesManifest(manifestInputStream);
+      List<String> missingEntries = entriesStore.getMissingEntries(manifest);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(missingEntries.size() + " entries of " + manifest.size() + " are missing.");
+      }
+      StringBuilder builder = new StringBuilder();
+      for (String missingEntry : missingEntries) {
+        builder.append(missingEntry).append('\n');
+      }
+      return Response.ok(builder.toString()).build();
+    } catch (IOException e) {
+      LOG.warn("Error while reading synchronization manifest", e);
+      return Response.status(Status.BAD_REQUEST).build();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void start() {}
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void stop() {}
+}
@@ -20,11 +20,20 @@ package org.exoplatform.management.service.impl;
 
 import org.exoplatform.container.PortalContainer;
 import org.exoplatform.management.common.AbstractOperationHandler;
+import org.exoplatform.management.common.ExportEstimation;
+import org.exoplatform.management.common.RateLimiter;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
+import org.exoplatform.management.common.importop.DeferredCacheInvalidation;
+import org.exoplatform.management.common.importop.ImportArchive;
+import org.exoplatform.management.service.api.BulkImportArchive;
 import org.exoplatform.management.service.api.Resource;
 import org.exoplatform.management.service.api.ResourceCategory;
 import org.exoplatform.management.service.api.ResourceHandler;
 import org.exoplatform.management.service.api.StagingService;
+import org.exoplatform.management.service.api.ZipArchiveMerger;
 import org.exoplatform.management.service.handler.ResourceHandlerLocator;
+import org.exoplatform.services.cache.CacheService;
 import org.exoplatform.services.jcr.RepositoryService;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
@@ -40,15 +49,20 @@ import org.gatein.management.api.operation.OperationNames;
 import org.gatein.management.api.operation.model.ReadResourceModel;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import javax.inject.Singleton;
 import javax.jcr.NodeIterator;
@@ -61,6 +75,30 @@ import javax.jcr.query.Query;
 @Singleton
 public class StagingServiceImpl implements StagingService {
 
+  /** The Constant EXPORT_THREADS_PARAM. */
+  public static final String EXPORT_THREADS_PARAM = "exo.staging.export.threads";
+
+  /**
+   * System property used to limit the bytes per second read from imported
+   * archives, shared by all imports (not limited by default).
+   */
+  public static final String IMPORT_BANDWIDTH_PARAM = ImportArchive.IMPORT_BANDWIDTH_PARAM;
+
+  /**
+   * System property used to refuse exports whose estimated size, in bytes,
+   * exceeds it (not limited by default).
+   */
+  public static final String EXPORT_MAX_SIZE_PARAM = "exo.staging.export.maxSize";
+
+  /**
+   * System property used to estimate the duration of exports and
+   * synchronizations, in bytes per second (5 MB/s by default).
+   */
+  public static final String ESTIMATION_THROUGHPUT_PARAM = "exo.staging.estimation.throughput";
+
+  /** The Constant DEFAULT_ESTIMATION_THROUGHPUT, in bytes per second. */
+  private static final long DEFAULT_ESTIMATION_THROUGHPUT = 5L * 1024 * 1024;
+
   /** The log. */
   private Log log = ExoLogger.getLogger(StagingServiceImpl.class);
 
@@ -73,6 +111,12 @@ public class StagingServiceImpl implements StagingService {
   /** The repository service. */
   private RepositoryService repositoryService = null;
 
+  /** The resources cache. */
+  private final ResourcesCache resourcesCache = new ResourcesCache();
+
+  /** The import rate limiter, shared with the import archives, null if not limited. */
+  private final RateLimiter importRateLimiter = ImportArchive.getImportRateLimiter();
+
   /**
    * Instantiates a new staging service impl.
    *
@@ -87,42 +131,83 @@ public class StagingServiceImpl implements StagingService {
   }
 
   /**
-   * Export selected resources with selected options.
+   * Export selected resources with selected options. Each category is
+   * exported concurrently in its own shard file, then shards are merged
+   * without recompressing their entries. Shards and exported file are written
+   * in a staging spool directory, deleted when the exported file is released.
    *
    * @param selectedResourceCategories the selected resource categories
    * @return the file
    * @throws Exception the exception
    */
   public File export(List<ResourceCategory> selectedResourceCategories) throws Exception {
+    checkEstimatedSize(selectedResourceCategories, Long.getLong(EXPORT_MAX_SIZE_PARAM, 0L));
+
     File file = null;
-    ZipOutputStream exportFileOS = null;
+    SpoolDirectory spoolDirectory = null;
+    ZipArchiveMerger zipArchiveMerger = null;
     try {
-      file = File.createTempFile("staging", "-export.zip");
-      file.deleteOnExit();
-      // FileOutputStream will be closed by ZipOutputStream.close
-      exportFileOS = new ZipOutputStream(new FileOutputStream(file));
+      spoolDirectory = SpoolManager.getInstance().open("export");
+      file = spoolDirectory.createFile("staging", "-export.zip");
+      // The output stream will be closed by ZipArchiveMerger.close
+      zipArchiveMerger = new ZipArchiveMerger(spoolDirectory.openOutputStream(file));
     } catch (Exception ex) {
+      if (spoolDirectory != null) {
+        spoolDirectory.close();
+      }
       throw new OperationException(OperationNames.EXPORT_RESOURCE, "Error while creating a zip temp file to export resources", ex);
     }
 
-    for (ResourceCategory selectedResourceCategory : selectedResourceCategories) {
-      // Gets the right resource handler thanks to the Service Locator
-      ResourceHandler resourceHandler = ResourceHandlerLocator.getResourceHandler(selectedResourceCategory.getPath());
-      resourceHandler.export(selectedResourceCategory.getResources(), exportFileOS, selectedResourceCategory.getExportOptions());
+    List<File> shardFiles = new ArrayList<File>();
+    ExecutorService exportExecutor = Executors.newFixedThreadPool(getExportThreads(selectedResourceCategories.size()));
+    try {
+      List<Future<File>> shardFutures = new ArrayList<Future<File>>();
+      for (ResourceCategory selectedResourceCategory : selectedResourceCategories) {
+        shardFutures.add(exportExecutor.submit(new ContextualCallable<File>(new ExportShardTask(selectedResourceCategory, spoolDirectory))));
+      }
+      // Shards are merged in the categories order, once they are all
+      // exported
+      Exception exportException = null;
+      for (Future<File> shardFuture : shardFutures) {
+        try {
+          shardFiles.add(shardFuture.get());
+        } catch (ExecutionException e) {
+          if (exportException == null) {
+            exportException = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          } else {
+            log.error("Error while exporting resources", e.getCause());
+          }
+        }
+      }
+      if (exportException != null) {
+        throw exportException;
+      }
+
+      for (File shardFile : shardFiles) {
+        zipArchiveMerger.addArchive(shardFile);
+      }
+    } catch (Exception e) {
+      closeQuietly(zipArchiveMerger);
+      spoolDirectory.close();
+      throw e;
+    } finally {
+      exportExecutor.shutdownNow();
+      for (File shardFile : shardFiles) {
+        shardFile.delete();
+      }
     }
 
     try {
-      exportFileOS.flush();
-      exportFileOS.close();
+      zipArchiveMerger.close();
     } catch (Exception ex) {
+      spoolDirectory.close();
       throw new OperationException(OperationNames.EXPORT_RESOURCE, "Error while closing exported zip temp file." + file.getPath(), ex);
     }
-    try (ZipFile zipFile = new ZipFile(file)) {
-      if (zipFile.size() == 0) {
-        file.delete();
-        return null;
-      }
+    if (zipArchiveMerger.getEntriesCount() == 0) {
+      spoolDirectory.close();
+      return null;
     }
+    log.info("Resources exported in " + file.getPath() + ": " + zipArchiveMerger.getEntriesCount() + " entries, " + zipArchiveMerger.getSize() + " bytes.");
     return file;
   }
 
@@ -131,8 +216,59 @@ public class StagingServiceImpl implements StagingService {
    */
   @Override
   public void importResource(String selectedResourcePath, InputStream inputStream, Map<String, List<String>> attributes) throws IOException {
+    try {
+      executeImport(selectedResourcePath, inputStream, attributes);
+    } finally {
+      // Even a failed import may have modified some resources
+      invalidateResources(selectedResourcePath);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void importBulkArchive(File archiveFile) throws IOException {
+    ZipFile zipFile = new ZipFile(archiveFile);
+    Set<String> importedPaths = new LinkedHashSet<String>();
+    DeferredCacheInvalidation.begin();
+    try {
+      List<BulkImportArchive.Entry> entries = BulkImportArchive.sortInImportOrder(BulkImportArchive.readEntries(zipFile));
+      log.info("Bulk import of " + entries.size() + " exports.");
+      for (BulkImportArchive.Entry entry : entries) {
+        importedPaths.add(entry.getPath());
+        // The import operation copies the export to its spool directory and
+        // indexes it, as for an export uploaded alone
+        InputStream inputStream = zipFile.getInputStream(zipFile.getEntry(entry.getName()));
+        try {
+          executeImport(entry.getPath(), inputStream, entry.getAttributes());
+        } finally {
+          inputStream.close();
+        }
+      }
+    } finally {
+      try {
+        DeferredCacheInvalidation.end(PortalContainer.getInstance().getComponentInstanceOfType(CacheService.class));
+      } finally {
+        for (String importedPath : importedPaths) {
+          invalidateResources(importedPath);
+        }
+        zipFile.close();
+      }
+    }
+  }
+
+  /**
+   * Executes the import operation of a managed path.
+   *
+   * @param selectedResourcePath the selected resource path
+   * @param inputStream the input stream
+   * @param attributes the attributes
+   */
+  private void executeImport(String selectedResourcePath, InputStream inputStream, Map<String, List<String>> attributes) {
     ManagedRequest request = null;
     if (inputStream != null) {
+      inputStream = RateLimiter.throttle(importRateLimiter, inputStream);
       request = ManagedRequest.Factory.create(OperationNames.IMPORT_RESOURCE, PathAddress.pathAddress(selectedResourcePath), attributes, inputStream, ContentType.ZIP);
     } else {
       request = ManagedRequest.Factory.create(OperationNames.IMPORT_RESOURCE, PathAddress.pathAddress(selectedResourcePath), attributes, ContentType.ZIP);
@@ -144,6 +280,19 @@ public class StagingServiceImpl implements StagingService {
     }
   }
 
+  /**
+   * Invalidates the cached resources of an imported path.
+   *
+   * @param importedPath the imported path
+   */
+  private void invalidateResources(String importedPath) {
+    if (importedPath.startsWith(BACKUP_PATH)) {
+      resourcesCache.clear();
+    } else {
+      resourcesCache.invalidate(importedPath);
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -189,6 +338,22 @@ public class StagingServiceImpl implements StagingService {
    * {@inheritDoc}
    */
   public Set<Resource> getResources(String path) {
+    Set<Resource> children = resourcesCache.get(path);
+    if (children != null) {
+      return children;
+    }
+    children = readResources(path);
+    resourcesCache.put(path, children);
+    return children;
+  }
+
+  /**
+   * Reads the resources of a path using the READ_RESOURCE operation.
+   *
+   * @param path the path
+   * @return the resources
+   */
+  private Set<Resource> readResources(String path) {
     ManagedRequest request = ManagedRequest.Factory.create(OperationNames.READ_RESOURCE, PathAddress.pathAddress(path), ContentType.JSON);
     ManagedResponse response = getManagementController().execute(request);
     if (!response.getOutcome().isSuccess()) {
@@ -232,6 +397,129 @@ public class StagingServiceImpl implements StagingService {
     return getResources(USER_WIKIS_PATH);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ExportEstimation estimate(List<ResourceCategory> selectedResourceCategories) {
+    ExportEstimation estimation = new ExportEstimation();
+    for (ResourceCategory resourceCategory : selectedResourceCategories) {
+      ResourceHandler resourceHandler = ResourceHandlerLocator.getResourceHandler(resourceCategory.getPath());
+      if (resourceHandler == null) {
+        estimation.addUnknownPath(resourceCategory.getPath());
+      } else {
+        estimation.add(resourceHandler.estimate(resourceCategory.getResources(), resourceCategory.getExportOptions()));
+      }
+    }
+    long throughput = Math.max(1L, Long.getLong(ESTIMATION_THROUGHPUT_PARAM, DEFAULT_ESTIMATION_THROUGHPUT));
+    estimation.setDuration(estimation.getSize() * 1000L / throughput);
+    return estimation;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void checkEstimatedSize(List<ResourceCategory> selectedResourceCategories, long maxSize) throws IllegalStateException {
+    if (maxSize <= 0) {
+      return;
+    }
+    ExportEstimation estimation = estimate(selectedResourceCategories);
+    if (estimation.getSize() > maxSize) {
+      throw new IllegalStateException("Estimated export size (" + estimation + ") exceeds the limit of " + maxSize + " bytes");
+    }
+    if (!estimation.isComplete()) {
+      log.warn("The size of " + estimation.getUnknownPaths() + " can't be estimated, it isn't checked against the limit of " + maxSize + " bytes");
+    }
+    if (estimation.isApproximate()) {
+      log.info("The export size checked against the limit of " + maxSize + " bytes is approximate: " + estimation);
+    }
+  }
+
+  /**
+   * Gets the number of threads used to export categories, configured using
+   * "exo.staging.export.threads" (number of available processors by
+   * default).
+   *
+   * @param categoriesCount the number of categories to export
+   * @return the export threads
+   */
+  private int getExportThreads(int categoriesCount) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    String threadsString = System.getProperty(EXPORT_THREADS_PARAM);
+    if (threadsString != null && !threadsString.trim().isEmpty()) {
+      try {
+        threads = Integer.parseInt(threadsString.trim());
+      } catch (NumberFormatException e) {
+        log.warn("Invalid value of '" + EXPORT_THREADS_PARAM + "': " + threadsString + ", default value is used.");
+      }
+    }
+    return Math.max(1, Math.min(threads, categoriesCount));
+  }
+
+  /**
+   * Close quietly a zip archive merger.
+   *
+   * @param zipArchiveMerger the zip archive merger
+   */
+  private void closeQuietly(ZipArchiveMerger zipArchiveMerger) {
+    try {
+      zipArchiveMerger.close();
+    } catch (IOException e) {
+      log.warn("Error while closing exported zip temp file.", e);
+    }
+  }
+
+  /**
+   * Exports one category in its own shard file.
+   */
+  private static class ExportShardTask implements Callable<File> {
+
+    /** The resource category. */
+    private final ResourceCategory resourceCategory;
+
+    /** The spool directory. */
+    private final SpoolDirectory spoolDirectory;
+
+    /**
+     * Instantiates a new export shard task.
+     *
+     * @param resourceCategory the resource category
+     * @param spoolDirectory the spool directory of the export
+     */
+    public ExportShardTask(ResourceCategory resourceCategory, SpoolDirectory spoolDirectory) {
+      this.resourceCategory = resourceCategory;
+      this.spoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public File call() throws Exception {
+      File shardFile = spoolDirectory.createFile("staging", "-shard.zip");
+      // The output stream will be closed by ZipArchiveMerger.close
+      ZipArchiveMerger shardArchive = new ZipArchiveMerger(spoolDirectory.openOutputStream(shardFile));
+      try {
+        // Gets the right resource handler thanks to the Service Locator
+        ResourceHandler resourceHandler = ResourceHandlerLocator.getResourceHandler(resourceCategory.getPath());
+        resourceHandler.export(resourceCategory.getResources(), shardArchive, resourceCategory.getExportOptions());
+        shardArchive.close();
+        shardArchive = null;
+        return shardFile;
+      } finally {
+        if (shardArchive != null) {
+          try {
+            shardArchive.close();
+          } catch (IOException e) {
+            // Nothing to do, the original exception is thrown
+          }
+          shardFile.delete();
+        }
+      }
+    }
+  }
+
   /**
    * Gets the management controller.
    *
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.impl;
+
+import org.exoplatform.management.common.SpoolManager;
+import org.exoplatform.services.rest.resource.ResourceContainer;
+import org.picocontainer.Startable;
+
+import javax.annotation.security.RolesAllowed;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+/**
+ * Exposes the usage of the staging spool, to monitor it against its quota.
+ * The response is a properties file: "usedSpace" and "quota" in bytes (quota
+ * is 0 if not limited), and "operations", the number of running operations
+ * using the spool. The size of the entries stored for deduplicated
+ * synchronizations is also exposed: "entriesSize" and "entriesMaxSize" in
+ * bytes (0 if not bounded).
+ */
+@Path("/staging/spool")
+@RolesAllowed("administrators")
+public class StagingSpoolREST implements ResourceContainer, Startable {
+
+  /** The entries store. */
+  private ZipEntriesStore entriesStore;
+
+  /**
+   * Instantiates a new staging spool REST.
+   *
+   * @param entriesStore the entries store
+   */
+  public StagingSpoolREST(ZipEntriesStore entriesStore) {
+    this.entriesStore = entriesStore;
+  }
+
+  /**
+   * Gets the usage of the staging spool.
+   *
+   * @return the spool usage
+   */
+  @GET
+  @Produces("text/plain")
+  public Response getUsage() {
+    SpoolManager spoolManager = SpoolManager.getInstance();
+    StringBuilder builder = new StringBuilder();
+    builder.append("usedSpace=").append(spoolManager.getUsedSpace()).append('\n');
+    builder.append("quota=").append(spoolManager.getQuota()).append('\n');
+    builder.append("operations=").append(spoolManager.getOpenDirectoriesCount()).append('\n');
+    builder.append("entriesSize=").append(entriesStore.getStoredSize()).append('\n');
+    builder.append("entriesMaxSize=").append(entriesStore.getMaxSize()).append('\n');
+    return Response.ok(builder.toString()).build();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void start() {}
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void stop() {}
+}
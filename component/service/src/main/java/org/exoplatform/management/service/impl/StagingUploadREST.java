@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.exoplatform.management.common.SpoolManager;
+import org.exoplatform.management.service.api.StagingService;
+import org.exoplatform.management.service.api.Utils;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.services.rest.resource.ResourceContainer;
+import org.picocontainer.Startable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.annotation.security.RolesAllowed;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
+
+/**
+ * Receives synchronization payloads as a sequence of offset-addressed chunks.
+ * Each chunk is acknowledged with the new size of the uploaded file, so an
+ * interrupted transfer can be resumed from the last acknowledged offset. Once
+ * all chunks are received, the file is verified (size and SHA-1 checksum) and
+ * imported using {@link StagingService#importResource(String, InputStream, Map)}.
+ * If the transfer is deduplicated, the received file can be a partial archive
+ * that is completed with the entries stored by {@link ZipEntriesStore}.
+ * A committed transfer is remembered until it's expired, so a commit sent
+ * again by a source server that didn't receive the response is acknowledged
+ * without importing the data twice. Uploads not modified for a day are
+ * deleted periodically.
+ *
+ * Uploads are kept in the staging spool root directory, where they survive
+ * restarts, and their size is counted in the spool quota.
+ */
+@Path("/staging/upload")
+@RolesAllowed("administrators")
+public class StagingUploadREST implements ResourceContainer, Startable {
+
+  /** The Constant LOG. */
+  private static final Log LOG = ExoLogger.getLogger(StagingUploadREST.class);
+
+  /** The Constant UPLOAD_DIRECTORY_PARAM. */
+  public static final String UPLOAD_DIRECTORY_PARAM = "exo.staging.upload.directory";
+
+  /** The Constant PATH_PARAM. */
+  public static final String PATH_PARAM = "staging-path";
+
+  /** The Constant SIZE_PARAM. */
+  public static final String SIZE_PARAM = "staging-size";
+
+  /** The Constant CHECKSUM_PARAM. */
+  public static final String CHECKSUM_PARAM = "staging-checksum";
+
+  /** The Constant DEDUPLICATED_PARAM. */
+  public static final String DEDUPLICATED_PARAM = "staging-deduplicated";
+
+  /** The Constant OFFSET_PARAM. */
+  public static final String OFFSET_PARAM = "offset";
+
+  /** The Constant TRANSFER_ID_PATTERN. */
+  private static final Pattern TRANSFER_ID_PATTERN = Pattern.compile("^[A-Za-z0-9\\-]{1,64}$");
+
+  /** The Constant EXPIRATION_INTERVAL_PARAM, in seconds. */
+  public static final String EXPIRATION_INTERVAL_PARAM = "exo.staging.upload.expirationInterval";
+
+  /** The default interval between two expirations of uploads, in seconds. */
+  private static final long DEFAULT_EXPIRATION_INTERVAL = 60L * 60L;
+
+  /** Uploads not modified since this delay are deleted. */
+  private static final long STALE_UPLOAD_DELAY = 24L * 60L * 60L * 1000L;
+
+  /** The suffix of the files marking committed transfers. */
+  private static final String COMMITTED_SUFFIX = ".committed";
+
+  /** The number of locks shared by the transfers. */
+  private static final int TRANSFER_LOCKS_COUNT = 64;
+
+  /** The staging service. */
+  private StagingService stagingService;
+
+  /** The entries store. */
+  private ZipEntriesStore entriesStore;
+
+  /** The upload directory. */
+  private File uploadDirectory;
+
+  /** The spool manager, whose quota includes the uploads. */
+  private SpoolManager spoolManager;
+
+  /** The bytes of the files of the upload directory. */
+  private final AtomicLong uploadedSpace = new AtomicLong();
+
+  /**
+   * Locks used to serialize operations made on the same transfer. They are
+   * never removed: a transfer always maps to the same lock, even while another
+   * thread is waiting for it.
+   */
+  private final Object[] transferLocks = new Object[TRANSFER_LOCKS_COUNT];
+
+  /** The expiration executor. */
+  private ScheduledExecutorService expirationExecutor;
+
+  /**
+   * Instantiates a new staging upload REST.
+   *
+   * @param stagingService the staging service
+   * @param entriesStore the entries store
+   */
+  public StagingUploadREST(StagingService stagingService, ZipEntriesStore entriesStore) {
+    this.stagingService = stagingService;
+    this.entriesStore = entriesStore;
+    for (int i = 0; i < TRANSFER_LOCKS_COUNT; i++) {
+      transferLocks[i] = new Object();
+    }
+    this.spoolManager = SpoolManager.getInstance();
+    String uploadDirectoryPath = System.getProperty(UPLOAD_DIRECTORY_PARAM);
+    this.uploadDirectory = uploadDirectoryPath == null || uploadDirectoryPath.isEmpty() ? new File(spoolManager.getRootDirectory(), "uploads") : new File(uploadDirectoryPath);
+  }
+
+  /**
+   * Gets the last acknowledged offset of a transfer.
+   *
+   * @param transferId the transfer id
+   * @return the size of data already received for this transfer
+   */
+  @GET
+  @Path("{transferId}")
+  @Produces("text/plain")
+  public Response getOffset(@PathParam("transferId") String transferId) {
+    if (!isValidTransferId(transferId)) {
+      return Response.status(Status.BAD_REQUEST).build();
+    }
+    synchronized (getLock(transferId)) {
+      return Response.ok(String.valueOf(getTransferFile(transferId).length())).build();
+    }
+  }
+
+  /**
+   * Writes a chunk of data at the given offset. If the offset is lower than
+   * the data already received, previously received data after this offset is
+   * overwritten. If it's greater, the chunk is refused with a 409 status and
+   * the current offset is returned.
+   *
+   * @param transferId the transfer id
+   * @param offset the offset of the chunk in the transferred file
+   * @param chunkInputStream the chunk content
+   * @return the new acknowledged offset
+   */
+  @PUT
+  @Path("{transferId}")
+  @Produces("text/plain")
+  public Response putChunk(@PathParam("transferId") String transferId, @QueryParam(OFFSET_PARAM) long offset, InputStream chunkInputStream) {
+    if (!isValidTransferId(transferId) || offset < 0) {
+      return Response.status(Status.BAD_REQUEST).build();
+    }
+    synchronized (getLock(transferId)) {
+      File transferFile = getTransferFile(transferId);
+      long currentOffset = transferFile.length();
+      if (offset > currentOffset) {
+        return Response.status(Status.CONFLICT).entity(String.valueOf(currentOffset)).build();
+      }
+      RandomAccessFile randomAccessFile = null;
+      try {
+        spoolManager.checkQuota(uploadDirectory);
+        FileUtils.forceMkdir(uploadDirectory);
+        if (offset == 0) {
+          // The same content is sent again, it will be imported again
+          deleteTransferFile(getCommittedFile(transferId));
+        }
+        randomAccessFile = new RandomAccessFile(transferFile, "rw");
+        randomAccessFile.setLength(offset);
+        randomAccessFile.seek(offset);
+        byte[] buffer = new byte[64 * 1024];
+        int length;
+        while ((length = chunkInputStream.read(buffer)) > 0) {
+          randomAccessFile.write(buffer, 0, length);
+        }
+        return Response.ok(String.valueOf(randomAccessFile.length())).build();
+      } catch (IOException e) {
+        LOG.warn("Error while receiving chunk of transfer '" + transferId + "' at offset " + offset, e);
+        return Response.status(Status.INTERNAL_SERVER_ERROR).entity(String.valueOf(transferFile.length())).build();
+      } finally {
+        IOUtils.closeQuietly(randomAccessFile);
+        addUploadedSpace(transferFile.length() - currentOffset);
+      }
+    }
+  }
+
+  /**
+   * Verifies the received file and imports it. Received data is deleted only
+   * if its checksum doesn't match, it is kept if the import fails so that the
+   * commit can be retried.
+   *
+   * @param transferId the transfer id
+   * @param uriInfo the request URI informations, used to get import options
+   * @return the response
+   */
+  @POST
+  @Path("{transferId}/commit")
+  @Produces("text/plain")
+  public Response commit(@PathParam("transferId") String transferId, @Context UriInfo uriInfo) {
+    if (!isValidTransferId(transferId)) {
+      return Response.status(Status.BAD_REQUEST).build();
+    }
+    MultivaluedMap<String, String> parameters = uriInfo.getQueryParameters();
+    String path = parameters.getFirst(PATH_PARAM);
+    String size = parameters.getFirst(SIZE_PARAM);
+    String checksum = parameters.getFirst(CHECKSUM_PARAM);
+    boolean deduplicated = Boolean.parseBoolean(parameters.getFirst(DEDUPLICATED_PARAM));
+    if (path == null || size == null || checksum == null) {
+      return Response.status(Status.BAD_REQUEST).entity("Parameters '" + PATH_PARAM + "', '" + SIZE_PARAM + "' and '" + CHECKSUM_PARAM + "' are mandatory.").build();
+    }
+    long expectedSize;
+    try {
+      expectedSize = Long.parseLong(size);
+    } catch (NumberFormatException e) {
+      expectedSize = -1;
+    }
+    if (expectedSize < 0) {
+      return Response.status(Status.BAD_REQUEST).entity("Parameter '" + SIZE_PARAM + "' is not a valid size: " + size).build();
+    }
+
+    Map<String, List<String>> attributes = new HashMap<String, List<String>>();
+    for (String parameterName : parameters.keySet()) {
+      if (!parameterName.equals(PATH_PARAM) && !parameterName.equals(SIZE_PARAM) && !parameterName.equals(CHECKSUM_PARAM) && !parameterName.equals(DEDUPLICATED_PARAM)) {
+        attributes.put(parameterName, new ArrayList<String>(parameters.get(parameterName)));
+      }
+    }
+
+    synchronized (getLock(transferId)) {
+      File transferFile = getTransferFile(transferId);
+      File archiveFile = new File(uploadDirectory, transferId + ".full.zip");
+      File committedFile = getCommittedFile(transferId);
+      try {
+        if (!transferFile.exists() && committedFile.exists()) {
+          LOG.info("Transfer '" + transferId + "' was already imported.");
+          return Response.ok().build();
+        }
+        if (transferFile.length() != expectedSize) {
+          return Response.status(Status.CONFLICT).entity(String.valueOf(transferFile.length())).build();
+        }
+        String fileChecksum = Utils.computeChecksum(transferFile);
+        if (!fileChecksum.equalsIgnoreCase(checksum)) {
+          LOG.warn("Checksum of transfer '" + transferId + "' doesn't match, received data is discarded.");
+          deleteTransferFile(transferFile);
+          return Response.status(Status.CONFLICT).entity("0").build();
+        }
+
+        File importedFile = transferFile;
+        if (deduplicated) {
+          boolean rebuilt = false;
+          try {
+            rebuilt = entriesStore.rebuildArchive(transferFile, archiveFile);
+          } finally {
+            // The rebuilt archive is counted until it's deleted
+            addUploadedSpace(archiveFile.length());
+          }
+          if (rebuilt) {
+            importedFile = archiveFile;
+          } else {
+            entriesStore.storeEntries(transferFile);
+          }
+        }
+
+        LOG.info("Transfer '" + transferId + "' completed (" + size + " bytes), importing data in '" + path + "'.");
+        InputStream inputStream = new FileInputStream(importedFile);
+        try {
+          stagingService.importResource(path, inputStream, attributes);
+        } finally {
+          inputStream.close();
+        }
+        deleteTransferFile(transferFile);
+        try {
+          committedFile.createNewFile();
+        } catch (IOException e) {
+          LOG.warn("Cannot mark transfer '" + transferId + "' as committed", e);
+        }
+        return Response.ok().build();
+      } catch (Exception e) {
+        // Received data is kept so that the commit can be retried, it is
+        // deleted by the expiration task if it isn't
+        LOG.error("Error while importing data of transfer '" + transferId + "'", e);
+        return Response.status(Status.INTERNAL_SERVER_ERROR).entity(e.getMessage()).build();
+      } finally {
+        deleteTransferFile(archiveFile);
+      }
+    }
+  }
+
+  /**
+   * Aborts a transfer and deletes received data.
+   *
+   * @param transferId the transfer id
+   * @return the response
+   */
+  @DELETE
+  @Path("{transferId}")
+  public Response abort(@PathParam("transferId") String transferId) {
+    if (!isValidTransferId(transferId)) {
+      return Response.status(Status.BAD_REQUEST).build();
+    }
+    synchronized (getLock(transferId)) {
+      deleteTransferFile(getTransferFile(transferId));
+      deleteTransferFile(getCommittedFile(transferId));
+    }
+    return Response.ok().build();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void start() {
+    File[] uploadedFiles = uploadDirectory.listFiles();
+    if (uploadedFiles != null) {
+      for (File uploadedFile : uploadedFiles) {
+        addUploadedSpace(uploadedFile.length());
+      }
+    }
+    deleteStaleUploads();
+
+    long interval = Long.getLong(EXPIRATION_INTERVAL_PARAM, DEFAULT_EXPIRATION_INTERVAL);
+    expirationExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "staging-upload-expiration");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    expirationExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          deleteStaleUploads();
+        } catch (Throwable e) {
+          LOG.error("Error while deleting stale synchronization uploads", e);
+        }
+      }
+    }, interval, interval, TimeUnit.SECONDS);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void stop() {
+    if (expirationExecutor != null) {
+      expirationExecutor.shutdownNow();
+      expirationExecutor = null;
+    }
+    spoolManager.addUsedSpace(-uploadedSpace.getAndSet(0));
+  }
+
+  /**
+   * Deletes the uploads and committed transfer marks not modified since
+   * {@link #STALE_UPLOAD_DELAY}, with the lock of their transfer.
+   */
+  private void deleteStaleUploads() {
+    File[] uploadedFiles = uploadDirectory.listFiles();
+    if (uploadedFiles == null) {
+      return;
+    }
+    long staleDate = System.currentTimeMillis() - STALE_UPLOAD_DELAY;
+    for (File uploadedFile : uploadedFiles) {
+      if (uploadedFile.lastModified() >= staleDate) {
+        continue;
+      }
+      String transferId = uploadedFile.getName();
+      int index = transferId.indexOf('.');
+      if (index > 0) {
+        transferId = transferId.substring(0, index);
+      }
+      if (isValidTransferId(transferId)) {
+        synchronized (getLock(transferId)) {
+          // The transfer may have been resumed meanwhile
+          if (uploadedFile.lastModified() < staleDate) {
+            LOG.info("Delete stale synchronization upload: " + uploadedFile.getName());
+            deleteTransferFile(uploadedFile);
+          }
+        }
+      } else {
+        LOG.info("Delete stale synchronization upload: " + uploadedFile.getName());
+        deleteTransferFile(uploadedFile);
+      }
+    }
+  }
+
+  /**
+   * Gets the lock of a transfer.
+   *
+   * @param transferId the transfer id
+   * @return the lock
+   */
+  private Object getLock(String transferId) {
+    return transferLocks[(transferId.hashCode() & Integer.MAX_VALUE) % TRANSFER_LOCKS_COUNT];
+  }
+
+  /**
+   * Gets the file where the data of a transfer is stored.
+   *
+   * @param transferId the transfer id
+   * @return the transfer file
+   */
+  private File getTransferFile(String transferId) {
+    return new File(uploadDirectory, transferId + ".zip");
+  }
+
+  /**
+   * Gets the file marking a transfer as committed.
+   *
+   * @param transferId the transfer id
+   * @return the committed file
+   */
+  private File getCommittedFile(String transferId) {
+    return new File(uploadDirectory, transferId + COMMITTED_SUFFIX);
+  }
+
+  /**
+   * Checks if the transfer id is safe to be used as file name.
+   *
+   * @param transferId the transfer id
+   * @return true, if is valid transfer id
+   */
+  private boolean isValidTransferId(String transferId) {
+    return transferId != null && TRANSFER_ID_PATTERN.matcher(transferId).matches();
+  }
+
+  /**
+   * Delete transfer file.
+   *
+   * @param transferFile the transfer file
+   */
+  private void deleteTransferFile(File transferFile) {
+    long length = transferFile.length();
+    if (transferFile.exists()) {
+      if (transferFile.delete()) {
+        addUploadedSpace(-length);
+      } else {
+        transferFile.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Counts bytes written in, or deleted from, the upload directory.
+   *
+   * @param bytes the bytes, negative if deleted
+   */
+  private void addUploadedSpace(long bytes) {
+    if (bytes != 0) {
+      uploadedSpace.addAndGet(bytes);
+      spoolManager.addUsedSpace(bytes);
+    }
+  }
+}
@@ -18,13 +18,23 @@
  */
 package org.exoplatform.management.service.impl;
 
-import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.StringUtils;
+import org.exoplatform.container.PortalContainer;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
+import org.exoplatform.management.service.api.AbstractResourceHandler;
+import org.exoplatform.management.service.api.BulkImportArchive;
 import org.exoplatform.management.service.api.ChromatticService;
+import org.exoplatform.management.service.api.FileDropTransport;
 import org.exoplatform.management.service.api.ResourceCategory;
 import org.exoplatform.management.service.api.ResourceHandler;
+import org.exoplatform.management.service.api.StagingService;
+import org.exoplatform.management.service.api.SynchronizationJob;
+import org.exoplatform.management.service.api.SynchronizationJob.State;
 import org.exoplatform.management.service.api.SynchronizationService;
 import org.exoplatform.management.service.api.TargetServer;
+import org.exoplatform.management.service.api.TargetServerClient;
+import org.exoplatform.management.service.api.TargetServerClient.HttpResponseException;
 import org.exoplatform.management.service.handler.ResourceHandlerLocator;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
@@ -33,9 +43,30 @@ import org.exoplatform.services.security.Identity;
 import org.exoplatform.services.security.IdentityConstants;
 import org.picocontainer.Startable;
 
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,9 +81,54 @@ public class SynchronizationServiceImpl implements SynchronizationService, Start
   /** The Constant LOG. */
   private static final Log LOG = ExoLogger.getLogger(SynchronizationServiceImpl.class);
 
+  /** The Constant SYNCHRONIZATION_THREADS_PARAM. */
+  public static final String SYNCHRONIZATION_THREADS_PARAM = "exo.staging.synchronization.threads";
+
+  /** The Constant JOBS_THREADS_PARAM, number of jobs executed concurrently. */
+  public static final String JOBS_THREADS_PARAM = "exo.staging.synchronization.jobs.threads";
+
+  /** The Constant JOBS_QUEUE_SIZE_PARAM, number of jobs waiting for a worker. */
+  public static final String JOBS_QUEUE_SIZE_PARAM = "exo.staging.synchronization.jobs.queueSize";
+
+  /** The Constant JOBS_RETENTION_PARAM, in seconds. */
+  public static final String JOBS_RETENTION_PARAM = "exo.staging.synchronization.jobs.retention";
+
+  /**
+   * System property used to refuse synchronizations whose estimated size, in
+   * bytes, exceeds it (not limited by default).
+   */
+  public static final String SYNCHRONIZATION_MAX_SIZE_PARAM = "exo.staging.synchronization.maxSize";
+
+  /**
+   * System property used to send all the categories of a synchronization in
+   * a single bulk archive, imported by one request on the target server.
+   */
+  public static final String SYNCHRONIZATION_BULK_PARAM = "exo.staging.synchronization.bulk";
+
+  /** The Constant DEFAULT_JOBS_QUEUE_SIZE. */
+  private static final int DEFAULT_JOBS_QUEUE_SIZE = 10;
+
+  /** The Constant DEFAULT_JOBS_RETENTION, in seconds. */
+  private static final int DEFAULT_JOBS_RETENTION = 3600;
+
   /** The chromattic service. */
   private ChromatticService chromatticService;
 
+  /** The staging service. */
+  private StagingService stagingService;
+
+  /** The executor used to synchronize independent categories concurrently. */
+  private ExecutorService synchronizationExecutor;
+
+  /** The executor of the synchronization jobs. */
+  private ThreadPoolExecutor jobsExecutor;
+
+  /** The synchronization jobs by id, in submission order. */
+  private final Map<String, SynchronizationJob> jobs = new LinkedHashMap<String, SynchronizationJob>();
+
+  /** The futures of the queued and running jobs, by job id. */
+  private final Map<String, Future<Void>> jobFutures = new ConcurrentHashMap<String, Future<Void>>();
+
   /**
    * Instantiates a new synchronization service impl.
    *
@@ -75,17 +151,14 @@ public class SynchronizationServiceImpl implements SynchronizationService, Start
    */
   @Override
   public void testServerConnection(TargetServer targetServer) throws Exception {
-    String targetServerURL = "http" + (targetServer.isSsl() ? "s://" : "://") + targetServer.getHost() + ":" + targetServer.getPort() + "/rest/private/staging/message/get";
-    URL url = new URL(targetServerURL);
-
-    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-    conn.setRequestMethod("GET");
-    String passString = targetServer.getUsername() + ":" + targetServer.getPassword();
-    String basicAuth = "Basic " + new String(Base64.encodeBase64(passString.getBytes()));
-    conn.setRequestProperty("Authorization", basicAuth);
-    int responseCode = conn.getResponseCode();
-    if (responseCode != 200) {
-      throw new RuntimeException("Could not connect to server: '" + targetServer + "'. HTTP error code = " + responseCode);
+    if (targetServer.isFileDrop()) {
+      FileDropTransport.checkDropDirectory(targetServer);
+      return;
+    }
+    try {
+      TargetServerClient.getInstance(targetServer).get("/rest/private/staging/message/get");
+    } catch (HttpResponseException e) {
+      throw new RuntimeException("Could not connect to server: '" + targetServer + "'. HTTP error code = " + e.getResponseCode());
     }
   }
 
@@ -133,16 +206,608 @@ public class SynchronizationServiceImpl implements SynchronizationService, Start
    */
   @Override
   public void synchronize(List<ResourceCategory> selectedResourcesCategories, TargetServer targetServer) throws Exception {
-    for (ResourceCategory selectedResourceCategory : selectedResourcesCategories) {
-      // Gets the right resource handler thanks to the Service Locator
-      ResourceHandler resourceHandler = ResourceHandlerLocator.getResourceHandler(selectedResourceCategory.getPath());
+    // Check handlers and size before sending anything
+    checkHandlers(selectedResourcesCategories);
+    checkSynchronizationSize(selectedResourcesCategories);
+
+    synchronizeCategories(selectedResourcesCategories, targetServer);
+  }
+
+  /**
+   * Synchronizes the categories, independent categories are synchronized
+   * concurrently.
+   *
+   * @param selectedResourcesCategories the selected resources categories
+   * @param targetServer the target server
+   * @throws Exception the exception
+   */
+  private void synchronizeCategories(List<ResourceCategory> selectedResourcesCategories, TargetServer targetServer) throws Exception {
+    if (Boolean.getBoolean(SYNCHRONIZATION_BULK_PARAM) && selectedResourcesCategories.size() > 1) {
+      synchronizeInBulk(selectedResourcesCategories, targetServer);
+      return;
+    }
+    SynchronizationJob job = SynchronizationJob.getCurrent();
+    List<ResourceCategory> pendingCategories = new ArrayList<ResourceCategory>(selectedResourcesCategories);
+    Collections.sort(pendingCategories);
+    List<ResourceCategory> runningCategories = new ArrayList<ResourceCategory>();
+    Map<Future<ResourceCategory>, ResourceCategory> runningTasks = new HashMap<Future<ResourceCategory>, ResourceCategory>();
+    CompletionService<ResourceCategory> completionService = new ExecutorCompletionService<ResourceCategory>(getSynchronizationExecutor());
+
+    Exception synchronizationException = null;
+    try {
+      while (!pendingCategories.isEmpty() || !runningTasks.isEmpty()) {
+        if (synchronizationException == null) {
+          // Submit all categories that don't wait for a pending or running one
+          for (ResourceCategory readyCategory : getReadyCategories(pendingCategories, runningCategories)) {
+            pendingCategories.remove(readyCategory);
+            runningCategories.add(readyCategory);
+            runningTasks.put(completionService.submit(new ContextualCallable<ResourceCategory>(new SynchronizationTask(readyCategory, targetServer, job))), readyCategory);
+          }
+          if (runningTasks.isEmpty()) {
+            throw new IllegalStateException("Cyclic dependency between categories: " + pendingCategories);
+          }
+        } else if (runningTasks.isEmpty()) {
+          break;
+        }
 
-      if (resourceHandler != null) {
-        resourceHandler.synchronize(selectedResourceCategory.getResources(), selectedResourceCategory.getExportOptions(), selectedResourceCategory.getImportOptions(), targetServer);
-      } else {
-        LOG.error("No handler for " + selectedResourceCategory.getPath());
-        throw new Exception("No handler for " + selectedResourceCategory.getPath());
+        Future<ResourceCategory> finishedTask = completionService.take();
+        ResourceCategory finishedCategory = runningTasks.remove(finishedTask);
+        runningCategories.remove(finishedCategory);
+        try {
+          finishedTask.get();
+        } catch (ExecutionException e) {
+          if (synchronizationException == null) {
+            LOG.error("Error while synchronizing " + finishedCategory.getPath() + ", remaining categories are not synchronized: " + pendingCategories, e.getCause());
+            synchronizationException = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          } else {
+            LOG.error("Error while synchronizing " + finishedCategory.getPath(), e.getCause());
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      // The synchronization is cancelled, stop the categories being synchronized
+      for (Future<ResourceCategory> runningTask : runningTasks.keySet()) {
+        runningTask.cancel(true);
+      }
+      throw e;
+    }
+    if (synchronizationException != null) {
+      throw synchronizationException;
+    }
+  }
+
+  /**
+   * Exports all the categories, in the import order, and sends them in a
+   * single bulk archive. If the target server doesn't support bulk imports,
+   * the exported categories are sent one by one.
+   *
+   * @param selectedResourcesCategories the selected resources categories
+   * @param targetServer the target server
+   * @throws Exception the exception
+   */
+  private void synchronizeInBulk(List<ResourceCategory> selectedResourcesCategories, TargetServer targetServer) throws Exception {
+    List<ResourceCategory> categories = new ArrayList<ResourceCategory>(selectedResourcesCategories);
+    Collections.sort(categories);
+
+    Map<File, ResourceCategory> exportedFiles = new LinkedHashMap<File, ResourceCategory>();
+    SpoolDirectory spoolDirectory = SpoolManager.getInstance().open("bulk-synchronization");
+    try {
+      List<BulkImportArchive.Entry> entries = new ArrayList<BulkImportArchive.Entry>();
+      for (ResourceCategory category : categories) {
+        if (SynchronizationJob.isCurrentCancelled()) {
+          throw new InterruptedException("Synchronization cancelled");
+        }
+        ResourceHandler resourceHandler = ResourceHandlerLocator.getResourceHandler(category.getPath());
+        Map<String, List<String>> attributes = AbstractResourceHandler.extractAttributes(category.getImportOptions());
+        for (File file : resourceHandler.exportForSynchronization(category.getResources(), category.getExportOptions())) {
+          exportedFiles.put(file, category);
+          entries.add(new BulkImportArchive.Entry(resourceHandler.getPath(), attributes, file));
+        }
+      }
+      if (entries.isEmpty()) {
+        SynchronizationJob.categoriesImported(categories.size());
+        return;
       }
+
+      if (targetServer.isFileDrop()) {
+        FileDropTransport.drop(entries, targetServer);
+        SynchronizationJob.categoriesImported(categories.size());
+        return;
+      }
+
+      File archiveFile = spoolDirectory.createFile("staging", "-bulk.zip");
+      BulkImportArchive.write(entries, spoolDirectory.openOutputStream(archiveFile));
+      LOG.info("Sending " + entries.size() + " exports of " + categories.size() + " categories in a bulk archive to server '" + targetServer.getHost() + "'");
+      if (BulkImportArchive.send(archiveFile, targetServer)) {
+        LOG.info("Bulk import in server '" + targetServer.getHost() + "' finished successfully.");
+        SynchronizationJob.categoriesImported(categories.size());
+        return;
+      }
+
+      LOG.warn("Target server '" + targetServer.getHost() + "' doesn't support bulk imports, categories are sent one by one.");
+      for (Map.Entry<File, ResourceCategory> exportedFile : exportedFiles.entrySet()) {
+        ResourceCategory category = exportedFile.getValue();
+        ResourceHandlerLocator.getResourceHandler(category.getPath()).sendExportedData(exportedFile.getKey(), category.getImportOptions(), targetServer);
+      }
+      SynchronizationJob.categoriesImported(categories.size());
+    } finally {
+      for (File file : exportedFiles.keySet()) {
+        SpoolManager.getInstance().release(file);
+      }
+      spoolDirectory.close();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<TargetServer, Exception> synchronize(List<ResourceCategory> selectedResourcesCategories, List<TargetServer> targetServers) throws Exception {
+    // Check handlers and size before exporting anything
+    checkHandlers(selectedResourcesCategories);
+    checkSynchronizationSize(selectedResourcesCategories);
+
+    List<ResourceCategory> categories = new ArrayList<ResourceCategory>(selectedResourcesCategories);
+    Collections.sort(categories);
+
+    // Categories are exported by this thread, in the import order, and each
+    // export is sent to the target servers as soon as it's available
+    Map<ResourceCategory, FutureTask<List<File>>> exports = new LinkedHashMap<ResourceCategory, FutureTask<List<File>>>();
+    for (ResourceCategory category : categories) {
+      exports.put(category, new FutureTask<List<File>>(new ExportTask(category)));
+    }
+
+    ExecutorService fanOutExecutor = Executors.newFixedThreadPool(Math.max(1, targetServers.size()), new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "staging-fan-out-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    try {
+      Map<TargetServer, Future<Void>> uploads = new LinkedHashMap<TargetServer, Future<Void>>();
+      for (TargetServer targetServer : targetServers) {
+        uploads.put(targetServer, fanOutExecutor.submit(new ContextualCallable<Void>(new FanOutTask(targetServer, exports))));
+      }
+
+      for (Map.Entry<ResourceCategory, FutureTask<List<File>>> export : exports.entrySet()) {
+        export.getValue().run();
+        try {
+          export.getValue().get();
+        } catch (ExecutionException e) {
+          LOG.error("Error while exporting " + export.getKey().getPath() + ", remaining categories are not synchronized", e.getCause());
+          break;
+        }
+      }
+      // Categories not exported because of a previous error
+      for (FutureTask<List<File>> export : exports.values()) {
+        export.cancel(false);
+      }
+
+      Map<TargetServer, Exception> errors = new LinkedHashMap<TargetServer, Exception>();
+      for (Map.Entry<TargetServer, Future<Void>> upload : uploads.entrySet()) {
+        TargetServer targetServer = upload.getKey();
+        try {
+          upload.getValue().get();
+          LOG.info("Synchronization with server '" + targetServer.getHost() + "' finished successfully.");
+        } catch (ExecutionException e) {
+          Exception exception = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          LOG.error("Synchronization with server '" + targetServer.getHost() + "' failed", exception);
+          errors.put(targetServer, exception);
+        }
+      }
+      return errors;
+    } finally {
+      fanOutExecutor.shutdownNow();
+      for (FutureTask<List<File>> export : exports.values()) {
+        if (export.isDone() && !export.isCancelled()) {
+          try {
+            for (File file : export.get()) {
+              SpoolManager.getInstance().release(file);
+            }
+          } catch (ExecutionException e) {
+            // Nothing was exported
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public SynchronizationJob submit(List<ResourceCategory> selectedResourcesCategories, TargetServer targetServer) throws Exception {
+    // Check handlers and size before queuing the job
+    checkHandlers(selectedResourcesCategories);
+    checkSynchronizationSize(selectedResourcesCategories);
+
+    List<ResourceCategory> categories = new ArrayList<ResourceCategory>(selectedResourcesCategories);
+    SynchronizationJob job = new SynchronizationJob(categories, targetServer);
+    FutureTask<Void> future = new FutureTask<Void>(new ContextualCallable<Void>(new JobTask(job, categories)));
+
+    synchronized (jobs) {
+      purgeExpiredJobs();
+      jobs.put(job.getId(), job);
+    }
+    jobFutures.put(job.getId(), future);
+    try {
+      getJobsExecutor().execute(future);
+    } catch (RejectedExecutionException e) {
+      jobFutures.remove(job.getId());
+      synchronized (jobs) {
+        jobs.remove(job.getId());
+      }
+      throw new IllegalStateException("The queue of synchronization jobs is full, retry later", e);
+    }
+    LOG.info("Synchronization job " + job.getId() + " submitted for server '" + targetServer.getHost() + "': " + job.getCategories());
+    return job;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public SynchronizationJob getJob(String jobId) {
+    synchronized (jobs) {
+      purgeExpiredJobs();
+      return jobs.get(jobId);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<SynchronizationJob> getJobs() {
+    synchronized (jobs) {
+      purgeExpiredJobs();
+      return new ArrayList<SynchronizationJob>(jobs.values());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean cancel(String jobId) {
+    SynchronizationJob job = getJob(jobId);
+    if (job == null || !job.finished(State.CANCELLED, null)) {
+      return false;
+    }
+    // The job is marked as cancelled first, so that its streams stop even if
+    // its threads don't handle the interruption
+    Future<Void> future = jobFutures.remove(jobId);
+    if (future != null) {
+      future.cancel(true);
+    }
+    synchronized (this) {
+      if (jobsExecutor != null) {
+        jobsExecutor.purge();
+      }
+    }
+    LOG.info("Synchronization job " + jobId + " cancelled");
+    return true;
+  }
+
+  /**
+   * Removes the jobs finished for more than the retention delay, configured
+   * using "exo.staging.synchronization.jobs.retention" in seconds (one hour by
+   * default). Must be called while holding the lock of the jobs.
+   */
+  private void purgeExpiredJobs() {
+    long expirationTime = System.currentTimeMillis() - Integer.getInteger(JOBS_RETENTION_PARAM, DEFAULT_JOBS_RETENTION) * 1000L;
+    Iterator<SynchronizationJob> jobsIterator = jobs.values().iterator();
+    while (jobsIterator.hasNext()) {
+      SynchronizationJob job = jobsIterator.next();
+      if (job.getState().isFinal() && job.getEndTime() < expirationTime) {
+        jobsIterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Checks that all categories have a resource handler.
+   *
+   * @param resourceCategories the resource categories
+   * @throws Exception if a category has no handler
+   */
+  private void checkHandlers(List<ResourceCategory> resourceCategories) throws Exception {
+    for (ResourceCategory resourceCategory : resourceCategories) {
+      if (ResourceHandlerLocator.getResourceHandler(resourceCategory.getPath()) == null) {
+        LOG.error("No handler for " + resourceCategory.getPath());
+        throw new Exception("No handler for " + resourceCategory.getPath());
+      }
+    }
+  }
+
+  /**
+   * Checks that the estimated size of the synchronized resources doesn't
+   * exceed the limit configured using "exo.staging.synchronization.maxSize".
+   *
+   * @param resourceCategories the resource categories
+   */
+  private void checkSynchronizationSize(List<ResourceCategory> resourceCategories) {
+    long maxSize = Long.getLong(SYNCHRONIZATION_MAX_SIZE_PARAM, 0L);
+    if (maxSize > 0) {
+      getStagingService().checkEstimatedSize(resourceCategories, maxSize);
+    }
+  }
+
+  /**
+   * Gets the staging service.
+   *
+   * @return the staging service
+   */
+  private StagingService getStagingService() {
+    if (stagingService == null) {
+      stagingService = (StagingService) PortalContainer.getInstance().getComponentInstanceOfType(StagingService.class);
+    }
+    return stagingService;
+  }
+
+  /**
+   * Gets the categories that can be synchronized now: categories that don't
+   * depend on a category not yet synchronized.
+   *
+   * @param pendingCategories the categories not yet submitted
+   * @param runningCategories the categories being synchronized
+   * @return the ready categories
+   */
+  private List<ResourceCategory> getReadyCategories(List<ResourceCategory> pendingCategories, List<ResourceCategory> runningCategories) {
+    List<ResourceCategory> readyCategories = new ArrayList<ResourceCategory>();
+    for (ResourceCategory pendingCategory : pendingCategories) {
+      if (!dependsOnOneOf(pendingCategory, pendingCategories) && !dependsOnOneOf(pendingCategory, runningCategories)) {
+        readyCategories.add(pendingCategory);
+      }
+    }
+    return readyCategories;
+  }
+
+  /**
+   * Checks if a category depends on one of the given categories.
+   *
+   * @param category the category
+   * @param categories the categories
+   * @return true, if the category depends on one of the categories
+   */
+  private boolean dependsOnOneOf(ResourceCategory category, List<ResourceCategory> categories) {
+    for (ResourceCategory otherCategory : categories) {
+      if (category.dependsOn(otherCategory)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the synchronization executor, its size is configured using
+   * "exo.staging.synchronization.threads" (1 by default: categories are
+   * synchronized sequentially).
+   *
+   * @return the synchronization executor
+   */
+  private synchronized ExecutorService getSynchronizationExecutor() {
+    if (synchronizationExecutor == null) {
+      int threads = 1;
+      String threadsString = System.getProperty(SYNCHRONIZATION_THREADS_PARAM);
+      if (!StringUtils.isEmpty(threadsString)) {
+        try {
+          threads = Math.max(1, Integer.parseInt(threadsString.trim()));
+        } catch (NumberFormatException e) {
+          LOG.warn("Invalid value of '" + SYNCHRONIZATION_THREADS_PARAM + "': " + threadsString + ", categories will be synchronized sequentially.");
+        }
+      }
+      synchronizationExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "staging-synchronization-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return synchronizationExecutor;
+  }
+
+  /**
+   * Gets the executor of the synchronization jobs. Its size is configured
+   * using "exo.staging.synchronization.jobs.threads" (1 by default) and the
+   * number of jobs waiting for a worker using
+   * "exo.staging.synchronization.jobs.queueSize" (10 by default).
+   *
+   * @return the jobs executor
+   */
+  private synchronized ThreadPoolExecutor getJobsExecutor() {
+    if (jobsExecutor == null) {
+      int threads = Math.max(1, Integer.getInteger(JOBS_THREADS_PARAM, 1));
+      int queueSize = Math.max(1, Integer.getInteger(JOBS_QUEUE_SIZE_PARAM, DEFAULT_JOBS_QUEUE_SIZE));
+      jobsExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "staging-synchronization-job-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return jobsExecutor;
+  }
+
+  /**
+   * Executes a synchronization job, with the job bound to the worker thread.
+   */
+  private class JobTask implements Callable<Void> {
+
+    /** The job. */
+    private final SynchronizationJob job;
+
+    /** The resource categories. */
+    private final List<ResourceCategory> resourceCategories;
+
+    /**
+     * Instantiates a new job task.
+     *
+     * @param job the job
+     * @param resourceCategories the resource categories
+     */
+    public JobTask(SynchronizationJob job, List<ResourceCategory> resourceCategories) {
+      this.job = job;
+      this.resourceCategories = resourceCategories;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Void call() throws Exception {
+      if (!job.started()) {
+        return null;
+      }
+      SynchronizationJob.setCurrent(job);
+      try {
+        synchronizeCategories(resourceCategories, job.getTargetServer());
+        if (job.finished(State.DONE, null)) {
+          LOG.info("Synchronization job " + job.getId() + " finished successfully.");
+        }
+      } catch (Exception e) {
+        if (job.finished(State.FAILED, e.getMessage() == null ? e.getClass().getName() : e.getMessage())) {
+          LOG.error("Synchronization job " + job.getId() + " failed", e);
+        } else {
+          LOG.info("Synchronization job " + job.getId() + " stopped: " + e.getMessage());
+        }
+      } finally {
+        SynchronizationJob.setCurrent(null);
+        jobFutures.remove(job.getId());
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Synchronizes one category using its resource handler.
+   */
+  private static class SynchronizationTask implements Callable<ResourceCategory> {
+
+    /** The resource category. */
+    private final ResourceCategory resourceCategory;
+
+    /** The target server. */
+    private final TargetServer targetServer;
+
+    /** The job of the synchronization, null if it isn't executed as a job. */
+    private final SynchronizationJob job;
+
+    /**
+     * Instantiates a new synchronization task.
+     *
+     * @param resourceCategory the resource category
+     * @param targetServer the target server
+     * @param job the job of the synchronization, may be null
+     */
+    public SynchronizationTask(ResourceCategory resourceCategory, TargetServer targetServer, SynchronizationJob job) {
+      this.resourceCategory = resourceCategory;
+      this.targetServer = targetServer;
+      this.job = job;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResourceCategory call() throws Exception {
+      SynchronizationJob.setCurrent(job);
+      try {
+        // Gets the right resource handler thanks to the Service Locator
+        ResourceHandler resourceHandler = ResourceHandlerLocator.getResourceHandler(resourceCategory.getPath());
+        resourceHandler.synchronize(resourceCategory.getResources(), resourceCategory.getExportOptions(), resourceCategory.getImportOptions(), targetServer);
+        SynchronizationJob.categoriesImported(1);
+        return resourceCategory;
+      } finally {
+        SynchronizationJob.setCurrent(null);
+      }
+    }
+  }
+
+  /**
+   * Exports one category in the files to send to the target servers.
+   */
+  private static class ExportTask implements Callable<List<File>> {
+
+    /** The resource category. */
+    private final ResourceCategory resourceCategory;
+
+    /**
+     * Instantiates a new export task.
+     *
+     * @param resourceCategory the resource category
+     */
+    public ExportTask(ResourceCategory resourceCategory) {
+      this.resourceCategory = resourceCategory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<File> call() throws Exception {
+      ResourceHandler resourceHandler = ResourceHandlerLocator.getResourceHandler(resourceCategory.getPath());
+      return resourceHandler.exportForSynchronization(resourceCategory.getResources(), resourceCategory.getExportOptions());
+    }
+  }
+
+  /**
+   * Sends the exported categories to one target server, in the import order.
+   * The first error stops the synchronization of this target server only.
+   */
+  private static class FanOutTask implements Callable<Void> {
+
+    /** The target server. */
+    private final TargetServer targetServer;
+
+    /** The exports of the categories. */
+    private final Map<ResourceCategory, FutureTask<List<File>>> exports;
+
+    /**
+     * Instantiates a new fan out task.
+     *
+     * @param targetServer the target server
+     * @param exports the exports of the categories
+     */
+    public FanOutTask(TargetServer targetServer, Map<ResourceCategory, FutureTask<List<File>>> exports) {
+      this.targetServer = targetServer;
+      this.exports = exports;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Void call() throws Exception {
+      for (Map.Entry<ResourceCategory, FutureTask<List<File>>> export : exports.entrySet()) {
+        ResourceCategory resourceCategory = export.getKey();
+        List<File> files;
+        try {
+          files = export.getValue().get();
+        } catch (CancellationException e) {
+          throw new IllegalStateException("Category " + resourceCategory.getPath() + " was not exported because of a previous error");
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("Error while exporting " + resourceCategory.getPath(), e.getCause());
+        }
+        ResourceHandler resourceHandler = ResourceHandlerLocator.getResourceHandler(resourceCategory.getPath());
+        for (File file : files) {
+          resourceHandler.sendExportedData(file, resourceCategory.getImportOptions(), targetServer);
+        }
+        LOG.info(resourceCategory.getPath() + " synchronized with server '" + targetServer.getHost() + "'");
+      }
+      return null;
     }
   }
 
@@ -157,7 +822,8 @@ public class SynchronizationServiceImpl implements SynchronizationService, Start
     String username = System.getProperty("exo.staging.server.default.username");
     String password = System.getProperty("exo.staging.server.default.password");
     String isSSLString = System.getProperty("exo.staging.server.default.isSSL");
-    if (!StringUtils.isEmpty(name) && !StringUtils.isEmpty(host) && !StringUtils.isEmpty(port) && !StringUtils.isEmpty(username) && !StringUtils.isEmpty(password)) {
+    boolean fileDrop = host != null && host.startsWith(TargetServer.FILE_DROP_SCHEME);
+    if (!StringUtils.isEmpty(name) && !StringUtils.isEmpty(host) && (fileDrop || (!StringUtils.isEmpty(port) && !StringUtils.isEmpty(username) && !StringUtils.isEmpty(password)))) {
       ConversationState originalState = ConversationState.getCurrent();
       if (originalState == null) {
         ConversationState.setCurrent(new ConversationState(new Identity(IdentityConstants.SYSTEM)));
@@ -182,5 +848,14 @@ public class SynchronizationServiceImpl implements SynchronizationService, Start
    * {@inheritDoc}
    */
   @Override
-  public void stop() {}
+  public synchronized void stop() {
+    if (jobsExecutor != null) {
+      jobsExecutor.shutdownNow();
+      jobsExecutor = null;
+    }
+    if (synchronizationExecutor != null) {
+      synchronizationExecutor.shutdownNow();
+      synchronizationExecutor = null;
+    }
+  }
 }
\ No newline at end of file
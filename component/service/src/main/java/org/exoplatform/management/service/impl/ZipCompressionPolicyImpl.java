@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.exoplatform.management.service.api.ZipCompressionPolicy;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+/**
+ * Default compression policy: entries whose type is already compressed
+ * (images, videos, PDF, office documents, archives...) or whose first bytes
+ * look random are stored, other entries are deflated with the level of their
+ * category. It's configured using these system properties:
+ * <ul>
+ * <li>exo.staging.compression.level: default deflate level</li>
+ * <li>exo.staging.compression.categories: deflate level by category path,
+ * for example "/ecmadmin:9,/site:9"</li>
+ * <li>exo.staging.compression.storedExtensions: extensions of entries that
+ * are stored</li>
+ * <li>exo.staging.compression.entropyThreshold: entropy, in bits per byte,
+ * above which an entry is stored, 0 to disable entropy sampling</li>
+ * </ul>
+ */
+public class ZipCompressionPolicyImpl implements ZipCompressionPolicy {
+
+  /** The Constant LOG. */
+  private static final Log LOG = ExoLogger.getLogger(ZipCompressionPolicyImpl.class);
+
+  /** The Constant LEVEL_PARAM. */
+  public static final String LEVEL_PARAM = "exo.staging.compression.level";
+
+  /** The Constant CATEGORIES_PARAM. */
+  public static final String CATEGORIES_PARAM = "exo.staging.compression.categories";
+
+  /** The Constant STORED_EXTENSIONS_PARAM. */
+  public static final String STORED_EXTENSIONS_PARAM = "exo.staging.compression.storedExtensions";
+
+  /** The Constant ENTROPY_THRESHOLD_PARAM. */
+  public static final String ENTROPY_THRESHOLD_PARAM = "exo.staging.compression.entropyThreshold";
+
+  /** Extensions of already compressed formats. */
+  private static final String DEFAULT_STORED_EXTENSIONS = "jpg,jpeg,png,gif,webp,ico,pdf,zip,gz,tgz,bz2,xz,7z,rar,jar,war,ear,docx,xlsx,pptx,odt,ods,odp,epub,mp3,mp4,m4a,m4v,ogg,ogv,webm,avi,mov,flv,swf,woff,woff2";
+
+  /** The default entropy threshold: random data is close to 8 bits per byte. */
+  private static final double DEFAULT_ENTROPY_THRESHOLD = 7.5d;
+
+  /** The sample size. */
+  private static final int SAMPLE_SIZE = 4096;
+
+  /** The default level. */
+  private int defaultLevel = Deflater.DEFAULT_COMPRESSION;
+
+  /** The levels by category path, sorted to find the longest matching path. */
+  private TreeMap<String, Integer> categoryLevels = new TreeMap<String, Integer>();
+
+  /** The stored extensions. */
+  private Set<String> storedExtensions = new HashSet<String>();
+
+  /** The entropy threshold. */
+  private double entropyThreshold = DEFAULT_ENTROPY_THRESHOLD;
+
+  /**
+   * Instantiates a new zip compression policy configured using system
+   * properties.
+   */
+  public ZipCompressionPolicyImpl() {
+    defaultLevel = parseLevel(System.getProperty(LEVEL_PARAM), Deflater.DEFAULT_COMPRESSION);
+
+    String categories = System.getProperty(CATEGORIES_PARAM);
+    if (!StringUtils.isBlank(categories)) {
+      for (String categoryLevel : categories.split(",")) {
+        int separatorIndex = categoryLevel.lastIndexOf(':');
+        if (separatorIndex <= 0) {
+          LOG.warn("Ignore invalid compression level of category: '" + categoryLevel + "', expected format is 'path:level'.");
+          continue;
+        }
+        categoryLevels.put(categoryLevel.substring(0, separatorIndex).trim(), parseLevel(categoryLevel.substring(separatorIndex + 1), defaultLevel));
+      }
+    }
+
+    String extensions = System.getProperty(STORED_EXTENSIONS_PARAM, DEFAULT_STORED_EXTENSIONS);
+    for (String extension : extensions.split(",")) {
+      if (!StringUtils.isBlank(extension)) {
+        storedExtensions.add(extension.trim().toLowerCase());
+      }
+    }
+
+    String threshold = System.getProperty(ENTROPY_THRESHOLD_PARAM);
+    if (!StringUtils.isBlank(threshold)) {
+      try {
+        entropyThreshold = Double.parseDouble(threshold.trim());
+      } catch (NumberFormatException e) {
+        LOG.warn("Invalid value of '" + ENTROPY_THRESHOLD_PARAM + "': " + threshold + ", default value is used.");
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getSampleSize() {
+    return entropyThreshold > 0 ? SAMPLE_SIZE : 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getLevel(String categoryPath, String entryName, byte[] sample, int sampleLength) {
+    if (storedExtensions.contains(getExtension(entryName))) {
+      return STORED;
+    }
+    if (entropyThreshold > 0 && sampleLength >= SAMPLE_SIZE && getEntropy(sample, sampleLength) > entropyThreshold) {
+      return STORED;
+    }
+    return getCategoryLevel(categoryPath);
+  }
+
+  /**
+   * Gets the level of a category: the level configured for the longest path
+   * prefix of the category path, or the default level.
+   *
+   * @param categoryPath the category path
+   * @return the category level
+   */
+  private int getCategoryLevel(String categoryPath) {
+    if (categoryPath != null) {
+      for (Map.Entry<String, Integer> categoryLevel : categoryLevels.headMap(categoryPath, true).descendingMap().entrySet()) {
+        if (categoryPath.equals(categoryLevel.getKey()) || categoryPath.startsWith(categoryLevel.getKey() + "/")) {
+          return categoryLevel.getValue();
+        }
+      }
+    }
+    return defaultLevel;
+  }
+
+  /**
+   * Gets the Shannon entropy of a sample, in bits per byte.
+   *
+   * @param sample the sample
+   * @param sampleLength the sample length
+   * @return the entropy
+   */
+  private static double getEntropy(byte[] sample, int sampleLength) {
+    int[] frequencies = new int[256];
+    for (int i = 0; i < sampleLength; i++) {
+      frequencies[sample[i] & 0xFF]++;
+    }
+    double entropy = 0;
+    for (int frequency : frequencies) {
+      if (frequency > 0) {
+        double probability = (double) frequency / sampleLength;
+        entropy -= probability * Math.log(probability);
+      }
+    }
+    return entropy / Math.log(2);
+  }
+
+  /**
+   * Gets the lower case extension of an entry.
+   *
+   * @param entryName the entry name
+   * @return the extension, or an empty string
+   */
+  private static String getExtension(String entryName) {
+    int dotIndex = entryName.lastIndexOf('.');
+    if (dotIndex < 0 || dotIndex < entryName.lastIndexOf('/')) {
+      return "";
+    }
+    return entryName.substring(dotIndex + 1).toLowerCase();
+  }
+
+  /**
+   * Parses a deflate level.
+   *
+   * @param level the level
+   * @param defaultValue the default value
+   * @return the level
+   */
+  private static int parseLevel(String level, int defaultValue) {
+    if (StringUtils.isBlank(level)) {
+      return defaultValue;
+    }
+    try {
+      int value = Integer.parseInt(level.trim());
+      if (value >= Deflater.DEFAULT_COMPRESSION && value <= Deflater.BEST_COMPRESSION) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      // Logged below
+    }
+    LOG.warn("Invalid compression level: '" + level + "', " + defaultValue + " is used.");
+    return defaultValue;
+  }
+}
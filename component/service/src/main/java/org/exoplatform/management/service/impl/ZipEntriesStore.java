@@ -0,0 +1,452 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.exoplatform.management.common.SpoolManager;
+import org.exoplatform.management.service.api.Utils;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.picocontainer.Startable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Stores the content of the zip entries received by synchronizations,
+ * addressed by their SHA-1 checksum. It allows a source server to send only
+ * the entries this server doesn't have yet: the full archive is rebuilt from
+ * the received partial archive and the stored entries before being imported.
+ * Only the transfer is reduced: all the entries of the archive are imported
+ * again, and entries are stored uncompressed. The rebuilt archive is a
+ * temporary file read once by the import, so its entries aren't compressed.
+ *
+ * Entries that were not received nor requested since
+ * "exo.staging.entries.retention" days are deleted at startup and then every
+ * "exo.staging.entries.purgeInterval" seconds. The store is also bounded by
+ * "exo.staging.entries.maxSize" bytes, the quota of the staging spool by
+ * default: when it's exceeded, the least recently used entries are deleted,
+ * except the entries used during the last day, which an import may still
+ * need.
+ */
+public class ZipEntriesStore implements Startable {
+
+  /** The Constant LOG. */
+  private static final Log LOG = ExoLogger.getLogger(ZipEntriesStore.class);
+
+  /** The Constant ENTRIES_DIRECTORY_PARAM. */
+  public static final String ENTRIES_DIRECTORY_PARAM = "exo.staging.entries.directory";
+
+  /** The Constant ENTRIES_RETENTION_PARAM. */
+  public static final String ENTRIES_RETENTION_PARAM = "exo.staging.entries.retention";
+
+  /** The Constant ENTRIES_PURGE_INTERVAL_PARAM, in seconds. */
+  public static final String ENTRIES_PURGE_INTERVAL_PARAM = "exo.staging.entries.purgeInterval";
+
+  /** The Constant ENTRIES_MAX_SIZE_PARAM, in bytes, 0 for no bound. */
+  public static final String ENTRIES_MAX_SIZE_PARAM = "exo.staging.entries.maxSize";
+
+  /** The Constant DEFAULT_RETENTION_DAYS. */
+  private static final int DEFAULT_RETENTION_DAYS = 30;
+
+  /** The default interval between two purges, in seconds. */
+  private static final long DEFAULT_PURGE_INTERVAL = 60L * 60L;
+
+  /** Entries used since this delay are not deleted to bound the store. */
+  private static final long IN_USE_DELAY = 24L * 60L * 60L * 1000L;
+
+  /** The suffix of the files being stored. */
+  private static final String TMP_SUFFIX = ".tmp";
+
+  /** The entries directory. */
+  private File entriesDirectory;
+
+  /** The maximum size of the store in bytes, 0 for no bound. */
+  private final long maxSize;
+
+  /** The size of the stored entries, computed at startup and updated by new and deleted entries. */
+  private final AtomicLong storedSize = new AtomicLong();
+
+  /** True while a purge is scheduled because the store exceeds its bound. */
+  private final AtomicBoolean purgeScheduled = new AtomicBoolean();
+
+  /** The purge executor, running the purges after the first one. */
+  private volatile ScheduledExecutorService purgeExecutor;
+
+  /**
+   * Instantiates a new zip entries store.
+   */
+  public ZipEntriesStore() {
+    String entriesDirectoryPath = System.getProperty(ENTRIES_DIRECTORY_PARAM, System.getProperty("java.io.tmpdir") + File.separator + "staging-entries");
+    this.entriesDirectory = new File(entriesDirectoryPath);
+    this.maxSize = Long.getLong(ENTRIES_MAX_SIZE_PARAM, SpoolManager.getInstance().getQuota());
+  }
+
+  /**
+   * Gets the size of the stored entries.
+   *
+   * @return the size in bytes
+   */
+  public long getStoredSize() {
+    return storedSize.get();
+  }
+
+  /**
+   * Gets the maximum size of the store.
+   *
+   * @return the size in bytes, 0 for no bound
+   */
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Gets the entries of a manifest that are not stored. Stored entries are
+   * marked as used, so they are kept until the partial archive is received.
+   *
+   * @param manifest the checksums by entry name
+   * @return the names of the missing entries
+   */
+  public List<String> getMissingEntries(Map<String, String> manifest) {
+    List<String> missingEntries = new ArrayList<String>();
+    long now = System.currentTimeMillis();
+    for (Map.Entry<String, String> entry : manifest.entrySet()) {
+      File entryFile = getEntryFile(entry.getValue());
+      if (entryFile == null || !entryFile.exists() || !entryFile.setLastModified(now)) {
+        missingEntries.add(entry.getKey());
+      }
+    }
+    return missingEntries;
+  }
+
+  /**
+   * Stores all the entries of an archive.
+   *
+   * @param archive the archive
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void storeEntries(File archive) throws IOException {
+    ZipFile zipFile = new ZipFile(archive);
+    try {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        if (!Utils.ENTRIES_MANIFEST_NAME.equals(entry.getName())) {
+          storeEntry(zipFile, entry);
+        }
+      }
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  /**
+   * Rebuilds the full archive from a partial archive. The entries of the
+   * partial archive are stored, the other entries listed in its manifest are
+   * read from the store.
+   *
+   * @param partialArchive the partial archive
+   * @param archive the file where the full archive is written
+   * @return false if the archive has no manifest, it's then a full archive
+   * @throws IOException Signals that an I/O exception has occurred, or that an
+   *           entry is neither received nor stored
+   */
+  public boolean rebuildArchive(File partialArchive, File archive) throws IOException {
+    ZipFile zipFile = new ZipFile(partialArchive);
+    try {
+      ZipEntry manifestEntry = zipFile.getEntry(Utils.ENTRIES_MANIFEST_NAME);
+      if (manifestEntry == null) {
+        return false;
+      }
+      Map<String, String> manifest;
+      InputStream manifestInputStream = zipFile.getInputStream(manifestEntry);
+      try {
+        manifest = Utils.readEntriesManifest(manifestInputStream);
+      } finally {
+        manifestInputStream.close();
+      }
+
+      ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive));
+      zos.setLevel(Deflater.NO_COMPRESSION);
+      try {
+        for (Map.Entry<String, String> entry : manifest.entrySet()) {
+          ZipEntry receivedEntry = zipFile.getEntry(entry.getKey());
+          File entryFile = receivedEntry == null ? getEntryFile(entry.getValue()) : storeEntry(zipFile, receivedEntry);
+          if (entryFile == null || !entryFile.exists()) {
+            throw new ZipException("Entry '" + entry.getKey() + "' was neither received nor previously stored");
+          }
+          zos.putNextEntry(new ZipEntry(entry.getKey()));
+          InputStream inputStream = new FileInputStream(entryFile);
+          try {
+            IOUtils.copy(inputStream, zos);
+          } finally {
+            inputStream.close();
+          }
+          zos.closeEntry();
+        }
+      } finally {
+        zos.close();
+      }
+      return true;
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void start() {
+    storedSize.set(purge());
+
+    long interval = Long.getLong(ENTRIES_PURGE_INTERVAL_PARAM, DEFAULT_PURGE_INTERVAL);
+    purgeExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "staging-entries-purge");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    purgeExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        runPurge();
+      }
+    }, interval, interval, TimeUnit.SECONDS);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void stop() {
+    if (purgeExecutor != null) {
+      purgeExecutor.shutdownNow();
+      purgeExecutor = null;
+    }
+  }
+
+  /**
+   * Runs a purge, logging its errors.
+   */
+  private void runPurge() {
+    purgeScheduled.set(false);
+    try {
+      purge();
+    } catch (Throwable e) {
+      LOG.error("Error while purging synchronization entries from " + entriesDirectory.getPath(), e);
+    }
+  }
+
+  /**
+   * Schedules a purge when a new entry makes the store exceed its bound. If
+   * the store still exceeds it after the purge, with entries in use, the next
+   * periodic purge deletes them.
+   *
+   * @param length the length of the new entry
+   */
+  private void addStoredEntry(long length) {
+    long size = storedSize.addAndGet(length);
+    ScheduledExecutorService executor = purgeExecutor;
+    if (maxSize > 0 && size > maxSize && size - length <= maxSize && executor != null && purgeScheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            runPurge();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // The store is stopped
+        purgeScheduled.set(false);
+      }
+    }
+  }
+
+  /**
+   * Deletes the entries not used since the retention delay, then the least
+   * recently used entries while the store exceeds its bound. Purges run one at
+   * a time: the first one at startup, then in the purge executor.
+   *
+   * @return the size of the entries left in the store
+   */
+  private long purge() {
+    File[] directories = entriesDirectory.listFiles();
+    if (directories == null) {
+      return 0;
+    }
+    long now = System.currentTimeMillis();
+    long staleDate = now - Integer.getInteger(ENTRIES_RETENTION_PARAM, DEFAULT_RETENTION_DAYS) * 24L * 60L * 60L * 1000L;
+    long inUseDate = now - IN_USE_DELAY;
+    long size = 0;
+    long deletedSize = 0;
+    int deletedEntries = 0;
+    List<StoredEntry> unusedEntries = new ArrayList<StoredEntry>();
+    for (File directory : directories) {
+      File[] entryFiles = directory.isDirectory() ? directory.listFiles() : new File[] { directory };
+      if (entryFiles == null) {
+        continue;
+      }
+      for (File entryFile : entryFiles) {
+        StoredEntry storedEntry = new StoredEntry(entryFile);
+        if (storedEntry.lastModified < staleDate && entryFile.delete()) {
+          deletedSize += storedEntry.length;
+          deletedEntries++;
+          continue;
+        }
+        size += storedEntry.length;
+        if (storedEntry.lastModified < inUseDate && !entryFile.getName().endsWith(TMP_SUFFIX)) {
+          unusedEntries.add(storedEntry);
+        }
+      }
+    }
+    if (maxSize > 0 && size > maxSize) {
+      Collections.sort(unusedEntries, new Comparator<StoredEntry>() {
+        @Override
+        public int compare(StoredEntry entry1, StoredEntry entry2) {
+          return Long.compare(entry1.lastModified, entry2.lastModified);
+        }
+      });
+      for (StoredEntry storedEntry : unusedEntries) {
+        if (size <= maxSize) {
+          break;
+        }
+        // The entry may have been requested since the directory was listed
+        if (storedEntry.file.lastModified() < inUseDate && storedEntry.file.delete()) {
+          size -= storedEntry.length;
+          deletedSize += storedEntry.length;
+          deletedEntries++;
+        }
+      }
+      if (size > maxSize) {
+        LOG.warn("Synchronization entries use " + size + " bytes in " + entriesDirectory.getPath() + ", more than " + maxSize + " bytes, but they were used during the last day.");
+      }
+    }
+    storedSize.addAndGet(-deletedSize);
+    if (deletedEntries > 0) {
+      LOG.info(deletedEntries + " synchronization entries deleted from " + entriesDirectory.getPath() + ", " + size + " bytes stored.");
+    }
+    return size;
+  }
+
+  /**
+   * Stores an entry of a zip file.
+   *
+   * @param zipFile the zip file
+   * @param entry the entry
+   * @return the stored file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private File storeEntry(ZipFile zipFile, ZipEntry entry) throws IOException {
+    FileUtils.forceMkdir(entriesDirectory);
+    File tmpFile = new File(entriesDirectory, UUID.randomUUID().toString() + TMP_SUFFIX);
+    try {
+      InputStream inputStream = zipFile.getInputStream(entry);
+      OutputStream outputStream = new FileOutputStream(tmpFile);
+      try {
+        IOUtils.copy(inputStream, outputStream);
+      } finally {
+        inputStream.close();
+        outputStream.close();
+      }
+      File entryFile = getEntryFile(Utils.computeChecksum(tmpFile));
+      if (entryFile.exists()) {
+        entryFile.setLastModified(System.currentTimeMillis());
+      } else {
+        FileUtils.forceMkdir(entryFile.getParentFile());
+        long length = tmpFile.length();
+        if (tmpFile.renameTo(entryFile)) {
+          addStoredEntry(length);
+        } else if (!entryFile.exists()) {
+          throw new IOException("Cannot store synchronization entry " + entryFile.getPath());
+        }
+      }
+      return entryFile;
+    } finally {
+      if (tmpFile.exists()) {
+        tmpFile.delete();
+      }
+    }
+  }
+
+  /**
+   * Gets the file where an entry is stored.
+   *
+   * @param checksum the SHA-1 checksum of the entry
+   * @return the entry file, null if the checksum is not valid
+   */
+  private File getEntryFile(String checksum) {
+    if (checksum == null || !checksum.matches("[0-9a-f]{40}")) {
+      return null;
+    }
+    return new File(new File(entriesDirectory, checksum.substring(0, 2)), checksum);
+  }
+
+  /**
+   * A stored file, with its attributes read once.
+   */
+  private static class StoredEntry {
+
+    /** The file. */
+    private final File file;
+
+    /** The last modification date. */
+    private final long lastModified;
+
+    /** The length. */
+    private final long length;
+
+    /**
+     * Instantiates a new stored entry.
+     *
+     * @param file the file
+     */
+    StoredEntry(File file) {
+      this.file = file;
+      this.lastModified = file.lastModified();
+      this.length = file.length();
+    }
+  }
+}
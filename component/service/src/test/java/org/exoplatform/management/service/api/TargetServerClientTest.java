@@ -0,0 +1,451 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests of {@link TargetServerClient} against an embedded HTTP server.
+ */
+public class TargetServerClientTest {
+
+  /** The embedded HTTP server. */
+  private HttpServer server;
+
+  /** The executor of the embedded HTTP server. */
+  private ExecutorService serverExecutor;
+
+  /** The number of requests received by the server. */
+  private final AtomicInteger requests = new AtomicInteger();
+
+  /** The outcome of the request bodies read by the server. */
+  private final List<String> bodies = new ArrayList<String>();
+
+  /** The client ports of the requests received by the server. */
+  private final List<Integer> clientPorts = new ArrayList<Integer>();
+
+  /**
+   * Starts the embedded HTTP server.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    serverExecutor = Executors.newCachedThreadPool();
+    server.setExecutor(serverExecutor);
+    server.createContext("/body", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        synchronized (clientPorts) {
+          clientPorts.add(exchange.getRemoteAddress().getPort());
+        }
+        String outcome;
+        try {
+          outcome = "complete:" + IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8).length();
+        } catch (IOException e) {
+          outcome = "truncated";
+        }
+        synchronized (bodies) {
+          bodies.add(outcome);
+          bodies.notifyAll();
+        }
+        respond(exchange, 200, "received");
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * Stops the embedded HTTP server.
+   */
+  @After
+  public void tearDown() {
+    server.stop(0);
+    serverExecutor.shutdownNow();
+    System.clearProperty(TargetServerClient.MAX_CONNECTIONS_PARAM);
+    System.clearProperty(TargetServerClient.RETRIES_PARAM);
+    System.clearProperty(TargetServerClient.READ_TIMEOUT_PARAM);
+  }
+
+  /**
+   * Checks that the number of concurrent connections to a target server is
+   * limited.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testConcurrentConnectionsAreLimited() throws Exception {
+    System.setProperty(TargetServerClient.MAX_CONNECTIONS_PARAM, "2");
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    server.createContext("/slow", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        int current = running.incrementAndGet();
+        synchronized (maxRunning) {
+          maxRunning.set(Math.max(maxRunning.get(), current));
+        }
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        running.decrementAndGet();
+        respond(exchange, 200, "slow");
+      }
+    });
+
+    final TargetServerClient client = newClient();
+    ExecutorService executor = Executors.newFixedThreadPool(6);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 6; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            return client.get("/slow");
+          }
+        }));
+      }
+      for (Future<String> result : results) {
+        assertEquals("slow", result.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(2, maxRunning.get());
+  }
+
+  /**
+   * Checks that GET requests are retried with an increasing delay when the
+   * target server answers with a server error.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testGetRetriesServerErrors() throws Exception {
+    System.setProperty(TargetServerClient.RETRIES_PARAM, "3");
+    final AtomicInteger attempts = new AtomicInteger();
+    server.createContext("/unstable", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        if (attempts.incrementAndGet() < 3) {
+          respond(exchange, 503, "unavailable");
+        } else {
+          respond(exchange, 200, "available");
+        }
+      }
+    });
+
+    long start = System.currentTimeMillis();
+    assertEquals("available", newClient().get("/unstable"));
+    assertEquals(3, attempts.get());
+    // Retried after 1s, then after 2s
+    assertTrue(System.currentTimeMillis() - start >= 3000);
+  }
+
+  /**
+   * Checks that GET requests give up after the configured retries, and that
+   * client errors are not retried.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testGetFailsAfterRetries() throws Exception {
+    System.setProperty(TargetServerClient.RETRIES_PARAM, "1");
+    final AtomicInteger attempts = new AtomicInteger();
+    server.createContext("/broken", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        attempts.incrementAndGet();
+        respond(exchange, 500, "broken");
+      }
+    });
+    server.createContext("/forbidden", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        attempts.incrementAndGet();
+        respond(exchange, 403, "forbidden");
+      }
+    });
+    TargetServerClient client = newClient();
+
+    try {
+      client.get("/broken");
+      fail("Server errors should fail once the retries are exhausted");
+    } catch (TargetServerClient.HttpResponseException e) {
+      assertEquals(500, e.getResponseCode());
+    }
+    assertEquals(2, attempts.get());
+
+    attempts.set(0);
+    try {
+      client.get("/forbidden");
+      fail("Client errors should fail");
+    } catch (TargetServerClient.HttpResponseException e) {
+      assertEquals(403, e.getResponseCode());
+    }
+    assertEquals(1, attempts.get());
+  }
+
+  /**
+   * Checks that the read timeout applies to the requests, and that the
+   * connection permit is released when a request times out.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testReadTimeout() throws Exception {
+    System.setProperty(TargetServerClient.RETRIES_PARAM, "0");
+    System.setProperty(TargetServerClient.READ_TIMEOUT_PARAM, "200");
+    System.setProperty(TargetServerClient.MAX_CONNECTIONS_PARAM, "1");
+    final CountDownLatch hang = new CountDownLatch(1);
+    server.createContext("/hang", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          hang.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        respond(exchange, 200, "late");
+      }
+    });
+    TargetServerClient client = newClient();
+
+    try {
+      try {
+        client.get("/hang");
+        fail("The request should time out");
+      } catch (SocketTimeoutException e) {
+        // Expected
+      }
+    } finally {
+      hang.countDown();
+    }
+    // The single permit has been released
+    HttpURLConnection conn = client.openConnection("/body", "GET");
+    try {
+      assertEquals(200, conn.getResponseCode());
+    } finally {
+      client.release(conn);
+    }
+  }
+
+  /**
+   * Checks that releasing a connection reads the response until its end, so
+   * that the socket is reused by the next request.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testReleaseDrainsResponse() throws Exception {
+    System.setProperty(TargetServerClient.MAX_CONNECTIONS_PARAM, "1");
+    TargetServerClient client = newClient();
+
+    for (int i = 0; i < 2; i++) {
+      HttpURLConnection conn = client.openConnection("/body", "PUT");
+      try {
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(4);
+        OutputStream outputStream = client.getOutputStream(conn);
+        outputStream.write("data".getBytes(StandardCharsets.UTF_8));
+        outputStream.close();
+        assertEquals(200, conn.getResponseCode());
+      } finally {
+        // The response body isn't read here
+        client.release(conn);
+      }
+    }
+
+    assertEquals(2, requests.get());
+    assertEquals("complete:4", bodies.get(0));
+    assertEquals("complete:4", bodies.get(1));
+    assertEquals(clientPorts.get(0), clientPorts.get(1));
+  }
+
+  /**
+   * Checks that releasing a connection whose chunked request body was not
+   * completely written never sends the truncated body as a complete request.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testReleaseAbortsUnfinishedRequest() throws Exception {
+    System.setProperty(TargetServerClient.MAX_CONNECTIONS_PARAM, "1");
+    TargetServerClient client = newClient();
+
+    HttpURLConnection conn = client.openConnection("/body", "PUT");
+    try {
+      conn.setDoOutput(true);
+      conn.setChunkedStreamingMode(16);
+      OutputStream outputStream = client.getOutputStream(conn);
+      outputStream.write(new byte[64]);
+      outputStream.flush();
+      // The export fails here: the stream is not closed
+    } finally {
+      client.release(conn);
+    }
+
+    synchronized (bodies) {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (bodies.isEmpty() && System.currentTimeMillis() < deadline) {
+        bodies.wait(100);
+      }
+    }
+    assertEquals(1, bodies.size());
+    assertEquals("truncated", bodies.get(0));
+
+    // The permit has been released
+    conn = client.openConnection("/body", "GET");
+    try {
+      assertEquals(200, conn.getResponseCode());
+    } finally {
+      client.release(conn);
+    }
+    assertFalse(bodies.contains("complete:64"));
+  }
+
+  /**
+   * Checks that clients are shared by target server name, replaced when the
+   * settings of the server change and removed on demand.
+   */
+  @Test
+  public void testInstancesByServerName() {
+    String port = String.valueOf(server.getAddress().getPort());
+    TargetServerClient client = TargetServerClient.getInstance(new TargetServer("server", "localhost", port, "root", "gtn", false));
+    assertSame(client, TargetServerClient.getInstance(new TargetServer("server", "localhost", port, "root", "gtn", false)));
+    assertNotSame(client, TargetServerClient.getInstance(new TargetServer("other", "localhost", port, "root", "gtn", false)));
+
+    TargetServerClient newPasswordClient = TargetServerClient.getInstance(new TargetServer("server", "localhost", port, "root", "new", false));
+    assertNotSame(client, newPasswordClient);
+    assertSame(newPasswordClient, TargetServerClient.getInstance(new TargetServer("server", "localhost", port, "root", "new", false)));
+
+    TargetServerClient.removeInstance("server");
+    assertNotSame(newPasswordClient, TargetServerClient.getInstance(new TargetServer("server", "localhost", port, "root", "new", false)));
+    TargetServerClient.removeInstance("server");
+    TargetServerClient.removeInstance("other");
+  }
+
+  /**
+   * Checks that a connection released by a client that didn't open it, the
+   * client of its server having been replaced, doesn't add a permit.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testReleaseByReplacedClient() throws Exception {
+    System.setProperty(TargetServerClient.MAX_CONNECTIONS_PARAM, "1");
+    TargetServerClient oldClient = newClient();
+    TargetServerClient client = newClient();
+
+    HttpURLConnection oldConn = oldClient.openConnection("/body", "GET");
+    assertEquals(200, oldConn.getResponseCode());
+    client.release(oldConn);
+
+    HttpURLConnection conn = client.openConnection("/body", "GET");
+    try {
+      assertEquals(200, conn.getResponseCode());
+      final TargetServerClient blockedClient = client;
+      ExecutorService executorService = Executors.newSingleThreadExecutor();
+      try {
+        Future<HttpURLConnection> future = executorService.submit(new Callable<HttpURLConnection>() {
+          @Override
+          public HttpURLConnection call() throws Exception {
+            return blockedClient.openConnection("/body", "GET");
+          }
+        });
+        try {
+          future.get(500, TimeUnit.MILLISECONDS);
+          fail("The second connection should wait for the permit");
+        } catch (TimeoutException e) {
+          // Expected
+        }
+        client.release(conn);
+        conn = future.get(5, TimeUnit.SECONDS);
+      } finally {
+        executorService.shutdownNow();
+      }
+    } finally {
+      client.release(conn);
+    }
+  }
+
+  /**
+   * Creates a client of the embedded HTTP server, configured with the current
+   * system properties.
+   *
+   * @return the client
+   */
+  private TargetServerClient newClient() {
+    return new TargetServerClient(new TargetServer("localhost", String.valueOf(server.getAddress().getPort()), "root", "gtn", false));
+  }
+
+  /**
+   * Sends a response.
+   *
+   * @param exchange the HTTP exchange
+   * @param responseCode the response code
+   * @param body the response body
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void respond(HttpExchange exchange, int responseCode, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(responseCode, bytes.length);
+    OutputStream outputStream = exchange.getResponseBody();
+    try {
+      outputStream.write(bytes);
+    } finally {
+      outputStream.close();
+    }
+  }
+}
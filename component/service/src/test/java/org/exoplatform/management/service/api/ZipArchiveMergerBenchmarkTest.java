@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.api;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compares the time needed to aggregate the exports of a content
+ * synchronization with {@link ZipArchiveMerger}, which copies compressed data
+ * as is, and with
+ * {@link Utils#copyZipEnries(ZipInputStream, ZipOutputStream, String)}, which
+ * decompresses and compresses every entry again. The exports are dominated by
+ * binaries, as content exports are. Ignored by default: it writes about
+ * 600 MB and only prints timings.
+ */
+@Ignore("Benchmark, run it explicitly")
+public class ZipArchiveMergerBenchmarkTest {
+
+  /** The number of exports to aggregate. */
+  private static final int ARCHIVES_COUNT = 20;
+
+  /** The number of binary entries of each export. */
+  private static final int BINARIES_COUNT = 40;
+
+  /** The size of each binary entry. */
+  private static final int BINARY_SIZE = 256 * 1024;
+
+  /** The number of XML entries of each export. */
+  private static final int XML_COUNT = 200;
+
+  /** The number of measured iterations, after one warm-up iteration. */
+  private static final int ITERATIONS = 5;
+
+  /** The temporary directory. */
+  private File directory;
+
+  /** The exports to aggregate. */
+  private File[] archives;
+
+  /**
+   * Writes the exports.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("zip-merger", "-benchmark");
+    directory.delete();
+    directory.mkdirs();
+    Random random = new Random(0);
+    archives = new File[ARCHIVES_COUNT];
+    for (int i = 0; i < ARCHIVES_COUNT; i++) {
+      archives[i] = writeExport("export" + i + ".zip", random);
+    }
+  }
+
+  /**
+   * Deletes the temporary directory.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  /**
+   * Measures both ways of aggregating the exports.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void benchmarkAggregation() throws Exception {
+    File streamCopy = new File(directory, "stream-copy.zip");
+    File merged = new File(directory, "merged.zip");
+    copyWithStreams(streamCopy);
+    copyWithMerger(merged);
+
+    long streamCopyTime = 0;
+    long mergerTime = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      long start = System.nanoTime();
+      copyWithStreams(streamCopy);
+      streamCopyTime += System.nanoTime() - start;
+      start = System.nanoTime();
+      copyWithMerger(merged);
+      mergerTime += System.nanoTime() - start;
+    }
+
+    long exportsSize = 0;
+    for (File archive : archives) {
+      exportsSize += archive.length();
+    }
+    System.out.println("Aggregation of " + ARCHIVES_COUNT + " exports (" + (exportsSize / 1024 / 1024) + " MB):");
+    System.out.println("  Utils.copyZipEnries with streams: " + (streamCopyTime / ITERATIONS / 1000000) + " ms, " + streamCopy.length() + " bytes");
+    System.out.println("  ZipArchiveMerger: " + (mergerTime / ITERATIONS / 1000000) + " ms, " + merged.length() + " bytes");
+
+    ZipFile zipFile = new ZipFile(merged);
+    try {
+      assertEquals(ARCHIVES_COUNT * (BINARIES_COUNT + XML_COUNT), zipFile.size());
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  /**
+   * Aggregates the exports by decompressing and compressing their entries.
+   *
+   * @param target the aggregated archive
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void copyWithStreams(File target) throws IOException {
+    ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(target));
+    try {
+      for (int i = 0; i < archives.length; i++) {
+        ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(archives[i]));
+        try {
+          Utils.copyZipEnries(zipInputStream, zipOutputStream, "content/site" + i);
+        } finally {
+          zipInputStream.close();
+        }
+      }
+    } finally {
+      zipOutputStream.close();
+    }
+  }
+
+  /**
+   * Aggregates the exports by copying their compressed entries.
+   *
+   * @param target the aggregated archive
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void copyWithMerger(File target) throws IOException {
+    ZipArchiveMerger merger = new ZipArchiveMerger(new FileOutputStream(target));
+    try {
+      for (int i = 0; i < archives.length; i++) {
+        Utils.copyZipEnries(archives[i], merger, "content/site" + i);
+      }
+    } finally {
+      merger.close();
+    }
+  }
+
+  /**
+   * Writes an export of binaries, which don't compress, and of XML files.
+   *
+   * @param name the file name
+   * @param random the random generator of the binaries
+   * @return the export
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private File writeExport(String name, Random random) throws IOException {
+    File archive = new File(directory, name);
+    ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(archive));
+    try {
+      byte[] binary = new byte[BINARY_SIZE];
+      for (int i = 0; i < BINARIES_COUNT; i++) {
+        random.nextBytes(binary);
+        zipOutputStream.putNextEntry(new ZipEntry("documents/image" + i + ".png"));
+        zipOutputStream.write(binary);
+        zipOutputStream.closeEntry();
+      }
+      for (int i = 0; i < XML_COUNT; i++) {
+        zipOutputStream.putNextEntry(new ZipEntry("documents/content" + i + ".xml"));
+        for (int j = 0; j < 100; j++) {
+          zipOutputStream.write(("<property name=\"exo:title\" value=\"content " + i + "-" + j + "\"/>\n").getBytes(StandardCharsets.UTF_8));
+        }
+        zipOutputStream.closeEntry();
+      }
+    } finally {
+      zipOutputStream.close();
+    }
+    return archive;
+  }
+}
@@ -0,0 +1,782 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests of {@link ZipArchiveMerger}, including archives needing the Zip64
+ * format, and of {@link Utils#copyZipEnries(File, ZipArchiveMerger, String)}.
+ */
+public class ZipArchiveMergerTest {
+
+  /** The size of the large entry, just above the 4 GB limit of zip32. */
+  private static final long LARGE_ENTRY_SIZE = 0x100000000L + 1024 * 1024;
+
+  /** The temporary directory. */
+  private File directory;
+
+  /**
+   * Creates the temporary directory.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("zip-merger", "-test");
+    directory.delete();
+    directory.mkdirs();
+  }
+
+  /**
+   * Deletes the temporary directory.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  /**
+   * Checks that the entries of several archives are copied with their content,
+   * whatever their compression method.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testMergeArchives() throws Exception {
+    Map<String, byte[]> entries1 = new LinkedHashMap<String, byte[]>();
+    entries1.put("a/deflated.xml", repeat("<node>deflated</node>", 1000));
+    entries1.put("a/empty.txt", new byte[0]);
+    Map<String, byte[]> entries2 = new LinkedHashMap<String, byte[]>();
+    entries2.put("b/stored.bin", repeat("stored", 100));
+    entries2.put("b/été.xml", repeat("<été/>", 10));
+
+    File merged = new File(directory, "merged.zip");
+    ZipArchiveMerger merger = new ZipArchiveMerger(new FileOutputStream(merged));
+    try {
+      merger.addArchive(writeArchive("archive1.zip", entries1, ZipEntry.DEFLATED));
+      merger.addArchive(writeArchive("archive2.zip", entries2, ZipEntry.STORED));
+      assertEquals(4, merger.getEntriesCount());
+    } finally {
+      merger.close();
+    }
+    assertEquals(merged.length(), merger.getSize());
+
+    Map<String, byte[]> expectedEntries = new LinkedHashMap<String, byte[]>(entries1);
+    expectedEntries.putAll(entries2);
+    assertEntries(expectedEntries, merged);
+  }
+
+  /**
+   * Checks that the data descriptors written by {@link ZipOutputStream} after
+   * deflated entries are dropped: sizes and CRC are written in the local
+   * headers, so that streaming readers know them before reading the data.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testDataDescriptorsAreRemoved() throws Exception {
+    Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+    entries.put("first.xml", repeat("<first/>", 500));
+    entries.put("second.xml", repeat("<second/>", 500));
+    File archive = writeArchive("archive.zip", entries, ZipEntry.DEFLATED);
+
+    ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(archive));
+    try {
+      // Precondition: the source entry has a data descriptor
+      assertEquals(-1, zipInputStream.getNextEntry().getCompressedSize());
+    } finally {
+      zipInputStream.close();
+    }
+
+    File merged = merge(archive);
+    byte[] mergedBytes = FileUtils.readFileToByteArray(merged);
+    ByteBuffer buffer = ByteBuffer.wrap(mergedBytes).order(ByteOrder.LITTLE_ENDIAN);
+    assertEquals(0x04034b50, buffer.getInt(0));
+    assertEquals(0, buffer.getShort(6) & 0x08);
+
+    zipInputStream = new ZipInputStream(new FileInputStream(merged));
+    try {
+      ZipEntry entry;
+      int count = 0;
+      while ((entry = zipInputStream.getNextEntry()) != null) {
+        assertTrue(entry.getCompressedSize() > 0);
+        assertArrayEquals(entries.get(entry.getName()), IOUtils.toByteArray(zipInputStream));
+        count++;
+      }
+      assertEquals(2, count);
+    } finally {
+      zipInputStream.close();
+    }
+    // The merged archive ends right after its central directory
+    assertEquals(0x06054b50, buffer.getInt(mergedBytes.length - 22));
+  }
+
+  /**
+   * Checks that adding an entry with the name of an entry already added
+   * fails.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testDuplicateEntryFails() throws Exception {
+    Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+    entries.put("same/entry.xml", repeat("<entry/>", 10));
+    File archive1 = writeArchive("archive1.zip", entries, ZipEntry.DEFLATED);
+    File archive2 = writeArchive("archive2.zip", entries, ZipEntry.STORED);
+
+    ZipArchiveMerger merger = new ZipArchiveMerger(new FileOutputStream(new File(directory, "merged.zip")));
+    try {
+      merger.addArchive(archive1);
+      try {
+        merger.addArchive(archive2);
+        fail("A duplicate entry should fail");
+      } catch (ZipException e) {
+        assertTrue(e.getMessage().contains("same/entry.xml"));
+      }
+    } finally {
+      merger.close();
+    }
+
+    // Entries are renamed before being checked
+    merger = new ZipArchiveMerger(new FileOutputStream(new File(directory, "renamed.zip")));
+    try {
+      merger.addArchive(archive1, "root");
+      merger.addArchive(archive2, "other");
+      assertEquals(2, merger.getEntriesCount());
+    } finally {
+      merger.close();
+    }
+  }
+
+  /**
+   * Checks that archives with more than 65535 entries are read and written
+   * with the Zip64 end of central directory record and its locator.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testMoreThan65535Entries() throws Exception {
+    File archive1 = writeManyEntriesArchive("many1.zip", "first", 70000);
+    File archive2 = writeManyEntriesArchive("many2.zip", "second", 1000);
+
+    File merged = new File(directory, "merged.zip");
+    ZipArchiveMerger merger = new ZipArchiveMerger(new FileOutputStream(merged));
+    try {
+      merger.addArchive(archive1);
+      merger.addArchive(archive2);
+    } finally {
+      merger.close();
+    }
+
+    RandomAccessFile mergedFile = new RandomAccessFile(merged, "r");
+    try {
+      ByteBuffer end = read(mergedFile, mergedFile.length() - 22, 22);
+      assertEquals(0x06054b50, end.getInt(0));
+      assertEquals(0xFFFF, end.getShort(10) & 0xFFFF);
+      ByteBuffer locator = read(mergedFile, mergedFile.length() - 22 - 20, 20);
+      assertEquals(0x07064b50, locator.getInt(0));
+      ByteBuffer zip64End = read(mergedFile, locator.getLong(8), 56);
+      assertEquals(0x06064b50, zip64End.getInt(0));
+      assertEquals(71000, zip64End.getLong(32));
+      // The central directory is right before the zip64 end record
+      assertEquals(locator.getLong(8), zip64End.getLong(48) + zip64End.getLong(40));
+    } finally {
+      mergedFile.close();
+    }
+
+    ZipFile zipFile = new ZipFile(merged);
+    try {
+      assertEquals(71000, zipFile.size());
+      assertEquals("first 69999", readEntry(zipFile, "first/69999.txt"));
+      assertEquals("second 999", readEntry(zipFile, "second/999.txt"));
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  /**
+   * Checks that entries larger than 4 GB, and entries located after 4 GB, are
+   * read from the Zip64 extra fields and written with Zip64 extra fields and
+   * records. The large entry is a sparse file, and only the head and the tail
+   * of the merged archive are kept.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testMoreThan4GB() throws Exception {
+    byte[] smallContent = "small entry after 4 GB".getBytes(StandardCharsets.UTF_8);
+    File archive = writeLargeArchive(smallContent);
+
+    HeadTailOutputStream outputStream = new HeadTailOutputStream(64 * 1024);
+    ZipArchiveMerger merger = new ZipArchiveMerger(outputStream);
+    try {
+      merger.addArchive(archive, "root");
+    } finally {
+      merger.close();
+    }
+    long length = outputStream.getCount();
+    assertEquals(length, merger.getSize());
+
+    // Local header of the large entry, with its sizes in the zip64 extra
+    ByteBuffer head = outputStream.getHead();
+    assertEquals(0x04034b50, head.getInt(0));
+    assertEquals(0xFFFFFFFFL, head.getInt(18) & 0xFFFFFFFFL);
+    assertEquals(0xFFFFFFFFL, head.getInt(22) & 0xFFFFFFFFL);
+    int nameLength = head.getShort(26);
+    assertEquals(20, head.getShort(28));
+    assertEquals(1, head.getShort(30 + nameLength));
+    assertEquals(LARGE_ENTRY_SIZE, head.getLong(34 + nameLength));
+    assertEquals(LARGE_ENTRY_SIZE, head.getLong(42 + nameLength));
+    long smallEntryOffset = 30 + nameLength + 20 + LARGE_ENTRY_SIZE;
+
+    // End records
+    ByteBuffer end = outputStream.getTail(length - 22, 22);
+    assertEquals(0x06054b50, end.getInt(0));
+    assertEquals(2, end.getShort(10));
+    assertEquals(0xFFFFFFFFL, end.getInt(16) & 0xFFFFFFFFL);
+    ByteBuffer locator = outputStream.getTail(length - 22 - 20, 20);
+    assertEquals(0x07064b50, locator.getInt(0));
+    long zip64EndOffset = locator.getLong(8);
+    assertEquals(length - 22 - 20 - 56, zip64EndOffset);
+    ByteBuffer zip64End = outputStream.getTail(zip64EndOffset, 56);
+    assertEquals(0x06064b50, zip64End.getInt(0));
+    assertEquals(2, zip64End.getLong(32));
+    long centralDirectorySize = zip64End.getLong(40);
+    long centralDirectoryOffset = zip64End.getLong(48);
+    assertEquals(zip64EndOffset, centralDirectoryOffset + centralDirectorySize);
+    assertTrue(centralDirectoryOffset > 0xFFFFFFFFL);
+
+    // Central directory headers
+    ByteBuffer centralDirectory = outputStream.getTail(centralDirectoryOffset, (int) centralDirectorySize);
+    assertEquals(0x02014b50, centralDirectory.getInt(0));
+    assertEquals("root/large.bin", readName(centralDirectory, 0));
+    assertEquals(0xFFFFFFFFL, centralDirectory.getInt(20) & 0xFFFFFFFFL);
+    assertEquals(0xFFFFFFFFL, centralDirectory.getInt(24) & 0xFFFFFFFFL);
+    assertEquals(0, centralDirectory.getInt(42));
+    int extraPosition = 46 + centralDirectory.getShort(28);
+    assertEquals(1, centralDirectory.getShort(extraPosition));
+    assertEquals(16, centralDirectory.getShort(extraPosition + 2));
+    assertEquals(LARGE_ENTRY_SIZE, centralDirectory.getLong(extraPosition + 4));
+    assertEquals(LARGE_ENTRY_SIZE, centralDirectory.getLong(extraPosition + 12));
+
+    int position = extraPosition + 20;
+    assertEquals(0x02014b50, centralDirectory.getInt(position));
+    assertEquals("root/small.txt", readName(centralDirectory, position));
+    assertEquals(smallContent.length, centralDirectory.getInt(position + 24));
+    assertEquals(0xFFFFFFFFL, centralDirectory.getInt(position + 42) & 0xFFFFFFFFL);
+    extraPosition = position + 46 + centralDirectory.getShort(position + 28);
+    assertEquals(1, centralDirectory.getShort(extraPosition));
+    assertEquals(8, centralDirectory.getShort(extraPosition + 2));
+    assertEquals(smallEntryOffset, centralDirectory.getLong(extraPosition + 4));
+
+    // Small entry, copied after the large one
+    ByteBuffer smallEntry = outputStream.getTail(smallEntryOffset, 30 + "root/small.txt".length() + smallContent.length);
+    assertEquals(0x04034b50, smallEntry.getInt(0));
+    byte[] data = new byte[smallContent.length];
+    smallEntry.position(30 + "root/small.txt".length());
+    smallEntry.get(data);
+    assertArrayEquals(smallContent, data);
+  }
+
+  /**
+   * Checks that {@link Utils#copyZipEnries(File, ZipArchiveMerger, String)}
+   * copies the entries under the root path, without the directories and the
+   * entries without extension.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testCopyZipEntries() throws Exception {
+    Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+    entries.put("directory/", new byte[0]);
+    entries.put("directory/content.xml", repeat("<content/>", 10));
+    entries.put("/absolute//path.xml", repeat("<path/>", 10));
+    entries.put("noextension", repeat("skipped", 10));
+    File archive = writeArchive("archive.zip", entries, ZipEntry.DEFLATED);
+
+    File merged = new File(directory, "merged.zip");
+    ZipArchiveMerger merger = new ZipArchiveMerger(new FileOutputStream(merged));
+    try {
+      Utils.copyZipEnries(archive, merger, "/root/");
+    } finally {
+      merger.close();
+    }
+
+    Map<String, byte[]> expectedEntries = new LinkedHashMap<String, byte[]>();
+    expectedEntries.put("root/directory/content.xml", entries.get("directory/content.xml"));
+    expectedEntries.put("root/absolute/path.xml", entries.get("/absolute//path.xml"));
+    assertEntries(expectedEntries, merged);
+  }
+
+  /**
+   * Checks that merging archives gives the same entries, in the same order
+   * and with the same content, as copying them by decompressing and
+   * compressing them again with
+   * {@link Utils#copyZipEnries(ZipInputStream, ZipOutputStream, String)}.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSameEntriesAsStreamCopy() throws Exception {
+    Map<String, byte[]> entries1 = new LinkedHashMap<String, byte[]>();
+    entries1.put("sites/intranet/", new byte[0]);
+    entries1.put("sites/intranet/navigation.xml", repeat("<node-navigation/>", 200));
+    entries1.put("sites/intranet/pages.xml", repeat("<page/>", 300));
+    entries1.put("//sites/intranet/portal.xml", repeat("<portal-config/>", 50));
+    entries1.put("README", repeat("skipped", 5));
+    Map<String, byte[]> entries2 = new LinkedHashMap<String, byte[]>();
+    entries2.put("content/documents/image.png", repeat("\u0089PNG", 400));
+    entries2.put("content/documents/été.xml", repeat("<été/>", 20));
+    File[] archives = new File[] { writeArchive("archive1.zip", entries1, ZipEntry.DEFLATED), writeArchive("archive2.zip", entries2, ZipEntry.STORED) };
+    String[] rootPaths = new String[] { "/portal/", "content" };
+
+    File streamCopy = new File(directory, "stream-copy.zip");
+    ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(streamCopy));
+    try {
+      for (int i = 0; i < archives.length; i++) {
+        ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(archives[i]));
+        try {
+          Utils.copyZipEnries(zipInputStream, zipOutputStream, rootPaths[i]);
+        } finally {
+          zipInputStream.close();
+        }
+      }
+    } finally {
+      zipOutputStream.close();
+    }
+
+    File merged = new File(directory, "merged.zip");
+    ZipArchiveMerger merger = new ZipArchiveMerger(new FileOutputStream(merged));
+    try {
+      for (int i = 0; i < archives.length; i++) {
+        Utils.copyZipEnries(archives[i], merger, rootPaths[i]);
+      }
+    } finally {
+      merger.close();
+    }
+
+    Map<String, byte[]> streamCopyEntries = readEntries(streamCopy);
+    assertEquals(5, streamCopyEntries.size());
+    assertEntries(streamCopyEntries, merged);
+  }
+
+  /**
+   * Merges a single archive.
+   *
+   * @param archive the archive
+   * @return the merged archive
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private File merge(File archive) throws IOException {
+    File merged = new File(directory, "merged-" + archive.getName());
+    ZipArchiveMerger merger = new ZipArchiveMerger(new FileOutputStream(merged));
+    try {
+      merger.addArchive(archive);
+    } finally {
+      merger.close();
+    }
+    return merged;
+  }
+
+  /**
+   * Writes an archive with {@link ZipOutputStream}.
+   *
+   * @param name the file name
+   * @param entries the contents by entry name
+   * @param method the compression method
+   * @return the archive
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private File writeArchive(String name, Map<String, byte[]> entries, int method) throws IOException {
+    File archive = new File(directory, name);
+    ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(archive));
+    try {
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        ZipEntry zipEntry = new ZipEntry(entry.getKey());
+        zipEntry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+          CRC32 crc = new CRC32();
+          crc.update(entry.getValue());
+          zipEntry.setSize(entry.getValue().length);
+          zipEntry.setCrc(crc.getValue());
+        }
+        zipOutputStream.putNextEntry(zipEntry);
+        zipOutputStream.write(entry.getValue());
+        zipOutputStream.closeEntry();
+      }
+    } finally {
+      zipOutputStream.close();
+    }
+    return archive;
+  }
+
+  /**
+   * Writes an archive of small entries named "prefix/index.txt".
+   *
+   * @param name the file name
+   * @param prefix the prefix of the entries
+   * @param count the number of entries
+   * @return the archive
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private File writeManyEntriesArchive(String name, String prefix, int count) throws IOException {
+    File archive = new File(directory, name);
+    ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(archive));
+    try {
+      for (int i = 0; i < count; i++) {
+        zipOutputStream.putNextEntry(new ZipEntry(prefix + "/" + i + ".txt"));
+        zipOutputStream.write((prefix + " " + i).getBytes(StandardCharsets.UTF_8));
+        zipOutputStream.closeEntry();
+      }
+    } finally {
+      zipOutputStream.close();
+    }
+    return archive;
+  }
+
+  /**
+   * Writes a Zip64 archive with a stored entry of {@link #LARGE_ENTRY_SIZE}
+   * bytes, written as a sparse file, followed by a small entry. The CRC of the
+   * large entry isn't computed, the merger doesn't check it.
+   *
+   * @param smallContent the content of the small entry
+   * @return the archive
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private File writeLargeArchive(byte[] smallContent) throws IOException {
+    File archive = new File(directory, "large.zip");
+    RandomAccessFile archiveFile = new RandomAccessFile(archive, "rw");
+    try {
+      byte[] largeName = "large.bin".getBytes(StandardCharsets.UTF_8);
+      byte[] smallName = "small.txt".getBytes(StandardCharsets.UTF_8);
+      CRC32 crc = new CRC32();
+      crc.update(smallContent);
+
+      ByteBuffer largeHeader = allocate(30 + largeName.length + 20);
+      putLocalHeader(largeHeader, 0, 0xFFFFFFFFL, largeName, 20);
+      largeHeader.putShort((short) 1).putShort((short) 16).putLong(LARGE_ENTRY_SIZE).putLong(LARGE_ENTRY_SIZE);
+      archiveFile.write(largeHeader.array());
+      long smallOffset = largeHeader.capacity() + LARGE_ENTRY_SIZE;
+      archiveFile.setLength(smallOffset);
+      archiveFile.seek(smallOffset);
+
+      ByteBuffer smallHeader = allocate(30 + smallName.length);
+      putLocalHeader(smallHeader, (int) crc.getValue(), smallContent.length, smallName, 0);
+      archiveFile.write(smallHeader.array());
+      archiveFile.write(smallContent);
+
+      long centralDirectoryOffset = archiveFile.getFilePointer();
+      ByteBuffer centralDirectory = allocate(46 + largeName.length + 20 + 46 + smallName.length + 12);
+      putCentralHeader(centralDirectory, 0, 0xFFFFFFFFL, 0, largeName, 20);
+      centralDirectory.putShort((short) 1).putShort((short) 16).putLong(LARGE_ENTRY_SIZE).putLong(LARGE_ENTRY_SIZE);
+      putCentralHeader(centralDirectory, (int) crc.getValue(), smallContent.length, 0xFFFFFFFFL, smallName, 12);
+      centralDirectory.putShort((short) 1).putShort((short) 8).putLong(smallOffset);
+      archiveFile.write(centralDirectory.array());
+
+      long zip64EndOffset = archiveFile.getFilePointer();
+      ByteBuffer end = allocate(56 + 20 + 22);
+      end.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0);
+      end.putLong(2).putLong(2).putLong(centralDirectory.capacity()).putLong(centralDirectoryOffset);
+      end.putInt(0x07064b50).putInt(0).putLong(zip64EndOffset).putInt(1);
+      end.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 2).putShort((short) 2);
+      end.putInt(centralDirectory.capacity()).putInt(0xFFFFFFFF).putShort((short) 0);
+      archiveFile.write(end.array());
+    } finally {
+      archiveFile.close();
+    }
+    return archive;
+  }
+
+  /**
+   * Puts a local header of a stored entry.
+   *
+   * @param buffer the buffer
+   * @param crc the CRC
+   * @param size the size, or 0xFFFFFFFF if in the extra field
+   * @param name the name
+   * @param extraLength the extra field length
+   */
+  private static void putLocalHeader(ByteBuffer buffer, int crc, long size, byte[] name, int extraLength) {
+    buffer.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) ZipEntry.STORED).putInt(0);
+    buffer.putInt(crc).putInt((int) size).putInt((int) size).putShort((short) name.length).putShort((short) extraLength).put(name);
+  }
+
+  /**
+   * Puts a central directory header of a stored entry.
+   *
+   * @param buffer the buffer
+   * @param crc the CRC
+   * @param size the size, or 0xFFFFFFFF if in the extra field
+   * @param offset the local header offset, or 0xFFFFFFFF if in the extra field
+   * @param name the name
+   * @param extraLength the extra field length
+   */
+  private static void putCentralHeader(ByteBuffer buffer, int crc, long size, long offset, byte[] name, int extraLength) {
+    buffer.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0).putShort((short) ZipEntry.STORED).putInt(0);
+    buffer.putInt(crc).putInt((int) size).putInt((int) size).putShort((short) name.length).putShort((short) extraLength);
+    buffer.putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt(0).putInt((int) offset).put(name);
+  }
+
+  /**
+   * Checks the entries of an archive, read with {@link ZipFile}.
+   *
+   * @param expectedEntries the expected contents by entry name, in order
+   * @param archive the archive
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void assertEntries(Map<String, byte[]> expectedEntries, File archive) throws IOException {
+    ZipFile zipFile = new ZipFile(archive);
+    try {
+      List<String> names = new ArrayList<String>();
+      Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+      while (zipEntries.hasMoreElements()) {
+        ZipEntry zipEntry = zipEntries.nextElement();
+        names.add(zipEntry.getName());
+        assertNotNull(zipEntry.getName(), expectedEntries.get(zipEntry.getName()));
+        InputStream inputStream = zipFile.getInputStream(zipEntry);
+        try {
+          // The CRC is checked at the end of the entry
+          assertArrayEquals(zipEntry.getName(), expectedEntries.get(zipEntry.getName()), IOUtils.toByteArray(inputStream));
+        } finally {
+          inputStream.close();
+        }
+      }
+      assertEquals(new ArrayList<String>(expectedEntries.keySet()), names);
+      assertNull(zipFile.getEntry("missing"));
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  /**
+   * Reads the entries of an archive.
+   *
+   * @param archive the archive
+   * @return the contents by entry name, in order
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static Map<String, byte[]> readEntries(File archive) throws IOException {
+    Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+    ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(archive));
+    try {
+      ZipEntry zipEntry;
+      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+        entries.put(zipEntry.getName(), IOUtils.toByteArray(zipInputStream));
+      }
+    } finally {
+      zipInputStream.close();
+    }
+    return entries;
+  }
+
+  /**
+   * Reads an entry as a string.
+   *
+   * @param zipFile the zip file
+   * @param name the entry name
+   * @return the content
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static String readEntry(ZipFile zipFile, String name) throws IOException {
+    InputStream inputStream = zipFile.getInputStream(zipFile.getEntry(name));
+    try {
+      return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Reads the name of a central directory header.
+   *
+   * @param centralDirectory the central directory
+   * @param position the header position
+   * @return the name
+   */
+  private static String readName(ByteBuffer centralDirectory, int position) {
+    byte[] name = new byte[centralDirectory.getShort(position + 28)];
+    centralDirectory.position(position + 46);
+    centralDirectory.get(name);
+    return new String(name, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads bytes of a file.
+   *
+   * @param file the file
+   * @param offset the offset
+   * @param length the length
+   * @return the little endian buffer
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static ByteBuffer read(RandomAccessFile file, long offset, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    file.seek(offset);
+    file.readFully(bytes);
+    return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Allocates a little endian buffer.
+   *
+   * @param length the length
+   * @return the buffer
+   */
+  private static ByteBuffer allocate(int length) {
+    return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Repeats a string.
+   *
+   * @param value the string
+   * @param count the number of repetitions
+   * @return the UTF-8 bytes
+   */
+  private static byte[] repeat(String value, int count) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.append(value);
+    }
+    return builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Output stream keeping only its first and last bytes, to check archives too
+   * large to be written in tests.
+   */
+  private static class HeadTailOutputStream extends OutputStream {
+
+    /** The first bytes. */
+    private final byte[] head;
+
+    /** The last bytes, in a circular buffer. */
+    private final byte[] tail;
+
+    /** The number of bytes written. */
+    private long count;
+
+    /**
+     * Instantiates a new head tail output stream.
+     *
+     * @param size the number of bytes kept at the head and at the tail
+     */
+    public HeadTailOutputStream(int size) {
+      this.head = new byte[size];
+      this.tail = new byte[size];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (count < head.length) {
+        System.arraycopy(b, off, head, (int) count, (int) Math.min(len, head.length - count));
+      }
+      int skipped = Math.max(0, len - tail.length);
+      int position = (int) ((count + skipped) % tail.length);
+      for (int i = skipped; i < len;) {
+        int length = Math.min(len - i, tail.length - position);
+        System.arraycopy(b, off + i, tail, position, length);
+        i += length;
+        position = (position + length) % tail.length;
+      }
+      count += len;
+    }
+
+    /**
+     * Gets the number of bytes written.
+     *
+     * @return the count
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Gets the first bytes.
+     *
+     * @return the little endian buffer
+     */
+    public ByteBuffer getHead() {
+      return ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Gets bytes among the last bytes written.
+     *
+     * @param offset the offset in the stream
+     * @param length the length
+     * @return the little endian buffer
+     */
+    public ByteBuffer getTail(long offset, int length) {
+      assertTrue("Bytes not kept: " + offset, offset >= count - tail.length && offset + length <= count);
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = tail[(int) ((offset + i) % tail.length)];
+      }
+      return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.handler;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.exoplatform.management.service.api.ResourceHandler;
+import org.exoplatform.management.service.api.StagingService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compares the time needed to resolve the resource path of every entry of a
+ * synthetic 500k entries archive with {@link ResourceHandlerRegistry} and with
+ * the lookup it replaced: the zip path exceptions of the MOP entries, then the
+ * lookup of each parent path joined with {@link StringUtils#join(Object[], String)}.
+ * Entry names are read from the archive before measuring, as
+ * {@code StagingExtensionController.prepareImportResources} reads them from
+ * the central directory. Ignored by default: it only prints timings.
+ */
+@Ignore("Benchmark, run it explicitly")
+public class ResourceHandlerRegistryBenchmarkTest {
+
+  /** The number of entries of the archive. */
+  private static final int ENTRIES_COUNT = 500000;
+
+  /** The number of measured iterations, after one warm-up iteration. */
+  private static final int ITERATIONS = 5;
+
+  /** The registered paths, as in {@link ResourceHandlerLocator}. */
+  private static final List<String> REGISTERED_PATHS = Arrays.asList(StagingService.BACKUP_PATH, StagingService.SOCIAL_SPACE_PATH, StagingService.PORTAL_WIKIS_PATH,
+      StagingService.GROUP_WIKIS_PATH, StagingService.USER_WIKIS_PATH, StagingService.PUBLIC_FORUM_PATH, StagingService.SPACE_FORUM_PATH, StagingService.FORUM_SETTINGS,
+      StagingService.GROUP_CALENDAR_PATH, StagingService.SPACE_CALENDAR_PATH, StagingService.PERSONAL_FORUM_PATH, StagingService.ECM_NODETYPE_PATH,
+      StagingService.ECM_SCRIPT_PATH, StagingService.ECM_DRIVE_PATH, StagingService.ECM_QUERY_PATH, StagingService.ECM_TEMPLATES_METADATA_PATH,
+      StagingService.ECM_TEMPLATES_DOCUMENT_TYPE_PATH, StagingService.ECM_TEMPLATES_APPLICATION_CLV_PATH, StagingService.ECM_TAXONOMY_PATH,
+      StagingService.ECM_VIEW_TEMPLATES_PATH, StagingService.ECM_VIEW_CONFIGURATION_PATH, StagingService.USERS_PATH, StagingService.GROUPS_PATH,
+      StagingService.ROLE_PATH, StagingService.GADGET_PATH, StagingService.REGISTRY_PATH, StagingService.CONTENT_SITES_PATH, StagingService.SITES_PORTAL_PATH,
+      StagingService.SITES_GROUP_PATH, StagingService.SITES_USER_PATH);
+
+  /** The zip path exceptions previously used to resolve MOP entries. */
+  private static final Map<String, String> ZIP_PATH_EXCEPTIONS = new LinkedHashMap<String, String>();
+
+  static {
+    ZIP_PATH_EXCEPTIONS.put("/portal", StagingService.SITES_PORTAL_PATH);
+    ZIP_PATH_EXCEPTIONS.put("/group", StagingService.SITES_GROUP_PATH);
+    ZIP_PATH_EXCEPTIONS.put("/user", StagingService.SITES_USER_PATH);
+  }
+
+  /** The templates of the entry names, the index of the entry replaces %d. */
+  private static final String[] ENTRY_TEMPLATES = new String[] { "content/sites/intranet/documents/folder%d/document/jcr:content/file.xml",
+      "wiki/group/spaces/space%d/WikiHome/page/content.xml", "forum/space/space%d/forum/topic/post.xml", "portal/intranet/pages%d.xml",
+      "group/platform/users/navigation%d.xml", "organization/user/user%d/u_user.xml", "calendar/group/spaces/space%d/calendar.xml",
+      "social/space/space%d/activities.metadata" };
+
+  /** The temporary directory. */
+  private File directory;
+
+  /** The entry names, as resolved by the import portlet. */
+  private List<String> entryNames;
+
+  /** The registry. */
+  private ResourceHandlerRegistry registry;
+
+  /** The handlers by path, as in the static map previously probed. */
+  private Map<String, ResourceHandler> handlers;
+
+  /**
+   * Writes the archive, reads its entry names and registers the handlers.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("resource-handlers", "-benchmark");
+    directory.delete();
+    directory.mkdirs();
+    File archive = new File(directory, "entries.zip");
+    ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(archive));
+    try {
+      for (int i = 0; i < ENTRIES_COUNT; i++) {
+        zipOutputStream.putNextEntry(new ZipEntry(String.format(ENTRY_TEMPLATES[i % ENTRY_TEMPLATES.length], i)));
+        zipOutputStream.closeEntry();
+      }
+    } finally {
+      zipOutputStream.close();
+    }
+    entryNames = new ArrayList<String>(ENTRIES_COUNT);
+    ZipFile zipFile = new ZipFile(archive);
+    try {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        entryNames.add("/" + entries.nextElement().getName());
+      }
+    } finally {
+      zipFile.close();
+    }
+
+    registry = new ResourceHandlerRegistry();
+    handlers = new HashMap<String, ResourceHandler>();
+    for (String path : REGISTERED_PATHS) {
+      ResourceHandler handler = newHandler(path);
+      handlers.put(path, handler);
+      registry.register(handler);
+    }
+    for (Map.Entry<String, String> alias : ZIP_PATH_EXCEPTIONS.entrySet()) {
+      registry.registerAlias(alias.getKey(), alias.getValue());
+    }
+  }
+
+  /**
+   * Deletes the temporary directory.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  /**
+   * Measures both lookups over all the entries.
+   */
+  @Test
+  public void benchmarkFindResourcePath() {
+    int joinedPathsFound = resolveByJoinedPaths();
+    int registryFound = resolveWithRegistry();
+    assertEquals(ENTRIES_COUNT, joinedPathsFound);
+    assertEquals(ENTRIES_COUNT, registryFound);
+
+    long joinedPathsTime = 0;
+    long registryTime = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      long start = System.nanoTime();
+      resolveByJoinedPaths();
+      joinedPathsTime += System.nanoTime() - start;
+      start = System.nanoTime();
+      resolveWithRegistry();
+      registryTime += System.nanoTime() - start;
+    }
+    System.out.println("Resolution of " + ENTRIES_COUNT + " entries:");
+    System.out.println("  zip path exceptions and joined parent paths: " + (joinedPathsTime / ITERATIONS / 1000000) + " ms");
+    System.out.println("  ResourceHandlerRegistry: " + (registryTime / ITERATIONS / 1000000) + " ms");
+  }
+
+  /**
+   * Resolves the entries with the registry.
+   *
+   * @return the number of resolved entries
+   */
+  private int resolveWithRegistry() {
+    int found = 0;
+    for (String entryName : entryNames) {
+      if (registry.findResourcePath(entryName) != null) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Resolves the entries as it was done before the registry trie.
+   *
+   * @return the number of resolved entries
+   */
+  private int resolveByJoinedPaths() {
+    int found = 0;
+    for (String entryName : entryNames) {
+      String resourcePath = transformSpecialPath(entryName);
+      if (!resourcePath.equals(entryName) || findResourceByPath(resourcePath) != null) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Finds a handler by looking up each parent path of a path, as it was done
+   * before the trie.
+   *
+   * @param path the path
+   * @return the resource handler, null if none
+   */
+  private ResourceHandler findResourceByPath(String path) {
+    String[] fileNameParts = path.split("/");
+    for (int i = fileNameParts.length; i > 0; i--) {
+      String tmpPath = StringUtils.join(Arrays.copyOfRange(fileNameParts, 0, i), "/");
+      ResourceHandler handler = handlers.get(tmpPath);
+      if (handler != null) {
+        return handler;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Transforms a MOP entry name with the zip path exceptions, as it was done
+   * before the aliases.
+   *
+   * @param resourcePath the resource path
+   * @return the transformed path
+   */
+  private String transformSpecialPath(String resourcePath) {
+    for (Map.Entry<String, String> exception : ZIP_PATH_EXCEPTIONS.entrySet()) {
+      if (resourcePath.startsWith(exception.getKey())) {
+        return exception.getValue();
+      }
+    }
+    return resourcePath;
+  }
+
+  /**
+   * Creates a resource handler of a path.
+   *
+   * @param path the path
+   * @return the resource handler
+   */
+  private static ResourceHandler newHandler(final String path) {
+    return (ResourceHandler) Proxy.newProxyInstance(ResourceHandler.class.getClassLoader(), new Class<?>[] { ResourceHandler.class }, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().equals("getPath")) {
+          return path;
+        }
+        throw new UnsupportedOperationException(method.getName());
+      }
+    });
+  }
+}
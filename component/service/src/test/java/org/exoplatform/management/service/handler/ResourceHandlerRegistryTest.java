@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.service.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.exoplatform.management.service.api.ResourceHandler;
+import org.exoplatform.management.service.api.StagingService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests of {@link ResourceHandlerRegistry}: paths are resolved as they were
+ * by the lookup of each parent path, joined segment by segment, and by the
+ * zip path exceptions of the MOP entries.
+ */
+public class ResourceHandlerRegistryTest {
+
+  /** The registered paths, as in {@link ResourceHandlerLocator}. */
+  private static final List<String> REGISTERED_PATHS = Arrays.asList(StagingService.BACKUP_PATH, StagingService.SOCIAL_SPACE_PATH, StagingService.PORTAL_WIKIS_PATH,
+      StagingService.GROUP_WIKIS_PATH, StagingService.USER_WIKIS_PATH, StagingService.PUBLIC_FORUM_PATH, StagingService.SPACE_FORUM_PATH, StagingService.FORUM_SETTINGS,
+      StagingService.GROUP_CALENDAR_PATH, StagingService.SPACE_CALENDAR_PATH, StagingService.PERSONAL_FORUM_PATH, StagingService.ECM_NODETYPE_PATH,
+      StagingService.ECM_SCRIPT_PATH, StagingService.ECM_DRIVE_PATH, StagingService.ECM_QUERY_PATH, StagingService.ECM_TEMPLATES_METADATA_PATH,
+      StagingService.ECM_TEMPLATES_DOCUMENT_TYPE_PATH, StagingService.ECM_TEMPLATES_APPLICATION_CLV_PATH, StagingService.ECM_TAXONOMY_PATH,
+      StagingService.ECM_VIEW_TEMPLATES_PATH, StagingService.ECM_VIEW_CONFIGURATION_PATH, StagingService.USERS_PATH, StagingService.GROUPS_PATH,
+      StagingService.ROLE_PATH, StagingService.GADGET_PATH, StagingService.REGISTRY_PATH, StagingService.CONTENT_SITES_PATH, StagingService.SITES_PORTAL_PATH,
+      StagingService.SITES_GROUP_PATH, StagingService.SITES_USER_PATH);
+
+  /** The zip path exceptions previously used to resolve MOP entries. */
+  private static final Map<String, String> ZIP_PATH_EXCEPTIONS = new LinkedHashMap<String, String>();
+
+  static {
+    ZIP_PATH_EXCEPTIONS.put("/portal", StagingService.SITES_PORTAL_PATH);
+    ZIP_PATH_EXCEPTIONS.put("/group", StagingService.SITES_GROUP_PATH);
+    ZIP_PATH_EXCEPTIONS.put("/user", StagingService.SITES_USER_PATH);
+  }
+
+  /** The paths to resolve. */
+  private static final List<String> PATHS = Arrays.asList("/backup", "/backup/idm", "/social/space/marketing/activities.metadata", "/social", "/social/",
+      "/wiki/portal/intranet/WikiPortlet/wiki.xml", "/wiki/group/spaces/marketing", "/wiki/user", "/wiki", "/forum/public/category.xml", "/forum/settings",
+      "/forum/space/engineering/forum.xml", "/calendar/group/platform/users/calendar.xml", "/calendar/personal/john/calendar.xml",
+      "/ecmadmin/templates/applications/content-list-viewer/list/view.gtmpl", "/ecmadmin/templates/applications", "/ecmadmin/templates/nodetypes/exo:article",
+      "/ecmadmin/view/configuration/admin-view.xml", "/ecmadmin/view", "/organization/user/john/u_john.xml", "/organization/role", "/gadget/weather.xml",
+      "/registry/Collaboration", "/content/sites/intranet/documents/image.png", "/content", "/site/portalsites/intranet/portal.xml", "/site/groupsites",
+      "/site/usersites/john/pages.xml", "/site", "/unknown/path", "/", "", "relative/path", "//backup", "/backup//idm");
+
+  /** The registry. */
+  private ResourceHandlerRegistry registry;
+
+  /** The handlers by path. */
+  private Map<String, ResourceHandler> handlers;
+
+  /**
+   * Registers the handlers and aliases of {@link ResourceHandlerLocator}.
+   */
+  @Before
+  public void setUp() {
+    registry = new ResourceHandlerRegistry();
+    handlers = new LinkedHashMap<String, ResourceHandler>();
+    for (String path : REGISTERED_PATHS) {
+      ResourceHandler handler = newHandler(path);
+      handlers.put(path, handler);
+      registry.register(handler);
+    }
+    for (Map.Entry<String, String> alias : ZIP_PATH_EXCEPTIONS.entrySet()) {
+      registry.registerAlias(alias.getKey(), alias.getValue());
+    }
+  }
+
+  /**
+   * Checks that handlers are found as with the lookup of each parent path.
+   */
+  @Test
+  public void testFindAsJoinedPathsLookup() {
+    for (String path : PATHS) {
+      assertSame(path, findByJoinedPaths(path), registry.find(path));
+      ResourceHandler handler = registry.find(path);
+      assertEquals(path, handler == null ? null : handler.getPath(), registry.findResourcePath(path));
+    }
+  }
+
+  /**
+   * Checks that MOP entries are resolved to their site type category, as with
+   * the zip path exceptions.
+   */
+  @Test
+  public void testFindAliases() {
+    List<String> entryNames = Arrays.asList("/portal/intranet/portal.xml", "/portal/intranet/navigation.xml", "/group/platform/users/pages.xml",
+        "/user/john/navigation.xml", "/portal", "/group/spaces/marketing/portal.xml");
+    for (String entryName : entryNames) {
+      String resourcePath = transformSpecialPath(entryName);
+      assertEquals(entryName, resourcePath, registry.findResourcePath(entryName));
+      assertSame(entryName, handlers.get(resourcePath), registry.find(entryName));
+    }
+    assertNull(registry.findResourcePath("/portalsites/intranet"));
+    assertNull(registry.find("/users/john"));
+  }
+
+  /**
+   * Checks that an alias of a path without handler is refused.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testAliasOfUnknownPath() {
+    registry.registerAlias("/alias", "/unknown");
+  }
+
+  /**
+   * Finds a handler by looking up each parent path of a path, joined segment
+   * by segment, as it was done before the trie.
+   *
+   * @param path the path
+   * @return the resource handler, null if none
+   */
+  private ResourceHandler findByJoinedPaths(String path) {
+    String[] fileNameParts = path.split("/");
+    for (int i = fileNameParts.length; i > 0; i--) {
+      StringBuilder tmpPath = new StringBuilder();
+      for (int j = 0; j < i; j++) {
+        if (j > 0) {
+          tmpPath.append('/');
+        }
+        tmpPath.append(fileNameParts[j]);
+      }
+      ResourceHandler handler = registry.get(tmpPath.toString());
+      if (handler != null) {
+        return handler;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Transforms a MOP entry name with the zip path exceptions, as it was done
+   * before the aliases.
+   *
+   * @param resourcePath the resource path
+   * @return the transformed path
+   */
+  private String transformSpecialPath(String resourcePath) {
+    for (Map.Entry<String, String> exception : ZIP_PATH_EXCEPTIONS.entrySet()) {
+      if (resourcePath.startsWith(exception.getKey())) {
+        return exception.getValue();
+      }
+    }
+    return resourcePath;
+  }
+
+  /**
+   * Creates a resource handler of a path.
+   *
+   * @param path the path
+   * @return the resource handler
+   */
+  private static ResourceHandler newHandler(final String path) {
+    return (ResourceHandler) Proxy.newProxyInstance(ResourceHandler.class.getClassLoader(), new Class<?>[] { ResourceHandler.class }, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().equals("getPath")) {
+          return path;
+        } else if (method.getName().equals("toString")) {
+          return "ResourceHandler " + path;
+        } else if (method.getName().equals("equals")) {
+          return proxy == args[0];
+        } else if (method.getName().equals("hashCode")) {
+          return System.identityHashCode(proxy);
+        }
+        throw new UnsupportedOperationException(method.getName());
+      }
+    });
+  }
+}
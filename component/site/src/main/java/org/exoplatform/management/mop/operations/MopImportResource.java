@@ -22,6 +22,7 @@ import org.apache.commons.lang.StringUtils;
 import org.exoplatform.commons.chromattic.ChromatticLifeCycle;
 import org.exoplatform.commons.chromattic.ChromatticManager;
 import org.exoplatform.management.common.AbstractOperationHandler;
+import org.exoplatform.management.common.importop.DeferredCacheInvalidation;
 import org.exoplatform.management.mop.exportimport.NavigationExportTask;
 import org.exoplatform.management.mop.exportimport.NavigationImportTask;
 import org.exoplatform.management.mop.exportimport.PageExportTask;
@@ -355,12 +356,15 @@ public class MopImportResource extends AbstractOperationHandler {
   }
 
   /**
-   * Clear caches.
+   * Clear caches, or defers it if the import is part of a bulk import.
    *
    * @param cacheService the cache service
    */
   @SuppressWarnings("rawtypes")
   public void clearCaches(CacheService cacheService) {
+    if (DeferredCacheInvalidation.defer(DeferredCacheInvalidation.ALL_CACHES)) {
+      return;
+    }
     for (Object o : cacheService.getAllCacheInstances()) {
       try {
         ((ExoCache) o).clearCache();
@@ -19,6 +19,8 @@
 package org.exoplatform.management.social;
 
 import org.exoplatform.management.common.AbstractManagementExtension;
+import org.exoplatform.management.common.ExportEstimation;
+import org.exoplatform.management.social.operations.SocialDataEstimateResource;
 import org.exoplatform.management.social.operations.SocialDataExportResource;
 import org.exoplatform.management.social.operations.SocialDataImportResource;
 import org.exoplatform.management.social.operations.SocialDataReadResource;
@@ -93,6 +95,7 @@ public class SocialExtension extends AbstractManagementExtension {
 
     ManagedResource.Registration space = spaces.registerSubResource("{space-name: .*}", description("Space"));
     space.registerOperationHandler(OperationNames.EXPORT_RESOURCE, new SocialDataExportResource(), description("export space"));
+    space.registerOperationHandler(ExportEstimation.ESTIMATE_RESOURCE, new SocialDataEstimateResource(), description("estimate the export of space"));
     space.registerOperationHandler(OperationNames.IMPORT_RESOURCE, new SocialDataImportResource(), description("import space"));
     space.registerOperationHandler(OperationNames.READ_RESOURCE, new ReadResource("Empty resource"), description("Empty resource"));
   }
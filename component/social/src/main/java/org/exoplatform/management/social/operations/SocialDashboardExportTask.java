@@ -20,6 +20,7 @@ package org.exoplatform.management.social.operations;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.social.SocialExtension;
 import org.exoplatform.portal.config.DataStorage;
 import org.exoplatform.portal.config.model.Container;
@@ -47,6 +48,21 @@ public class SocialDashboardExportTask implements ExportTask {
   /** The Constant FILENAME. */
   public static final String FILENAME = "dashboard.metadata";
 
+  /** The XStream configuration of dashboards. */
+  private static final XStreamRegistry.Configuration DASHBOARD_CONFIGURATION = new XStreamRegistry.Configuration() {
+    @Override
+    public void configure(XStream xStream) {
+      xStream.autodetectAnnotations(false);
+      xStream.setMode(XStream.NO_REFERENCES);
+      xStream.omitField(UIPortlet.class, "supportedProcessingEvents");
+      xStream.omitField(UIPortlet.class, "producedOfferedPortlet");
+      xStream.omitField(UIPortlet.class, "supportedPublicRenderParameters");
+      xStream.omitField(UIPortlet.class, "portletContext");
+      xStream.omitField(UIPortlet.class, "componentConfig");
+      xStream.omitField(PortletState.class, "applicationState");
+    }
+  };
+
   /** The ui container. */
   private final UIContainer uiContainer;
   
@@ -77,17 +93,8 @@ public class SocialDashboardExportTask implements ExportTask {
    */
   @Override
   public void export(OutputStream outputStream) throws IOException {
-    XStream xStream = new XStream();
+    XStream xStream = XStreamRegistry.getXStream(SocialDashboardExportTask.class.getName(), DASHBOARD_CONFIGURATION);
     OutputStreamWriter writer = new OutputStreamWriter(outputStream, "UTF-8");
-    xStream.autodetectAnnotations(false);
-    xStream.setMode(XStream.NO_REFERENCES);
-    xStream.omitField(UIPortlet.class, "supportedProcessingEvents");
-    xStream.omitField(UIPortlet.class, "producedOfferedPortlet");
-    xStream.omitField(UIPortlet.class, "supportedPublicRenderParameters");
-    xStream.omitField(UIPortlet.class, "portletContext");
-    xStream.omitField(UIPortlet.class, "componentConfig");
-    xStream.omitField(PortletState.class, "applicationState");
-
     xStream.toXML(uiContainer, writer);
     writer.flush();
   }
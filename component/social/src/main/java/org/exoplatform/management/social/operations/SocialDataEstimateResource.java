@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.management.social.operations;
+
+import org.exoplatform.management.common.ExportEstimation;
+import org.exoplatform.management.social.SocialExtension;
+import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.provider.SpaceIdentityProvider;
+import org.exoplatform.social.core.space.model.Space;
+import org.gatein.common.logging.Logger;
+import org.gatein.common.logging.LoggerFactory;
+import org.gatein.management.api.ContentType;
+import org.gatein.management.api.PathAddress;
+import org.gatein.management.api.controller.ManagedRequest;
+import org.gatein.management.api.exceptions.OperationException;
+import org.gatein.management.api.exceptions.ResourceNotFoundException;
+import org.gatein.management.api.operation.OperationContext;
+import org.gatein.management.api.operation.ResultHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates the export of {@link SocialDataExportResource}: the data of the
+ * space applications is estimated by their own "estimate-resource" operation,
+ * and the activities are counted without being loaded.
+ */
+public class SocialDataEstimateResource extends SocialDataExportResource {
+
+  /** The Constant log. */
+  final private static Logger log = LoggerFactory.getLogger(SocialDataEstimateResource.class);
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(OperationContext operationContext, ResultHandler resultHandler) throws ResourceNotFoundException, OperationException {
+    initServices(operationContext);
+
+    List<String> operationFilters = operationContext.getAttributes().getValues("filter");
+    boolean exportCalendar = false, exportForum = false;
+    if (operationFilters != null) {
+      exportForum = operationFilters.contains("export-forum:true");
+      exportCalendar = operationFilters.contains("export-calendar:true");
+    }
+
+    String spaceDisplayName = operationContext.getAddress().resolvePathTemplate("space-name");
+
+    ExportEstimation estimation = new ExportEstimation();
+    try {
+      Space space = spaceService.getSpaceByDisplayName(spaceDisplayName);
+      if (space == null) {
+        throw new ResourceNotFoundException("Space '" + spaceDisplayName + "' doesn't exist");
+      }
+      Set<String> appsSet = new HashSet<String>(Arrays.asList(space.getApp().split(",")));
+      Map<String, List<String>> attributesMap = new HashMap<String, List<String>>();
+      attributesMap.put("exclude-space-metadata", Collections.singletonList("true"));
+      List<String> filters = new ArrayList<String>();
+      filters.add(spaceDisplayName);
+      attributesMap.put("filter", filters);
+
+      Set<String> alreadyEstimatedPaths = new HashSet<String>();
+      for (String application : appsSet) {
+        String path = getEntryResourcePath(application);
+        if (path == null || (path.equals(SocialExtension.FORUM_RESOURCE_PATH) && !exportForum) || (path.equals(SocialExtension.CALENDAR_RESOURCE_PATH) && !exportCalendar)) {
+          continue;
+        }
+        if (alreadyEstimatedPaths.add(path)) {
+          estimateResource(estimation, attributesMap, path);
+        }
+      }
+
+      computeContentFilters(space, attributesMap);
+      estimateResource(estimation, attributesMap, SocialExtension.CONTENT_RESOURCE_PATH);
+
+      attributesMap.clear();
+      estimateResource(estimation, attributesMap, SocialExtension.SITES_RESOURCE_PATH + space.getGroupId());
+
+      // Space metadata and avatar
+      estimation.addEntries(2, ExportEstimation.METADATA_SIZE);
+
+      Identity spaceIdentity = identityManager.getOrCreateIdentity(SpaceIdentityProvider.NAME, space.getPrettyName(), false);
+      estimation.addEntries(activityManager.getActivitiesOfSpaceWithListAccess(spaceIdentity).getSize(), ExportEstimation.ACTIVITY_SIZE);
+    } catch (ResourceNotFoundException e) {
+      throw e;
+    } catch (OperationException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new OperationException(ExportEstimation.ESTIMATE_RESOURCE, "Can't estimate Space", e);
+    }
+    resultHandler.completed(estimation);
+  }
+
+  /**
+   * Adds the estimation of a resource exported with the space. A resource
+   * without estimation operation is added as unknown.
+   *
+   * @param estimation the estimation
+   * @param attributesMap the attributes map
+   * @param path the path
+   */
+  private void estimateResource(ExportEstimation estimation, Map<String, List<String>> attributesMap, String path) {
+    ManagedRequest request = ManagedRequest.Factory.create(ExportEstimation.ESTIMATE_RESOURCE, PathAddress.pathAddress(path), attributesMap, ContentType.JSON);
+    try {
+      Object result = managementController.execute(request).getResult();
+      if (result instanceof ExportEstimation) {
+        estimation.add((ExportEstimation) result);
+        return;
+      }
+    } catch (ResourceNotFoundException e) {
+      log.debug("Can't estimate " + path + ": " + e.getMessage());
+    } catch (OperationException e) {
+      log.debug("Can't estimate " + path + ": " + e.getMessage());
+    }
+    estimation.addUnknownPath(path);
+  }
+}
@@ -90,13 +90,13 @@ public class SocialDataExportResource extends AbstractExportOperationHandler {
   private static final String GROUPS_PATH = "groupsPath";
 
   /** The management controller. */
-  private ManagementController managementController;
+  protected ManagementController managementController;
   
   /** The node hierarchy creator. */
-  private NodeHierarchyCreator nodeHierarchyCreator;
+  protected NodeHierarchyCreator nodeHierarchyCreator;
   
   /** The data distribution manager. */
-  private DataDistributionManager dataDistributionManager;
+  protected DataDistributionManager dataDistributionManager;
 
   // TODO For Space Dashboard export/import
   // private DataStorage dataStorage;
@@ -106,13 +106,7 @@ public class SocialDataExportResource extends AbstractExportOperationHandler {
    */
   @Override
   public void execute(OperationContext operationContext, ResultHandler resultHandler) throws ResourceNotFoundException, OperationException {
-    spaceService = operationContext.getRuntimeContext().getRuntimeComponent(SpaceService.class);
-    managementController = operationContext.getRuntimeContext().getRuntimeComponent(ManagementController.class);
-    nodeHierarchyCreator = operationContext.getRuntimeContext().getRuntimeComponent(NodeHierarchyCreator.class);
-    dataDistributionManager = operationContext.getRuntimeContext().getRuntimeComponent(DataDistributionManager.class);
-    repositoryService = operationContext.getRuntimeContext().getRuntimeComponent(RepositoryService.class);
-    activityManager = operationContext.getRuntimeContext().getRuntimeComponent(ActivityManager.class);
-    identityManager = operationContext.getRuntimeContext().getRuntimeComponent(IdentityManager.class);
+    initServices(operationContext);
 
     // TODO For Space Dashboard export/import
     // dataStorage =
@@ -200,6 +194,21 @@ public class SocialDataExportResource extends AbstractExportOperationHandler {
     resultHandler.completed(new ExportResourceModel(exportTasks));
   }
 
+  /**
+   * Gets the services used by the operation.
+   *
+   * @param operationContext the operation context
+   */
+  protected void initServices(OperationContext operationContext) {
+    spaceService = operationContext.getRuntimeContext().getRuntimeComponent(SpaceService.class);
+    managementController = operationContext.getRuntimeContext().getRuntimeComponent(ManagementController.class);
+    nodeHierarchyCreator = operationContext.getRuntimeContext().getRuntimeComponent(NodeHierarchyCreator.class);
+    dataDistributionManager = operationContext.getRuntimeContext().getRuntimeComponent(DataDistributionManager.class);
+    repositoryService = operationContext.getRuntimeContext().getRuntimeComponent(RepositoryService.class);
+    activityManager = operationContext.getRuntimeContext().getRuntimeComponent(ActivityManager.class);
+    identityManager = operationContext.getRuntimeContext().getRuntimeComponent(IdentityManager.class);
+  }
+
   /**
    * Export space activities.
    *
@@ -270,7 +279,7 @@ public class SocialDataExportResource extends AbstractExportOperationHandler {
    * @param application the application
    * @return the entry resource path
    */
-  private String getEntryResourcePath(String application) {
+  protected String getEntryResourcePath(String application) {
     String path = null;
     if (application.contains(SocialExtension.FORUM_PORTLET)) {
       path = SocialExtension.FORUM_RESOURCE_PATH;
@@ -295,7 +304,7 @@ public class SocialDataExportResource extends AbstractExportOperationHandler {
    * @throws NoSuchWorkspaceException the no such workspace exception
    * @throws PathNotFoundException the path not found exception
    */
-  private void computeContentFilters(Space space, Map<String, List<String>> attributesMap) throws RepositoryException, LoginException, NoSuchWorkspaceException, PathNotFoundException {
+  protected void computeContentFilters(Space space, Map<String, List<String>> attributesMap) throws RepositoryException, LoginException, NoSuchWorkspaceException, PathNotFoundException {
     List<String> filters = attributesMap.get("filter");
     DataDistributionType dataDistributionType = dataDistributionManager.getDataDistributionType(DataDistributionMode.NONE);
     String contentWorkspace = repositoryService.getCurrentRepository().getConfiguration().getDefaultWorkspaceName();
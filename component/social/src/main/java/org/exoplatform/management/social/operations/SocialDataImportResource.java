@@ -24,6 +24,7 @@ import org.apache.commons.io.IOUtils;
 import org.exoplatform.container.PortalContainer;
 import org.exoplatform.container.component.RequestLifeCycle;
 import org.exoplatform.management.common.SpaceMetaData;
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.management.common.exportop.ActivitiesExportTask;
 import org.exoplatform.management.common.exportop.SpaceMetadataExportTask;
 import org.exoplatform.management.common.importop.AbstractImportOperationHandler;
@@ -127,7 +128,7 @@ public class SocialDataImportResource extends AbstractImportOperationHandler imp
     dataStorage = operationContext.getRuntimeContext().getRuntimeComponent(DataStorage.class);
     activityStorage = operationContext.getRuntimeContext().getRuntimeComponent(ActivityStorage.class);
     identityStorage = operationContext.getRuntimeContext().getRuntimeComponent(IdentityStorage.class);
-    activitiesByPostTime.clear();
+    importedActivities.clear();
 
     OperationAttributes attributes = operationContext.getAttributes();
     List<String> filters = attributes.getValues("filter");
@@ -216,7 +217,7 @@ public class SocialDataImportResource extends AbstractImportOperationHandler imp
         }
 
         log.info("Importing space '" + extractedSpacePrettyName + "' activities.");
-        activitiesByPostTime.clear();
+        importedActivities.clear();
         for (File file : activitiesFileList) {
           importActivities(file, extractedSpacePrettyName, false);
         }
@@ -279,7 +280,7 @@ public class SocialDataImportResource extends AbstractImportOperationHandler imp
 
       space = spaceService.getSpaceByGroupId(space.getGroupId());
 
-      XStream xstream = new XStream();
+      XStream xstream = XStreamRegistry.getXStream();
       AvatarAttachment avatarAttachment = (AvatarAttachment) xstream.fromXML(reader);
       space.setAvatarAttachment(avatarAttachment);
 
@@ -335,7 +336,7 @@ public class SocialDataImportResource extends AbstractImportOperationHandler imp
 
       inputStream = new FileInputStream(fileToImport);
 
-      XStream xstream = new XStream();
+      XStream xstream = XStreamRegistry.getXStream();
       Dashboard newDashboard = (Dashboard) xstream.fromXML(inputStream);
 
       dashboard.setAccessPermissions(newDashboard.getAccessPermissions());
@@ -405,8 +406,7 @@ public class SocialDataImportResource extends AbstractImportOperationHandler imp
    */
   private boolean createOrReplaceSpace(String spacePrettyName, String targetSpaceName, boolean replaceExisting, boolean createAbsentUsers, InputStream inputStream) throws Exception {
     // Unmarshall metadata xml file
-    XStream xstream = new XStream();
-    xstream.alias("metadata", SpaceMetaData.class);
+    XStream xstream = XStreamRegistry.getXStream("metadata", SpaceMetaData.class);
     SpaceMetaData spaceMetaData = (SpaceMetaData) xstream.fromXML(inputStream);
     String newSpacePrettyName = spaceMetaData.getPrettyName();
     String oldSpacePrettyName = spaceMetaData.getGroupId().replace(SpaceUtils.SPACE_GROUP + "/", "");
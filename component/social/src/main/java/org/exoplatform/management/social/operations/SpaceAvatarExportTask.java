@@ -20,6 +20,7 @@ package org.exoplatform.management.social.operations;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.exoplatform.management.common.XStreamRegistry;
 import org.exoplatform.social.core.model.AvatarAttachment;
 import org.gatein.management.api.operation.model.ExportTask;
 
@@ -65,7 +66,7 @@ public class SpaceAvatarExportTask implements ExportTask {
    */
   @Override
   public void export(OutputStream outputStream) throws IOException {
-    XStream xStream = new XStream();
+    XStream xStream = XStreamRegistry.getXStream();
     OutputStreamWriter writer = new OutputStreamWriter(outputStream, "UTF-8");
     xStream.toXML(avatarAttachment, writer);
     writer.flush();
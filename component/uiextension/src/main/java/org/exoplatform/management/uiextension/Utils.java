@@ -18,9 +18,9 @@
  */
 package org.exoplatform.management.uiextension;
 
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.io.FileUtils;
 import org.exoplatform.management.common.FileEntry;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
 import org.exoplatform.management.content.operations.site.contents.NodeMetadata;
 import org.exoplatform.management.content.operations.site.contents.SiteContentsImportResource;
 import org.exoplatform.management.content.operations.site.contents.SiteMetaData;
@@ -28,6 +28,7 @@ import org.exoplatform.management.content.operations.site.contents.SiteMetaDataE
 import org.exoplatform.management.service.api.AbstractResourceHandler;
 import org.exoplatform.management.service.api.StagingService;
 import org.exoplatform.management.service.api.TargetServer;
+import org.exoplatform.management.service.api.TargetServerClient;
 import org.exoplatform.management.service.handler.ResourceHandlerLocator;
 import org.exoplatform.management.uiextension.comparison.NodeComparison;
 import org.exoplatform.management.uiextension.comparison.NodeComparisonState;
@@ -36,10 +37,7 @@ import org.gatein.management.api.controller.ManagedResponse;
 import org.gatein.management.api.operation.model.ExportResourceModel;
 import org.gatein.management.api.operation.model.ExportTask;
 
-import java.io.File;
-import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -244,37 +242,25 @@ public class Utils {
    */
   private static Map<String, NodeMetadata> getTargetServerMetadata(TargetServer targetServer, Map<String, String> exportOptions) throws Exception {
     String targetServerURL = AbstractResourceHandler.getServerURL(targetServer, StagingService.CONTENT_SITES_PATH + "/shared.zip", exportOptions);
-    URL url = new URL(targetServerURL);
+    TargetServerClient targetServerClient = TargetServerClient.getInstance(targetServer);
+    HttpURLConnection conn = targetServerClient.openConnection(targetServerURL, "GET");
 
-    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-    conn.setRequestMethod("GET");
-    String passString = targetServer.getUsername() + ":" + targetServer.getPassword();
-    String basicAuth = "Basic " + new String(Base64.encodeBase64(passString.getBytes()));
-    conn.setRequestProperty("Authorization", basicAuth);
-    conn.setUseCaches(false);
-    conn.setRequestProperty("Connection", "Keep-Alive");
-
-    if (conn.getResponseCode() != 200) {
-      throw new IllegalStateException("Comparison operation error, HTTP error code from target server : " + conn.getResponseCode());
-    }
-
-    String tempParentFolderPath = null;
+    SpoolDirectory spoolDirectory = null;
     try {
+      if (conn.getResponseCode() != 200) {
+        throw new IllegalStateException("Comparison operation error, HTTP error code from target server : " + conn.getResponseCode());
+      }
+
       // extract data from zip
-      Map<String, List<FileEntry>> fileEntriesMap = SITE_CONTENTS_IMPORT_RESOURCE.extractDataFromZip(conn.getInputStream());
+      spoolDirectory = SpoolManager.getInstance().open("comparison");
+      Map<String, List<FileEntry>> fileEntriesMap = SITE_CONTENTS_IMPORT_RESOURCE.extractDataFromZip(conn.getInputStream(), spoolDirectory);
       List<FileEntry> fileEntries = fileEntriesMap.get("shared");
       SiteMetaData siteMetadata = SiteContentsImportResource.getSiteMetadata(fileEntries);
       return siteMetadata.getNodesMetadata();
     } finally {
-      if (tempParentFolderPath != null) {
-        File tempFolderFile = new File(tempParentFolderPath);
-        if (tempFolderFile.exists()) {
-          try {
-            FileUtils.deleteDirectory(tempFolderFile);
-          } catch (IOException e) {
-            // Nothing to do
-          }
-        }
+      targetServerClient.release(conn);
+      if (spoolDirectory != null) {
+        spoolDirectory.close();
       }
     }
   }
@@ -19,6 +19,8 @@
 package org.exoplatform.management.wiki.operations;
 
 import org.exoplatform.management.common.FileEntry;
+import org.exoplatform.management.common.SpoolDirectory;
+import org.exoplatform.management.common.SpoolManager;
 import org.exoplatform.management.common.exportop.ActivitiesExportTask;
 import org.exoplatform.management.common.exportop.SpaceMetadataExportTask;
 import org.exoplatform.management.common.importop.AbstractJCRImportOperationHandler;
@@ -48,7 +50,6 @@ import org.gatein.management.api.operation.OperationNames;
 import org.gatein.management.api.operation.ResultHandler;
 import org.gatein.management.api.operation.model.NoResultModel;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -112,10 +113,12 @@ public class WikiDataImportResource extends AbstractJCRImportOperationHandler im
 
     InputStream attachmentInputStream = getAttachementInputStream(operationContext);
 
+    SpoolDirectory spoolDirectory = null;
     increaseCurrentTransactionTimeOut(operationContext);
     try {
       // extract data from zip
-      Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(attachmentInputStream);
+      spoolDirectory = SpoolManager.getInstance().open("wiki-import");
+      Map<String, List<FileEntry>> contentsByOwner = extractDataFromZip(attachmentInputStream, spoolDirectory);
       for (String wikiOwner : contentsByOwner.keySet()) {
         List<FileEntry> fileEntries = contentsByOwner.get(wikiOwner);
 
@@ -174,6 +177,9 @@ public class WikiDataImportResource extends AbstractJCRImportOperationHandler im
           // Nothing to do
         }
       }
+      if (spoolDirectory != null) {
+        spoolDirectory.close();
+      }
     }
     clearCaches(cacheService, "wiki");
     resultHandler.completed(NoResultModel.INSTANCE);
@@ -196,12 +202,14 @@ public class WikiDataImportResource extends AbstractJCRImportOperationHandler im
   /**
    * {@inheritDoc}
    */
-  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, File file) {
+  public boolean addSpecialFile(List<FileEntry> fileEntries, String filePath, FileEntry file) {
     if (filePath.endsWith(SpaceMetadataExportTask.FILENAME)) {
-      fileEntries.add(new FileEntry(SpaceMetadataExportTask.FILENAME, file));
+      file.setNodePath(SpaceMetadataExportTask.FILENAME);
+      fileEntries.add(file);
       return true;
     } else if (filePath.endsWith(ActivitiesExportTask.FILENAME)) {
-      fileEntries.add(new FileEntry(ActivitiesExportTask.FILENAME, file));
+      file.setNodePath(ActivitiesExportTask.FILENAME);
+      fileEntries.add(file);
       return true;
     }
     return false;
@@ -29,15 +29,20 @@ import juzu.request.RequestParameter;
 import juzu.template.Template;
 
 import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.disk.DiskFileItem;
 import org.exoplatform.commons.juzu.ajax.Ajax;
 import org.exoplatform.container.PortalContainer;
+import org.exoplatform.management.common.ExportEstimation;
+import org.exoplatform.management.common.SpoolManager;
 import org.exoplatform.management.service.api.Resource;
 import org.exoplatform.management.service.api.ResourceCategory;
-import org.exoplatform.management.service.api.ResourceHandler;
 import org.exoplatform.management.service.api.StagingService;
+import org.exoplatform.management.service.api.SynchronizationJob;
 import org.exoplatform.management.service.api.SynchronizationService;
 import org.exoplatform.management.service.api.TargetServer;
 import org.exoplatform.management.service.handler.ResourceHandlerLocator;
+import org.exoplatform.management.service.impl.StagingServiceImpl;
+import org.exoplatform.management.service.impl.SynchronizationServiceImpl;
 import org.exoplatform.portal.application.PortalRequestContext;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
@@ -45,7 +50,6 @@ import org.exoplatform.services.security.ConversationState;
 import org.gatein.management.api.ManagementService;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -61,6 +65,7 @@ import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import javax.inject.Inject;
@@ -83,9 +88,6 @@ public class StagingExtensionController {
   /** The Constant PARAM_PREFIX_OPTION. */
   public static final String PARAM_PREFIX_OPTION = "staging-option:";
 
-  /** The Constant IMPORT_ZIP_PATH_EXCEPTIONS. */
-  public static final Map<String, String> IMPORT_ZIP_PATH_EXCEPTIONS = new HashMap<String, String>();
-  
   /** The Constant IMPORT_PATH_EXCEPTIONS. */
   public static final Map<String, String> IMPORT_PATH_EXCEPTIONS = new HashMap<String, String>();
 
@@ -144,11 +146,6 @@ public class StagingExtensionController {
     String activatedModules = System.getProperty("exo.staging.portlet.modules", "");
     activatedModules = activatedModules == null ? "" : activatedModules.trim();
 
-    // ZIP PATH EXCEPTIONS
-    IMPORT_ZIP_PATH_EXCEPTIONS.put("/portal", "/site/portalsites");
-    IMPORT_ZIP_PATH_EXCEPTIONS.put("/group", "/site/groupsites");
-    IMPORT_ZIP_PATH_EXCEPTIONS.put("/user", "/site/usersites");
-
     // PATH EXCEPTIONS
     IMPORT_PATH_EXCEPTIONS.put("/site/portalsites", "/site");
     IMPORT_PATH_EXCEPTIONS.put("/site/groupsites", "/site");
@@ -433,37 +430,35 @@ public class StagingExtensionController {
         return Response.content(500, getResourceBundle().getString("staging.emptyFile"));
       }
 
-      ZipInputStream zipInputStream = new ZipInputStream(file.getInputStream());
       Set<String> foundResources = new HashSet<String>();
-      try {
-        ZipEntry entry = zipInputStream.getNextEntry();
-        while (entry != null) {
-          String fileName = entry.getName();
-          if (entry.isDirectory()) {
-            entry = zipInputStream.getNextEntry();
-            continue;
+      File storeLocation = file instanceof DiskFileItem && !file.isInMemory() ? ((DiskFileItem) file).getStoreLocation() : null;
+      if (storeLocation != null && storeLocation.exists()) {
+        // Only the central directory is read, entries are not inflated
+        ZipFile zipFile = new ZipFile(storeLocation);
+        try {
+          Enumeration<? extends ZipEntry> entries = zipFile.entries();
+          while (entries.hasMoreElements()) {
+            addFoundResource(foundResources, entries.nextElement());
           }
-          fileName = fileName.startsWith("/") ? "" : "/" + fileName;
-          String resourcePath = transformSpecialPath(fileName);
-          // If resource path transformed and treated with Exceptions Resource
-          // Paths
-          if (!resourcePath.equals(fileName)) {
-            // Got it !
-            foundResources.add(resourcePath);
-            // Manage only one resource at a time for the moment
-          } else if (!parentAlreadyAddedInList(foundResources, resourcePath)) {
-            ResourceHandler resourceHandler = ResourceHandlerLocator.findResourceByPath(resourcePath);
-            foundResources.add(resourceHandler.getPath());
+        } finally {
+          zipFile.close();
+        }
+      } else {
+        ZipInputStream zipInputStream = new ZipInputStream(file.getInputStream());
+        try {
+          ZipEntry entry = zipInputStream.getNextEntry();
+          while (entry != null) {
+            addFoundResource(foundResources, entry);
+            entry = zipInputStream.getNextEntry();
           }
-          entry = zipInputStream.getNextEntry();
+        } finally {
+          zipInputStream.close();
         }
+      }
 
-        fileToImport = file;
+      fileToImport = file;
 
-        log.info("Found resources zip file : {}", foundResources);
-      } finally {
-        zipInputStream.close();
-      }
+      log.info("Found resources zip file : {}", foundResources);
 
       if (!foundResources.isEmpty()) {
         return Response.ok(toString(foundResources));
@@ -476,6 +471,27 @@ public class StagingExtensionController {
     }
   }
 
+  /**
+   * Adds the path of the resource category of a zip entry to found resources.
+   *
+   * @param foundResources the found resources
+   * @param entry the zip entry
+   */
+  private void addFoundResource(Set<String> foundResources, ZipEntry entry) {
+    if (entry.isDirectory()) {
+      return;
+    }
+    String fileName = entry.getName();
+    fileName = fileName.startsWith("/") ? "" : "/" + fileName;
+    // MOP entries (/portal, /group, /user) are resolved to their site type
+    // path
+    String resourcePath = ResourceHandlerLocator.findResourcePath(fileName);
+    if (resourcePath == null) {
+      throw new IllegalStateException("No resource handler found for zip entry: " + fileName);
+    }
+    foundResources.add(resourcePath);
+  }
+
   /**
    * Backup.
    *
@@ -506,7 +522,7 @@ public class StagingExtensionController {
       category.getExportOptions().put("displayMessageFor", displayMessageFor);
       category.getExportOptions().put("message", message);
       List<ResourceCategory> resourceCategories = Collections.singletonList(category);
-      stagingService.export(resourceCategories);
+      SpoolManager.getInstance().release(stagingService.export(resourceCategories));
       return Response.ok(getResourceBundle().getString("staging.backupSuccess"));
     } catch (Throwable e) {
       log.error("Error occured while backup: ", e);
@@ -554,58 +570,14 @@ public class StagingExtensionController {
   @juzu.Resource
   public Response.Content export(String[] resourceCategories, String[] resources, String[] options) throws IOException {
     try {
-      // Create selected resources categories
-      List<ResourceCategory> selectedResourceCategories = new ArrayList<ResourceCategory>();
-      for (String selectedResourcesCategory : resourceCategories) {
-        ResourceCategory resourceCategory = new ResourceCategory(selectedResourcesCategory);
-        selectedResourceCategories.add(resourceCategory);
-      }
-
-      // Dispatch selected resources in resources categories
-      for (String selectedResource : resources) {
-        for (ResourceCategory resourceCategory : selectedResourceCategories) {
-          if (selectedResource.startsWith(resourceCategory.getPath())) {
-            resourceCategory.getResources().add(new Resource(selectedResource, null, null));
-            break;
-          }
-        }
-      }
-
-      // Dispatch selected options in resources categories
-      for (String selectedOption : options) {
-        int indexColon = selectedOption.indexOf(":");
-        if (indexColon > 0) {
-          String optionName = selectedOption.substring(0, indexColon);
-          String optionValue = selectedOption.substring(indexColon + 1);
-
-          String optionParts[] = optionName.split("_");
-          for (ResourceCategory resourceCategory : selectedResourceCategories) {
-            if (optionParts[0].equals(resourceCategory.getPath())) {
-              if (optionParts[1].equals(OPERATION_EXPORT_PREFIX)) {
-                resourceCategory.getExportOptions().put(optionParts[2], optionValue);
-              } else if (optionParts[1].equals(OPERATION_IMPORT_PREFIX)) {
-                resourceCategory.getImportOptions().put(optionParts[2], optionValue);
-              }
-              break;
-            }
-          }
-        }
-      }
-
-      // Manage paths exceptions (/site/portalsites -> /site)
-      List<ResourceCategory> selectedResourceCategoriesWithExceptions = new ArrayList<ResourceCategory>();
-      for (ResourceCategory resourceCategory : selectedResourceCategories) {
-        if (IMPORT_PATH_EXCEPTIONS.containsKey(resourceCategory.getPath())) {
-          resourceCategory.setPath(IMPORT_PATH_EXCEPTIONS.get(resourceCategory.getPath()));
-        }
-        selectedResourceCategoriesWithExceptions.add(resourceCategory);
-      }
+      List<ResourceCategory> selectedResourceCategoriesWithExceptions = getSelectedResourceCategories(resourceCategories, resources, options);
 
       File file = stagingService.export(selectedResourceCategoriesWithExceptions);
       if (file == null) {
         return Response.content(500, getResourceBundle().getString("staging.emptyResourceList"));
       } else {
-        return Response.ok(new FileInputStream(file)).withMimeType("application/zip").withHeader("Set-Cookie", "fileDownload=true; path=/").withHeader("Content-Disposition", "filename=\"StagingExport.zip\"");
+        // The exported file is deleted once downloaded
+        return Response.ok(SpoolManager.getInstance().openInputStream(file)).withMimeType("application/zip").withHeader("Set-Cookie", "fileDownload=true; path=/").withHeader("Content-Disposition", "filename=\"StagingExport.zip\"");
       }
     } catch (Throwable e) {
       log.error("Error while exporting resources, ", e);
@@ -613,6 +585,35 @@ public class StagingExtensionController {
     }
   }
 
+  /**
+   * Estimates the export or the synchronization of selected resources, and
+   * returns the configured size limits.
+   *
+   * @param resourceCategories the resource categories
+   * @param resources the resources
+   * @param options the options
+   * @return the response
+   */
+  @Ajax
+  @juzu.Resource
+  @juzu.MimeType.JSON
+  public Response estimate(String[] resourceCategories, String[] resources, String[] options) {
+    try {
+      ExportEstimation estimation = stagingService.estimate(getSelectedResourceCategories(resourceCategories, resources, options));
+      JSON data = new JSON();
+      data.set("entries", estimation.getEntries());
+      data.set("size", estimation.getSize());
+      data.set("duration", estimation.getDuration());
+      data.set("unknownPaths", new ArrayList<String>(estimation.getUnknownPaths()));
+      data.set("exportMaxSize", Long.getLong(StagingServiceImpl.EXPORT_MAX_SIZE_PARAM, 0L));
+      data.set("synchronizationMaxSize", Long.getLong(SynchronizationServiceImpl.SYNCHRONIZATION_MAX_SIZE_PARAM, 0L));
+      return Response.ok(data.toString());
+    } catch (Throwable e) {
+      log.error("Error while estimating resources", e);
+      return Response.content(500, getResourceBundle().getString("staging.estimationError"));
+    }
+  }
+
   /**
    * Import resources.
    *
@@ -795,7 +796,8 @@ public class StagingExtensionController {
   }
 
   /**
-   * Synchronize.
+   * Submits a synchronization job, its progress is polled using
+   * {@link #getSynchronizationJob(String)}.
    *
    * @param isSSLString the is SSL string
    * @param host the host
@@ -805,72 +807,82 @@ public class StagingExtensionController {
    * @param resourceCategories the resource categories
    * @param resources the resources
    * @param options the options
-   * @return the response
+   * @return the response, with the id of the submitted job
    * @throws IOException Signals that an I/O exception has occurred.
    */
   @Ajax
   @juzu.Resource
+  @juzu.MimeType.JSON
   public Response synchronize(String isSSLString, String host, String port, String username, String password, String[] resourceCategories, String[] resources, String[] options) throws IOException {
     TargetServer targetServer = new TargetServer(host, port, username, password, "true".equals(isSSLString));
     try {
-      // Create selected resources categories
-      List<ResourceCategory> selectedResourceCategories = new ArrayList<ResourceCategory>();
-      for (String selectedResourcesCategory : resourceCategories) {
-        ResourceCategory resourceCategory = new ResourceCategory(selectedResourcesCategory);
-        selectedResourceCategories.add(resourceCategory);
-      }
-
-      // Dispatch selected resources in resources categories
-      for (String selectedResource : resources) {
-        for (ResourceCategory resourceCategory : selectedResourceCategories) {
-          if (selectedResource.startsWith(resourceCategory.getPath())) {
-            resourceCategory.getResources().add(new Resource(selectedResource, null, null));
-            break;
-          }
-        }
-      }
-
-      // Dispatch selected options in resources categories
-      for (String selectedOption : options) {
-        int indexColon = selectedOption.indexOf(":");
-        if (indexColon > 0) {
-          String optionName = selectedOption.substring(0, indexColon);
-          String optionValue = selectedOption.substring(indexColon + 1);
-
-          String optionParts[] = optionName.split("_");
-          for (ResourceCategory resourceCategory : selectedResourceCategories) {
-            if (optionParts[0].equals(resourceCategory.getPath())) {
-              if (optionParts[1].equals(OPERATION_EXPORT_PREFIX)) {
-                resourceCategory.getExportOptions().put(optionParts[2], optionValue);
-              } else if (optionParts[1].equals(OPERATION_IMPORT_PREFIX)) {
-                resourceCategory.getImportOptions().put(optionParts[2], optionValue);
-              }
-              break;
-            }
-          }
-        }
-      }
-
-      // Manage paths exceptions (/site/portalsites -> /site)
-      List<ResourceCategory> selectedResourceCategoriesWithExceptions = new ArrayList<ResourceCategory>();
-      for (ResourceCategory resourceCategory : selectedResourceCategories) {
-        if (IMPORT_PATH_EXCEPTIONS.containsKey(resourceCategory.getPath())) {
-          resourceCategory.setPath(IMPORT_PATH_EXCEPTIONS.get(resourceCategory.getPath()));
-        }
-        selectedResourceCategoriesWithExceptions.add(resourceCategory);
-      }
+      List<ResourceCategory> selectedResourceCategoriesWithExceptions = getSelectedResourceCategories(resourceCategories, resources, options);
 
       // Sort categories with order of export/import operation dependency
       Collections.sort(selectedResourceCategoriesWithExceptions);
 
-      synchronizationService.synchronize(selectedResourceCategoriesWithExceptions, targetServer);
-      return Response.ok(getResourceBundle().getString("staging.synchronizationSuccess"));
+      SynchronizationJob job = synchronizationService.submit(selectedResourceCategoriesWithExceptions, targetServer);
+      JSON data = new JSON();
+      data.set("jobId", job.getId());
+      return Response.ok(data.toString());
     } catch (Throwable e) {
       log.error("Error while synchronizing data to target server: " + targetServer, e);
       return Response.content(500, getResourceBundle().getString("staging.synchronizationError"));
     }
   }
 
+  /**
+   * Gets the state and the progress of a synchronization job.
+   *
+   * @param jobId the job id
+   * @return the response
+   */
+  @Ajax
+  @juzu.Resource
+  @juzu.MimeType.JSON
+  public Response getSynchronizationJob(String jobId) {
+    try {
+      SynchronizationJob job = synchronizationService.getJob(jobId);
+      if (job == null) {
+        return Response.content(404, getResourceBundle().getString("staging.synchronizationJobNotFound"));
+      }
+      JSON data = new JSON();
+      data.set("id", job.getId());
+      data.set("state", job.getState().name());
+      data.set("totalCategories", job.getTotalCategories());
+      data.set("importedCategories", job.getImportedCategories());
+      data.set("exportedBytes", job.getExportedBytes());
+      data.set("sentBytes", job.getSentBytes());
+      data.set("submittedTime", job.getSubmittedTime());
+      data.set("startTime", job.getStartTime());
+      data.set("endTime", job.getEndTime());
+      return Response.ok(data.toString());
+    } catch (Throwable e) {
+      log.error("Error while getting synchronization job " + jobId, e);
+      return Response.content(500, getResourceBundle().getString("staging.error"));
+    }
+  }
+
+  /**
+   * Cancels a synchronization job.
+   *
+   * @param jobId the job id
+   * @return the response
+   */
+  @Ajax
+  @juzu.Resource
+  public Response cancelSynchronizationJob(String jobId) {
+    try {
+      if (synchronizationService.cancel(jobId)) {
+        return Response.ok(getResourceBundle().getString("staging.synchronizationCancelled"));
+      }
+      return Response.content(404, getResourceBundle().getString("staging.synchronizationJobNotFound"));
+    } catch (Throwable e) {
+      log.error("Error while cancelling synchronization job " + jobId, e);
+      return Response.content(500, getResourceBundle().getString("staging.error"));
+    }
+  }
+
   /**
    * Execute SQL.
    *
@@ -902,6 +914,64 @@ public class StagingExtensionController {
     }
   }
 
+  /**
+   * Builds the selected resource categories from the request parameters.
+   *
+   * @param resourceCategories the resource categories
+   * @param resources the resources
+   * @param options the options
+   * @return the resource categories, with paths exceptions applied
+   */
+  private List<ResourceCategory> getSelectedResourceCategories(String[] resourceCategories, String[] resources, String[] options) {
+    // Create selected resources categories
+    List<ResourceCategory> selectedResourceCategories = new ArrayList<ResourceCategory>();
+    for (String selectedResourcesCategory : resourceCategories) {
+      ResourceCategory resourceCategory = new ResourceCategory(selectedResourcesCategory);
+      selectedResourceCategories.add(resourceCategory);
+    }
+
+    // Dispatch selected resources in resources categories
+    for (String selectedResource : resources) {
+      for (ResourceCategory resourceCategory : selectedResourceCategories) {
+        if (selectedResource.startsWith(resourceCategory.getPath())) {
+          resourceCategory.getResources().add(new Resource(selectedResource, null, null));
+          break;
+        }
+      }
+    }
+
+    // Dispatch selected options in resources categories
+    for (String selectedOption : options) {
+      int indexColon = selectedOption.indexOf(":");
+      if (indexColon > 0) {
+        String optionName = selectedOption.substring(0, indexColon);
+        String optionValue = selectedOption.substring(indexColon + 1);
+
+        String optionParts[] = optionName.split("_");
+        for (ResourceCategory resourceCategory : selectedResourceCategories) {
+          if (optionParts[0].equals(resourceCategory.getPath())) {
+            if (optionParts[1].equals(OPERATION_EXPORT_PREFIX)) {
+              resourceCategory.getExportOptions().put(optionParts[2], optionValue);
+            } else if (optionParts[1].equals(OPERATION_IMPORT_PREFIX)) {
+              resourceCategory.getImportOptions().put(optionParts[2], optionValue);
+            }
+            break;
+          }
+        }
+      }
+    }
+
+    // Manage paths exceptions (/site/portalsites -> /site)
+    List<ResourceCategory> selectedResourceCategoriesWithExceptions = new ArrayList<ResourceCategory>();
+    for (ResourceCategory resourceCategory : selectedResourceCategories) {
+      if (IMPORT_PATH_EXCEPTIONS.containsKey(resourceCategory.getPath())) {
+        resourceCategory.setPath(IMPORT_PATH_EXCEPTIONS.get(resourceCategory.getPath()));
+      }
+      selectedResourceCategoriesWithExceptions.add(resourceCategory);
+    }
+    return selectedResourceCategoriesWithExceptions;
+  }
+
   /**
    * Gets the resource bundle.
    *
@@ -976,22 +1046,6 @@ public class StagingExtensionController {
     }
   }
 
-  /**
-   * Parent already added in list.
-   *
-   * @param foundResources the found resources
-   * @param address the address
-   * @return true, if successful
-   */
-  private boolean parentAlreadyAddedInList(Set<String> foundResources, String address) {
-    for (String path : foundResources) {
-      if (address.startsWith(path)) {
-        return true;
-      }
-    }
-    return false;
-  }
-
   /**
    * To string.
    *
@@ -1006,23 +1060,6 @@ public class StagingExtensionController {
     return result;
   }
 
-  /**
-   * Transform special path.
-   *
-   * @param resourcePath the resource path
-   * @return the string
-   */
-  private String transformSpecialPath(String resourcePath) {
-    Set<String> keys = IMPORT_ZIP_PATH_EXCEPTIONS.keySet();
-    KEYS: for (String key : keys) {
-      if (resourcePath.startsWith(key)) {
-        resourcePath = IMPORT_ZIP_PATH_EXCEPTIONS.get(key);
-        break KEYS;
-      }
-    }
-    return resourcePath;
-  }
-
   /**
    * Checks if is user admin.
    *
@@ -125,6 +125,15 @@ define( "stagingControllers", [ "SHARED/jquery", "SHARED/juzu-ajax" ], function
     };
 
     $scope.validateSyncServerForm = function(server, validateServerName) {
+      // servers reached through a shared directory ("file:/path") don't need HTTP settings
+      if(server.host && server.host.indexOf("file:") == 0) {
+        server.port = server.port || "";
+        server.username = server.username || "";
+        server.password = server.password || "";
+        $scope.hostClass = $scope.portClass = $scope.usernameClass = $scope.passwordClass = "";
+        $scope.serverNameClass = !validateServerName || server.name ? "" : "error";
+        return !validateServerName || server.name;
+      }
       $scope.hostClass = server.host ? "" : "error";
       $scope.portClass = server.port ? "" : "error";
       $scope.usernameClass = server.username ? "" : "error";
@@ -424,6 +433,59 @@ define( "stagingControllers", [ "SHARED/jquery", "SHARED/juzu-ajax" ], function
         }
 	};
 
+    // estimate the size and duration of the export of selected resources
+    $scope.estimateResources = function() {
+      var selectedResources = [];
+      for(categoryResources in $scope.resources) {
+        var selectedCategoryResources = $scope.resources[categoryResources].filter(function(element) { return element.selected; });
+        for(var i=0; i<selectedCategoryResources.length; i++) {
+          selectedResources.push(selectedCategoryResources[i]);
+        }
+      }
+
+      if(selectedResources.length == 0) {
+        $scope.setResultMessage($scope.i18n.selectResources, "error");
+        return;
+      }
+
+      var params = "";
+      var selectedCategories = $scope.getSelectedCategories(true);
+      for(var i=0; i<selectedCategories.length; i++) {
+        params += "&resourceCategories=" + selectedCategories[i];
+      }
+      for(var i=0; i<selectedResources.length; i++) {
+        params += "&resources=" + selectedResources[i].path;
+      }
+      for(optionName in $scope.optionsModel) {
+        params += "&options=" + optionName + ":" + $scope.optionsModel[optionName];
+      }
+
+      $scope.button_clicked = true;
+      $scope.setResultMessage($scope.i18n.processing, "info");
+      $http.get(stagingContainer.jzURL('StagingExtensionController.estimate') + params).success(function (estimation) {
+        var message = $scope.i18n.estimation
+            .replace("{0}", estimation.entries)
+            .replace("{1}", $scope.formatSize(estimation.size))
+            .replace("{2}", Math.ceil(estimation.duration / 1000));
+        var maxSize = $scope.mode == 'synchronize' ? estimation.synchronizationMaxSize : estimation.exportMaxSize;
+        var type = "info";
+        if(maxSize > 0 && estimation.size > maxSize) {
+          message += " " + $scope.i18n.estimationTooLarge.replace("{0}", $scope.formatSize(maxSize));
+          type = "error";
+        }
+        if(estimation.unknownPaths && estimation.unknownPaths.length > 0) {
+          message += " " + $scope.i18n.estimationIncomplete.replace("{0}", estimation.unknownPaths.join(", "));
+        }
+        $scope.setResultMessage(message, type);
+        $scope.button_clicked = false;
+        $scope.refreshController();
+      }).error(function (data) {
+        $scope.setResultMessage(data, "error");
+        $scope.button_clicked = false;
+        $scope.refreshController();
+      });
+    };
+
 	$scope.backup = function() {
 		var dirFolder = $scope.optionsModel["/backup/directory"];
 		var exportJCR = $scope.optionsModel["/backup/export-jcr"];
@@ -570,14 +632,12 @@ define( "stagingControllers", [ "SHARED/jquery", "SHARED/juzu-ajax" ], function
 	          data: paramsTargetServer + paramsResourceCategories + paramsResources + paramsOptions,
 	          headers: {'Content-Type': 'application/x-www-form-urlencoded'}
 	        }).success(function (data) {
-				if(data.indexOf('<body') >= 0 || data.indexOf('<head') >= 0) {
+				if(!data.jobId) {
 		            $scope.setResultMessage($scope.i18n.sessionTimeout, "error");
 		            $scope.button_clicked = false;
 		            $scope.refreshController();
 	        	} else {
-		          $scope.setResultMessage(data, "success");
-	    	      $scope.button_clicked = false;
-	    	      $scope.refreshController();
+		          $scope.pollSynchronizationJob(data.jobId);
 	    	  }
 	        }).error(function (data) {
 	          $scope.setResultMessage(data, "error");
@@ -590,6 +650,69 @@ define( "stagingControllers", [ "SHARED/jquery", "SHARED/juzu-ajax" ], function
       }
     };
 
+    // poll the progress of a synchronization job until its end
+    $scope.pollSynchronizationJob = function(jobId) {
+      $http.get(stagingContainer.jzURL('StagingExtensionController.getSynchronizationJob') + '&jobId=' + jobId).success(function (job) {
+        if(!job.state) {
+          $scope.synchronizationJob = null;
+          $scope.setResultMessage($scope.i18n.sessionTimeout, "error");
+          $scope.button_clicked = false;
+          $scope.refreshController();
+          return;
+        }
+        $scope.synchronizationJob = job;
+        if(job.state == "DONE") {
+          $scope.synchronizationJob = null;
+          $scope.setResultMessage($scope.i18n.synchronizationSuccess, "success");
+          $scope.button_clicked = false;
+        } else if(job.state == "FAILED") {
+          $scope.synchronizationJob = null;
+          $scope.setResultMessage($scope.i18n.synchronizationError, "error");
+          $scope.button_clicked = false;
+        } else if(job.state == "CANCELLED") {
+          $scope.synchronizationJob = null;
+          $scope.setResultMessage($scope.i18n.synchronizationCancelled, "info");
+          $scope.button_clicked = false;
+        } else {
+          if(job.state == "QUEUED") {
+            $scope.setResultMessage($scope.i18n.synchronizationQueued, "info");
+          } else {
+            $scope.setResultMessage($scope.i18n.synchronizationProgress
+                .replace("{0}", job.importedCategories)
+                .replace("{1}", job.totalCategories)
+                .replace("{2}", $scope.formatSize(job.exportedBytes))
+                .replace("{3}", $scope.formatSize(job.sentBytes)), "info");
+          }
+          $timeout(function() {$scope.pollSynchronizationJob(jobId)}, 2000);
+        }
+        $scope.refreshController();
+      }).error(function (data) {
+        $scope.synchronizationJob = null;
+        $scope.setResultMessage(data, "error");
+        $scope.button_clicked = false;
+        $scope.refreshController();
+      });
+    };
+
+    // cancel the running synchronization job
+    $scope.cancelSynchronization = function() {
+      if(!$scope.synchronizationJob) {
+        return;
+      }
+      $http.post(stagingContainer.jzURL('StagingExtensionController.cancelSynchronizationJob') + '&jobId=' + $scope.synchronizationJob.id);
+    };
+
+    $scope.formatSize = function(bytes) {
+      if(bytes < 1024) {
+        return bytes + " B";
+      } else if(bytes < 1024 * 1024) {
+        return (bytes / 1024).toFixed(1) + " KB";
+      } else if(bytes < 1024 * 1024 * 1024) {
+        return (bytes / (1024 * 1024)).toFixed(1) + " MB";
+      }
+      return (bytes / (1024 * 1024 * 1024)).toFixed(2) + " GB";
+    };
+
     $scope.validateQuery = function() {
       var sql = $scope.optionsModel["/content/sites_EXPORT_filter/query"];
       if(sql == null || sql == "") {